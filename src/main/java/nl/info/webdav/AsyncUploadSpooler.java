@@ -0,0 +1,405 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Receives request bodies without holding a request thread while the client is slow.
+ * <p>
+ * The body is read whenever the container reports that more of it has arrived, into buffers taken from a pool, and
+ * written to a spool file through a {@link FileChannel}. Once the whole body has arrived, the request is handled on
+ * the thread that reports it, with the spool file as its body, and then completed. Handling the request then only
+ * copies a local file, so the store and its locks are only held for that short time.
+ * <p>
+ * A body is refused with 413 once it is longer than the configured maximum, and with 507 once it is longer than the
+ * store or the spool directory can take, both before it is received when its length is announced and while it is
+ * received when it is not. A body that has not arrived completely within the configured timeout is refused with 408,
+ * so a client that sends slowly or stops sending without closing its connection does not keep its spool file.
+ */
+public class AsyncUploadSpooler {
+    private static final Logger LOG = Logger.getLogger(AsyncUploadSpooler.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How long a body may take to arrive by default, in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT = 60 * 60 * 1000L;
+
+    /**
+     * Handles a request once its body has been received.
+     */
+    public interface Handler {
+        void handle(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException;
+    }
+
+    private final Path _spoolDirectory;
+    private final long _maxLength;
+    private final long _timeout;
+    private final BlockingQueue<ByteBuffer> _buffers;
+
+    /**
+     * @param spoolDirectory
+     *                       the directory to spool bodies in while they are received
+     */
+    public AsyncUploadSpooler(Path spoolDirectory) {
+        this(spoolDirectory, -1);
+    }
+
+    /**
+     * @param spoolDirectory
+     *                       the directory to spool bodies in while they are received
+     * @param maxLength
+     *                       the most bytes a body may have, or -1 for no maximum
+     */
+    public AsyncUploadSpooler(Path spoolDirectory, long maxLength) {
+        this(spoolDirectory, maxLength, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param spoolDirectory
+     *                       the directory to spool bodies in while they are received
+     * @param maxLength
+     *                       the most bytes a body may have, or -1 for no maximum
+     * @param timeout
+     *                       the longest time a body may take to arrive, in milliseconds
+     */
+    public AsyncUploadSpooler(Path spoolDirectory, long maxLength, long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeout);
+        }
+        _spoolDirectory = spoolDirectory;
+        _maxLength = maxLength;
+        _timeout = timeout;
+        _buffers = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Starts the request asynchronously and receives its body. Returns right away; the handler is called when the
+     * body has been received.
+     *
+     * @param req
+     *                the request, which must support asynchronous processing
+     * @param resp
+     *                the response
+     * @param handler
+     *                handles the request with the received body
+     * @throws IOException
+     *                     if the spool file cannot be created
+     */
+    public void receive(HttpServletRequest req, HttpServletResponse resp, Handler handler) throws IOException {
+        receive(req, resp, -1, handler);
+    }
+
+    /**
+     * Starts the request asynchronously and receives its body, unless the body is already known to be too long.
+     * Returns right away; the handler is called when the body has been received.
+     *
+     * @param req
+     *                  the request, which must support asynchronous processing
+     * @param resp
+     *                  the response
+     * @param available
+     *                  the most bytes the store can take for the body, or -1 for no limit
+     * @param handler
+     *                  handles the request with the received body
+     * @throws IOException
+     *                     if the spool file cannot be created
+     */
+    public void receive(HttpServletRequest req, HttpServletResponse resp, long available, Handler handler)
+            throws IOException {
+        long contentLength = req.getContentLengthLong();
+        int refusal = refuse(contentLength, available);
+        long spoolSpace = usableSpace();
+        if (refusal == 0 && contentLength > spoolSpace) {
+            refusal = WebdavStatus.SC_INSUFFICIENT_STORAGE;
+        }
+        if (refusal != 0) {
+            LOG.fine("AsyncUploadSpooler.receive() refuses a body of " + contentLength + " bytes");
+            resp.sendError(refusal);
+            return;
+        }
+        Path spool = Files.createTempFile(_spoolDirectory, "webdav-put-", ".tmp");
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(spool, StandardOpenOption.WRITE);
+        } catch (IOException ioException) {
+            Files.deleteIfExists(spool);
+            throw ioException;
+        }
+        LOG.fine("AsyncUploadSpooler.receive(" + spool + ")");
+        AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(_timeout);
+        Upload upload = new Upload(asyncContext, req, resp, req.getInputStream(), spool, channel, available, spoolSpace,
+                handler);
+        asyncContext.addListener(upload);
+        upload.in.setReadListener(upload);
+    }
+
+    /**
+     * @return 0 if a body of the given length can be received, or the status to refuse it with
+     */
+    private int refuse(long length, long available) {
+        if (_maxLength >= 0 && length > _maxLength) {
+            return WebdavStatus.SC_REQUEST_TOO_LONG;
+        }
+        if (available >= 0 && length > available) {
+            return WebdavStatus.SC_INSUFFICIENT_STORAGE;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the bytes that can still be written to the spool directory
+     */
+    long usableSpace() throws IOException {
+        return Files.getFileStore(_spoolDirectory).getUsableSpace();
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = _buffers.poll();
+        return buffer == null ? ByteBuffer.allocate(BUFFER_SIZE) : buffer;
+    }
+
+    private void returnBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        _buffers.offer(buffer);
+    }
+
+    private final class Upload implements ReadListener, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final HttpServletRequest req;
+        private final HttpServletResponse resp;
+        private final ServletInputStream in;
+        private final Path spool;
+        private final FileChannel channel;
+        private final long available;
+        private final Handler handler;
+        private long received;
+        // the length the spool file may reach before the usable space is looked up again
+        private long spoolLimit;
+        private boolean done;
+
+        private Upload(
+                AsyncContext asyncContext,
+                HttpServletRequest req,
+                HttpServletResponse resp,
+                ServletInputStream in,
+                Path spool,
+                FileChannel channel,
+                long available,
+                long spoolSpace,
+                Handler handler
+        ) {
+            this.asyncContext = asyncContext;
+            this.req = req;
+            this.resp = resp;
+            this.in = in;
+            this.spool = spool;
+            this.channel = channel;
+            this.available = available;
+            this.spoolLimit = spoolSpace;
+            this.handler = handler;
+        }
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            ByteBuffer buffer = takeBuffer();
+            try {
+                while (in.isReady()) {
+                    int read = in.read(buffer.array(), 0, buffer.capacity());
+                    if (read == -1) {
+                        return;
+                    }
+                    received += read;
+                    int refusal = refuse(received, available);
+                    if (refusal == 0 && received > spoolLimit) {
+                        // what has been written so far is no longer part of the usable space
+                        spoolLimit = received - read + usableSpace();
+                        if (received > spoolLimit) {
+                            refusal = WebdavStatus.SC_INSUFFICIENT_STORAGE;
+                        }
+                    }
+                    if (refusal != 0) {
+                        LOG.fine("AsyncUploadSpooler refuses " + spool + " after " + received + " bytes");
+                        sendError(refusal);
+                        finish();
+                        return;
+                    }
+                    buffer.limit(read);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            } finally {
+                returnBuffer(buffer);
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            if (isDone()) {
+                return;
+            }
+            try {
+                channel.close();
+                try (FileChannel body = FileChannel.open(spool, StandardOpenOption.READ)) {
+                    handler.handle(new SpooledRequest(req, Channels.newInputStream(body)), resp);
+                }
+            } catch (Exception exception) {
+                LOG.log(Level.SEVERE, "Error occurred during handling of received body", exception);
+                sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+            } finally {
+                finish();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // client disconnected before the whole body was received
+            LOG.log(Level.FINE, "Failed to receive body asynchronously", throwable);
+            sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+            finish();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            cleanUp();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            LOG.fine("AsyncUploadSpooler.onTimeout(" + spool + ") after " + received + " bytes");
+            sendError(WebdavStatus.SC_REQUEST_TIMEOUT);
+            finish();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            onError(event.getThrowable());
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // the listener is only added after the request has been started asynchronously
+        }
+
+        private void sendError(int status) {
+            if (!resp.isCommitted()) {
+                try {
+                    resp.sendError(status);
+                } catch (IOException | IllegalStateException exception) {
+                    LOG.log(Level.FINE, "Failed to send error", exception);
+                }
+            }
+        }
+
+        private void finish() {
+            if (cleanUp()) {
+                asyncContext.complete();
+            }
+        }
+
+        private synchronized boolean isDone() {
+            return done;
+        }
+
+        private synchronized boolean cleanUp() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            try {
+                channel.close();
+                Files.deleteIfExists(spool);
+            } catch (IOException ioException) {
+                LOG.log(Level.WARNING, "Failed to remove spool file " + spool, ioException);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The request with the spool file as its body.
+     */
+    private static final class SpooledRequest extends HttpServletRequestWrapper {
+        private final ServletInputStream body;
+
+        private SpooledRequest(HttpServletRequest req, InputStream body) {
+            super(req);
+            this.body = new SpooledInputStream(body);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return body;
+        }
+    }
+
+    private static final class SpooledInputStream extends ServletInputStream {
+        private final InputStream in;
+        private boolean finished;
+
+        private SpooledInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            finished = b == -1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            finished = read == -1;
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new IllegalStateException("body has already been received");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Limits the bandwidth of downloads and uploads, for all users together and for every user on their own.
+ * <p>
+ * Both limits are token buckets that hold at most one second of bandwidth. A transfer takes tokens from them for every
+ * chunk it sends or receives, and waits when a bucket runs short until the chunk is paid for. Waiting transfers take
+ * turns, and the chunk a transfer moves per turn is the base chunk size times the weight of its user, so busy transfers
+ * share the bandwidth in proportion to their weights. The bytes moved, the time spent waiting and the number of active
+ * transfers are counted.
+ * <p>
+ * The bucket of a user is forgotten once the user has no transfers left and the bucket has filled up again, since a new
+ * bucket would then be the same. The bytes moved are counted for the {@value #MAX_COUNTED_PRINCIPALS} users that
+ * started a transfer most recently.
+ */
+public class BandwidthShaper {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final String ANONYMOUS = "";
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final int MAX_COUNTED_PRINCIPALS = 10000;
+
+    private final TokenBucket _global;
+    private final long _principalBytesPerSecond;
+    private final Map<String, Integer> _weights;
+    private final Map<String, TokenBucket> _principalBuckets = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> _principalBytes = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, LongAdder> eldest) {
+                    return size() > MAX_COUNTED_PRINCIPALS;
+                }
+            });
+    private final AtomicLong _nextSweep = new AtomicLong(System.nanoTime());
+    private final LongAdder _bytes = new LongAdder();
+    private final LongAdder _waitNanos = new LongAdder();
+    private final AtomicInteger _activeTransfers = new AtomicInteger();
+
+    /**
+     * @param globalBytesPerSecond
+     *                                the bandwidth of all transfers together, or 0 for no limit
+     * @param principalBytesPerSecond
+     *                                the bandwidth of the transfers of every user, or 0 for no limit
+     * @param weights
+     *                                the weight of users by name; users without one weigh 1
+     */
+    public BandwidthShaper(long globalBytesPerSecond, long principalBytesPerSecond, Map<String, Integer> weights) {
+        _global = globalBytesPerSecond > 0 ? new TokenBucket(globalBytesPerSecond) : null;
+        _principalBytesPerSecond = principalBytesPerSecond;
+        _weights = new HashMap<>(weights);
+    }
+
+    /**
+     * Starts a transfer for a user. The transfer must be ended when the request has been handled.
+     *
+     * @param principal
+     *                  the user, or null for an anonymous request
+     * @return the transfer
+     */
+    public Transfer start(Principal principal) {
+        String name = principal == null ? ANONYMOUS : principal.getName();
+        TokenBucket bucket = null;
+        if (_principalBytesPerSecond > 0) {
+            forgetIdleBuckets();
+            bucket = _principalBuckets.compute(name, (key, existing) -> {
+                TokenBucket started = existing == null ? new TokenBucket(_principalBytesPerSecond) : existing;
+                started.transfers++;
+                return started;
+            });
+        }
+        int weight = Math.max(1, _weights.getOrDefault(name, 1));
+        _activeTransfers.incrementAndGet();
+        return new Transfer(name, bucket, _principalBytes.computeIfAbsent(name, key -> new LongAdder()),
+                CHUNK_SIZE * weight);
+    }
+
+    /**
+     * Forgets, at most once per second, the buckets of users without transfers that have filled up since their last
+     * transfer ended.
+     */
+    private void forgetIdleBuckets() {
+        long now = System.nanoTime();
+        long next = _nextSweep.get();
+        if (now - next < 0 || !_nextSweep.compareAndSet(next, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        for (String name : _principalBuckets.keySet()) {
+            _principalBuckets.computeIfPresent(name, (key, bucket) -> bucket.isIdle(now) ? null : bucket);
+        }
+    }
+
+    /**
+     * @return the number of users whose bucket is kept
+     */
+    int getPrincipalBuckets() {
+        return _principalBuckets.size();
+    }
+
+    /**
+     * @return the number of bytes sent and received
+     */
+    public long getBytesTransferred() {
+        return _bytes.sum();
+    }
+
+    /**
+     * @param principal
+     *                  the name of the user, or an empty string for anonymous requests
+     * @return the number of bytes sent to and received from the user
+     */
+    public long getBytesTransferred(String principal) {
+        LongAdder bytes = _principalBytes.get(principal);
+        return bytes == null ? 0 : bytes.sum();
+    }
+
+    /**
+     * @return the total time transfers waited for bandwidth, in milliseconds
+     */
+    public long getWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(_waitNanos.sum());
+    }
+
+    /**
+     * @return the number of transfers in progress
+     */
+    public int getActiveTransfers() {
+        return _activeTransfers.get();
+    }
+
+    /**
+     * A download or upload that is being shaped.
+     */
+    public final class Transfer {
+        private final String name;
+        private final TokenBucket bucket;
+        private final LongAdder principalBytes;
+        private final int chunkSize;
+        private boolean ended;
+
+        private Transfer(String name, TokenBucket bucket, LongAdder principalBytes, int chunkSize) {
+            this.name = name;
+            this.bucket = bucket;
+            this.principalBytes = principalBytes;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * @return the response, with its content sent at the bandwidth of this transfer
+         */
+        public HttpServletResponse shape(HttpServletResponse resp) {
+            return new ShapedResponse(resp, this);
+        }
+
+        /**
+         * @return the request, with its body received at the bandwidth of this transfer
+         */
+        public HttpServletRequest shape(HttpServletRequest req) {
+            return new ShapedRequest(req, this);
+        }
+
+        public synchronized void end() {
+            if (!ended) {
+                ended = true;
+                _activeTransfers.decrementAndGet();
+                if (bucket != null) {
+                    long now = System.nanoTime();
+                    _principalBuckets.computeIfPresent(name, (key, existing) -> {
+                        existing.transfers--;
+                        return existing.isIdle(now) ? null : existing;
+                    });
+                }
+            }
+        }
+
+        private void acquire(int n) throws InterruptedIOException {
+            long now = System.nanoTime();
+            long wait = _global == null ? 0 : _global.reserve(n, now);
+            if (bucket != null) {
+                wait = Math.max(wait, bucket.reserve(n, now));
+            }
+            _bytes.add(n);
+            principalBytes.add(n);
+            if (wait > 0) {
+                _waitNanos.add(wait);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for bandwidth");
+                }
+            }
+        }
+    }
+
+    /**
+     * Tokens are reserved ahead: a chunk that the bucket cannot pay for drives it into debt, and the caller waits until
+     * the debt would have been refilled. Later chunks then queue behind it. The transfers of a bucket are only counted
+     * while it is being computed in the map of buckets.
+     */
+    private static final class TokenBucket {
+        private final double bytesPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilled;
+        private int transfers;
+
+        private TokenBucket(long bytesPerSecond) {
+            bytesPerNano = bytesPerSecond / 1e9;
+            capacity = bytesPerSecond;
+            tokens = capacity;
+            refilled = System.nanoTime();
+        }
+
+        private synchronized long reserve(int n, long now) {
+            if (now > refilled) {
+                tokens = Math.min(capacity, tokens + (now - refilled) * bytesPerNano);
+                refilled = now;
+            }
+            tokens -= n;
+            return tokens >= 0 ? 0 : (long) (-tokens / bytesPerNano);
+        }
+
+        /**
+         * @return whether the bucket has no transfers and would be full at the given time
+         */
+        private synchronized boolean isIdle(long now) {
+            return transfers == 0 && tokens + Math.max(0, now - refilled) * bytesPerNano >= capacity;
+        }
+    }
+
+    private static final class ShapedResponse extends HttpServletResponseWrapper {
+        private final Transfer transfer;
+        private ServletOutputStream out;
+
+        private ShapedResponse(HttpServletResponse resp, Transfer transfer) {
+            super(resp);
+            this.transfer = transfer;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                out = new ShapedOutputStream(super.getOutputStream(), transfer);
+            }
+            return out;
+        }
+    }
+
+    private static final class ShapedRequest extends HttpServletRequestWrapper {
+        private final Transfer transfer;
+        private ServletInputStream in;
+
+        private ShapedRequest(HttpServletRequest req, Transfer transfer) {
+            super(req);
+            this.transfer = transfer;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = new ShapedInputStream(super.getInputStream(), transfer);
+            }
+            return in;
+        }
+    }
+
+    private static final class ShapedOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+        private final Transfer transfer;
+
+        private ShapedOutputStream(ServletOutputStream out, Transfer transfer) {
+            this.out = out;
+            this.transfer = transfer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            transfer.acquire(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, transfer.chunkSize);
+                transfer.acquire(n);
+                out.write(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+
+    private static final class ShapedInputStream extends ServletInputStream {
+        private final ServletInputStream in;
+        private final Transfer transfer;
+
+        private ShapedInputStream(ServletInputStream in, Transfer transfer) {
+            this.in = in;
+            this.transfer = transfer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                transfer.acquire(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, Math.min(len, transfer.chunkSize));
+            if (read > 0) {
+                transfer.acquire(read);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return in.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            in.setReadListener(readListener);
+        }
+    }
+}
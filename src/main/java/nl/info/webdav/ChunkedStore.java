@@ -0,0 +1,879 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that keeps every resource as a sequence of fixed-size chunks plus a manifest, for very large resources.
+ * <p>
+ * Folders and manifests live below <code>tree</code> in the root directory, so the namespace is an ordinary directory
+ * tree and MOVE is a rename of a manifest or folder. Every version of a resource keeps its chunks below its own
+ * <code>chunks/&lt;id&gt;</code>, named by their SHA-256 digest; the manifest lists the id and the digests in order.
+ * An upload is cut into chunks that are hashed and written concurrently; a chunk whose digest the previous version
+ * already has is linked instead of written, so rewriting one region of a resource only writes the chunks that
+ * changed. The new manifest replaces the old one atomically, after which the chunks of the old version are removed
+ * as soon as no reader and no upload uses them anymore; a stream that is never closed keeps them. Reads fetch the
+ * next chunks in parallel ahead of the reader, and skipping jumps to the chunk holding the new position without
+ * reading the chunks before it, so ranged reads only touch the chunks they need. COPY links the chunks of the source
+ * instead of copying them.
+ * <p>
+ * Chunks are only held in memory, to be hashed and written or read ahead concurrently, while the store-wide chunk
+ * buffer has room for them; otherwise uploads hash and write the chunk as it is read, and reads stream it from its
+ * file, so the memory used does not grow with the number of transfers. Chunk directories that no manifest refers to,
+ * left behind by an upload that was interrupted, are removed when the store is created.
+ */
+public class ChunkedStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(ChunkedStore.class.getName());
+    private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final long DEFAULT_BUFFER_SIZE = 32L * 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final String MANIFEST_VERSION = "chunked-1";
+
+    private final Path _tree;
+    private final Path _chunks;
+    private final LocalFileSystemStore _namespace;
+    private final int _chunkSize;
+    private final int _parallelism;
+    private final ExecutorService _executor;
+    // one permit per chunk held in memory, shared by all uploads and reads
+    private final Semaphore _buffers;
+    private final Map<String, Manifest> _manifests = new ConcurrentHashMap<>();
+    private final AtomicLong _chunksWritten = new AtomicLong();
+    private final Object _versions = new Object();
+    private final Map<String, Integer> _readers = new HashMap<>();
+    private final Set<String> _retired = new HashSet<>();
+
+    /**
+     * Uses chunks of 4 MiB and as many concurrent chunk reads and writes as there are processors.
+     *
+     * @param root
+     *             the root directory
+     * @throws IOException
+     *                     if the root cannot be initialized
+     */
+    public ChunkedStore(File root) throws IOException {
+        this(root, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param root
+     *                    the root directory
+     * @param chunkSize
+     *                    the size of a chunk in bytes
+     * @param parallelism
+     *                    the number of chunks read or written concurrently for one request
+     * @throws IOException
+     *                     if the root cannot be initialized
+     */
+    public ChunkedStore(File root, int chunkSize, int parallelism) throws IOException {
+        this(root, chunkSize, parallelism, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param root
+     *                    the root directory
+     * @param chunkSize
+     *                    the size of a chunk in bytes
+     * @param parallelism
+     *                    the number of chunks read or written concurrently for one request
+     * @param bufferSize
+     *                    the number of bytes of chunks all requests together hold in memory; at least one chunk is
+     *                    allowed
+     * @throws IOException
+     *                     if the root cannot be initialized
+     */
+    public ChunkedStore(File root, int chunkSize, int parallelism, long bufferSize) throws IOException {
+        if (chunkSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("chunk size and parallelism must be positive");
+        }
+        _tree = Files.createDirectories(root.toPath().resolve("tree")).toRealPath();
+        _chunks = Files.createDirectories(root.toPath().resolve("chunks")).toRealPath();
+        _namespace = new LocalFileSystemStore(_tree.toFile());
+        _chunkSize = chunkSize;
+        _parallelism = parallelism;
+        _buffers = new Semaphore((int) Math.max(1, Math.min(Integer.MAX_VALUE, bufferSize / chunkSize)));
+        removeUnreferencedVersions();
+        _executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ChunkedStore-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void destroy() {
+        _executor.shutdown();
+        _namespace.destroy();
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        LOG.fine("ChunkedStore.begin()");
+        return null;
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        LOG.fine("ChunkedStore.checkAuthentication()");
+        // do nothing
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.fine("ChunkedStore.commit()");
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.fine("ChunkedStore.rollback()");
+    }
+
+    public void createFolder(ITransaction transaction, String uri) throws WebdavException {
+        _namespace.createFolder(transaction, uri);
+    }
+
+    public void createResource(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ChunkedStore.createResource(" + uri + ")");
+        Path path = resolve(uri);
+        if (Files.exists(path)) {
+            throw new ObjectAlreadyExistsException("cannot create file: " + uri);
+        }
+        if (!Files.isDirectory(path.getParent())) {
+            throw new ObjectNotFoundException("cannot create file: " + uri);
+        }
+        writeManifest(uri, path, new Manifest(UUID.randomUUID().toString(), _chunkSize, 0, List.of()));
+    }
+
+    /**
+     * Cuts the content into chunks, hashes and writes them concurrently to a new version and replaces the manifest
+     * once all chunks are stored. Chunks the previous version already has are linked instead of written. A chunk for
+     * which the chunk buffer has no room is hashed and written as it is read.
+     */
+    public long setResourceContent(
+            ITransaction transaction,
+            String uri,
+            InputStream is,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        LOG.fine("ChunkedStore.setResourceContent(" + uri + ")");
+        Path path = resolve(uri);
+        Manifest old = Files.isRegularFile(path) ? acquire(uri, path) : null;
+        Path previous = old == null ? null : _chunks.resolve(old.id);
+        Set<String> linkable = old == null ? Set.of() : new HashSet<>(old.digests);
+        String id = UUID.randomUUID().toString();
+        Path directory = _chunks.resolve(id);
+        List<CompletableFuture<String>> digests = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(_parallelism);
+        long length = 0;
+        try (is) {
+            Files.createDirectories(directory);
+            while (true) {
+                inFlight.acquire();
+                long read;
+                if (_buffers.tryAcquire()) {
+                    byte[] chunk;
+                    try {
+                        chunk = is.readNBytes(_chunkSize);
+                    } catch (IOException e) {
+                        _buffers.release();
+                        inFlight.release();
+                        throw e;
+                    }
+                    read = chunk.length;
+                    if (read > 0) {
+                        digests.add(CompletableFuture.supplyAsync(() -> {
+                            try {
+                                return writeChunk(directory, chunk, previous, linkable);
+                            } finally {
+                                _buffers.release();
+                                inFlight.release();
+                            }
+                        }, _executor));
+                    } else {
+                        _buffers.release();
+                        inFlight.release();
+                    }
+                } else {
+                    try {
+                        read = streamChunk(directory, is, previous, linkable, digests);
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+                length += read;
+                if (read < _chunkSize) {
+                    break;
+                }
+            }
+            List<String> written = new ArrayList<>();
+            for (CompletableFuture<String> digest : digests) {
+                written.add(digest.join());
+            }
+            String replaced;
+            synchronized (_versions) {
+                replaced = Files.isRegularFile(path) ? manifest(uri, path).id : null;
+                writeManifest(uri, path, new Manifest(id, _chunkSize, length, written));
+            }
+            if (replaced != null) {
+                retire(replaced);
+            }
+            return length;
+        } catch (IOException | CompletionException | WebdavException e) {
+            LOG.severe("ChunkedStore.setResourceContent(" + uri + ") failed");
+            CompletableFuture.allOf(digests.toArray(new CompletableFuture[0])).exceptionally(t -> null).join();
+            removeChunks(id);
+            if (e instanceof WebdavException) {
+                throw (WebdavException) e;
+            }
+            throw e.getCause() instanceof WebdavException ? (WebdavException) e.getCause() : new WebdavException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            removeChunks(id);
+            throw new WebdavException(e);
+        } finally {
+            if (old != null) {
+                release(old.id);
+            }
+        }
+    }
+
+    public String[] getChildrenNames(ITransaction transaction, String uri) throws WebdavException {
+        return _namespace.getChildrenNames(transaction, uri);
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ChunkedStore.removeObject(" + uri + ")");
+        Path path = resolve(uri);
+        if (!Files.isRegularFile(path)) {
+            _namespace.removeObject(transaction, uri);
+            return;
+        }
+        Manifest manifest;
+        synchronized (_versions) {
+            manifest = manifest(uri, path);
+            try {
+                Files.delete(path);
+            } catch (IOException e) {
+                throw new WebdavException("cannot delete object: " + uri, e);
+            }
+        }
+        _manifests.remove(uri);
+        retire(manifest.id);
+    }
+
+    /**
+     * Renames the manifest or folder; the chunks stay where they are.
+     */
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        invalidate(sourceUri);
+        _namespace.move(transaction, sourceUri, destinationUri);
+    }
+
+    /**
+     * Copies manifests and links the chunks of every copied resource, falling back to copying them where links are
+     * not supported.
+     */
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        StoredObject so = getStoredObject(transaction, sourceUri);
+        if (so == null) {
+            throw new ObjectNotFoundException("cannot copy non-existing object: " + sourceUri);
+        }
+        Map<String, WebdavException> failures = new LinkedHashMap<>();
+        if (so.isFolder()) {
+            createFolder(transaction, destinationUri);
+            String[] children = depth == 0 ? null : getChildrenNames(transaction, sourceUri);
+            if (children != null) {
+                for (String child : children) {
+                    try {
+                        failures.putAll(copy(transaction, sourceUri + "/" + child, destinationUri + "/" + child, depth));
+                    } catch (WebdavException e) {
+                        failures.put(destinationUri + "/" + child, e);
+                    }
+                }
+            }
+        } else {
+            copyResource(sourceUri, destinationUri);
+        }
+        return failures;
+    }
+
+    /**
+     * Returns a stream that reads the chunks ahead in parallel and skips without reading the skipped chunks.
+     */
+    public InputStream getResourceContent(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ChunkedStore.getResourceContent(" + uri + ")");
+        Path path = resolve(uri);
+        if (!Files.isRegularFile(path)) {
+            throw new ObjectNotFoundException("cannot read: " + uri);
+        }
+        Manifest manifest = acquire(uri, path);
+        return new ChunkInputStream(_chunks.resolve(manifest.id), manifest);
+    }
+
+    public long getResourceLength(ITransaction transaction, String uri) throws WebdavException {
+        Path path = resolve(uri);
+        return Files.isRegularFile(path) ? manifest(uri, path).length : 0;
+    }
+
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        Path path;
+        try {
+            path = resolve(uri);
+        } catch (WebdavException e) {
+            LOG.warning("ChunkedStore.getStoredObject(" + uri + ") rejected: " + e.getMessage());
+            return null;
+        }
+        if (!Files.isRegularFile(path)) {
+            return _namespace.getStoredObject(transaction, uri);
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            StoredObject so = new StoredObject();
+            so.setFolder(false);
+            so.setLastModified(new Date(attributes.lastModifiedTime().toMillis()));
+            so.setCreationDate(new Date(attributes.creationTime().toMillis()));
+            so.setResourceLength(manifest(uri, path).length);
+            return so;
+        } catch (IOException | WebdavException e) {
+            LOG.log(Level.WARNING, "ChunkedStore.getStoredObject(" + uri + ") failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of chunks written since the store was created; chunks that were already stored are not
+     *         counted
+     */
+    long getChunksWritten() {
+        return _chunksWritten.get();
+    }
+
+    private String writeChunk(Path directory, byte[] chunk, Path previous, Set<String> linkable) {
+        String digest = HexFormat.of().formatHex(sha256().digest(chunk));
+        if (isStored(directory, digest, previous, linkable)) {
+            return digest;
+        }
+        Path temp = directory.resolve(digest + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.write(temp, chunk);
+            moveAtomically(temp, directory.resolve(digest));
+            _chunksWritten.incrementAndGet();
+            return digest;
+        } catch (IOException e) {
+            throw removing(temp, e);
+        }
+    }
+
+    /**
+     * Hashes the next chunk of the content while writing it to a temporary file, so it is never held in memory, and
+     * adds its digest.
+     *
+     * @return the length of the chunk, 0 at the end of the content
+     */
+    private long streamChunk(
+            Path directory,
+            InputStream is,
+            Path previous,
+            Set<String> linkable,
+            List<CompletableFuture<String>> digests
+    ) throws IOException {
+        MessageDigest sha256 = sha256();
+        Path temp = directory.resolve(UUID.randomUUID() + ".tmp");
+        long length = 0;
+        try {
+            try (InputStream in = new DigestInputStream(is, sha256); OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                int read;
+                while (length < _chunkSize
+                        && (read = in.read(buffer, 0, (int) Math.min(buffer.length, _chunkSize - length))) != -1) {
+                    out.write(buffer, 0, read);
+                    length += read;
+                }
+            }
+            if (length == 0) {
+                Files.delete(temp);
+                return 0;
+            }
+            String digest = HexFormat.of().formatHex(sha256.digest());
+            if (isStored(directory, digest, previous, linkable)) {
+                Files.delete(temp);
+            } else {
+                moveAtomically(temp, directory.resolve(digest));
+                _chunksWritten.incrementAndGet();
+            }
+            digests.add(CompletableFuture.completedFuture(digest));
+            return length;
+        } catch (IOException e) {
+            throw removing(temp, e);
+        }
+    }
+
+    /**
+     * @return whether the version already has the chunk, or it could be linked from the previous version
+     */
+    private static boolean isStored(Path directory, String digest, Path previous, Set<String> linkable) {
+        Path target = directory.resolve(digest);
+        if (Files.exists(target)) {
+            return true;
+        }
+        if (linkable.contains(digest)) {
+            try {
+                Files.createLink(target, previous.resolve(digest));
+                return true;
+            } catch (FileAlreadyExistsException e) {
+                return true;
+            } catch (UnsupportedOperationException | IOException e) {
+                LOG.log(Level.FINE, "ChunkedStore cannot link " + digest + ", writing it", e);
+            }
+        }
+        return false;
+    }
+
+    private static WebdavException removing(Path temp, IOException e) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+        return new WebdavException(e);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new WebdavException(e);
+        }
+    }
+
+    private void copyResource(String sourceUri, String destinationUri) {
+        Path destination = resolve(destinationUri);
+        if (Files.exists(destination)) {
+            throw new ObjectAlreadyExistsException("cannot copy to existing object: " + destinationUri);
+        }
+        Manifest source = acquire(sourceUri, resolve(sourceUri));
+        Manifest copy = new Manifest(UUID.randomUUID().toString(), source.chunkSize, source.length, source.digests);
+        Path from = _chunks.resolve(source.id);
+        Path to = _chunks.resolve(copy.id);
+        try {
+            Files.createDirectories(to);
+            for (String digest : new HashSet<>(source.digests)) {
+                try {
+                    Files.createLink(to.resolve(digest), from.resolve(digest));
+                } catch (UnsupportedOperationException | IOException e) {
+                    Files.copy(from.resolve(digest), to.resolve(digest));
+                }
+            }
+            writeManifest(destinationUri, destination, copy);
+        } catch (IOException | WebdavException e) {
+            removeChunks(copy.id);
+            throw e instanceof WebdavException ? (WebdavException) e : new WebdavException(e);
+        } finally {
+            release(source.id);
+        }
+    }
+
+    /**
+     * Reads the manifest and registers a reader of its version, so its chunks are kept until the reader is released.
+     * A version that was replaced after its manifest was read is skipped for the version that replaced it.
+     */
+    private Manifest acquire(String uri, Path path) {
+        while (true) {
+            Manifest manifest = manifest(uri, path);
+            synchronized (_versions) {
+                if (_retired.contains(manifest.id)) {
+                    continue;
+                }
+                _readers.merge(manifest.id, 1, Integer::sum);
+            }
+            if (manifest.digests.isEmpty() || Files.isDirectory(_chunks.resolve(manifest.id))
+                    || manifest(uri, path).id.equals(manifest.id)) {
+                return manifest;
+            }
+            // the version was removed before it was registered
+            release(manifest.id);
+        }
+    }
+
+    private void release(String id) {
+        synchronized (_versions) {
+            int readers = _readers.merge(id, -1, Integer::sum);
+            if (readers > 0) {
+                return;
+            }
+            _readers.remove(id);
+            if (!_retired.contains(id)) {
+                return;
+            }
+        }
+        removeRetired(id);
+    }
+
+    /**
+     * Removes the chunks of a version that is no longer referenced by a manifest, now or once its last reader is
+     * released.
+     */
+    private void retire(String id) {
+        synchronized (_versions) {
+            _retired.add(id);
+            if (_readers.containsKey(id)) {
+                return;
+            }
+        }
+        removeRetired(id);
+    }
+
+    private void removeRetired(String id) {
+        removeChunks(id);
+        synchronized (_versions) {
+            _retired.remove(id);
+        }
+    }
+
+    private Manifest manifest(String uri, Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            Manifest cached = _manifests.get(uri);
+            if (cached != null && cached.modified == modified && cached.size == attributes.size()) {
+                return cached;
+            }
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            if (lines.size() < 4 || !MANIFEST_VERSION.equals(lines.get(0))) {
+                throw new WebdavException("not a chunk manifest: " + uri);
+            }
+            Manifest manifest = new Manifest(lines.get(1), Integer.parseInt(lines.get(2)), Long.parseLong(lines.get(3)),
+                    List.copyOf(lines.subList(4, lines.size())));
+            manifest.modified = modified;
+            manifest.size = attributes.size();
+            _manifests.put(uri, manifest);
+            return manifest;
+        } catch (NoSuchFileException e) {
+            throw new ObjectNotFoundException(e);
+        } catch (IOException | NumberFormatException e) {
+            throw new WebdavException(e);
+        }
+    }
+
+    private void writeManifest(String uri, Path path, Manifest manifest) {
+        StringBuilder content = new StringBuilder();
+        content.append(MANIFEST_VERSION).append('\n').append(manifest.id).append('\n').append(manifest.chunkSize)
+                .append('\n').append(manifest.length).append('\n');
+        for (String digest : manifest.digests) {
+            content.append(digest).append('\n');
+        }
+        Path temp = path.resolveSibling("." + path.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            moveAtomically(temp, path);
+            _manifests.remove(uri);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new WebdavException(e);
+        }
+    }
+
+    /**
+     * Removes the chunk directories of versions no manifest refers to, which an interrupted upload leaves behind.
+     */
+    private void removeUnreferencedVersions() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        try (Stream<Path> files = Files.walk(_tree)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                try {
+                    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                    if (lines.size() >= 2 && MANIFEST_VERSION.equals(lines.get(0))) {
+                        referenced.add(lines.get(1));
+                    }
+                } catch (IOException e) {
+                    // not a manifest
+                    LOG.log(Level.FINE, "ChunkedStore skips " + file, e);
+                }
+            }
+        }
+        try (DirectoryStream<Path> versions = Files.newDirectoryStream(_chunks)) {
+            for (Path version : versions) {
+                String id = version.getFileName().toString();
+                if (!referenced.contains(id)) {
+                    LOG.info("ChunkedStore removes the unreferenced version " + id);
+                    removeChunks(id);
+                }
+            }
+        }
+    }
+
+    private void removeUnreferencedChunks(Path directory, Set<String> referenced) {
+        try (DirectoryStream<Path> chunks = Files.newDirectoryStream(directory)) {
+            for (Path chunk : chunks) {
+                if (!referenced.contains(chunk.getFileName().toString())) {
+                    Files.deleteIfExists(chunk);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "ChunkedStore cannot clean up " + directory, e);
+        }
+    }
+
+    private void removeChunks(String id) {
+        Path directory = _chunks.resolve(id);
+        if (Files.isDirectory(directory)) {
+            removeUnreferencedChunks(directory, Set.of());
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "ChunkedStore cannot remove " + directory, e);
+            }
+        }
+    }
+
+    private void invalidate(String uri) {
+        String prefix = uri.endsWith("/") ? uri : uri + "/";
+        _manifests.keySet().removeIf(key -> key.equals(uri) || key.startsWith(prefix));
+    }
+
+    private Path resolve(String uri) {
+        Path path = _tree.resolve(uri.replace('\\', '/').replaceAll("^/+", "")).normalize();
+        if (!path.startsWith(_tree)) {
+            throw new WebdavException("Path traversal attempt detected: " + uri);
+        }
+        return path;
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    private static final class Manifest {
+        private final String id;
+        private final int chunkSize;
+        private final long length;
+        private final List<String> digests;
+        private long modified;
+        private long size;
+
+        private Manifest(String id, int chunkSize, long length, List<String> digests) {
+            this.id = id;
+            this.chunkSize = chunkSize;
+            this.length = length;
+            this.digests = digests;
+        }
+    }
+
+    /**
+     * Reads the chunks of one resource, keeping up to <code>parallelism</code> chunk reads ahead of the reader while
+     * the chunk buffer has room for them, and streaming the chunks that were not read ahead from their files.
+     */
+    private final class ChunkInputStream extends InputStream {
+        private final Path _directory;
+        private final Manifest _manifest;
+        private final Map<Integer, CompletableFuture<byte[]>> _pending = new LinkedHashMap<>();
+        private long _position;
+        private InputStream _chunk;
+        private int _index = -1;
+        private long _offset;
+        private boolean _buffered;
+        private boolean _closed;
+
+        private ChunkInputStream(Path directory, Manifest manifest) {
+            _directory = directory;
+            _manifest = manifest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (_position >= _manifest.length) {
+                return -1;
+            }
+            int index = (int) (_position / _manifest.chunkSize);
+            long offset = _position - (long) index * _manifest.chunkSize;
+            if (index != _index || offset < _offset) {
+                open(index);
+            }
+            if (offset > _offset) {
+                _chunk.skipNBytes(offset - _offset);
+                _offset = offset;
+            }
+            int read = _chunk.read(b, off, (int) Math.min(len, chunkLength(index) - offset));
+            if (read <= 0) {
+                throw new IOException("chunk " + index + " is shorter than its manifest says");
+            }
+            _offset += read;
+            _position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, _manifest.length - _position));
+            _position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            if (_chunk == null || _index != (int) (_position / _manifest.chunkSize)) {
+                return 0;
+            }
+            return (int) Math.max(0, chunkLength(_index) - (_position - (long) _index * _manifest.chunkSize));
+        }
+
+        @Override
+        public void close() {
+            for (CompletableFuture<byte[]> pending : _pending.values()) {
+                discard(pending);
+            }
+            _pending.clear();
+            closeChunk();
+            if (!_closed) {
+                _closed = true;
+                release(_manifest.id);
+            }
+        }
+
+        private long chunkLength(int index) {
+            return Math.min(_manifest.chunkSize, _manifest.length - (long) index * _manifest.chunkSize);
+        }
+
+        /**
+         * Opens the chunk at its start, from the chunk read ahead if there is one and from its file otherwise, and
+         * reads the next chunks ahead while the chunk buffer has room.
+         */
+        private void open(int index) throws IOException {
+            closeChunk();
+            Iterator<Map.Entry<Integer, CompletableFuture<byte[]>>> skipped = _pending.entrySet().iterator();
+            while (skipped.hasNext()) {
+                Map.Entry<Integer, CompletableFuture<byte[]>> pending = skipped.next();
+                if (pending.getKey() < index) {
+                    discard(pending.getValue());
+                    skipped.remove();
+                }
+            }
+            int end = Math.min(index + _parallelism, _manifest.digests.size());
+            for (int ahead = index + 1; ahead < end; ahead++) {
+                if (_pending.containsKey(ahead)) {
+                    continue;
+                }
+                if (!_buffers.tryAcquire()) {
+                    break;
+                }
+                Path chunk = _directory.resolve(_manifest.digests.get(ahead));
+                _pending.put(ahead, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return Files.readAllBytes(chunk);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, _executor));
+            }
+            CompletableFuture<byte[]> pending = _pending.remove(index);
+            if (pending == null) {
+                _chunk = Files.newInputStream(_directory.resolve(_manifest.digests.get(index)));
+            } else {
+                _buffered = true;
+                try {
+                    _chunk = new ByteArrayInputStream(pending.join());
+                } catch (CompletionException e) {
+                    closeChunk();
+                    throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                }
+            }
+            _index = index;
+            _offset = 0;
+        }
+
+        private void closeChunk() {
+            if (_chunk != null) {
+                try {
+                    _chunk.close();
+                } catch (IOException e) {
+                    LOG.log(Level.FINE, "ChunkedStore cannot close chunk " + _index, e);
+                }
+                _chunk = null;
+            }
+            if (_buffered) {
+                _buffered = false;
+                _buffers.release();
+            }
+            _index = -1;
+        }
+
+        /**
+         * Gives the room of a chunk read ahead back to the chunk buffer once it has been read.
+         */
+        private void discard(CompletableFuture<byte[]> pending) {
+            pending.whenComplete((chunk, failure) -> _buffers.release());
+        }
+    }
+}
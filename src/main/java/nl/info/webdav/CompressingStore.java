@@ -0,0 +1,458 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.GZIPInputStream;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that compresses content with gzip before handing it to another store.
+ * <p>
+ * Content is compressed when its type is compressible, judged by the content type if one is given and otherwise by
+ * the extension of the URI, and when it is at least <code>minimumSize</code> bytes long. Compressed content is stored
+ * as a small marker, the gzip stream and the decoded length, so {@link #getStoredObject(ITransaction, String)} and
+ * {@link #getResourceLength(ITransaction, String)} keep reporting the decoded length and the ETag does not change.
+ * Other content is stored as is, so existing content can be used without conversion. Compressed resources report
+ * <code>gzip</code> as their content encoding, and {@link #getEncodedResourceContent(ITransaction, String)} returns
+ * the gzip stream without decompressing it.
+ */
+public class CompressingStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(CompressingStore.class.getName());
+    private static final String GZIP = "gzip";
+    private static final byte[] MAGIC = {0, 'w', 'd', 'z'};
+    private static final byte IDENTITY = 0;
+    private static final byte GZIPPED = 1;
+    private static final int HEADER_LENGTH = MAGIC.length + 1;
+    private static final int TRAILER_LENGTH = 8;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final long DEFAULT_MINIMUM_SIZE = 1024;
+    private static final Set<String> DEFAULT_EXTENSIONS = Set.of("css", "csv", "htm", "html", "js", "json", "log", "md",
+            "svg", "tsv", "txt", "xml", "yaml", "yml");
+    private static final int MAX_CACHED_LAYOUTS = 100000;
+    private static final int BUF_SIZE = 65536;
+
+    private final IWebdavStore _store;
+    private final long _minimumSize;
+    private final Set<String> _extensions;
+    private final Map<String, Layout> _layouts = new ConcurrentHashMap<>();
+
+    /**
+     * Compresses text files of at least 1 KiB on a {@link LocalFileSystemStore} on <code>root</code>.
+     *
+     * @param root
+     *             the root directory
+     * @throws IOException
+     *                     if the root cannot be resolved
+     */
+    public CompressingStore(File root) throws IOException {
+        this(new LocalFileSystemStore(root), DEFAULT_MINIMUM_SIZE, DEFAULT_EXTENSIONS);
+    }
+
+    /**
+     * @param store
+     *                    the store holding the (compressed) content
+     * @param minimumSize
+     *                    the minimum length of content that is compressed
+     * @param extensions
+     *                    the lower case extensions of the resources that are compressed when no content type is given
+     */
+    public CompressingStore(IWebdavStore store, long minimumSize, Set<String> extensions) {
+        _store = store;
+        _minimumSize = minimumSize;
+        _extensions = extensions;
+    }
+
+    public void destroy() {
+        _store.destroy();
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        return _store.begin(principal);
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        _store.checkAuthentication(transaction);
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        _store.commit(transaction);
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        _store.rollback(transaction);
+    }
+
+    public void createFolder(ITransaction transaction, String folderUri) throws WebdavException {
+        _store.createFolder(transaction, folderUri);
+    }
+
+    public void createResource(ITransaction transaction, String resourceUri) throws WebdavException {
+        invalidate(resourceUri);
+        _store.createResource(transaction, resourceUri);
+    }
+
+    /**
+     * Compresses the content if the policy allows it and returns its decoded length.
+     */
+    public long setResourceContent(
+            ITransaction transaction,
+            String resourceUri,
+            InputStream content,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        LOG.fine("CompressingStore.setResourceContent(" + resourceUri + ")");
+        invalidate(resourceUri);
+        byte[] head;
+        try {
+            head = content.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, Math.max(_minimumSize, HEADER_LENGTH)));
+        } catch (IOException e) {
+            throw new WebdavException(e);
+        }
+        CountingInputStream logical = new CountingInputStream(
+                new SequenceInputStream(new ByteArrayInputStream(head), content));
+        boolean gzip = head.length >= _minimumSize && isCompressible(resourceUri, contentType);
+        Deflater deflater = gzip ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        InputStream stored;
+        if (gzip) {
+            stored = gzip(logical, deflater);
+        } else if (head.length >= MAGIC.length && Arrays.equals(head, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            // content that looks like our marker gets an explicit one
+            stored = new SequenceInputStream(new ByteArrayInputStream(header(IDENTITY)), logical);
+        } else {
+            stored = logical;
+        }
+        try {
+            _store.setResourceContent(transaction, resourceUri, stored, contentType, characterEncoding);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return logical.count;
+    }
+
+    public String[] getChildrenNames(ITransaction transaction, String folderUri) throws WebdavException {
+        return _store.getChildrenNames(transaction, folderUri);
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        invalidate(uri);
+        _store.removeObject(transaction, uri);
+    }
+
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        invalidate(sourceUri);
+        invalidate(destinationUri);
+        _store.move(transaction, sourceUri, destinationUri);
+    }
+
+    /**
+     * Copies the content as it is stored, so compressed content is not decompressed.
+     */
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        invalidate(destinationUri);
+        return _store.copy(transaction, sourceUri, destinationUri, depth);
+    }
+
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        invalidate(uri);
+        return _store.deleteTree(transaction, uri);
+    }
+
+    public boolean supportsDeleteTree() {
+        return _store.supportsDeleteTree();
+    }
+
+    public InputStream getResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        StoredObject so = _store.getStoredObject(transaction, resourceUri);
+        if (so == null || so.isFolder()) {
+            return _store.getResourceContent(transaction, resourceUri);
+        }
+        Layout layout = layout(transaction, resourceUri, so);
+        InputStream in = _store.getResourceContent(transaction, resourceUri);
+        try {
+            in.skipNBytes(layout.header);
+            if (!layout.gzip) {
+                return in;
+            }
+            return new GZIPInputStream(new BoundedInputStream(in, layout.encodedLength()), BUF_SIZE);
+        } catch (IOException e) {
+            close(in);
+            throw new WebdavException(e);
+        }
+    }
+
+    /**
+     * Returns the stored gzip stream of a compressed resource.
+     */
+    public InputStream getEncodedResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        StoredObject so = _store.getStoredObject(transaction, resourceUri);
+        Layout layout = so == null || so.isFolder() ? null : layout(transaction, resourceUri, so);
+        if (layout == null || !layout.gzip) {
+            throw new WebdavException("not stored compressed: " + resourceUri);
+        }
+        InputStream in = _store.getResourceContent(transaction, resourceUri);
+        try {
+            in.skipNBytes(layout.header);
+        } catch (IOException e) {
+            close(in);
+            throw new WebdavException(e);
+        }
+        return new BoundedInputStream(in, layout.encodedLength());
+    }
+
+    public long getResourceLength(ITransaction transaction, String resourceUri) throws WebdavException {
+        StoredObject so = getStoredObject(transaction, resourceUri);
+        return so == null ? 0 : so.getResourceLength();
+    }
+
+    /**
+     * Returns the object with the decoded length; compressed resources also report their content encoding and
+     * stored length. Resources stored with a marker report no content digest, as the digest of the other store is
+     * that of the stored form and not of the content.
+     */
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        StoredObject so = _store.getStoredObject(transaction, uri);
+        if (so != null && so.isResource() && !so.isNullResource()) {
+            Layout layout = layout(transaction, uri, so);
+            so.setResourceLength(layout.logicalLength);
+            if (layout.header > 0) {
+                so.setContentDigest(null);
+            }
+            if (layout.gzip) {
+                so.setContentEncoding(GZIP);
+                so.setEncodedLength(layout.encodedLength());
+            }
+        }
+        return so;
+    }
+
+    private boolean isCompressible(String uri, String contentType) {
+        if (contentType != null) {
+            String type = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+            return type.startsWith("text/") || type.endsWith("+xml") || type.endsWith("+json")
+                    || type.equals("application/xml") || type.equals("application/json")
+                    || type.equals("application/javascript");
+        }
+        int dot = uri.lastIndexOf('.');
+        if (dot == -1 || dot < uri.lastIndexOf('/')) {
+            return false;
+        }
+        return _extensions.contains(uri.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the stored form of compressed content: the marker, the gzip stream and the decoded length. The gzip
+     * trailer and the decoded length are only known once the content has been read, so they are built lazily.
+     */
+    private static InputStream gzip(CountingInputStream logical, Deflater deflater) {
+        CRC32 crc = new CRC32();
+        CheckedInputStream checked = new CheckedInputStream(logical, crc);
+        byte[] header = new byte[HEADER_LENGTH + GZIP_HEADER.length];
+        System.arraycopy(header(GZIPPED), 0, header, 0, HEADER_LENGTH);
+        System.arraycopy(GZIP_HEADER, 0, header, HEADER_LENGTH, GZIP_HEADER.length);
+        List<Supplier<InputStream>> parts = List.of(
+                () -> new ByteArrayInputStream(header),
+                () -> new DeflaterInputStream(checked, deflater, BUF_SIZE),
+                () -> {
+                    ByteBuffer trailer = ByteBuffer.allocate(8 + TRAILER_LENGTH);
+                    trailer.order(ByteOrder.LITTLE_ENDIAN).putInt((int) crc.getValue()).putInt((int) logical.count);
+                    trailer.order(ByteOrder.BIG_ENDIAN).putLong(logical.count);
+                    return new ByteArrayInputStream(trailer.array());
+                });
+        Iterator<Supplier<InputStream>> iterator = parts.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            public InputStream nextElement() {
+                return iterator.next().get();
+            }
+        });
+    }
+
+    private static byte[] header(byte coding) {
+        byte[] header = Arrays.copyOf(MAGIC, HEADER_LENGTH);
+        header[MAGIC.length] = coding;
+        return header;
+    }
+
+    private Layout layout(ITransaction transaction, String uri, StoredObject so) {
+        long storedLength = so.getResourceLength();
+        long lastModified = so.getLastModified() == null ? 0 : so.getLastModified().getTime();
+        Layout layout = _layouts.get(uri);
+        if (layout != null && layout.storedLength == storedLength && layout.lastModified == lastModified) {
+            return layout;
+        }
+        layout = readLayout(transaction, uri, storedLength, lastModified);
+        if (_layouts.size() >= MAX_CACHED_LAYOUTS) {
+            _layouts.clear();
+        }
+        _layouts.put(uri, layout);
+        return layout;
+    }
+
+    private Layout readLayout(ITransaction transaction, String uri, long storedLength, long lastModified) {
+        Layout layout = new Layout(storedLength, lastModified);
+        if (storedLength < HEADER_LENGTH) {
+            return layout;
+        }
+        try (DataInputStream in = new DataInputStream(_store.getResourceContent(transaction, uri))) {
+            byte[] header = in.readNBytes(HEADER_LENGTH);
+            if (!Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+                return layout;
+            }
+            if (header[MAGIC.length] == GZIPPED && storedLength >= HEADER_LENGTH + TRAILER_LENGTH) {
+                in.skipNBytes(storedLength - HEADER_LENGTH - TRAILER_LENGTH);
+                layout.gzip = true;
+                layout.logicalLength = in.readLong();
+            } else {
+                layout.logicalLength = storedLength - HEADER_LENGTH;
+            }
+            layout.header = HEADER_LENGTH;
+            return layout;
+        } catch (IOException e) {
+            throw new WebdavException(e);
+        }
+    }
+
+    private void invalidate(String uri) {
+        String prefix = uri.endsWith("/") ? uri : uri + "/";
+        _layouts.keySet().removeIf(key -> key.equals(uri) || key.startsWith(prefix));
+    }
+
+    private static void close(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            LOG.fine("CompressingStore cannot close stream: " + e.getMessage());
+        }
+    }
+
+    /**
+     * How a resource is stored.
+     */
+    private static final class Layout {
+        private final long storedLength;
+        private final long lastModified;
+        private int header;
+        private boolean gzip;
+        private long logicalLength;
+
+        private Layout(long storedLength, long lastModified) {
+            this.storedLength = storedLength;
+            this.lastModified = lastModified;
+            this.logicalLength = storedLength;
+        }
+
+        private long encodedLength() {
+            return storedLength - header - (gzip ? TRAILER_LENGTH : 0);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long length) {
+            super(in);
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,626 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that keeps every distinct content only once.
+ * <p>
+ * Content is written to <code>blobs/</code> below the root, in files named after the SHA-256 digest of the content.
+ * A namespace index maps every path to its blob and metadata, and counts the references to each blob. Copying a
+ * resource only adds an index entry for the existing blob, and writing content that is already present only costs
+ * hashing the stream; only new blobs are forced to disk. The digest is reported through
+ * {@link StoredObject#getContentDigest()}. Blobs that are no longer referenced are removed by a background garbage
+ * collector.
+ * <p>
+ * The index is kept in memory and every change is appended to <code>index.journal</code>, which is forced to disk on
+ * {@link #commit(ITransaction)} and compacted when the store is opened. Like {@link LocalFileSystemStore}, changes
+ * are applied immediately and {@link #rollback(ITransaction)} does not undo them.
+ */
+public class ContentAddressedStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(ContentAddressedStore.class.getName());
+    private static final int BUF_SIZE = 65536;
+    private static final long GC_INTERVAL_SECONDS = 60;
+    private static final String ROOT = "/";
+
+    private final Path _blobs;
+    private final Path _tmp;
+    private final Path _journal;
+    private final Map<String, Entry> _entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> _children = new ConcurrentHashMap<>();
+    private final Map<String, Integer> _references = new HashMap<>();
+    private final Set<String> _garbage = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService _collector;
+    private Writer _journalWriter;
+    private FileOutputStream _journalStream;
+
+    public ContentAddressedStore(File root) throws IOException {
+        this(root, GC_INTERVAL_SECONDS);
+    }
+
+    /**
+     * @param root
+     *                          the directory holding the blobs and the index
+     * @param gcIntervalSeconds
+     *                          the interval between garbage collections, or <code>0</code> to only collect on
+     *                          {@link #collectGarbage()}
+     * @throws IOException
+     *                     if the index cannot be read
+     */
+    public ContentAddressedStore(File root, long gcIntervalSeconds) throws IOException {
+        Path rootPath = root.toPath();
+        _blobs = rootPath.resolve("blobs");
+        _tmp = rootPath.resolve("tmp");
+        _journal = rootPath.resolve("index.journal");
+        Files.createDirectories(_blobs);
+        Files.createDirectories(_tmp);
+        loadIndex();
+        findUnreferencedBlobs();
+        if (gcIntervalSeconds > 0) {
+            _collector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ContentAddressedStore-gc");
+                thread.setDaemon(true);
+                return thread;
+            });
+            _collector.scheduleWithFixedDelay(this::collectGarbage, gcIntervalSeconds, gcIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            _collector = null;
+        }
+    }
+
+    public synchronized void destroy() {
+        LOG.fine("ContentAddressedStore.destroy()");
+        if (_collector != null) {
+            _collector.shutdown();
+        }
+        try {
+            _journalWriter.close();
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "ContentAddressedStore.destroy() failed to close the journal", e);
+        }
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        LOG.fine("ContentAddressedStore.begin()");
+        return null;
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        LOG.fine("ContentAddressedStore.checkAuthentication()");
+        // do nothing
+    }
+
+    public synchronized void commit(ITransaction transaction) throws WebdavException {
+        LOG.fine("ContentAddressedStore.commit()");
+        try {
+            _journalWriter.flush();
+            _journalStream.getFD().sync();
+        } catch (IOException e) {
+            LOG.severe("ContentAddressedStore.commit() failed");
+            throw new WebdavException(e);
+        }
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.fine("ContentAddressedStore.rollback()");
+    }
+
+    public synchronized void createFolder(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ContentAddressedStore.createFolder(" + uri + ")");
+        String path = normalize(uri);
+        checkCreatable(path, "cannot create folder: " + uri);
+        long now = System.currentTimeMillis();
+        put(path, new Entry(true, null, 0, null, now, now));
+    }
+
+    public synchronized void createResource(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ContentAddressedStore.createResource(" + uri + ")");
+        String path = normalize(uri);
+        checkCreatable(path, "cannot create file: " + uri);
+        long now = System.currentTimeMillis();
+        put(path, new Entry(false, null, 0, null, now, now));
+    }
+
+    public long setResourceContent(
+            ITransaction transaction,
+            String uri,
+            InputStream is,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        LOG.fine("ContentAddressedStore.setResourceContent(" + uri + ")");
+        String path = normalize(uri);
+        Path spool = null;
+        String blob;
+        long length = 0;
+        boolean forced = false;
+        try {
+            spool = Files.createTempFile(_tmp, "put", null);
+            MessageDigest digest = newDigest();
+            try (InputStream in = new DigestInputStream(is, digest);
+                    FileChannel channel = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+                OutputStream os = Channels.newOutputStream(channel);
+                int read;
+                byte[] copyBuffer = new byte[BUF_SIZE];
+                while ((read = in.read(copyBuffer, 0, copyBuffer.length)) != -1) {
+                    os.write(copyBuffer, 0, read);
+                    length += read;
+                }
+            }
+            blob = HexFormat.of().formatHex(digest.digest());
+            // a new blob is renamed into place and referenced from the journal, so it must be on disk first
+            if (!Files.exists(blobPath(blob))) {
+                force(spool);
+                forced = true;
+            }
+        } catch (IOException e) {
+            if (spool != null) {
+                deleteQuietly(spool);
+            }
+            LOG.severe("ContentAddressedStore.setResourceContent(" + uri + ") failed");
+            throw new WebdavException(e);
+        }
+
+        synchronized (this) {
+            Entry entry = _entries.get(path);
+            if (entry == null || entry.folder) {
+                deleteQuietly(spool);
+                throw new ObjectNotFoundException("cannot set content of non-existing resource: " + uri);
+            }
+            try {
+                Path target = blobPath(blob);
+                if (Files.exists(target)) {
+                    Files.delete(spool);
+                } else {
+                    if (!forced) {
+                        // the blob was collected since it was looked up
+                        force(spool);
+                    }
+                    Files.createDirectories(target.getParent());
+                    Files.move(spool, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                deleteQuietly(spool);
+                LOG.severe("ContentAddressedStore.setResourceContent(" + uri + ") failed");
+                throw new WebdavException(e);
+            }
+            put(path, new Entry(false, blob, length, contentType, entry.created, System.currentTimeMillis()));
+        }
+        return length;
+    }
+
+    public String[] getChildrenNames(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ContentAddressedStore.getChildrenNames(" + uri + ")");
+        String path = normalize(uri);
+        Entry entry = _entries.get(path);
+        if (entry == null || !entry.folder) {
+            return null;
+        }
+        Set<String> children = _children.get(path);
+        if (children == null) {
+            return new String[0];
+        }
+        List<String> names = new ArrayList<>(children.size());
+        for (String child : children) {
+            names.add(child.substring(child.lastIndexOf('/') + 1));
+        }
+        return names.toArray(new String[0]);
+    }
+
+    public synchronized void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ContentAddressedStore.removeObject(" + uri + ")");
+        String path = normalize(uri);
+        Entry entry = _entries.get(path);
+        Set<String> children = _children.get(path);
+        if (entry == null || ROOT.equals(path) || (children != null && !children.isEmpty())) {
+            throw new WebdavException("cannot delete object: " + uri);
+        }
+        remove(path);
+    }
+
+    /**
+     * Moves the object by re-keying its index entries; no content is touched.
+     */
+    public synchronized void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        LOG.fine("ContentAddressedStore.move(" + sourceUri + ", " + destinationUri + ")");
+        String source = normalize(sourceUri);
+        String destination = normalize(destinationUri);
+        if (!_entries.containsKey(source)) {
+            throw new ObjectNotFoundException("cannot move non-existing object: " + sourceUri);
+        }
+        if (ROOT.equals(source) || destination.startsWith(source + "/")) {
+            throw new WebdavException("cannot move object into itself: " + destinationUri);
+        }
+        checkCreatable(destination, "cannot move to: " + destinationUri);
+        List<String> subtree = subtree(source);
+        for (String path : subtree) {
+            put(destination + path.substring(source.length()), _entries.get(path));
+        }
+        for (int i = subtree.size() - 1; i >= 0; i--) {
+            remove(subtree.get(i));
+        }
+    }
+
+    /**
+     * Copies the object by adding index entries that reference the existing blobs; no content is copied.
+     */
+    public synchronized Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        LOG.fine("ContentAddressedStore.copy(" + sourceUri + ", " + destinationUri + ")");
+        String source = normalize(sourceUri);
+        String destination = normalize(destinationUri);
+        Entry entry = _entries.get(source);
+        if (entry == null) {
+            throw new ObjectNotFoundException("cannot copy non-existing object: " + sourceUri);
+        }
+        if (destination.equals(source) || destination.startsWith(source + "/")) {
+            throw new WebdavException("cannot copy an object into itself: " + destinationUri);
+        }
+        checkCreatable(destination, "cannot copy to: " + destinationUri);
+        long now = System.currentTimeMillis();
+        List<String> subtree = depth == 0 ? List.of(source) : subtree(source);
+        for (String path : subtree) {
+            Entry copied = _entries.get(path);
+            put(destination + path.substring(source.length()),
+                    new Entry(copied.folder, copied.blob, copied.length, copied.mimeType, now, now));
+        }
+        return new LinkedHashMap<>();
+    }
+
+    /**
+     * Removes the folder by dropping its index entries; blobs that are no longer referenced are left to the garbage
+     * collector.
+     */
+    public synchronized Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ContentAddressedStore.deleteTree(" + uri + ")");
+        String path = normalize(uri);
+        Entry entry = _entries.get(path);
+        if (entry == null || !entry.folder) {
+            throw new ObjectNotFoundException("cannot delete non-existing folder: " + uri);
+        }
+        if (ROOT.equals(path)) {
+            throw new WebdavException("cannot delete object: " + uri);
+        }
+        List<String> subtree = subtree(path);
+        for (int i = subtree.size() - 1; i >= 0; i--) {
+            remove(subtree.get(i));
+        }
+        return new LinkedHashMap<>();
+    }
+
+    public boolean supportsDeleteTree() {
+        return true;
+    }
+
+    public InputStream getResourceContent(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ContentAddressedStore.getResourceContent(" + uri + ")");
+        Entry entry = _entries.get(normalize(uri));
+        if (entry == null || entry.folder) {
+            throw new ObjectNotFoundException("cannot read non-existing resource: " + uri);
+        }
+        if (entry.blob == null) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        try {
+            return new BufferedInputStream(Files.newInputStream(blobPath(entry.blob)), BUF_SIZE);
+        } catch (IOException e) {
+            LOG.severe("ContentAddressedStore.getResourceContent(" + uri + ") failed");
+            throw new WebdavException(e);
+        }
+    }
+
+    public long getResourceLength(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("ContentAddressedStore.getResourceLength(" + uri + ")");
+        Entry entry = _entries.get(normalize(uri));
+        return entry == null ? 0 : entry.length;
+    }
+
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        Entry entry;
+        try {
+            entry = _entries.get(normalize(uri));
+        } catch (WebdavException e) {
+            LOG.warning("ContentAddressedStore.getStoredObject(" + uri + ") rejected: " + e.getMessage());
+            return null;
+        }
+        if (entry == null) {
+            return null;
+        }
+        StoredObject so = new StoredObject();
+        so.setFolder(entry.folder);
+        so.setLastModified(new Date(entry.modified));
+        so.setCreationDate(new Date(entry.created));
+        so.setResourceLength(entry.length);
+        so.setMimeType(entry.mimeType);
+        if (!entry.folder) {
+            so.setContentDigest(entry.blob);
+        }
+        return so;
+    }
+
+    /**
+     * Removes the blobs that are no longer referenced by any path. Runs periodically in the background and may also
+     * be called directly.
+     */
+    public void collectGarbage() {
+        for (String blob : _garbage) {
+            synchronized (this) {
+                if (_references.containsKey(blob)) {
+                    _garbage.remove(blob);
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(blobPath(blob));
+                    _garbage.remove(blob);
+                    LOG.fine("ContentAddressedStore.collectGarbage() removed blob " + blob);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "ContentAddressedStore.collectGarbage() cannot remove blob " + blob, e);
+                }
+            }
+        }
+    }
+
+    private void put(String path, Entry entry) throws WebdavException {
+        Entry previous = _entries.put(path, entry);
+        if (previous == null && !ROOT.equals(path)) {
+            _children.computeIfAbsent(parent(path), key -> ConcurrentHashMap.newKeySet()).add(path);
+        }
+        reference(entry.blob);
+        if (previous != null) {
+            release(previous.blob);
+        }
+        journal("P", path, entry);
+    }
+
+    private void remove(String path) throws WebdavException {
+        Entry previous = _entries.remove(path);
+        if (previous == null) {
+            return;
+        }
+        _children.remove(path);
+        Set<String> siblings = _children.get(parent(path));
+        if (siblings != null) {
+            siblings.remove(path);
+        }
+        release(previous.blob);
+        journal("R", path, null);
+    }
+
+    private void reference(String blob) {
+        if (blob != null) {
+            _references.merge(blob, 1, Integer::sum);
+        }
+    }
+
+    private void release(String blob) {
+        if (blob != null && _references.merge(blob, -1, Integer::sum) == 0) {
+            _references.remove(blob);
+            _garbage.add(blob);
+        }
+    }
+
+    private List<String> subtree(String path) {
+        List<String> paths = new ArrayList<>();
+        paths.add(path);
+        for (int i = 0; i < paths.size(); i++) {
+            Set<String> children = _children.get(paths.get(i));
+            if (children != null) {
+                paths.addAll(children);
+            }
+        }
+        return paths;
+    }
+
+    private void checkCreatable(String path, String message) throws WebdavException {
+        if (_entries.containsKey(path)) {
+            throw new ObjectAlreadyExistsException(message);
+        }
+        Entry parent = ROOT.equals(path) ? null : _entries.get(parent(path));
+        if (parent == null || !parent.folder) {
+            throw new ObjectNotFoundException(message);
+        }
+    }
+
+    private Path blobPath(String blob) {
+        return _blobs.resolve(blob.substring(0, 2)).resolve(blob);
+    }
+
+    private void journal(String operation, String path, Entry entry) throws WebdavException {
+        StringBuilder line = new StringBuilder(operation).append('\t').append(encode(path));
+        if (entry != null) {
+            line.append('\t').append(entry.folder)
+                    .append('\t').append(encode(entry.blob))
+                    .append('\t').append(entry.length)
+                    .append('\t').append(encode(entry.mimeType))
+                    .append('\t').append(entry.created)
+                    .append('\t').append(entry.modified);
+        }
+        try {
+            _journalWriter.write(line.append('\n').toString());
+        } catch (IOException e) {
+            LOG.severe("ContentAddressedStore.journal(" + path + ") failed");
+            throw new WebdavException(e);
+        }
+    }
+
+    /**
+     * Replays the journal and rewrites it with one entry per path.
+     */
+    private void loadIndex() throws IOException {
+        if (Files.exists(_journal)) {
+            try (BufferedReader reader = Files.newBufferedReader(_journal, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    if (fields.length == 2 && fields[0].equals("R")) {
+                        _entries.remove(decode(fields[1]));
+                    } else if (fields.length == 8 && fields[0].equals("P")) {
+                        _entries.put(decode(fields[1]), new Entry(Boolean.parseBoolean(fields[2]), decode(fields[3]),
+                                Long.parseLong(fields[4]), decode(fields[5]), Long.parseLong(fields[6]),
+                                Long.parseLong(fields[7])));
+                    } else {
+                        LOG.warning("ContentAddressedStore ignores incomplete journal line: " + line);
+                    }
+                }
+            }
+        }
+        Map<String, Entry> entries = new HashMap<>(_entries);
+        _entries.clear();
+        long now = System.currentTimeMillis();
+        entries.putIfAbsent(ROOT, new Entry(true, null, 0, null, now, now));
+
+        Path compacted = _journal.resolveSibling("index.journal.tmp");
+        _journalStream = new FileOutputStream(compacted.toFile());
+        _journalWriter = new OutputStreamWriter(_journalStream, StandardCharsets.UTF_8);
+        List<String> paths = new ArrayList<>(entries.keySet());
+        paths.sort(null);
+        for (String path : paths) {
+            if (ROOT.equals(path) || _entries.containsKey(parent(path))) {
+                put(path, entries.get(path));
+            }
+        }
+        _journalWriter.flush();
+        _journalStream.getFD().sync();
+        _journalWriter.close();
+        Files.move(compacted, _journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        _journalStream = new FileOutputStream(_journal.toFile(), true);
+        _journalWriter = new OutputStreamWriter(_journalStream, StandardCharsets.UTF_8);
+    }
+
+    private void findUnreferencedBlobs() throws IOException {
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(_blobs)) {
+            for (Path shard : shards) {
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(shard)) {
+                    for (Path blob : blobs) {
+                        String name = blob.getFileName().toString();
+                        if (!_references.containsKey(name)) {
+                            _garbage.add(name);
+                        }
+                    }
+                }
+            }
+        }
+        try (DirectoryStream<Path> spools = Files.newDirectoryStream(_tmp)) {
+            for (Path spool : spools) {
+                deleteQuietly(spool);
+            }
+        }
+    }
+
+    private static String normalize(String uri) throws WebdavException {
+        StringBuilder path = new StringBuilder();
+        for (String segment : uri.replace('\\', '/').split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.equals(".") || segment.equals("..")) {
+                throw new WebdavException("Path traversal attempt detected: " + uri);
+            }
+            path.append('/').append(segment);
+        }
+        return path.length() == 0 ? ROOT : path.toString();
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash <= 0 ? ROOT : path.substring(0, slash);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(String value) {
+        return value == null ? "" : URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String value) {
+        return value.isEmpty() ? null : URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "ContentAddressedStore cannot remove " + path, e);
+        }
+    }
+
+    private static final class Entry {
+        private final boolean folder;
+        private final String blob;
+        private final long length;
+        private final String mimeType;
+        private final long created;
+        private final long modified;
+
+        private Entry(boolean folder, String blob, long length, String mimeType, long created, long modified) {
+            this.folder = folder;
+            this.blob = blob;
+            this.length = length;
+            this.mimeType = mimeType;
+            this.created = created;
+            this.modified = modified;
+        }
+    }
+}
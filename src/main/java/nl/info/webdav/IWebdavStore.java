@@ -5,9 +5,14 @@
 
 package nl.info.webdav;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
 
+import nl.info.webdav.exceptions.ObjectNotFoundException;
 import nl.info.webdav.exceptions.WebdavException;
 
 /**
@@ -118,6 +123,27 @@ public interface IWebdavStore {
      */
     InputStream getResourceContent(ITransaction transaction, String resourceUri) throws WebdavException;
 
+    /**
+     * Gets the content of the resource specified by <code>resourceUri</code> as it is stored, in the content coding
+     * reported by {@link StoredObject#getContentEncoding()}, so it can be sent to the client without decoding it.
+     * <p>
+     * This is an optional operation. It is only called for resources that report a content coding; a store that does
+     * not keep the encoded content returns null, and the content is then sent without a content coding.
+     *
+     * @param transaction
+     *                    indicates that the method is within the scope of a WebDAV
+     *                    transaction
+     * @param resourceUri
+     *                    URI of the content resource
+     * @return input stream you can read the encoded content of the resource from, or null if the store does not keep
+     *         encoded content
+     * @throws WebdavException
+     *                         if something goes wrong on the store level
+     */
+    default InputStream getEncodedResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        return null;
+    }
+
     /**
      * Sets / stores the content of the resource specified by
      * <code>resourceUri</code>.
@@ -192,6 +218,230 @@ public interface IWebdavStore {
      */
     void removeObject(ITransaction transaction, String uri) throws WebdavException;
 
+    /**
+     * Moves the object specified by <code>sourceUri</code>, i.e. a content resource or a folder including all of its
+     * children, to <code>destinationUri</code>. The destination must not exist; overwriting an existing destination
+     * is handled by the caller.
+     * <p>
+     * The default implementation copies the object using the other methods of this interface and removes the
+     * source afterwards. Stores that can rename objects natively should override this method.
+     *
+     * @param transaction
+     *                       indicates that the method is within the scope of a WebDAV
+     *                       transaction
+     * @param sourceUri
+     *                       URI of the object to be moved
+     * @param destinationUri
+     *                       URI the object will be moved to
+     * @throws WebdavException
+     *                         if something goes wrong on the store level
+     */
+    default void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        StoredObject so = getStoredObject(transaction, sourceUri);
+        if (so == null) {
+            throw new ObjectNotFoundException("cannot move non-existing object: " + sourceUri);
+        }
+        if (so.isFolder()) {
+            createFolder(transaction, destinationUri);
+            String[] children = getChildrenNames(transaction, sourceUri);
+            if (children != null) {
+                for (String child : children) {
+                    move(transaction, sourceUri + "/" + child, destinationUri + "/" + child);
+                }
+            }
+        } else {
+            createResource(transaction, destinationUri);
+            try (InputStream content = getResourceContent(transaction, sourceUri)) {
+                setResourceContent(transaction, destinationUri, content, so.getMimeType(), null);
+            } catch (IOException e) {
+                throw new WebdavException(e);
+            }
+        }
+        removeObject(transaction, sourceUri);
+    }
+
+    /**
+     * Moves the resource specified by <code>sourceUri</code> to <code>destinationUri</code>, replacing the resource
+     * that is there, if any.
+     * <p>
+     * The default implementation first moves the replaced resource aside and removes it once the source is in place,
+     * or moves it back if that fails, so its content is not lost; in between the destination does not exist. Stores
+     * that can replace a resource in one atomic operation should override this method.
+     *
+     * @param transaction
+     *                       indicates that the method is within the scope of a WebDAV
+     *                       transaction
+     * @param sourceUri
+     *                       URI of the resource to be moved
+     * @param destinationUri
+     *                       URI of the resource to be replaced
+     * @throws WebdavException
+     *                         if something goes wrong on the store level
+     */
+    default void replace(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        if (getStoredObject(transaction, destinationUri) == null) {
+            move(transaction, sourceUri, destinationUri);
+            return;
+        }
+        String aside = destinationUri + "." + UUID.randomUUID() + ".replaced";
+        move(transaction, destinationUri, aside);
+        try {
+            move(transaction, sourceUri, destinationUri);
+        } catch (WebdavException e) {
+            move(transaction, aside, destinationUri);
+            throw e;
+        }
+        removeObject(transaction, aside);
+    }
+
+    /**
+     * Copies the object specified by <code>sourceUri</code> to <code>destinationUri</code>. The destination must not
+     * exist; overwriting an existing destination is handled by the caller. Failures on the object itself are thrown,
+     * failures on members of a folder are collected and returned so they can be reported per path.
+     * <p>
+     * The default implementation streams the content of every resource through
+     * {@link #getResourceContent(ITransaction, String)} and
+     * {@link #setResourceContent(ITransaction, String, InputStream, String, String)}. Stores that can copy content
+     * without passing it through the JVM should override this method.
+     *
+     * @param transaction
+     *                       indicates that the method is within the scope of a WebDAV
+     *                       transaction
+     * @param sourceUri
+     *                       URI of the object to be copied
+     * @param destinationUri
+     *                       URI of the copy
+     * @param depth
+     *                       <code>0</code> to copy a folder without its members, any other value to copy the
+     *                       complete subtree
+     * @return the failures per destination URI of the members that could not be copied, empty if the copy succeeded
+     *         completely
+     * @throws WebdavException
+     *                         if something goes wrong on the store level
+     */
+    default Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        StoredObject so = getStoredObject(transaction, sourceUri);
+        if (so == null) {
+            throw new ObjectNotFoundException("cannot copy non-existing object: " + sourceUri);
+        }
+        Map<String, WebdavException> failures = new LinkedHashMap<>();
+        if (so.isFolder()) {
+            createFolder(transaction, destinationUri);
+            String[] children = depth == 0 ? null : getChildrenNames(transaction, sourceUri);
+            if (children != null) {
+                for (String child : children) {
+                    try {
+                        failures.putAll(copy(transaction, sourceUri + "/" + child, destinationUri + "/" + child, depth));
+                    } catch (WebdavException e) {
+                        failures.put(destinationUri + "/" + child, e);
+                    }
+                }
+            }
+        } else {
+            createResource(transaction, destinationUri);
+            try (InputStream content = getResourceContent(transaction, sourceUri)) {
+                setResourceContent(transaction, destinationUri, content, so.getMimeType(), null);
+            } catch (IOException e) {
+                throw new WebdavException(e);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Removes the folder specified by <code>uri</code> together with all of its members. Members that cannot be
+     * removed are reported in the returned map; the folders containing them are left in place.
+     * <p>
+     * The default implementation removes the tree member by member through
+     * {@link #getChildrenNames(ITransaction, String)} and {@link #removeObject(ITransaction, String)}. Stores that can
+     * remove a tree in one operation should override this method and {@link #supportsDeleteTree()}.
+     *
+     * @param transaction
+     *                    indicates that the method is within the scope of a WebDAV
+     *                    transaction
+     * @param uri
+     *                    URI of the folder to be removed
+     * @return the failures per URI of the members that could not be removed, empty if the complete tree was removed
+     * @throws WebdavException
+     *                         if something goes wrong on the store level
+     */
+    default Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        if (getStoredObject(transaction, uri) == null) {
+            throw new ObjectNotFoundException("cannot delete non-existing object: " + uri);
+        }
+        Map<String, WebdavException> failures = new LinkedHashMap<>();
+        String[] children = getChildrenNames(transaction, uri);
+        if (children != null) {
+            for (String child : children) {
+                String childUri = uri + "/" + child;
+                try {
+                    StoredObject so = getStoredObject(transaction, childUri);
+                    if (so == null) {
+                        throw new ObjectNotFoundException("cannot delete non-existing object: " + childUri);
+                    }
+                    if (so.isFolder()) {
+                        failures.putAll(deleteTree(transaction, childUri));
+                    } else {
+                        removeObject(transaction, childUri);
+                    }
+                } catch (WebdavException e) {
+                    failures.put(childUri, e);
+                }
+            }
+        }
+        if (failures.isEmpty()) {
+            removeObject(transaction, uri);
+        }
+        return failures;
+    }
+
+    /**
+     * Tells whether {@link #deleteTree(ITransaction, String)} removes a tree in one operation. If not, which is the
+     * default, callers may instead remove the members themselves, for example several at the same time.
+     *
+     * @return <code>true</code> if the store overrides {@link #deleteTree(ITransaction, String)}
+     */
+    default boolean supportsDeleteTree() {
+        return false;
+    }
+
+    /**
+     * Gets the number of bytes used by the folder specified by <code>folderUri</code> and everything below it, as
+     * reported by the RFC 4331 <code>quota-used-bytes</code> property. Stores that cannot report this cheaply return
+     * <code>-1</code>, which is the default.
+     *
+     * @param transaction
+     *                    indicates that the method is within the scope of a WebDAV
+     *                    transaction
+     * @param folderUri
+     *                    URI of the folder
+     * @return the used bytes, or <code>-1</code> if unknown
+     */
+    default long getQuotaUsedBytes(ITransaction transaction, String folderUri) {
+        return -1;
+    }
+
+    /**
+     * Gets the number of bytes that can still be stored in the folder specified by <code>folderUri</code>, as
+     * reported by the RFC 4331 <code>quota-available-bytes</code> property. Uploads larger than this are rejected
+     * before their content is read. Stores without a quota return <code>-1</code>, which is the default.
+     *
+     * @param transaction
+     *                    indicates that the method is within the scope of a WebDAV
+     *                    transaction
+     * @param folderUri
+     *                    URI of the folder
+     * @return the available bytes, or <code>-1</code> if unlimited or unknown
+     */
+    default long getQuotaAvailableBytes(ITransaction transaction, String folderUri) {
+        return -1;
+    }
+
     /**
      * Gets the storedObject specified by <code>uri</code>
      * 
@@ -12,17 +12,48 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import nl.info.webdav.exceptions.AccessDeniedException;
+import nl.info.webdav.exceptions.ConflictException;
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
 import nl.info.webdav.exceptions.WebdavException;
 
 /**
  * Reference Implementation of WebdavStore
+ * <p>
+ * While content is written, its SHA-256 digest is computed and stored with the file, in a user-defined extended
+ * attribute or, where the file system has none, in a sidecar file below <code>.webdav-digests</code> in the root. The
+ * digest is reported through {@link StoredObject#getContentDigest()} as long as the size and modification time of
+ * the file are those it was computed for. Sidecar files are moved and removed together with the objects they belong
+ * to.
  *
  * @author joa
  * @author re
@@ -30,13 +61,29 @@ import nl.info.webdav.exceptions.WebdavException;
 public class LocalFileSystemStore implements IWebdavStore {
     private static final Logger LOG = Logger.getLogger(LocalFileSystemStore.class.getName());
     private static final int BUF_SIZE = 65536;
+    private static final String DIGEST_ATTRIBUTE = "webdav.sha256";
+    private static final String DIGEST_DIRECTORY = ".webdav-digests";
 
     private final File _root;
     private final String _rootCanonical;
+    private final Set<String> _reservedNames;
 
     public LocalFileSystemStore(File root) throws IOException {
         _root = root;
         _rootCanonical = root.getCanonicalPath();
+        _reservedNames = Set.copyOf(getReservedNames());
+    }
+
+    /**
+     * Returns the names of the directories in the root that hold data of the store itself rather than content. They
+     * are left out of listings and cannot be reached through a uri. Subclasses that keep data of their own in the root
+     * add their names to those of this class. Called once by the constructor, so it must not depend on fields of the
+     * subclass.
+     *
+     * @return the reserved names
+     */
+    protected Set<String> getReservedNames() {
+        return Set.of(DIGEST_DIRECTORY);
     }
 
     public void destroy() {
@@ -102,6 +149,13 @@ public class LocalFileSystemStore implements IWebdavStore {
 
         LOG.fine("LocalFileSystemStore.setResourceContent(" + uri + ")");
         File file = resolveFile(uri);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new WebdavException(e);
+        }
+        is = new DigestInputStream(is, digest);
         try {
             OutputStream os = new BufferedOutputStream(new FileOutputStream(
                     file), BUF_SIZE);
@@ -123,6 +177,7 @@ public class LocalFileSystemStore implements IWebdavStore {
             LOG.severe("LocalFileSystemStore.setResourceContent(" + uri + ") failed");
             throw new WebdavException(e);
         }
+        storeDigest(file.toPath(), HexFormat.of().formatHex(digest.digest()));
         long length = -1;
 
         try {
@@ -149,6 +204,9 @@ public class LocalFileSystemStore implements IWebdavStore {
             String name;
             for (int i = 0; i < children.length; i++) {
                 name = children[i].getName();
+                if (isReservedDirectory(children[i])) {
+                    continue;
+                }
                 childList.add(name);
                 LOG.fine("Child " + i + ": " + name);
             }
@@ -166,7 +224,198 @@ public class LocalFileSystemStore implements IWebdavStore {
         if (!success) {
             throw new WebdavException("cannot delete object: " + uri);
         }
+        Path sidecar = sidecar(file.toPath());
+        try {
+            Files.deleteIfExists(sidecar);
+        } catch (IOException e) {
+            LOG.fine("LocalFileSystemStore cannot remove " + sidecar + ": " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Removes the folder in a single walk over the tree. A folder is only removed when all of its members were.
+     */
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("LocalFileSystemStore.deleteTree(" + uri + ")");
+        Path root = resolveFile(uri).toPath();
+        if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+            throw new ObjectNotFoundException("cannot delete non-existing folder: " + uri);
+        }
+        Map<String, WebdavException> failures = new LinkedHashMap<>();
+        Set<Path> incomplete = new HashSet<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    fail(file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    if (e != null) {
+                        fail(dir, e);
+                    } else if (incomplete.remove(dir)) {
+                        incomplete.add(dir.getParent());
+                    } else {
+                        delete(dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void delete(Path path) {
+                    try {
+                        Files.delete(path);
+                    } catch (IOException e) {
+                        fail(path, e);
+                        return;
+                    }
+                    deleteSidecar(path);
+                }
+
+                private void fail(Path path, IOException e) {
+                    failures.put(toUri(uri, root, path), toWebdavException(e));
+                    incomplete.add(path.getParent());
+                }
+            });
+        } catch (IOException e) {
+            LOG.severe("LocalFileSystemStore.deleteTree(" + uri + ") failed");
+            throw toWebdavException(e);
+        }
+        return failures;
+    }
+
+    public boolean supportsDeleteTree() {
+        return true;
+    }
+
+    /**
+     * Moves the file or folder by renaming it. The rename is atomic when source and destination are on the same
+     * file system; otherwise the object is copied and the source removed afterwards.
+     */
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        LOG.fine("LocalFileSystemStore.move(" + sourceUri + ", " + destinationUri + ")");
+        Path source = resolveFile(sourceUri).toPath();
+        Path destination = resolveFile(destinationUri).toPath();
+        if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+            throw new ObjectNotFoundException("cannot move non-existing object: " + sourceUri);
+        }
+        if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS)) {
+            throw new ObjectAlreadyExistsException("cannot move to existing object: " + destinationUri);
+        }
+        checkParentExists(destination, destinationUri);
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+            moveSidecar(source, destination);
+        } catch (AtomicMoveNotSupportedException e) {
+            LOG.fine("LocalFileSystemStore.move(" + sourceUri + ", " + destinationUri + ") falls back to copy and delete");
+            IWebdavStore.super.move(transaction, sourceUri, destinationUri);
+        } catch (IOException e) {
+            LOG.severe("LocalFileSystemStore.move(" + sourceUri + ", " + destinationUri + ") failed");
+            throw new WebdavException(e);
+        }
+    }
 
+    /**
+     * Renames the file over the destination, which replaces it atomically when both are on the same file system.
+     */
+    public void replace(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        LOG.fine("LocalFileSystemStore.replace(" + sourceUri + ", " + destinationUri + ")");
+        Path source = resolveFile(sourceUri).toPath();
+        Path destination = resolveFile(destinationUri).toPath();
+        if (!Files.isRegularFile(source, LinkOption.NOFOLLOW_LINKS)) {
+            throw new ObjectNotFoundException("cannot move non-existing resource: " + sourceUri);
+        }
+        if (Files.isDirectory(destination, LinkOption.NOFOLLOW_LINKS)) {
+            throw new ObjectAlreadyExistsException("cannot replace folder: " + destinationUri);
+        }
+        checkParentExists(destination, destinationUri);
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moveSidecar(source, destination);
+        } catch (AtomicMoveNotSupportedException e) {
+            LOG.fine("LocalFileSystemStore.replace(" + sourceUri + ", " + destinationUri + ") cannot rename");
+            IWebdavStore.super.replace(transaction, sourceUri, destinationUri);
+        } catch (IOException e) {
+            LOG.severe("LocalFileSystemStore.replace(" + sourceUri + ", " + destinationUri + ") failed");
+            throw new WebdavException(e);
+        }
+    }
+
+    /**
+     * Copies files with {@link Files#copy(Path, Path, java.nio.file.CopyOption...)}, which lets the operating system
+     * transfer the content without passing it through the JVM. Folders are copied in a single walk over the source
+     * tree; a member that fails is reported and, for a folder, its subtree is skipped.
+     */
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        LOG.fine("LocalFileSystemStore.copy(" + sourceUri + ", " + destinationUri + ")");
+        Path source = resolveFile(sourceUri).toPath();
+        Path destination = resolveFile(destinationUri).toPath();
+        if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+            throw new ObjectNotFoundException("cannot copy non-existing object: " + sourceUri);
+        }
+        if (destination.startsWith(source)) {
+            throw new WebdavException("cannot copy an object into itself: " + destinationUri);
+        }
+        checkParentExists(destination, destinationUri);
+        Map<String, WebdavException> failures = new LinkedHashMap<>();
+        try {
+            if (depth == 0 || !Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+                Files.copy(source, destination, LinkOption.NOFOLLOW_LINKS);
+                copyDigest(source, destination);
+            } else {
+                Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        Path target = destination.resolve(source.relativize(dir));
+                        try {
+                            Files.copy(dir, target, LinkOption.NOFOLLOW_LINKS);
+                        } catch (IOException e) {
+                            if (dir.equals(source)) {
+                                throw e;
+                            }
+                            failures.put(toUri(destinationUri, source, dir), toWebdavException(e));
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        try {
+                            Path target = destination.resolve(source.relativize(file));
+                            Files.copy(file, target, LinkOption.NOFOLLOW_LINKS);
+                            copyDigest(file, target);
+                        } catch (IOException e) {
+                            failures.put(toUri(destinationUri, source, file), toWebdavException(e));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        failures.put(toUri(destinationUri, source, file), toWebdavException(e));
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        } catch (IOException e) {
+            LOG.severe("LocalFileSystemStore.copy(" + sourceUri + ", " + destinationUri + ") failed");
+            throw toWebdavException(e);
+        }
+        return failures;
     }
 
     public InputStream getResourceContent(ITransaction transaction, String uri)
@@ -207,18 +456,182 @@ public class LocalFileSystemStore implements IWebdavStore {
             so.setLastModified(new Date(file.lastModified()));
             so.setCreationDate(new Date(file.lastModified()));
             so.setResourceLength(getResourceLength(transaction, uri));
+            if (!so.isFolder()) {
+                so.setContentDigest(readDigest(file.toPath()));
+            }
         }
 
         return so;
     }
 
-    private File resolveFile(String uri) throws WebdavException {
+    /**
+     * Stores the digest together with the size and modification time of the file it was computed for.
+     */
+    private void storeDigest(Path path, String digest) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            String record = digest + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+            if (view != null) {
+                try {
+                    view.write(DIGEST_ATTRIBUTE, StandardCharsets.UTF_8.encode(record));
+                    return;
+                } catch (IOException | UnsupportedOperationException e) {
+                    LOG.fine("LocalFileSystemStore cannot write extended attribute of " + path + ": " + e.getMessage());
+                }
+            }
+            Path sidecar = sidecar(path);
+            Files.createDirectories(sidecar.getParent());
+            Files.writeString(sidecar, record, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "LocalFileSystemStore cannot store digest of " + path, e);
+        }
+    }
+
+    /**
+     * Returns the stored digest of the file, or null if there is none or the file has changed since.
+     */
+    private String readDigest(Path path) {
+        String record = null;
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view != null) {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(view.size(DIGEST_ATTRIBUTE));
+                view.read(DIGEST_ATTRIBUTE, buffer);
+                buffer.flip();
+                record = StandardCharsets.UTF_8.decode(buffer).toString();
+            } catch (IOException | UnsupportedOperationException e) {
+                // no extended attribute, try the sidecar
+            }
+        }
+        try {
+            if (record == null) {
+                Path sidecar = sidecar(path);
+                if (!Files.isRegularFile(sidecar)) {
+                    return null;
+                }
+                record = Files.readString(sidecar, StandardCharsets.UTF_8);
+            }
+            String[] fields = record.trim().split(":");
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (fields.length == 3 && fields[1].equals(String.valueOf(attributes.size()))
+                    && fields[2].equals(String.valueOf(attributes.lastModifiedTime().toMillis()))) {
+                return fields[0];
+            }
+        } catch (IOException e) {
+            LOG.fine("LocalFileSystemStore cannot read digest of " + path + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private void copyDigest(Path source, Path target) {
+        String digest = readDigest(source);
+        if (digest != null) {
+            storeDigest(target, digest);
+        }
+    }
+
+    private Path sidecar(Path path) {
+        Path root = Path.of(_rootCanonical);
+        return root.resolve(DIGEST_DIRECTORY).resolve(root.relativize(path));
+    }
+
+    /**
+     * Moves the sidecar files of a moved file or folder along, replacing those left of an earlier object at the
+     * destination. A digest that cannot be moved is lost, which only means it is no longer reported.
+     */
+    private void moveSidecar(Path source, Path destination) {
+        deleteSidecar(destination);
+        Path sourceSidecar = sidecar(source);
+        if (!Files.exists(sourceSidecar, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Path destinationSidecar = sidecar(destination);
+        try {
+            Files.createDirectories(destinationSidecar.getParent());
+            Files.move(sourceSidecar, destinationSidecar, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.fine("LocalFileSystemStore cannot move " + sourceSidecar + ": " + e.getMessage());
+            deleteSidecar(source);
+        }
+    }
+
+    /**
+     * Removes the sidecar file of a file, or the sidecar files below a folder.
+     */
+    private void deleteSidecar(Path path) {
+        Path sidecar = sidecar(path);
+        if (!Files.exists(sidecar, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(sidecar, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.fine("LocalFileSystemStore cannot remove " + sidecar + ": " + e.getMessage());
+        }
+    }
+
+    private boolean isReservedDirectory(File file) {
+        return _reservedNames.contains(file.getName()) && _rootCanonical.equals(file.getParent());
+    }
+
+    private static String toUri(String rootUri, Path root, Path path) {
+        StringBuilder uri = new StringBuilder(rootUri);
+        if (path.equals(root)) {
+            return uri.toString();
+        }
+        for (Path name : root.relativize(path)) {
+            uri.append('/').append(name);
+        }
+        return uri.toString();
+    }
+
+    /**
+     * RFC 4918 answers a MOVE or COPY into a folder that does not exist with 409 Conflict.
+     */
+    private static void checkParentExists(Path destination, String destinationUri) throws ConflictException {
+        Path parent = destination.getParent();
+        if (parent != null && !Files.isDirectory(parent)) {
+            throw new ConflictException("parent folder does not exist: " + destinationUri);
+        }
+    }
+
+    private static WebdavException toWebdavException(IOException e) {
+        if (e instanceof java.nio.file.AccessDeniedException) {
+            return new AccessDeniedException(e);
+        } else if (e instanceof FileAlreadyExistsException) {
+            return new ObjectAlreadyExistsException(e);
+        } else if (e instanceof NoSuchFileException) {
+            return new ObjectNotFoundException(e);
+        }
+        return new WebdavException(e);
+    }
+
+    protected File resolveFile(String uri) throws WebdavException {
         try {
             File candidate = new File(_root, uri);
             String candidateCanonical = candidate.getCanonicalPath();
             if (!candidateCanonical.equals(_rootCanonical) && !candidateCanonical.startsWith(_rootCanonical + File.separator)) {
                 throw new WebdavException("Path traversal attempt detected: " + uri);
             }
+            for (String reserved : _reservedNames) {
+                String directory = _rootCanonical + File.separator + reserved;
+                if (candidateCanonical.equals(directory) || candidateCanonical.startsWith(directory + File.separator)) {
+                    throw new WebdavException("Reserved path: " + uri);
+                }
+            }
             return new File(candidateCanonical);
         } catch (IOException e) {
             throw new WebdavException(e);
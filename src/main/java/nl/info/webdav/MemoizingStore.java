@@ -0,0 +1,202 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that remembers the metadata looked up during a transaction.
+ * <p>
+ * A request looks up the same path several times, for example to check its preconditions, to find its content type
+ * and to send its content. Within a transaction begun on this store, the first lookup of a path goes to the other
+ * store and later lookups get the same {@link StoredObject}, also when the path does not exist. Every change made in
+ * the transaction forgets everything looked up before it. The other store is called with its own transactions.
+ */
+public class MemoizingStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(MemoizingStore.class.getName());
+    private static final StoredObject MISSING = new StoredObject();
+
+    private final IWebdavStore _store;
+
+    /**
+     * @param store
+     *              the store to look up metadata in
+     */
+    public MemoizingStore(IWebdavStore store) {
+        _store = store;
+    }
+
+    /**
+     * @return the store this store remembers the metadata of
+     */
+    public IWebdavStore getStore() {
+        return _store;
+    }
+
+    public void destroy() {
+        _store.destroy();
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        return new MemoTransaction(_store.begin(principal));
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        _store.checkAuthentication(unwrap(transaction));
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        forget(transaction);
+        _store.commit(unwrap(transaction));
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        forget(transaction);
+        _store.rollback(unwrap(transaction));
+    }
+
+    public void createFolder(ITransaction transaction, String folderUri) throws WebdavException {
+        forget(transaction);
+        _store.createFolder(unwrap(transaction), folderUri);
+    }
+
+    public void createResource(ITransaction transaction, String resourceUri) throws WebdavException {
+        forget(transaction);
+        _store.createResource(unwrap(transaction), resourceUri);
+    }
+
+    public long setResourceContent(
+            ITransaction transaction,
+            String resourceUri,
+            InputStream content,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        forget(transaction);
+        try {
+            return _store.setResourceContent(unwrap(transaction), resourceUri, content, contentType,
+                    characterEncoding);
+        } finally {
+            // a store may record the length or type while the content is written
+            forget(transaction);
+        }
+    }
+
+    public String[] getChildrenNames(ITransaction transaction, String folderUri) throws WebdavException {
+        return _store.getChildrenNames(unwrap(transaction), folderUri);
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        forget(transaction);
+        _store.removeObject(unwrap(transaction), uri);
+    }
+
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        forget(transaction);
+        _store.move(unwrap(transaction), sourceUri, destinationUri);
+    }
+
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        forget(transaction);
+        return _store.copy(unwrap(transaction), sourceUri, destinationUri, depth);
+    }
+
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        forget(transaction);
+        return _store.deleteTree(unwrap(transaction), uri);
+    }
+
+    public boolean supportsDeleteTree() {
+        return _store.supportsDeleteTree();
+    }
+
+    public InputStream getResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getResourceContent(unwrap(transaction), resourceUri);
+    }
+
+    public InputStream getEncodedResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getEncodedResourceContent(unwrap(transaction), resourceUri);
+    }
+
+    public long getResourceLength(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getResourceLength(unwrap(transaction), resourceUri);
+    }
+
+    /**
+     * Returns the object looked up before in the transaction, or looks it up in the other store.
+     */
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        if (!(transaction instanceof MemoTransaction)) {
+            return _store.getStoredObject(transaction, uri);
+        }
+        MemoTransaction memo = (MemoTransaction) transaction;
+        StoredObject so = memo.objects.get(uri);
+        if (so == null) {
+            long generation = memo.generation;
+            so = _store.getStoredObject(memo.transaction, uri);
+            memo.remember(generation, uri, so == null ? MISSING : so);
+        } else {
+            LOG.finest("MemoizingStore.getStoredObject(" + uri + ") remembered");
+        }
+        return so == MISSING ? null : so;
+    }
+
+    public long getQuotaUsedBytes(ITransaction transaction, String folderUri) {
+        return _store.getQuotaUsedBytes(unwrap(transaction), folderUri);
+    }
+
+    public long getQuotaAvailableBytes(ITransaction transaction, String folderUri) {
+        return _store.getQuotaAvailableBytes(unwrap(transaction), folderUri);
+    }
+
+    private static ITransaction unwrap(ITransaction transaction) {
+        return transaction instanceof MemoTransaction ? ((MemoTransaction) transaction).transaction : transaction;
+    }
+
+    private static void forget(ITransaction transaction) {
+        if (transaction instanceof MemoTransaction) {
+            ((MemoTransaction) transaction).forget();
+        }
+    }
+
+    /**
+     * The transaction of the other store with the metadata looked up in it. Parallel COPY and DELETE use a
+     * transaction from several threads, so the metadata is kept in a concurrent map, and a lookup that was started
+     * before another thread changed the store is not remembered.
+     */
+    private static final class MemoTransaction implements ITransaction {
+        private final ITransaction transaction;
+        private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+        // counts the changes, so a lookup can tell whether the store changed while it ran
+        private volatile long generation;
+
+        private MemoTransaction(ITransaction transaction) {
+            this.transaction = transaction;
+        }
+
+        private synchronized void remember(long lookedUpIn, String uri, StoredObject so) {
+            if (generation == lookedUpIn) {
+                objects.put(uri, so);
+            }
+        }
+
+        private synchronized void forget() {
+            generation++;
+            objects.clear();
+        }
+    }
+}
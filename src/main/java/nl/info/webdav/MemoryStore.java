@@ -0,0 +1,596 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that keeps everything in memory, for temporary areas and as a baseline when measuring the servlet itself.
+ * <p>
+ * The namespace is a {@link ConcurrentHashMap} from path to node plus an index of the children of every folder.
+ * Content is kept outside the heap in fixed-size chunks taken from a pool whose size is bounded by the capacity of the
+ * store. Content is never modified after it was written, so copies share it and readers need no locks.
+ * <p>
+ * Every {@link #begin(Principal)} starts a transaction whose changes are only visible to that transaction until
+ * {@link #commit(ITransaction)} publishes them all at once; {@link #rollback(ITransaction)} discards them. Concurrent
+ * transactions changing the same path are resolved by the last commit. Calls without a transaction are applied
+ * immediately. Streams returned by {@link #getResourceContent(ITransaction, String)} must be closed to return their
+ * chunks to the pool.
+ */
+public class MemoryStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(MemoryStore.class.getName());
+    private static final int BUF_SIZE = 65536;
+    private static final int CHUNK_SIZE = 65536;
+    private static final long DEFAULT_CAPACITY = 256L * 1024 * 1024;
+    private static final String ROOT = "/";
+    private static final Node DELETED = new Node(false, null, null, 0, 0);
+
+    private final ChunkPool _pool;
+    private final Map<String, Node> _nodes = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> _children = new ConcurrentHashMap<>();
+    private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+    public MemoryStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity
+     *                 the maximum number of bytes of content, rounded up to a whole number of chunks
+     */
+    public MemoryStore(long capacity) {
+        _pool = new ChunkPool((int) Math.min(Integer.MAX_VALUE, (capacity + CHUNK_SIZE - 1) / CHUNK_SIZE));
+        long now = System.currentTimeMillis();
+        _nodes.put(ROOT, new Node(true, null, null, now, now));
+    }
+
+    public void destroy() {
+        LOG.fine("MemoryStore.destroy()");
+        Lock lock = _lock.writeLock();
+        lock.lock();
+        try {
+            for (Node node : _nodes.values()) {
+                release(node);
+            }
+            _nodes.clear();
+            _children.clear();
+            _pool.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        LOG.fine("MemoryStore.begin()");
+        return new MemoryTransaction();
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        LOG.fine("MemoryStore.checkAuthentication()");
+        // do nothing
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        LOG.fine("MemoryStore.commit()");
+        if (!(transaction instanceof MemoryTransaction)) {
+            return;
+        }
+        Map<String, Node> writes = ((MemoryTransaction) transaction)._writes;
+        Lock lock = _lock.writeLock();
+        lock.lock();
+        try {
+            for (Map.Entry<String, Node> write : writes.entrySet()) {
+                apply(write.getKey(), write.getValue());
+            }
+            writes.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        LOG.fine("MemoryStore.rollback()");
+        if (!(transaction instanceof MemoryTransaction)) {
+            return;
+        }
+        Map<String, Node> writes = ((MemoryTransaction) transaction)._writes;
+        for (Node node : writes.values()) {
+            release(node);
+        }
+        writes.clear();
+    }
+
+    public void createFolder(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("MemoryStore.createFolder(" + uri + ")");
+        String path = normalize(uri);
+        checkCreatable(transaction, path, "cannot create folder: " + uri);
+        long now = System.currentTimeMillis();
+        write(transaction, path, new Node(true, null, null, now, now));
+    }
+
+    public void createResource(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("MemoryStore.createResource(" + uri + ")");
+        String path = normalize(uri);
+        checkCreatable(transaction, path, "cannot create file: " + uri);
+        long now = System.currentTimeMillis();
+        write(transaction, path, new Node(false, null, null, now, now));
+    }
+
+    public long setResourceContent(
+            ITransaction transaction,
+            String uri,
+            InputStream is,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        LOG.fine("MemoryStore.setResourceContent(" + uri + ")");
+        String path = normalize(uri);
+        Node node = lookup(transaction, path);
+        if (node == null || node.folder) {
+            throw new ObjectNotFoundException("cannot set content of non-existing resource: " + uri);
+        }
+        List<ByteBuffer> chunks = new ArrayList<>();
+        long length = 0;
+        try (InputStream in = is) {
+            ByteBuffer chunk = null;
+            int read;
+            byte[] copyBuffer = new byte[BUF_SIZE];
+            while ((read = in.read(copyBuffer, 0, copyBuffer.length)) != -1) {
+                for (int offset = 0; offset < read;) {
+                    if (chunk == null || !chunk.hasRemaining()) {
+                        chunk = _pool.acquire();
+                        chunks.add(chunk);
+                    }
+                    int count = Math.min(chunk.remaining(), read - offset);
+                    chunk.put(copyBuffer, offset, count);
+                    offset += count;
+                    length += count;
+                }
+            }
+        } catch (IOException | WebdavException e) {
+            for (ByteBuffer chunk : chunks) {
+                _pool.release(chunk);
+            }
+            LOG.severe("MemoryStore.setResourceContent(" + uri + ") failed");
+            throw e instanceof WebdavException ? (WebdavException) e : new WebdavException(e);
+        }
+        Content content = new Content(chunks.toArray(new ByteBuffer[0]), length);
+        write(transaction, path, new Node(false, content, contentType, node.created, System.currentTimeMillis()));
+        return length;
+    }
+
+    public String[] getChildrenNames(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("MemoryStore.getChildrenNames(" + uri + ")");
+        String path = normalize(uri);
+        Lock lock = _lock.readLock();
+        lock.lock();
+        try {
+            Node node = lookup(transaction, path);
+            if (node == null || !node.folder) {
+                return null;
+            }
+            Set<String> children = new LinkedHashSet<>();
+            Set<String> committed = _children.get(path);
+            if (committed != null) {
+                children.addAll(committed);
+            }
+            if (transaction instanceof MemoryTransaction) {
+                for (Map.Entry<String, Node> write : ((MemoryTransaction) transaction)._writes.entrySet()) {
+                    if (!ROOT.equals(write.getKey()) && parent(write.getKey()).equals(path)) {
+                        if (write.getValue() == DELETED) {
+                            children.remove(write.getKey());
+                        } else {
+                            children.add(write.getKey());
+                        }
+                    }
+                }
+            }
+            List<String> names = new ArrayList<>(children.size());
+            for (String child : children) {
+                names.add(child.substring(child.lastIndexOf('/') + 1));
+            }
+            return names.toArray(new String[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("MemoryStore.removeObject(" + uri + ")");
+        String path = normalize(uri);
+        Node node = lookup(transaction, path);
+        if (node == null || ROOT.equals(path) || (node.folder && getChildrenNames(transaction, path).length > 0)) {
+            throw new WebdavException("cannot delete object: " + uri);
+        }
+        write(transaction, path, DELETED);
+    }
+
+    /**
+     * Moves the object by re-adding its nodes under the destination; no content is copied.
+     */
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        LOG.fine("MemoryStore.move(" + sourceUri + ", " + destinationUri + ")");
+        String source = normalize(sourceUri);
+        if (lookup(transaction, source) == null) {
+            throw new ObjectNotFoundException("cannot move non-existing object: " + sourceUri);
+        }
+        if (ROOT.equals(source)) {
+            throw new WebdavException("cannot move object: " + sourceUri);
+        }
+        copy(transaction, sourceUri, destinationUri, -1);
+        List<String> subtree = subtree(transaction, source);
+        for (int i = subtree.size() - 1; i >= 0; i--) {
+            write(transaction, subtree.get(i), DELETED);
+        }
+    }
+
+    /**
+     * Copies the object by adding nodes that share the content of the source.
+     */
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        LOG.fine("MemoryStore.copy(" + sourceUri + ", " + destinationUri + ")");
+        String source = normalize(sourceUri);
+        String destination = normalize(destinationUri);
+        if (lookup(transaction, source) == null) {
+            throw new ObjectNotFoundException("cannot copy non-existing object: " + sourceUri);
+        }
+        if (destination.equals(source) || destination.startsWith(source + "/")) {
+            throw new WebdavException("cannot copy an object into itself: " + destinationUri);
+        }
+        checkCreatable(transaction, destination, "cannot copy to: " + destinationUri);
+        long now = System.currentTimeMillis();
+        List<String> subtree = depth == 0 ? List.of(source) : subtree(transaction, source);
+        for (String path : subtree) {
+            Node node = lookup(transaction, path);
+            if (node.content != null) {
+                node.content.retain();
+            }
+            write(transaction, destination + path.substring(source.length()),
+                    new Node(node.folder, node.content, node.mimeType, now, now));
+        }
+        return new LinkedHashMap<>();
+    }
+
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("MemoryStore.deleteTree(" + uri + ")");
+        String path = normalize(uri);
+        Node node = lookup(transaction, path);
+        if (node == null || !node.folder) {
+            throw new ObjectNotFoundException("cannot delete non-existing folder: " + uri);
+        }
+        if (ROOT.equals(path)) {
+            throw new WebdavException("cannot delete object: " + uri);
+        }
+        List<String> subtree = subtree(transaction, path);
+        for (int i = subtree.size() - 1; i >= 0; i--) {
+            write(transaction, subtree.get(i), DELETED);
+        }
+        return new LinkedHashMap<>();
+    }
+
+    public boolean supportsDeleteTree() {
+        return true;
+    }
+
+    public InputStream getResourceContent(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("MemoryStore.getResourceContent(" + uri + ")");
+        String path = normalize(uri);
+        Content content;
+        Lock lock = _lock.readLock();
+        lock.lock();
+        try {
+            Node node = lookup(transaction, path);
+            if (node == null || node.folder) {
+                throw new ObjectNotFoundException("cannot read non-existing resource: " + uri);
+            }
+            content = node.content;
+            if (content != null) {
+                content.retain();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return content == null ? InputStream.nullInputStream() : new ContentInputStream(content);
+    }
+
+    public long getResourceLength(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("MemoryStore.getResourceLength(" + uri + ")");
+        Node node = lookup(transaction, normalize(uri));
+        return node == null || node.content == null ? 0 : node.content.length;
+    }
+
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        Node node;
+        try {
+            node = lookup(transaction, normalize(uri));
+        } catch (WebdavException e) {
+            LOG.warning("MemoryStore.getStoredObject(" + uri + ") rejected: " + e.getMessage());
+            return null;
+        }
+        if (node == null) {
+            return null;
+        }
+        StoredObject so = new StoredObject();
+        so.setFolder(node.folder);
+        so.setLastModified(new Date(node.modified));
+        so.setCreationDate(new Date(node.created));
+        so.setResourceLength(node.content == null ? 0 : node.content.length);
+        so.setMimeType(node.mimeType);
+        return so;
+    }
+
+    /**
+     * @return the number of bytes of content the store can still take
+     */
+    public long getAvailableCapacity() {
+        return (long) _pool.available() * CHUNK_SIZE;
+    }
+
+    private Node lookup(ITransaction transaction, String path) {
+        if (transaction instanceof MemoryTransaction) {
+            Node node = ((MemoryTransaction) transaction)._writes.get(path);
+            if (node != null) {
+                return node == DELETED ? null : node;
+            }
+        }
+        return _nodes.get(path);
+    }
+
+    private void write(ITransaction transaction, String path, Node node) {
+        if (transaction instanceof MemoryTransaction) {
+            release(((MemoryTransaction) transaction)._writes.put(path, node));
+            return;
+        }
+        Lock lock = _lock.writeLock();
+        lock.lock();
+        try {
+            apply(path, node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(String path, Node node) {
+        Node previous;
+        if (node == DELETED) {
+            previous = _nodes.remove(path);
+            if (previous != null) {
+                Set<String> siblings = _children.get(parent(path));
+                if (siblings != null) {
+                    siblings.remove(path);
+                }
+                _children.remove(path);
+            }
+        } else {
+            previous = _nodes.put(path, node);
+            if (previous == null) {
+                _children.computeIfAbsent(parent(path), key -> ConcurrentHashMap.newKeySet()).add(path);
+            }
+        }
+        release(previous);
+    }
+
+    private void release(Node node) {
+        if (node != null && node.content != null) {
+            node.content.release();
+        }
+    }
+
+    private List<String> subtree(ITransaction transaction, String path) throws WebdavException {
+        List<String> paths = new ArrayList<>();
+        paths.add(path);
+        for (int i = 0; i < paths.size(); i++) {
+            String parent = paths.get(i);
+            String[] children = getChildrenNames(transaction, parent);
+            if (children != null) {
+                for (String child : children) {
+                    paths.add(ROOT.equals(parent) ? ROOT + child : parent + "/" + child);
+                }
+            }
+        }
+        return paths;
+    }
+
+    private void checkCreatable(ITransaction transaction, String path, String message) throws WebdavException {
+        if (lookup(transaction, path) != null) {
+            throw new ObjectAlreadyExistsException(message);
+        }
+        Node parent = ROOT.equals(path) ? null : lookup(transaction, parent(path));
+        if (parent == null || !parent.folder) {
+            throw new ObjectNotFoundException(message);
+        }
+    }
+
+    private static String normalize(String uri) throws WebdavException {
+        StringBuilder path = new StringBuilder();
+        for (String segment : uri.replace('\\', '/').split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.equals(".") || segment.equals("..")) {
+                throw new WebdavException("Path traversal attempt detected: " + uri);
+            }
+            path.append('/').append(segment);
+        }
+        return path.length() == 0 ? ROOT : path.toString();
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash <= 0 ? ROOT : path.substring(0, slash);
+    }
+
+    /**
+     * The changes of one request, visible only to that request until they are committed.
+     */
+    private static final class MemoryTransaction implements ITransaction {
+        private final Map<String, Node> _writes = new ConcurrentHashMap<>();
+    }
+
+    private static final class Node {
+        private final boolean folder;
+        private final Content content;
+        private final String mimeType;
+        private final long created;
+        private final long modified;
+
+        private Node(boolean folder, Content content, String mimeType, long created, long modified) {
+            this.folder = folder;
+            this.content = content;
+            this.mimeType = mimeType;
+            this.created = created;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * Immutable content, shared by every node and open stream that references it. The chunks go back to the pool
+     * when the last reference is released.
+     */
+    private final class Content {
+        private final ByteBuffer[] chunks;
+        private final long length;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Content(ByteBuffer[] chunks, long length) {
+            this.chunks = chunks;
+            this.length = length;
+        }
+
+        private void retain() {
+            references.incrementAndGet();
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                for (ByteBuffer chunk : chunks) {
+                    _pool.release(chunk);
+                }
+            }
+        }
+    }
+
+    private static final class ContentInputStream extends InputStream {
+        private final Content _content;
+        private final AtomicBoolean _closed = new AtomicBoolean();
+        private long _position;
+
+        private ContentInputStream(Content content) {
+            _content = content;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (_closed.get()) {
+                throw new IOException("stream closed");
+            }
+            if (_position >= _content.length) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer chunk = _content.chunks[(int) (_position / CHUNK_SIZE)];
+            int index = (int) (_position % CHUNK_SIZE);
+            int count = (int) Math.min(Math.min(len, CHUNK_SIZE - index), _content.length - _position);
+            chunk.get(index, b, off, count);
+            _position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, _content.length - _position));
+            _position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, _content.length - _position);
+        }
+
+        @Override
+        public void close() {
+            if (_closed.compareAndSet(false, true)) {
+                _content.release();
+            }
+        }
+    }
+
+    /**
+     * Off-heap chunks of a fixed size. Released chunks are reused; new ones are only allocated while the capacity
+     * allows it.
+     */
+    private static final class ChunkPool {
+        private final int _maxChunks;
+        private final AtomicInteger _allocated = new AtomicInteger();
+        private final Queue<ByteBuffer> _free = new ConcurrentLinkedQueue<>();
+
+        private ChunkPool(int maxChunks) {
+            _maxChunks = maxChunks;
+        }
+
+        private ByteBuffer acquire() throws WebdavException {
+            ByteBuffer chunk = _free.poll();
+            if (chunk != null) {
+                return chunk.clear();
+            }
+            if (_allocated.incrementAndGet() > _maxChunks) {
+                _allocated.decrementAndGet();
+                throw new WebdavException("store is full");
+            }
+            return ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+
+        private void release(ByteBuffer chunk) {
+            _free.offer(chunk);
+        }
+
+        private int available() {
+            return _maxChunks - _allocated.get() + _free.size();
+        }
+
+        private void clear() {
+            _free.clear();
+            _allocated.set(0);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that serves gzip files prepared next to the resources of another store.
+ * <p>
+ * A resource <code>name</code> with a sibling <code>name.gz</code> that was modified at the same time or later
+ * reports <code>gzip</code> as its content encoding, and {@link #getEncodedResourceContent(ITransaction, String)}
+ * returns the sibling, so clients that accept gzip get it without any compression work. Siblings are left out of the
+ * children of their folder while their resource exists. Writing or removing a resource removes its sibling, and
+ * moving or copying a resource moves or copies its sibling along, so a sibling never serves outdated content.
+ */
+public class PrecompressedStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(PrecompressedStore.class.getName());
+    private static final String GZIP = "gzip";
+    private static final String SUFFIX = ".gz";
+
+    private final IWebdavStore _store;
+
+    /**
+     * Serves the gzip siblings of the files of a {@link LocalFileSystemStore} on <code>root</code>.
+     *
+     * @param root
+     *             the root directory
+     * @throws IOException
+     *                     if the root cannot be resolved
+     */
+    public PrecompressedStore(File root) throws IOException {
+        this(new LocalFileSystemStore(root));
+    }
+
+    /**
+     * @param store
+     *              the store holding the resources and their siblings
+     */
+    public PrecompressedStore(IWebdavStore store) {
+        _store = store;
+    }
+
+    public void destroy() {
+        _store.destroy();
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        return _store.begin(principal);
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        _store.checkAuthentication(transaction);
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        _store.commit(transaction);
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        _store.rollback(transaction);
+    }
+
+    public void createFolder(ITransaction transaction, String folderUri) throws WebdavException {
+        _store.createFolder(transaction, folderUri);
+    }
+
+    public void createResource(ITransaction transaction, String resourceUri) throws WebdavException {
+        _store.createResource(transaction, resourceUri);
+    }
+
+    /**
+     * Stores the content and removes the sibling, which no longer matches it.
+     */
+    public long setResourceContent(
+            ITransaction transaction,
+            String resourceUri,
+            InputStream content,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        long length = _store.setResourceContent(transaction, resourceUri, content, contentType, characterEncoding);
+        removeSibling(transaction, resourceUri);
+        return length;
+    }
+
+    /**
+     * Leaves out the siblings of the resources in the folder.
+     */
+    public String[] getChildrenNames(ITransaction transaction, String folderUri) throws WebdavException {
+        String[] children = _store.getChildrenNames(transaction, folderUri);
+        if (children == null) {
+            return null;
+        }
+        Set<String> names = new HashSet<>(Arrays.asList(children));
+        List<String> visible = new ArrayList<>(children.length);
+        for (String child : children) {
+            if (!isSiblingName(child) || !names.contains(child.substring(0, child.length() - SUFFIX.length()))) {
+                visible.add(child);
+            }
+        }
+        return visible.size() == children.length ? children : visible.toArray(new String[0]);
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        _store.removeObject(transaction, uri);
+        removeSibling(transaction, uri);
+    }
+
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        StoredObject source = _store.getStoredObject(transaction, sourceUri);
+        _store.move(transaction, sourceUri, destinationUri);
+        if (source != null && source.isResource() && !isSiblingName(sourceUri)) {
+            removeSibling(transaction, destinationUri);
+            if (_store.getStoredObject(transaction, sourceUri + SUFFIX) != null) {
+                LOG.fine("PrecompressedStore.move(" + sourceUri + SUFFIX + ")");
+                _store.move(transaction, sourceUri + SUFFIX, destinationUri + SUFFIX);
+            }
+        }
+    }
+
+    /**
+     * Copies a resource with its sibling. The sibling is copied after the resource, so it stays at least as recent.
+     */
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        Map<String, WebdavException> failures = new LinkedHashMap<>(
+                _store.copy(transaction, sourceUri, destinationUri, depth));
+        StoredObject source = _store.getStoredObject(transaction, sourceUri);
+        if (source != null && source.isResource() && !isSiblingName(sourceUri)) {
+            removeSibling(transaction, destinationUri);
+            StoredObject sibling = _store.getStoredObject(transaction, sourceUri + SUFFIX);
+            if (isCurrent(source, sibling)) {
+                failures.putAll(_store.copy(transaction, sourceUri + SUFFIX, destinationUri + SUFFIX, 0));
+            }
+        }
+        return failures;
+    }
+
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        return _store.deleteTree(transaction, uri);
+    }
+
+    public boolean supportsDeleteTree() {
+        return _store.supportsDeleteTree();
+    }
+
+    public InputStream getResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getResourceContent(transaction, resourceUri);
+    }
+
+    /**
+     * Returns the content of the sibling, or what the other store keeps encoded if there is none.
+     */
+    public InputStream getEncodedResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        if (!isSiblingName(resourceUri) && _store.getStoredObject(transaction, resourceUri + SUFFIX) != null) {
+            return _store.getResourceContent(transaction, resourceUri + SUFFIX);
+        }
+        return _store.getEncodedResourceContent(transaction, resourceUri);
+    }
+
+    public long getResourceLength(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getResourceLength(transaction, resourceUri);
+    }
+
+    /**
+     * Returns the object of the other store; a resource with a current sibling reports <code>gzip</code> as its
+     * content encoding and the length of the sibling as its encoded length.
+     */
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        StoredObject so = _store.getStoredObject(transaction, uri);
+        if (so != null && so.isResource() && !so.isNullResource() && so.getContentEncoding() == null
+                && !isSiblingName(uri)) {
+            StoredObject sibling = _store.getStoredObject(transaction, uri + SUFFIX);
+            if (isCurrent(so, sibling)) {
+                so.setContentEncoding(GZIP);
+                so.setEncodedLength(sibling.getResourceLength());
+            }
+        }
+        return so;
+    }
+
+    public long getQuotaUsedBytes(ITransaction transaction, String folderUri) {
+        return _store.getQuotaUsedBytes(transaction, folderUri);
+    }
+
+    public long getQuotaAvailableBytes(ITransaction transaction, String folderUri) {
+        return _store.getQuotaAvailableBytes(transaction, folderUri);
+    }
+
+    private static boolean isSiblingName(String name) {
+        return name.endsWith(SUFFIX);
+    }
+
+    private static boolean isCurrent(StoredObject so, StoredObject sibling) {
+        return sibling != null && sibling.isResource() && !sibling.isNullResource()
+                && sibling.getLastModified() != null && so.getLastModified() != null
+                && !sibling.getLastModified().before(so.getLastModified());
+    }
+
+    private void removeSibling(ITransaction transaction, String uri) {
+        if (!isSiblingName(uri) && _store.getStoredObject(transaction, uri + SUFFIX) != null) {
+            LOG.fine("PrecompressedStore.removeSibling(" + uri + SUFFIX + ")");
+            _store.removeObject(transaction, uri + SUFFIX);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import nl.info.webdav.exceptions.InsufficientStorageException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that keeps the size of every folder, including everything below it, and enforces a quota on the total size
+ * of another store.
+ * <p>
+ * The sizes are computed with a parallel walk over the store when it is created and are kept up to date on every
+ * write, delete, move and copy that passes through this store, so {@link #getQuotaUsedBytes(ITransaction, String)}
+ * and {@link #getQuotaAvailableBytes(ITransaction, String)} are a single lookup. Uploads and copies that would exceed
+ * the quota fail with an {@link InsufficientStorageException}. An upload reserves the bytes it reads, so concurrent
+ * uploads cannot together exceed the quota, and is written to a temporary resource next to its target that replaces
+ * the target with {@link IWebdavStore#replace(ITransaction, String, String)} only when it is complete. Temporary
+ * resources are not listed. Changes made to the underlying store directly, or undone by a rollback, are only picked
+ * up by {@link #rebuild()}.
+ */
+public class QuotaStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(QuotaStore.class.getName());
+    private static final String ROOT = "/";
+    private static final Pattern TEMPORARY_NAME = Pattern.compile(
+            "\\..+\\.[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.tmp");
+
+    private final IWebdavStore _store;
+    private final long _quota;
+    private final Map<String, AtomicLong> _sizes = new ConcurrentHashMap<>();
+    private long _reserved;
+
+    /**
+     * @param store
+     *              the store holding the content
+     * @param quota
+     *              the maximum number of bytes the store may hold, or a negative number for no limit
+     */
+    public QuotaStore(IWebdavStore store, long quota) {
+        _store = store;
+        _quota = quota;
+        rebuild();
+    }
+
+    /**
+     * Recomputes the size of every folder with a parallel walk over the store.
+     */
+    public void rebuild() {
+        LOG.fine("QuotaStore.rebuild()");
+        ITransaction transaction = _store.begin(null);
+        try {
+            _sizes.clear();
+            ForkJoinPool.commonPool().invoke(new SizeTask(transaction, ROOT));
+            _store.commit(transaction);
+        } catch (RuntimeException e) {
+            _store.rollback(transaction);
+            throw e;
+        }
+    }
+
+    public void destroy() {
+        _store.destroy();
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        return _store.begin(principal);
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        _store.checkAuthentication(transaction);
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        _store.commit(transaction);
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        _store.rollback(transaction);
+    }
+
+    public void createFolder(ITransaction transaction, String folderUri) throws WebdavException {
+        _store.createFolder(transaction, folderUri);
+        _sizes.putIfAbsent(normalize(folderUri), new AtomicLong());
+    }
+
+    public void createResource(ITransaction transaction, String resourceUri) throws WebdavException {
+        _store.createResource(transaction, resourceUri);
+    }
+
+    /**
+     * Stops reading the content as soon as it would exceed the quota. With a quota, the content is written to a
+     * temporary resource that is moved into place when it is complete, so a failed upload leaves the old content.
+     */
+    public long setResourceContent(
+            ITransaction transaction,
+            String resourceUri,
+            InputStream content,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        StoredObject so = _store.getStoredObject(transaction, resourceUri);
+        long oldLength = so == null ? 0 : so.getResourceLength();
+        String parent = parent(normalize(resourceUri));
+        QuotaInputStream in = new QuotaInputStream(content, oldLength);
+        if (_quota < 0) {
+            long length = _store.setResourceContent(transaction, resourceUri, in, contentType, characterEncoding);
+            adjust(parent, (length < 0 ? in.count : length) - oldLength);
+            return length;
+        }
+        String temporaryUri = temporaryUri(resourceUri);
+        try {
+            _store.createResource(transaction, temporaryUri);
+            long length = _store.setResourceContent(transaction, temporaryUri, in, contentType, characterEncoding);
+            if (in.exceeded) {
+                throw new InsufficientStorageException("quota exceeded: " + resourceUri);
+            }
+            _store.replace(transaction, temporaryUri, resourceUri);
+            adjust(parent, (length < 0 ? in.count : length) - oldLength);
+            return length;
+        } catch (WebdavException e) {
+            removeTemporary(transaction, temporaryUri);
+            if (in.exceeded && !(e instanceof InsufficientStorageException)) {
+                throw new InsufficientStorageException("quota exceeded: " + resourceUri);
+            }
+            throw e;
+        } finally {
+            release(in.reserved);
+        }
+    }
+
+    /**
+     * Leaves out the temporary resources of uploads in progress.
+     */
+    public String[] getChildrenNames(ITransaction transaction, String folderUri) throws WebdavException {
+        String[] children = _store.getChildrenNames(transaction, folderUri);
+        if (children == null || _quota < 0) {
+            return children;
+        }
+        List<String> names = new ArrayList<>(children.length);
+        for (String child : children) {
+            if (!TEMPORARY_NAME.matcher(child).matches()) {
+                names.add(child);
+            }
+        }
+        return names.size() == children.length ? children : names.toArray(new String[0]);
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        String path = normalize(uri);
+        long size = sizeOf(transaction, path);
+        _store.removeObject(transaction, uri);
+        _sizes.remove(path);
+        adjust(parent(path), -size);
+    }
+
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        String source = normalize(sourceUri);
+        String destination = normalize(destinationUri);
+        long size = sizeOf(transaction, source);
+        _store.move(transaction, sourceUri, destinationUri);
+        for (String folder : new ArrayList<>(_sizes.keySet())) {
+            if (isSelfOrBelow(folder, source)) {
+                AtomicLong folderSize = _sizes.remove(folder);
+                if (folderSize != null) {
+                    _sizes.put(destination + folder.substring(source.length()), folderSize);
+                }
+            }
+        }
+        adjust(parent(source), -size);
+        adjust(parent(destination), size);
+    }
+
+    /**
+     * Refuses the copy if the source does not fit in the quota; after the copy, the sizes below the destination are
+     * recomputed so members that could not be copied are not counted.
+     */
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        String source = normalize(sourceUri);
+        String destination = normalize(destinationUri);
+        long available = getQuotaAvailableBytes(transaction, destination);
+        long needed = depth == 0 && _sizes.containsKey(source) ? 0 : sizeOf(transaction, source);
+        if (available >= 0 && needed > available) {
+            throw new InsufficientStorageException("quota exceeded: " + destinationUri);
+        }
+        Map<String, WebdavException> failures = _store.copy(transaction, sourceUri, destinationUri, depth);
+        adjust(parent(destination), ForkJoinPool.commonPool().invoke(new SizeTask(transaction, destination)));
+        return failures;
+    }
+
+    /**
+     * Removes the tree and, if some members remain, recomputes the sizes below it.
+     */
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        String path = normalize(uri);
+        long size = sizeOf(transaction, path);
+        Map<String, WebdavException> failures = _store.deleteTree(transaction, uri);
+        _sizes.keySet().removeIf(folder -> isSelfOrBelow(folder, path));
+        long remaining = 0;
+        if (!failures.isEmpty() && _store.getStoredObject(transaction, uri) != null) {
+            remaining = ForkJoinPool.commonPool().invoke(new SizeTask(transaction, path));
+        }
+        adjust(parent(path), remaining - size);
+        return failures;
+    }
+
+    public boolean supportsDeleteTree() {
+        return _store.supportsDeleteTree();
+    }
+
+    public InputStream getResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getResourceContent(transaction, resourceUri);
+    }
+
+    public InputStream getEncodedResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getEncodedResourceContent(transaction, resourceUri);
+    }
+
+    public long getResourceLength(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getResourceLength(transaction, resourceUri);
+    }
+
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        return _store.getStoredObject(transaction, uri);
+    }
+
+    public long getQuotaUsedBytes(ITransaction transaction, String folderUri) {
+        AtomicLong size = _sizes.get(normalize(folderUri));
+        return size == null ? -1 : size.get();
+    }
+
+    public long getQuotaAvailableBytes(ITransaction transaction, String folderUri) {
+        if (_quota < 0) {
+            return -1;
+        }
+        synchronized (this) {
+            return Math.max(0, _quota - usedBytes() - _reserved);
+        }
+    }
+
+    /**
+     * Reserves bytes for an upload if they fit in the quota next to what is stored and reserved already.
+     */
+    private synchronized boolean reserve(long bytes) {
+        if (_quota >= 0 && usedBytes() + _reserved + bytes > _quota) {
+            return false;
+        }
+        _reserved += bytes;
+        return true;
+    }
+
+    private synchronized void release(long bytes) {
+        _reserved -= bytes;
+    }
+
+    private long usedBytes() {
+        AtomicLong used = _sizes.get(ROOT);
+        return used == null ? 0 : used.get();
+    }
+
+    private void removeTemporary(ITransaction transaction, String temporaryUri) {
+        try {
+            if (_store.getStoredObject(transaction, temporaryUri) != null) {
+                _store.removeObject(transaction, temporaryUri);
+            }
+        } catch (WebdavException e) {
+            LOG.log(Level.WARNING, "QuotaStore cannot remove " + temporaryUri, e);
+        }
+    }
+
+    private static String temporaryUri(String resourceUri) {
+        String path = normalize(resourceUri);
+        int slash = path.lastIndexOf('/');
+        return path.substring(0, slash + 1) + "." + path.substring(slash + 1) + "." + UUID.randomUUID() + ".tmp";
+    }
+
+    /**
+     * Adds <code>delta</code> to the folder and all folders above it.
+     */
+    private void adjust(String folder, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (String path = folder; path != null; path = parent(path)) {
+            _sizes.computeIfAbsent(path, p -> new AtomicLong()).addAndGet(delta);
+        }
+    }
+
+    private long sizeOf(ITransaction transaction, String path) {
+        AtomicLong folderSize = _sizes.get(path);
+        if (folderSize != null) {
+            return folderSize.get();
+        }
+        StoredObject so = _store.getStoredObject(transaction, path);
+        if (so == null) {
+            throw new ObjectNotFoundException("no such object: " + path);
+        }
+        return so.isFolder() ? 0 : so.getResourceLength();
+    }
+
+    private static boolean isSelfOrBelow(String path, String folder) {
+        return path.equals(folder) || path.startsWith(ROOT.equals(folder) ? ROOT : folder + "/");
+    }
+
+    private static String normalize(String uri) {
+        String path = uri.replace('\\', '/').replaceAll("/{2,}", "/");
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path.isEmpty() ? ROOT : path.startsWith("/") ? path : "/" + path;
+    }
+
+    private static String parent(String path) {
+        if (ROOT.equals(path)) {
+            return null;
+        }
+        int slash = path.lastIndexOf('/');
+        return slash <= 0 ? ROOT : path.substring(0, slash);
+    }
+
+    /**
+     * Computes the size of a folder, or the length of a resource, recording the size of every folder it visits.
+     */
+    private final class SizeTask extends RecursiveTask<Long> {
+        private final ITransaction _transaction;
+        private final String _path;
+
+        private SizeTask(ITransaction transaction, String path) {
+            _transaction = transaction;
+            _path = path;
+        }
+
+        @Override
+        protected Long compute() {
+            StoredObject so = _store.getStoredObject(_transaction, _path);
+            if (so == null) {
+                return 0L;
+            }
+            if (!so.isFolder()) {
+                return so.getResourceLength();
+            }
+            String[] children = _store.getChildrenNames(_transaction, _path);
+            List<SizeTask> tasks = new ArrayList<>();
+            if (children != null) {
+                for (String child : children) {
+                    tasks.add(new SizeTask(_transaction, ROOT.equals(_path) ? ROOT + child : _path + "/" + child));
+                }
+            }
+            long size = 0;
+            for (SizeTask task : invokeAll(tasks)) {
+                size += task.join();
+            }
+            _sizes.put(_path, new AtomicLong(size));
+            return size;
+        }
+    }
+
+    /**
+     * Counts the bytes read and reserves those beyond the length of the content they replace, stopping when the
+     * quota has no room for them.
+     */
+    private final class QuotaInputStream extends FilterInputStream {
+        private final long credit;
+        private long count;
+        private long reserved;
+        private boolean exceeded;
+
+        private QuotaInputStream(InputStream in, long credit) {
+            super(in);
+            this.credit = credit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws IOException {
+            count += read;
+            long needed = count - credit - reserved;
+            if (needed <= 0 || _quota < 0) {
+                return;
+            }
+            if (!reserve(needed)) {
+                exceeded = true;
+                throw new IOException("quota exceeded");
+            }
+            reserved += needed;
+        }
+    }
+}
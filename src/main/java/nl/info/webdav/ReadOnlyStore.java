@@ -0,0 +1,221 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import nl.info.webdav.exceptions.AccessDeniedException;
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that serves another store as a tree that does not change.
+ * <p>
+ * The metadata and the children of every path are read from the other store once and then kept until
+ * {@link #reload()} is called, so ETags and listings are served from memory. Paths that do not exist are remembered
+ * as well. Content is always read from the other store. Every change is refused with an
+ * {@link AccessDeniedException}. Every request is authenticated by the other store and content is read in its
+ * transaction. The metadata and children are kept per principal, so a user only sees what the other store showed to
+ * that user, and are shared between the requests of the same principal. When more than <code>maxEntries</code> paths
+ * are kept, the least recently used are forgotten.
+ */
+public class ReadOnlyStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(ReadOnlyStore.class.getName());
+    private static final int DEFAULT_MAX_ENTRIES = 100000;
+    private static final StoredObject MISSING = new StoredObject();
+    private static final String[] NO_CHILDREN = new String[0];
+
+    private final IWebdavStore _store;
+    private final Map<String, StoredObject> _objects;
+    private final Map<String, String[]> _children;
+
+    /**
+     * @param store
+     *              the store holding the tree
+     */
+    public ReadOnlyStore(IWebdavStore store) {
+        this(store, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param store
+     *                   the store holding the tree
+     * @param maxEntries
+     *                   the number of paths whose metadata, and the number of folders whose children, are kept
+     */
+    public ReadOnlyStore(IWebdavStore store, int maxEntries) {
+        _store = store;
+        _objects = lruMap(maxEntries);
+        _children = lruMap(maxEntries);
+    }
+
+    /**
+     * Forgets all metadata and children, so changes made to the other store become visible.
+     */
+    public void reload() {
+        LOG.fine("ReadOnlyStore.reload()");
+        _objects.clear();
+        _children.clear();
+    }
+
+    public void destroy() {
+        _store.destroy();
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        return new ReadOnlyTransaction(_store.begin(principal), principal == null ? "" : principal.getName());
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        _store.checkAuthentication(unwrap(transaction));
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        LOG.fine("ReadOnlyStore.commit()");
+        _store.commit(unwrap(transaction));
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        LOG.fine("ReadOnlyStore.rollback()");
+        _store.rollback(unwrap(transaction));
+    }
+
+    public void createFolder(ITransaction transaction, String folderUri) throws WebdavException {
+        throw new AccessDeniedException("read-only: " + folderUri);
+    }
+
+    public void createResource(ITransaction transaction, String resourceUri) throws WebdavException {
+        throw new AccessDeniedException("read-only: " + resourceUri);
+    }
+
+    public long setResourceContent(
+            ITransaction transaction,
+            String resourceUri,
+            InputStream content,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        throw new AccessDeniedException("read-only: " + resourceUri);
+    }
+
+    public String[] getChildrenNames(ITransaction transaction, String folderUri) throws WebdavException {
+        String key = keyOf(transaction, folderUri);
+        String[] children = _children.get(key);
+        if (children == null) {
+            children = _store.getChildrenNames(unwrap(transaction), folderUri);
+            _children.put(key, children == null ? NO_CHILDREN : children);
+        }
+        return children == null || children == NO_CHILDREN ? null : children.clone();
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        throw new AccessDeniedException("read-only: " + uri);
+    }
+
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        throw new AccessDeniedException("read-only: " + destinationUri);
+    }
+
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        throw new AccessDeniedException("read-only: " + destinationUri);
+    }
+
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        throw new AccessDeniedException("read-only: " + uri);
+    }
+
+    public boolean supportsDeleteTree() {
+        return true;
+    }
+
+    public InputStream getResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getResourceContent(unwrap(transaction), resourceUri);
+    }
+
+    public InputStream getEncodedResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        return _store.getEncodedResourceContent(unwrap(transaction), resourceUri);
+    }
+
+    public long getResourceLength(ITransaction transaction, String resourceUri) throws WebdavException {
+        StoredObject so = getStoredObject(transaction, resourceUri);
+        return so == null ? 0 : so.getResourceLength();
+    }
+
+    /**
+     * Returns a copy of the cached metadata, so callers cannot change the cache.
+     */
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        String key = keyOf(transaction, uri);
+        StoredObject so = _objects.get(key);
+        if (so == null) {
+            so = _store.getStoredObject(unwrap(transaction), uri);
+            _objects.put(key, so == null ? MISSING : so);
+        }
+        return so == MISSING || so == null ? null : copyOf(so);
+    }
+
+    public long getQuotaUsedBytes(ITransaction transaction, String folderUri) {
+        return _store.getQuotaUsedBytes(unwrap(transaction), folderUri);
+    }
+
+    public long getQuotaAvailableBytes(ITransaction transaction, String folderUri) {
+        return _store.getQuotaAvailableBytes(unwrap(transaction), folderUri);
+    }
+
+    private static <T> Map<String, T> lruMap(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    private static String keyOf(ITransaction transaction, String uri) {
+        return (transaction instanceof ReadOnlyTransaction ? ((ReadOnlyTransaction) transaction).principal : "")
+                + '\n' + uri;
+    }
+
+    private static ITransaction unwrap(ITransaction transaction) {
+        return transaction instanceof ReadOnlyTransaction ? ((ReadOnlyTransaction) transaction).transaction
+                : transaction;
+    }
+
+    private static StoredObject copyOf(StoredObject so) {
+        StoredObject copy = new StoredObject();
+        copy.setFolder(so.isFolder());
+        copy.setLastModified(so.getLastModified());
+        copy.setCreationDate(so.getCreationDate());
+        copy.setResourceLength(so.getResourceLength());
+        copy.setMimeType(so.getMimeType());
+        copy.setContentEncoding(so.getContentEncoding());
+        copy.setEncodedLength(so.getEncodedLength());
+        copy.setContentDigest(so.getContentDigest());
+        return copy;
+    }
+
+    /**
+     * The transaction of the other store, with the name of the principal whose metadata and children it sees.
+     */
+    private static final class ReadOnlyTransaction implements ITransaction {
+        private final ITransaction transaction;
+        private final String principal;
+
+        private ReadOnlyTransaction(ITransaction transaction, String principal) {
+            this.transaction = transaction;
+            this.principal = principal;
+        }
+    }
+}
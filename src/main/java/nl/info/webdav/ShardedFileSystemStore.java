@@ -0,0 +1,380 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import nl.info.webdav.exceptions.ObjectNotFoundException;
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that spreads its content over several volumes, each a {@link LocalFileSystemStore} on its own root directory.
+ * <p>
+ * Every top-level folder or resource, with everything below it, lives on exactly one volume. The volume is chosen by
+ * rendezvous hashing of the top-level name against the volume names, so the placement is deterministic and adding a
+ * volume only changes the placement of the top-level entries that the new volume wins. An existing top-level entry
+ * that is not on the volume it is placed on is used on the volume that holds it, so entries stored before a volume
+ * was added stay where they are. The root folder exists on every volume and its children are listed on all volumes
+ * in parallel. Moving or copying between volumes falls back to copying the content and removing the source; a copy
+ * that fails is removed again.
+ */
+public class ShardedFileSystemStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(ShardedFileSystemStore.class.getName());
+
+    private final List<String> _volumeNames;
+    private final List<LocalFileSystemStore> _volumes;
+    private final ExecutorService _listExecutor;
+
+    /**
+     * The directory below the root that holds the volumes, so content stored in the volumes is never taken for one.
+     */
+    public static final String VOLUMES_DIRECTORY = "volumes";
+
+    /**
+     * The volume created when <code>root/volumes</code> does not exist yet.
+     */
+    public static final String DEFAULT_VOLUME = "default";
+
+    /**
+     * Uses every subdirectory of <code>root/volumes</code> as a volume, typically a mount point or a symbolic link to
+     * one. If that directory does not exist, it is created with the single volume <code>default</code>.
+     *
+     * @param root
+     *             the directory holding the volumes
+     * @throws IOException
+     *                     if a volume cannot be resolved
+     */
+    public ShardedFileSystemStore(File root) throws IOException {
+        this(findVolumes(root));
+    }
+
+    /**
+     * @param volumes
+     *                the root directories of the volumes; their names must be unique as they determine the placement
+     * @throws IOException
+     *                     if a volume cannot be resolved
+     */
+    public ShardedFileSystemStore(List<File> volumes) throws IOException {
+        if (volumes.isEmpty()) {
+            throw new IllegalArgumentException("at least one volume is required");
+        }
+        List<String> names = new ArrayList<>();
+        List<LocalFileSystemStore> stores = new ArrayList<>();
+        for (File volume : volumes) {
+            names.add(volume.getName());
+            stores.add(new LocalFileSystemStore(volume));
+        }
+        _volumeNames = Collections.unmodifiableList(names);
+        _volumes = Collections.unmodifiableList(stores);
+        _listExecutor = Executors.newFixedThreadPool(volumes.size(), runnable -> {
+            Thread thread = new Thread(runnable, "ShardedFileSystemStore-list");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void destroy() {
+        _listExecutor.shutdown();
+        for (LocalFileSystemStore volume : _volumes) {
+            volume.destroy();
+        }
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        LOG.fine("ShardedFileSystemStore.begin()");
+        for (LocalFileSystemStore volume : _volumes) {
+            volume.begin(principal);
+        }
+        return null;
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        LOG.fine("ShardedFileSystemStore.checkAuthentication()");
+        // do nothing
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.fine("ShardedFileSystemStore.commit()");
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.fine("ShardedFileSystemStore.rollback()");
+    }
+
+    public void createFolder(ITransaction transaction, String uri) throws WebdavException {
+        volumeFor(transaction, uri).createFolder(transaction, uri);
+    }
+
+    public void createResource(ITransaction transaction, String uri) throws WebdavException {
+        volumeFor(transaction, uri).createResource(transaction, uri);
+    }
+
+    public long setResourceContent(
+            ITransaction transaction,
+            String uri,
+            InputStream is,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        return volumeFor(transaction, uri).setResourceContent(transaction, uri, is, contentType, characterEncoding);
+    }
+
+    /**
+     * Lists the root folder on all volumes in parallel and merges the results; any other folder is listed on the
+     * volume it lives on.
+     */
+    public String[] getChildrenNames(ITransaction transaction, String uri) throws WebdavException {
+        if (topLevelName(uri) != null) {
+            return volumeFor(transaction, uri).getChildrenNames(transaction, uri);
+        }
+        LOG.fine("ShardedFileSystemStore.getChildrenNames(" + uri + ")");
+        List<CompletableFuture<String[]>> listings = new ArrayList<>();
+        for (LocalFileSystemStore volume : _volumes) {
+            listings.add(CompletableFuture.supplyAsync(() -> volume.getChildrenNames(transaction, uri), _listExecutor));
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (CompletableFuture<String[]> listing : listings) {
+            String[] children;
+            try {
+                children = listing.join();
+            } catch (RuntimeException e) {
+                throw e.getCause() instanceof WebdavException ? (WebdavException) e.getCause() : new WebdavException(e);
+            }
+            if (children != null) {
+                names.addAll(Arrays.asList(children));
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        if (topLevelName(uri) == null) {
+            throw new WebdavException("cannot delete object: " + uri);
+        }
+        volumeFor(transaction, uri).removeObject(transaction, uri);
+    }
+
+    /**
+     * Renames the object when source and destination are on the same volume; otherwise copies it to the destination
+     * volume and removes the source once everything has been copied. If the copy fails, what was copied is removed
+     * and the source is left in place.
+     */
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        LocalFileSystemStore source = volumeFor(transaction, sourceUri);
+        LocalFileSystemStore destination = volumeFor(transaction, destinationUri);
+        if (source == destination) {
+            source.move(transaction, sourceUri, destinationUri);
+            return;
+        }
+        LOG.fine("ShardedFileSystemStore.move(" + sourceUri + ", " + destinationUri + ") crosses volumes");
+        StoredObject so = source.getStoredObject(transaction, sourceUri);
+        if (so == null) {
+            throw new ObjectNotFoundException("cannot move non-existing object: " + sourceUri);
+        }
+        if (destination.getStoredObject(transaction, destinationUri) != null) {
+            throw new WebdavException("cannot move " + sourceUri + ", " + destinationUri + " exists");
+        }
+        Map<String, WebdavException> failures;
+        try {
+            failures = IWebdavStore.super.copy(transaction, sourceUri, destinationUri, -1);
+        } catch (WebdavException e) {
+            removeCopy(transaction, destination, destinationUri);
+            throw e;
+        }
+        if (!failures.isEmpty()) {
+            removeCopy(transaction, destination, destinationUri);
+            WebdavException failure = failures.values().iterator().next();
+            throw new WebdavException("cannot move " + sourceUri + ", " + failures.size() + " members could not be copied", failure);
+        }
+        if (so.isFolder()) {
+            Map<String, WebdavException> remaining = source.deleteTree(transaction, sourceUri);
+            if (!remaining.isEmpty()) {
+                throw new WebdavException("moved " + sourceUri + " but could not remove all of the source");
+            }
+        } else {
+            source.removeObject(transaction, sourceUri);
+        }
+    }
+
+    /**
+     * Copies within a volume with {@link LocalFileSystemStore#copy(ITransaction, String, String, int)}; a copy
+     * between volumes streams the content.
+     */
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        LocalFileSystemStore source = volumeFor(transaction, sourceUri);
+        if (source == volumeFor(transaction, destinationUri)) {
+            return source.copy(transaction, sourceUri, destinationUri, depth);
+        }
+        return IWebdavStore.super.copy(transaction, sourceUri, destinationUri, depth);
+    }
+
+    private static void removeCopy(ITransaction transaction, LocalFileSystemStore destination, String destinationUri) {
+        StoredObject copy = destination.getStoredObject(transaction, destinationUri);
+        if (copy == null) {
+            return;
+        }
+        try {
+            if (!copy.isFolder()) {
+                destination.removeObject(transaction, destinationUri);
+            } else if (!destination.deleteTree(transaction, destinationUri).isEmpty()) {
+                LOG.warning("ShardedFileSystemStore could not remove all of the partial copy " + destinationUri);
+            }
+        } catch (WebdavException e) {
+            LOG.log(Level.WARNING, "ShardedFileSystemStore could not remove the partial copy " + destinationUri, e);
+        }
+    }
+
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        if (topLevelName(uri) == null) {
+            throw new WebdavException("cannot delete object: " + uri);
+        }
+        return volumeFor(transaction, uri).deleteTree(transaction, uri);
+    }
+
+    public boolean supportsDeleteTree() {
+        return true;
+    }
+
+    public InputStream getResourceContent(ITransaction transaction, String uri) throws WebdavException {
+        return volumeFor(transaction, uri).getResourceContent(transaction, uri);
+    }
+
+    public long getResourceLength(ITransaction transaction, String uri) throws WebdavException {
+        return volumeFor(transaction, uri).getResourceLength(transaction, uri);
+    }
+
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        return volumeFor(transaction, uri).getStoredObject(transaction, uri);
+    }
+
+    /**
+     * Returns the bytes used on the volume of a top-level entry; for the root folder, the sum over all volumes.
+     */
+    public long getQuotaUsedBytes(ITransaction transaction, String uri) {
+        if (topLevelName(uri) != null) {
+            return volumeFor(transaction, uri).getQuotaUsedBytes(transaction, uri);
+        }
+        long used = 0;
+        for (LocalFileSystemStore volume : _volumes) {
+            long bytes = volume.getQuotaUsedBytes(transaction, uri);
+            if (bytes < 0) {
+                return -1;
+            }
+            used += bytes;
+        }
+        return used;
+    }
+
+    /**
+     * Returns the bytes available on the volume of a top-level entry; for the root folder, the least available on
+     * any volume, as a new top-level entry may be placed on each of them.
+     */
+    public long getQuotaAvailableBytes(ITransaction transaction, String uri) {
+        if (topLevelName(uri) != null) {
+            return volumeFor(transaction, uri).getQuotaAvailableBytes(transaction, uri);
+        }
+        long available = -1;
+        for (LocalFileSystemStore volume : _volumes) {
+            long bytes = volume.getQuotaAvailableBytes(transaction, uri);
+            if (bytes >= 0 && (available < 0 || bytes < available)) {
+                available = bytes;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Returns the index of the volume holding <code>uri</code>. The root folder is reported on the first volume.
+     *
+     * @param uri the URI
+     * @return the index of the volume
+     */
+    int volumeIndexOf(String uri) {
+        String name = topLevelName(uri);
+        if (name == null || _volumes.size() == 1) {
+            return 0;
+        }
+        int best = 0;
+        long bestScore = -1;
+        for (int i = 0; i < _volumeNames.size(); i++) {
+            CRC32 crc = new CRC32();
+            crc.update((_volumeNames.get(i) + "/" + name).getBytes(StandardCharsets.UTF_8));
+            long score = crc.getValue();
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the volume that holds the top-level entry of <code>uri</code>: the volume it is placed on, or else the
+     * volume it was stored on before volumes were added. A top-level entry that does not exist yet is placed.
+     */
+    private LocalFileSystemStore volumeFor(ITransaction transaction, String uri) {
+        LocalFileSystemStore placed = _volumes.get(volumeIndexOf(uri));
+        String name = topLevelName(uri);
+        if (name == null || _volumes.size() == 1 || placed.getStoredObject(transaction, "/" + name) != null) {
+            return placed;
+        }
+        for (LocalFileSystemStore volume : _volumes) {
+            if (volume != placed && volume.getStoredObject(transaction, "/" + name) != null) {
+                return volume;
+            }
+        }
+        return placed;
+    }
+
+    private static String topLevelName(String uri) {
+        for (String segment : uri.replace('\\', '/').split("/")) {
+            if (!segment.isEmpty()) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private static List<File> findVolumes(File root) throws IOException {
+        Path volumes = root.toPath().resolve(VOLUMES_DIRECTORY);
+        if (!Files.isDirectory(volumes)) {
+            LOG.info("ShardedFileSystemStore creates volume " + volumes.resolve(DEFAULT_VOLUME));
+            Files.createDirectories(volumes.resolve(DEFAULT_VOLUME));
+        }
+        File[] children = volumes.toFile().listFiles(File::isDirectory);
+        if (children == null || children.length == 0) {
+            throw new IOException("no volumes in " + volumes);
+        }
+        Arrays.sort(children);
+        return Arrays.asList(children);
+    }
+}
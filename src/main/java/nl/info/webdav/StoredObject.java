@@ -14,6 +14,9 @@ public class StoredObject {
     private long contentLength;
     private String mimeType;
     private boolean isNullResource;
+    private String contentEncoding;
+    private long encodedLength;
+    private String contentDigest;
 
     /**
      * Determines whether the StoredObject is a folder or a resource
@@ -122,6 +125,9 @@ public class StoredObject {
         // this.content = null;
         this.contentLength = 0;
         this.mimeType = null;
+        this.contentEncoding = null;
+        this.encodedLength = 0;
+        this.contentDigest = null;
     }
 
     /**
@@ -144,4 +150,60 @@ public class StoredObject {
     public void setMimeType(String mimeType) {
         this.mimeType = mimeType;
     }
+
+    /**
+     * Gets the content coding the resource is stored in, for example
+     * <code>gzip</code>. The resource length is always the decoded length.
+     *
+     * @return the content coding, or null if the content is stored as is
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Sets the content coding the resource is stored in
+     *
+     * @param contentEncoding the content coding, or null
+     */
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Gets the length of the content as it is stored, in its content coding
+     *
+     * @return the encoded length
+     */
+    public long getEncodedLength() {
+        return encodedLength;
+    }
+
+    /**
+     * Sets the length of the content as it is stored, in its content coding
+     *
+     * @param encodedLength the encoded length
+     */
+    public void setEncodedLength(long encodedLength) {
+        this.encodedLength = encodedLength;
+    }
+
+    /**
+     * Gets the SHA-256 digest of the content, as lower case hex. If
+     * present, it is used as a strong ETag.
+     *
+     * @return the digest, or null if the store does not know it
+     */
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    /**
+     * Sets the SHA-256 digest of the content
+     *
+     * @param contentDigest the digest as lower case hex, or null
+     */
+    public void setContentDigest(String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
 }
@@ -0,0 +1,738 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that keeps frequently read resources on a fast tier in front of a capacity tier.
+ * <p>
+ * The capacity tier holds the namespace and, eventually, all content. A resource that is read
+ * <code>promotionThreshold</code> times is copied to the fast tier and served from there. Content that is written
+ * goes to the fast tier first and is written back to the capacity tier asynchronously, in the order it was written;
+ * content that is larger than the budget or 8 MiB, or that does not fit in the budget next to the content that is
+ * still being written back, goes to the capacity tier directly.
+ * Resources on the fast tier are demoted, least recently used first, when the fast tier exceeds its budget, and when
+ * they have not been read for <code>maxIdleMillis</code>; resources that have not been written back yet stay until
+ * they have been. Folders, COPY, MOVE and DELETE of folders are handled by the capacity tier after the affected
+ * resources have been written back, and the metadata of resources that are still being written back is taken from
+ * the fast tier, so PROPFIND sees the same state on both tiers.
+ * <p>
+ * A write-back that fails is retried, waiting twice as long after every failure up to a minute, and the content stays
+ * on the fast tier until it has been written back. COPY, MOVE and DELETE fail while content they affect cannot be
+ * written back.
+ * <p>
+ * The tiers are used without transactions.
+ */
+public class TieredStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(TieredStore.class.getName());
+    private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+    private static final int DEFAULT_PROMOTION_THRESHOLD = 2;
+    private static final long DEFAULT_MAX_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_TRACKED_READS = 10000;
+    private static final int STRIPES = 64;
+    private static final long MAX_FAST_LENGTH = 8L * 1024 * 1024;
+    private static final long DEFAULT_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final IWebdavStore _fastTier;
+    private final IWebdavStore _capacityTier;
+    private final long _budget;
+    private final int _promotionThreshold;
+    private final long _maxIdleMillis;
+    private final long _retryMillis;
+    private final LinkedHashMap<String, HotEntry> _hot = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> _readCounts = new ConcurrentHashMap<>();
+    private final Object[] _stripes = new Object[STRIPES];
+    // held while a resource is changed on the capacity tier, so reads holding _stripes do not wait for it
+    private final Object[] _writeStripes = new Object[STRIPES];
+    private final ExecutorService _writeBack;
+    private long _hotBytes;
+    private long _dirtyBytes;
+
+    /**
+     * Uses a {@link MemoryStore} as the fast tier in front of a {@link LocalFileSystemStore} on <code>root</code>.
+     *
+     * @param root
+     *             the root directory of the capacity tier
+     * @throws IOException
+     *                     if the root cannot be resolved
+     */
+    public TieredStore(File root) throws IOException {
+        this(new MemoryStore(2 * DEFAULT_BUDGET), new LocalFileSystemStore(root), DEFAULT_BUDGET,
+                DEFAULT_PROMOTION_THRESHOLD, DEFAULT_MAX_IDLE_MILLIS);
+    }
+
+    /**
+     * @param fastTier
+     *                           the fast tier; it should have room for the budget plus the content that is still
+     *                           being written back
+     * @param capacityTier
+     *                           the capacity tier
+     * @param budget
+     *                           the number of bytes of clean content the fast tier keeps
+     * @param promotionThreshold
+     *                           the number of reads after which a resource is promoted to the fast tier
+     * @param maxIdleMillis
+     *                           the time after which a resource that has not been read is demoted
+     */
+    public TieredStore(
+            IWebdavStore fastTier,
+            IWebdavStore capacityTier,
+            long budget,
+            int promotionThreshold,
+            long maxIdleMillis
+    ) {
+        this(fastTier, capacityTier, budget, promotionThreshold, maxIdleMillis, DEFAULT_RETRY_MILLIS);
+    }
+
+    /**
+     * @param fastTier
+     *                           the fast tier; it should have room for the budget plus the content that is still
+     *                           being written back
+     * @param capacityTier
+     *                           the capacity tier
+     * @param budget
+     *                           the number of bytes of clean content the fast tier keeps
+     * @param promotionThreshold
+     *                           the number of reads after which a resource is promoted to the fast tier
+     * @param maxIdleMillis
+     *                           the time after which a resource that has not been read is demoted
+     * @param retryMillis
+     *                           the time to wait before retrying a failed write-back, doubled after every failure
+     */
+    public TieredStore(
+            IWebdavStore fastTier,
+            IWebdavStore capacityTier,
+            long budget,
+            int promotionThreshold,
+            long maxIdleMillis,
+            long retryMillis
+    ) {
+        _fastTier = fastTier;
+        _capacityTier = capacityTier;
+        _budget = budget;
+        _promotionThreshold = promotionThreshold;
+        _maxIdleMillis = maxIdleMillis;
+        _retryMillis = retryMillis;
+        for (int i = 0; i < STRIPES; i++) {
+            _stripes[i] = new Object();
+            _writeStripes[i] = new Object();
+        }
+        _writeBack = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TieredStore-write-back");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes back all pending content before destroying both tiers, trying once more the content whose write-back
+     * failed before.
+     */
+    public void destroy() {
+        LOG.fine("TieredStore.destroy()");
+        _writeBack.shutdown();
+        try {
+            if (!_writeBack.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.severe("TieredStore.destroy() timed out writing back content");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Map.Entry<String, Long> dirty : getDirtyVersions().entrySet()) {
+            if (!writeBack(dirty.getKey(), dirty.getValue())) {
+                LOG.severe("TieredStore.destroy() could not write back " + dirty.getKey() + "; its content is lost");
+            }
+        }
+        _fastTier.destroy();
+        _capacityTier.destroy();
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        LOG.fine("TieredStore.begin()");
+        _capacityTier.begin(principal);
+        return null;
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        LOG.fine("TieredStore.checkAuthentication()");
+        // do nothing
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.fine("TieredStore.commit()");
+    }
+
+    public void rollback(ITransaction transaction) throws WebdavException {
+        // do nothing
+        LOG.fine("TieredStore.rollback()");
+    }
+
+    public void createFolder(ITransaction transaction, String uri) throws WebdavException {
+        _capacityTier.createFolder(null, uri);
+    }
+
+    public void createResource(ITransaction transaction, String uri) throws WebdavException {
+        _capacityTier.createResource(null, uri);
+    }
+
+    /**
+     * Writes the content to the fast tier and schedules the write-back to the capacity tier. Content that is larger
+     * than the fast tier takes, or that does not fit next to the content still being written back, is written to the
+     * capacity tier instead. The content is read before the resource is locked.
+     */
+    public long setResourceContent(
+            ITransaction transaction,
+            String uri,
+            InputStream is,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        LOG.fine("TieredStore.setResourceContent(" + uri + ")");
+        int limit = (int) Math.min(_budget, MAX_FAST_LENGTH);
+        byte[] head;
+        try {
+            head = is.readNBytes(limit + 1);
+        } catch (IOException e) {
+            throw new WebdavException(e);
+        }
+        if (head.length <= limit && writeToFastTier(uri, head, contentType, characterEncoding)) {
+            return head.length;
+        }
+        return writeToCapacityTier(uri, new SequenceInputStream(new ByteArrayInputStream(head), is), contentType,
+                characterEncoding);
+    }
+
+    public String[] getChildrenNames(ITransaction transaction, String uri) throws WebdavException {
+        return _capacityTier.getChildrenNames(null, uri);
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("TieredStore.removeObject(" + uri + ")");
+        synchronized (writeStripe(uri)) {
+            synchronized (stripe(uri)) {
+                evict(uri);
+                _readCounts.remove(uri);
+            }
+            _capacityTier.removeObject(null, uri);
+        }
+    }
+
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        settle(sourceUri, true);
+        _capacityTier.move(null, sourceUri, destinationUri);
+    }
+
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        settle(sourceUri, false);
+        return _capacityTier.copy(null, sourceUri, destinationUri, depth);
+    }
+
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        settle(uri, true);
+        return _capacityTier.deleteTree(null, uri);
+    }
+
+    public boolean supportsDeleteTree() {
+        return _capacityTier.supportsDeleteTree();
+    }
+
+    /**
+     * Serves the resource from the fast tier when it is there, and promotes it once it has been read often enough.
+     */
+    public InputStream getResourceContent(ITransaction transaction, String uri) throws WebdavException {
+        LOG.fine("TieredStore.getResourceContent(" + uri + ")");
+        synchronized (stripe(uri)) {
+            if (touch(uri)) {
+                return _fastTier.getResourceContent(null, uri);
+            }
+            if (_readCounts.merge(uri, 1, Integer::sum) < _promotionThreshold) {
+                return _capacityTier.getResourceContent(null, uri);
+            }
+            _readCounts.remove(uri);
+            if (_readCounts.size() > MAX_TRACKED_READS) {
+                _readCounts.clear();
+            }
+            if (!promote(uri)) {
+                return _capacityTier.getResourceContent(null, uri);
+            }
+        }
+        demote();
+        synchronized (stripe(uri)) {
+            if (touch(uri)) {
+                return _fastTier.getResourceContent(null, uri);
+            }
+        }
+        return _capacityTier.getResourceContent(null, uri);
+    }
+
+    /**
+     * Returns the encoded content from the capacity tier; the fast tier only keeps content as it is.
+     */
+    public InputStream getEncodedResourceContent(ITransaction transaction, String uri) throws WebdavException {
+        return _capacityTier.getEncodedResourceContent(null, uri);
+    }
+
+    public long getResourceLength(ITransaction transaction, String uri) throws WebdavException {
+        StoredObject so = getStoredObject(transaction, uri);
+        return so == null ? 0 : so.getResourceLength();
+    }
+
+    /**
+     * Returns the metadata from the capacity tier, with the length, modification date and content type of content
+     * that has not been written back yet, which has no content coding.
+     */
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        StoredObject so = _capacityTier.getStoredObject(null, uri);
+        if (so != null && !so.isFolder()) {
+            synchronized (this) {
+                HotEntry entry = _hot.get(uri);
+                if (entry != null && entry.dirty) {
+                    so.setResourceLength(entry.length);
+                    so.setLastModified(new Date(entry.lastModified));
+                    so.setMimeType(entry.mimeType);
+                    so.setContentDigest(null);
+                    // the capacity tier still reports the coding of the content that is being replaced
+                    so.setContentEncoding(null);
+                    so.setEncodedLength(0);
+                }
+            }
+        }
+        return so;
+    }
+
+    /**
+     * Waits until all content written so far has been written back to the capacity tier.
+     *
+     * @throws WebdavException
+     *                         if the write-back of some content has failed and is still to be retried
+     */
+    public void flush() {
+        try {
+            _writeBack.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new WebdavException(e);
+        }
+        List<String> failed = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, HotEntry> entry : _hot.entrySet()) {
+                if (entry.getValue().dirty && entry.getValue().failed) {
+                    failed.add(entry.getKey());
+                }
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new WebdavException("content has not been written back yet: " + failed);
+        }
+    }
+
+    /**
+     * @param uri the URI of a resource
+     * @return whether the resource is currently on the fast tier
+     */
+    public synchronized boolean isOnFastTier(String uri) {
+        return _hot.containsKey(uri);
+    }
+
+    /**
+     * Writes back the given version of the resource, and schedules a retry when that fails.
+     */
+    private void writeBackOrRetry(String uri, long version, int attempt) {
+        if (writeBack(uri, version)) {
+            return;
+        }
+        long delay = Math.min(MAX_RETRY_MILLIS, _retryMillis << Math.min(attempt, 20));
+        LOG.warning("TieredStore retries the write-back of " + uri + " in " + delay + " ms");
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            try {
+                _writeBack.execute(() -> writeBackOrRetry(uri, version, attempt + 1));
+            } catch (RejectedExecutionException e) {
+                // destroy() tries it once more
+                LOG.fine("TieredStore is destroyed before retrying the write-back of " + uri);
+            }
+        });
+    }
+
+    /**
+     * Writes the given version of the resource back to the capacity tier. The content is copied from the fast tier
+     * while holding the stripe of the resource, and written to the capacity tier while holding only its write stripe,
+     * so reads are not held up by the capacity tier while other changes of the resource on the capacity tier still
+     * wait for the write-back.
+     *
+     * @return false if the write-back failed, in which case the content stays on the fast tier
+     */
+    private boolean writeBack(String uri, long version) {
+        synchronized (writeStripe(uri)) {
+            HotEntry entry;
+            String mimeType;
+            byte[] content;
+            synchronized (stripe(uri)) {
+                synchronized (this) {
+                    entry = _hot.get(uri);
+                    if (entry == null || !entry.dirty || entry.version != version) {
+                        return true;
+                    }
+                    mimeType = entry.mimeType;
+                }
+                try (InputStream in = _fastTier.getResourceContent(null, uri)) {
+                    content = in.readAllBytes();
+                } catch (IOException | WebdavException e) {
+                    return failed(uri, entry, e);
+                }
+            }
+            try {
+                _capacityTier.setResourceContent(null, uri, new ByteArrayInputStream(content), mimeType, null);
+            } catch (WebdavException e) {
+                return failed(uri, entry, e);
+            }
+            synchronized (this) {
+                if (entry.version == version && entry.dirty) {
+                    entry.dirty = false;
+                    _dirtyBytes -= entry.length;
+                }
+                entry.failed = false;
+            }
+        }
+        demote();
+        return true;
+    }
+
+    private boolean failed(String uri, HotEntry entry, Exception e) {
+        LOG.log(Level.SEVERE, "TieredStore.writeBack(" + uri + ") failed", e);
+        synchronized (this) {
+            entry.failed = true;
+        }
+        return false;
+    }
+
+    private synchronized Map<String, Long> getDirtyVersions() {
+        Map<String, Long> dirty = new LinkedHashMap<>();
+        for (Map.Entry<String, HotEntry> entry : _hot.entrySet()) {
+            if (entry.getValue().dirty) {
+                dirty.put(entry.getKey(), entry.getValue().version);
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Copies the resource from the capacity tier to the fast tier. Must be called while holding the stripe of the
+     * resource.
+     */
+    private boolean promote(String uri) {
+        StoredObject so = _capacityTier.getStoredObject(null, uri);
+        if (so == null || so.isFolder() || so.getResourceLength() > _budget) {
+            return false;
+        }
+        LOG.fine("TieredStore.promote(" + uri + ")");
+        try {
+            createFastResource(uri);
+            long length = _fastTier.setResourceContent(null, uri, _capacityTier.getResourceContent(null, uri),
+                    so.getMimeType(), null);
+            synchronized (this) {
+                HotEntry entry = new HotEntry();
+                entry.length = length < 0 ? so.getResourceLength() : length;
+                entry.mimeType = so.getMimeType();
+                entry.lastModified = so.getLastModified().getTime();
+                entry.lastAccess = System.currentTimeMillis();
+                _hot.put(uri, entry);
+                _hotBytes += entry.length;
+            }
+            return true;
+        } catch (WebdavException e) {
+            LOG.log(Level.WARNING, "TieredStore.promote(" + uri + ") failed", e);
+            removeFromFastTier(uri);
+            return false;
+        }
+    }
+
+    /**
+     * Removes clean resources from the fast tier while it is over budget, least recently used first, and resources
+     * that have been idle for too long.
+     */
+    private void demote() {
+        List<String> demoted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<Map.Entry<String, HotEntry>> entries = _hot.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, HotEntry> candidate = entries.next();
+                HotEntry entry = candidate.getValue();
+                boolean idle = now - entry.lastAccess > _maxIdleMillis;
+                if (_hotBytes <= _budget && !idle) {
+                    continue;
+                }
+                if (!entry.dirty) {
+                    entries.remove();
+                    _hotBytes -= entry.length;
+                    demoted.add(candidate.getKey());
+                }
+            }
+        }
+        for (String uri : demoted) {
+            LOG.fine("TieredStore.demote(" + uri + ")");
+            synchronized (stripe(uri)) {
+                if (!isOnFastTier(uri)) {
+                    removeFromFastTier(uri);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes back the resources at or below <code>uri</code> and, if requested, removes them from the fast tier, so
+     * the capacity tier can handle a structural change on its own.
+     *
+     * @throws WebdavException
+     *                         if a resource cannot be written back; it then stays on the fast tier
+     */
+    private void settle(String uri, boolean evict) {
+        String prefix = uri.endsWith("/") ? uri : uri + "/";
+        List<String> affected = new ArrayList<>();
+        synchronized (this) {
+            for (String path : _hot.keySet()) {
+                if (path.equals(uri) || path.startsWith(prefix)) {
+                    affected.add(path);
+                }
+            }
+        }
+        for (String path : affected) {
+            synchronized (writeStripe(path)) {
+                while (!settleResource(path, evict)) {
+                    LOG.fine("TieredStore.settle(" + path + ") is written again while it is written back");
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes back the resource and, if requested, removes it from the fast tier. Must be called while holding the
+     * write stripe of the resource.
+     *
+     * @return false if the resource has been written again meanwhile, so it is still to be written back
+     */
+    private boolean settleResource(String path, boolean evict) {
+        long version;
+        synchronized (this) {
+            HotEntry entry = _hot.get(path);
+            if (entry == null) {
+                return true;
+            }
+            version = entry.version;
+        }
+        if (!writeBack(path, version)) {
+            throw new WebdavException("cannot write back " + path);
+        }
+        synchronized (stripe(path)) {
+            synchronized (this) {
+                HotEntry entry = _hot.get(path);
+                if (entry != null && entry.dirty) {
+                    return false;
+                }
+            }
+            if (evict) {
+                evict(path);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the content to the fast tier if it fits next to the content that is still being written back, and
+     * schedules its write-back.
+     */
+    private boolean writeToFastTier(String uri, byte[] content, String contentType, String characterEncoding) {
+        long version;
+        synchronized (stripe(uri)) {
+            synchronized (this) {
+                HotEntry entry = _hot.get(uri);
+                long replaced = entry != null && entry.dirty ? entry.length : 0;
+                if (_dirtyBytes - replaced + content.length > _budget) {
+                    return false;
+                }
+                // reserved until the entry is published
+                _dirtyBytes += content.length;
+            }
+            try {
+                createFastResource(uri);
+                _fastTier.setResourceContent(null, uri, new ByteArrayInputStream(content), contentType,
+                        characterEncoding);
+            } catch (WebdavException e) {
+                synchronized (this) {
+                    _dirtyBytes -= content.length;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                HotEntry entry = _hot.get(uri);
+                if (entry == null) {
+                    entry = new HotEntry();
+                    _hot.put(uri, entry);
+                } else {
+                    _hotBytes -= entry.length;
+                    if (entry.dirty) {
+                        _dirtyBytes -= entry.length;
+                    }
+                }
+                entry.length = content.length;
+                entry.mimeType = contentType;
+                entry.lastModified = System.currentTimeMillis();
+                entry.lastAccess = entry.lastModified;
+                entry.dirty = true;
+                version = ++entry.version;
+                _hotBytes += content.length;
+            }
+        }
+        _writeBack.execute(() -> writeBackOrRetry(uri, version, 0));
+        demote();
+        return true;
+    }
+
+    /**
+     * Spools the content to a temporary file and replaces the resource on the capacity tier with it, dropping the
+     * resource from the fast tier so the write-back of older content does not overwrite it.
+     */
+    private long writeToCapacityTier(String uri, InputStream content, String contentType, String characterEncoding) {
+        Path spool = null;
+        try (InputStream in = content) {
+            spool = Files.createTempFile("tiered", null);
+            long length = Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (writeStripe(uri)) {
+                synchronized (stripe(uri)) {
+                    evict(uri);
+                }
+                try (InputStream spooled = Files.newInputStream(spool)) {
+                    long written = _capacityTier.setResourceContent(null, uri, spooled, contentType,
+                            characterEncoding);
+                    return written < 0 ? length : written;
+                }
+            }
+        } catch (IOException e) {
+            throw new WebdavException(e);
+        } finally {
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "TieredStore cannot remove " + spool, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the resource from the fast tier, whether or not it has been written back. Must be called while holding
+     * the stripe of the resource.
+     */
+    private void evict(String uri) {
+        synchronized (this) {
+            HotEntry entry = _hot.remove(uri);
+            if (entry == null) {
+                return;
+            }
+            _hotBytes -= entry.length;
+            if (entry.dirty) {
+                _dirtyBytes -= entry.length;
+            }
+        }
+        removeFromFastTier(uri);
+    }
+
+    private boolean touch(String uri) {
+        synchronized (this) {
+            HotEntry entry = _hot.get(uri);
+            if (entry == null) {
+                return false;
+            }
+            entry.lastAccess = System.currentTimeMillis();
+            return true;
+        }
+    }
+
+    private void createFastResource(String uri) {
+        String parent = uri.substring(0, Math.max(0, uri.lastIndexOf('/')));
+        if (!parent.isEmpty() && _fastTier.getStoredObject(null, parent) == null) {
+            createFastFolder(parent);
+        }
+        if (_fastTier.getStoredObject(null, uri) == null) {
+            _fastTier.createResource(null, uri);
+        }
+    }
+
+    private void createFastFolder(String uri) {
+        String parent = uri.substring(0, Math.max(0, uri.lastIndexOf('/')));
+        if (!parent.isEmpty() && _fastTier.getStoredObject(null, parent) == null) {
+            createFastFolder(parent);
+        }
+        _fastTier.createFolder(null, uri);
+    }
+
+    private void removeFromFastTier(String uri) {
+        try {
+            if (_fastTier.getStoredObject(null, uri) != null) {
+                _fastTier.removeObject(null, uri);
+            }
+        } catch (WebdavException e) {
+            LOG.log(Level.FINE, "TieredStore cannot remove " + uri + " from the fast tier", e);
+        }
+    }
+
+    private Object stripe(String uri) {
+        return _stripes[Math.floorMod(uri.hashCode(), STRIPES)];
+    }
+
+    /**
+     * Taken before {@link #stripe(String)} when both are held.
+     */
+    private Object writeStripe(String uri) {
+        return _writeStripes[Math.floorMod(uri.hashCode(), STRIPES)];
+    }
+
+    private static final class HotEntry {
+        private long length;
+        private long lastModified;
+        private long lastAccess;
+        private String mimeType;
+        private boolean dirty;
+        private boolean failed;
+        private long version;
+    }
+}
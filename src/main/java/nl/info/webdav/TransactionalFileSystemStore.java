@@ -0,0 +1,481 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import nl.info.webdav.exceptions.ObjectNotFoundException;
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * {@link LocalFileSystemStore} whose transactions can be rolled back.
+ * <p>
+ * Changes are applied to the files right away, so the rest of the request sees them, and every change is recorded in
+ * an undo journal below <code>.webdav-journal</code> in the root. Files and folders that are overwritten, deleted or
+ * replaced are not removed but renamed into the journal, so a DELETE of a folder is a single rename; the journal is
+ * forced to disk before anything is renamed into it. {@link #rollback(ITransaction)} undoes the changes in reverse
+ * order. {@link #commit(ITransaction)} forces all files and folders the transaction changed to disk in one go and then
+ * drops the journal; no other file is forced before that. Journals left behind by a process that stopped in the
+ * middle of a transaction are rolled back when the store is created. Saved objects that cannot be restored are kept
+ * in the journal directory.
+ * <p>
+ * Changes are visible to other requests before they are committed; conflicting changes are prevented by the locks of
+ * the servlet. Calls without a transaction are applied as by {@link LocalFileSystemStore}.
+ */
+public class TransactionalFileSystemStore extends LocalFileSystemStore {
+    private static final Logger LOG = Logger.getLogger(TransactionalFileSystemStore.class.getName());
+    static final String JOURNAL_DIRECTORY = ".webdav-journal";
+    private static final String JOURNAL_FILE = "journal";
+    private static final String CREATE = "create";
+    private static final String SAVE = "save";
+    private static final String MOVE = "move";
+
+    private final Path _root;
+    private final Path _journals;
+
+    public TransactionalFileSystemStore(File root) throws IOException {
+        super(root);
+        _root = root.getCanonicalFile().toPath();
+        _journals = _root.resolve(JOURNAL_DIRECTORY);
+        recover();
+    }
+
+    /**
+     * Reserves the journal directory in addition to the directories of {@link LocalFileSystemStore}.
+     */
+    protected Set<String> getReservedNames() {
+        Set<String> names = new HashSet<>(super.getReservedNames());
+        names.add(JOURNAL_DIRECTORY);
+        return names;
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        super.begin(principal);
+        return new FileTransaction();
+    }
+
+    /**
+     * Forces the changed files and folders to disk and drops the journal of the transaction.
+     */
+    public void commit(ITransaction transaction) throws WebdavException {
+        LOG.fine("TransactionalFileSystemStore.commit()");
+        if (!(transaction instanceof FileTransaction)) {
+            return;
+        }
+        FileTransaction fileTransaction = (FileTransaction) transaction;
+        synchronized (fileTransaction) {
+            if (fileTransaction._directory == null) {
+                return;
+            }
+            for (Path path : fileTransaction._changed) {
+                force(path);
+            }
+            fileTransaction.close();
+            try {
+                Files.delete(fileTransaction._directory.resolve(JOURNAL_FILE));
+            } catch (IOException e) {
+                LOG.severe("TransactionalFileSystemStore.commit() cannot remove the journal");
+                throw new WebdavException(e);
+            }
+            force(_journals);
+            try {
+                deleteRecursively(fileTransaction._directory);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "TransactionalFileSystemStore cannot remove " + fileTransaction._directory, e);
+            }
+            fileTransaction.reset();
+        }
+    }
+
+    /**
+     * Undoes the changes of the transaction in reverse order.
+     */
+    public void rollback(ITransaction transaction) throws WebdavException {
+        LOG.fine("TransactionalFileSystemStore.rollback()");
+        if (!(transaction instanceof FileTransaction)) {
+            return;
+        }
+        FileTransaction fileTransaction = (FileTransaction) transaction;
+        synchronized (fileTransaction) {
+            if (fileTransaction._directory == null) {
+                return;
+            }
+            fileTransaction.close();
+            undo(fileTransaction._directory, fileTransaction._entries);
+            fileTransaction.reset();
+        }
+    }
+
+    public void createFolder(ITransaction transaction, String uri) throws WebdavException {
+        super.createFolder(transaction, uri);
+        record(transaction, CREATE, resolveFile(uri).toPath());
+    }
+
+    public void createResource(ITransaction transaction, String uri) throws WebdavException {
+        super.createResource(transaction, uri);
+        record(transaction, CREATE, resolveFile(uri).toPath());
+    }
+
+    /**
+     * Moves the current content into the journal before the new content is written.
+     */
+    public long setResourceContent(
+            ITransaction transaction,
+            String uri,
+            InputStream is,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        Path path = resolveFile(uri).toPath();
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            save(transaction, path);
+        }
+        long length = super.setResourceContent(transaction, uri, is, contentType, characterEncoding);
+        if (transaction instanceof FileTransaction) {
+            ((FileTransaction) transaction).changed(path);
+        }
+        return length;
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        Path path = resolveFile(uri).toPath();
+        if (!save(transaction, path)) {
+            super.removeObject(transaction, uri);
+        }
+    }
+
+    /**
+     * Moves the whole folder into the journal.
+     */
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        Path path = resolveFile(uri).toPath();
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            throw new ObjectNotFoundException("cannot delete non-existing folder: " + uri);
+        }
+        if (!save(transaction, path)) {
+            return super.deleteTree(transaction, uri);
+        }
+        return new HashMap<>();
+    }
+
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        super.move(transaction, sourceUri, destinationUri);
+        record(transaction, MOVE, resolveFile(sourceUri).toPath(), resolveFile(destinationUri).toPath());
+    }
+
+    /**
+     * Moves the replaced resource into the journal before the source is renamed, so a rollback restores it.
+     */
+    public void replace(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        if (Files.exists(resolveFile(destinationUri).toPath(), LinkOption.NOFOLLOW_LINKS)) {
+            removeObject(transaction, destinationUri);
+        }
+        move(transaction, sourceUri, destinationUri);
+    }
+
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        Path destination = resolveFile(destinationUri).toPath();
+        boolean existed = Files.exists(destination, LinkOption.NOFOLLOW_LINKS);
+        try {
+            return super.copy(transaction, sourceUri, destinationUri, depth);
+        } finally {
+            if (!existed && Files.exists(destination, LinkOption.NOFOLLOW_LINKS)) {
+                record(transaction, CREATE, destination);
+            }
+        }
+    }
+
+    /**
+     * Moves the file or folder into the journal of the transaction, unless it was created in the transaction or is
+     * below something that was already saved.
+     *
+     * @return whether the object was moved into the journal
+     */
+    private boolean save(ITransaction transaction, Path path) {
+        if (!(transaction instanceof FileTransaction)) {
+            return false;
+        }
+        FileTransaction fileTransaction = (FileTransaction) transaction;
+        synchronized (fileTransaction) {
+            if (fileTransaction.isCovered(path)) {
+                return false;
+            }
+            // the entry must be on disk before the object is, or a crash would lose the object
+            String[] entry = fileTransaction.append(true, SAVE, String.valueOf(fileTransaction._saves++),
+                    encode(path));
+            try {
+                Files.move(path, fileTransaction._directory.resolve(entry[1]));
+            } catch (IOException e) {
+                fileTransaction._entries.remove(entry);
+                LOG.severe("TransactionalFileSystemStore cannot save " + path);
+                throw new WebdavException(e);
+            }
+            fileTransaction._covered.add(path);
+            fileTransaction.changed(path.getParent());
+            return true;
+        }
+    }
+
+    private void record(ITransaction transaction, String operation, Path... paths) {
+        if (!(transaction instanceof FileTransaction)) {
+            return;
+        }
+        FileTransaction fileTransaction = (FileTransaction) transaction;
+        synchronized (fileTransaction) {
+            String[] fields = new String[paths.length + 1];
+            fields[0] = operation;
+            for (int i = 0; i < paths.length; i++) {
+                fields[i + 1] = encode(paths[i]);
+                fileTransaction.changed(paths[i].getParent());
+            }
+            fileTransaction.append(false, fields);
+            if (CREATE.equals(operation)) {
+                fileTransaction.changedTree(paths[0]);
+                fileTransaction._covered.add(paths[0]);
+            }
+        }
+    }
+
+    /**
+     * Rolls back the journals of transactions that were neither committed nor rolled back.
+     */
+    private void recover() throws IOException {
+        if (!Files.isDirectory(_journals)) {
+            return;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(_journals)) {
+            for (Path directory : directories) {
+                Path journal = directory.resolve(JOURNAL_FILE);
+                List<String[]> entries = new ArrayList<>();
+                if (Files.isRegularFile(journal)) {
+                    for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+                        if (!line.isEmpty()) {
+                            entries.add(line.split(" "));
+                        }
+                    }
+                }
+                LOG.warning("TransactionalFileSystemStore rolls back unfinished transaction " + directory.getFileName());
+                undo(directory, entries);
+            }
+        }
+    }
+
+    private void undo(Path directory, List<String[]> entries) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            String[] entry = entries.get(i);
+            try {
+                switch (entry[0]) {
+                    case CREATE -> deleteRecursively(decode(entry[1]));
+                    case SAVE -> {
+                        Path saved = directory.resolve(entry[1]);
+                        if (Files.exists(saved, LinkOption.NOFOLLOW_LINKS)) {
+                            Path path = decode(entry[2]);
+                            deleteRecursively(path);
+                            Files.move(saved, path);
+                        }
+                    }
+                    case MOVE -> {
+                        Path source = decode(entry[1]);
+                        Path destination = decode(entry[2]);
+                        if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS)
+                                && !Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+                            Files.move(destination, source);
+                        }
+                    }
+                    default -> LOG.warning("TransactionalFileSystemStore ignores journal entry " + entry[0]);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.SEVERE, "TransactionalFileSystemStore cannot undo " + String.join(" ", entry), e);
+            }
+        }
+        // objects that could not be restored, or that no entry refers to, are the only copy left of them
+        try {
+            Files.deleteIfExists(directory.resolve(JOURNAL_FILE));
+            List<Path> kept;
+            try (Stream<Path> left = Files.list(directory)) {
+                kept = left.toList();
+            }
+            if (kept.isEmpty()) {
+                Files.delete(directory);
+            } else {
+                LOG.severe("TransactionalFileSystemStore keeps " + kept.size() + " saved objects that were not "
+                        + "restored in " + directory);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "TransactionalFileSystemStore cannot remove journal " + directory, e);
+        }
+    }
+
+    /**
+     * Forces a file, or the entries of a folder, to disk. Folders cannot be forced on every platform.
+     */
+    private static void force(Path path) {
+        boolean folder = Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+        try (FileChannel channel = FileChannel.open(path,
+                folder ? StandardOpenOption.READ : StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (NoSuchFileException e) {
+            // removed later in the transaction
+        } catch (IOException e) {
+            if (!folder) {
+                LOG.severe("TransactionalFileSystemStore cannot force " + path);
+                throw new WebdavException(e);
+            }
+            LOG.fine("TransactionalFileSystemStore cannot force folder " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private String encode(Path path) {
+        return URLEncoder.encode(_root.relativize(path).toString().replace(File.separatorChar, '/'),
+                StandardCharsets.UTF_8);
+    }
+
+    private Path decode(String field) {
+        return _root.resolve(URLDecoder.decode(field, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The undo journal of one transaction. Its directory is only created by the first change.
+     */
+    private final class FileTransaction implements ITransaction {
+        private final List<String[]> _entries = new ArrayList<>();
+        private final Set<Path> _covered = new HashSet<>();
+        private final Set<Path> _changed = new LinkedHashSet<>();
+        private Path _directory;
+        private FileChannel _channel;
+        private Writer _journal;
+        private int _saves;
+
+        private boolean isCovered(Path path) {
+            for (Path current = path; current != null && current.startsWith(_root); current = current.getParent()) {
+                if (_covered.contains(current)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void changed(Path path) {
+            _changed.add(path);
+        }
+
+        private void changedTree(Path path) {
+            try (Stream<Path> members = Files.walk(path)) {
+                members.forEach(_changed::add);
+            } catch (IOException e) {
+                _changed.add(path);
+            }
+        }
+
+        /**
+         * Adds the entry to the journal on disk before it is added to the transaction.
+         *
+         * @param force
+         *               whether the journal is forced to disk, as it must be before anything is moved into the
+         *               journal directory
+         */
+        private String[] append(boolean force, String... fields) {
+            try {
+                if (_directory == null) {
+                    _directory = _journals.resolve(UUID.randomUUID().toString());
+                    Files.createDirectories(_directory);
+                    _channel = FileChannel.open(_directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE_NEW,
+                            StandardOpenOption.WRITE);
+                    _journal = Channels.newWriter(_channel, StandardCharsets.UTF_8);
+                    TransactionalFileSystemStore.force(_journals);
+                    TransactionalFileSystemStore.force(_directory);
+                }
+                _journal.write(String.join(" ", fields));
+                _journal.write('\n');
+                _journal.flush();
+                if (force) {
+                    _channel.force(true);
+                }
+            } catch (IOException e) {
+                LOG.severe("TransactionalFileSystemStore cannot write journal");
+                throw new WebdavException(e);
+            }
+            _entries.add(fields);
+            return fields;
+        }
+
+        private void close() {
+            try {
+                if (_journal != null) {
+                    _journal.close();
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "TransactionalFileSystemStore cannot close journal", e);
+            }
+        }
+
+        private void reset() {
+            _entries.clear();
+            _covered.clear();
+            _changed.clear();
+            _directory = null;
+            _channel = null;
+            _journal = null;
+            _saves = 0;
+        }
+    }
+}
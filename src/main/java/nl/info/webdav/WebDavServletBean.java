@@ -7,9 +7,13 @@ package nl.info.webdav;
 import static java.text.MessageFormat.format;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.security.Principal;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,6 +24,8 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import nl.info.webdav.exceptions.PathTraversalException;
 import nl.info.webdav.exceptions.UnauthenticatedException;
+import nl.info.webdav.exceptions.WebdavException;
+import nl.info.webdav.locking.ReadOnlyResourceLocks;
 import nl.info.webdav.locking.ResourceLocks;
 import nl.info.webdav.methods.DoCopy;
 import nl.info.webdav.methods.DoDelete;
@@ -34,14 +40,28 @@ import nl.info.webdav.methods.DoPropfind;
 import nl.info.webdav.methods.DoProppatch;
 import nl.info.webdav.methods.DoPut;
 import nl.info.webdav.methods.DoUnlock;
+import nl.info.webdav.methods.ResponseCompression;
 
 public class WebDavServletBean extends HttpServlet {
     private static final Logger LOG = Logger.getLogger(WebDavServletBean.class.getName());
 
-    private static final boolean READ_ONLY = false;
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PROPFIND");
     private final HashMap<String, IMethodExecutor> _methodMap = new HashMap<>();
     protected ResourceLocks _resLocks;
     protected IWebdavStore _store;
+    // around _store when requests remember their lookups
+    private MemoizingStore _memoizingStore;
+    private int _copyParallelism = 1;
+    private int _deleteParallelism = 1;
+    private int _parallelPoolSize = Runtime.getRuntime().availableProcessors();
+    private ExecutorService _parallelExecutor;
+    private boolean _readOnly;
+    private boolean _memoize;
+    private ResponseCompression _compression;
+    private boolean _asyncGet;
+    private long _asyncTimeout = DoGet.DEFAULT_ASYNC_TIMEOUT;
+    private AsyncUploadSpooler _uploadSpooler;
+    private BandwidthShaper _bandwidthShaper;
 
     public WebDavServletBean() {
         _resLocks = new ResourceLocks();
@@ -54,9 +74,18 @@ public class WebDavServletBean extends HttpServlet {
             int noContentLengthHeaders,
             boolean lazyFolderCreationOnPut
     ) {
+        if (_readOnly) {
+            store = new ReadOnlyStore(store);
+            _resLocks = new ReadOnlyResourceLocks();
+        }
         _store = store;
+        if (_memoize) {
+            // every request looks up the same paths several times
+            _memoizingStore = new MemoizingStore(store);
+            store = _memoizingStore;
+        }
         IMimeTyper mimeTyper = (transaction, path) -> {
-            String retVal = _store.getStoredObject(transaction, path).getMimeType();
+            String retVal = getRequestStore().getStoredObject(transaction, path).getMimeType();
             if (retVal == null) {
                 retVal = getServletContext().getMimeType(path);
             }
@@ -64,27 +93,188 @@ public class WebDavServletBean extends HttpServlet {
         };
 
         register("GET", new DoGet(store, dftIndexFile, insteadOf404, _resLocks,
-                mimeTyper, noContentLengthHeaders));
+                mimeTyper, noContentLengthHeaders, _compression, _asyncGet && _bandwidthShaper == null, _asyncTimeout));
         register("HEAD", new DoHead(store, dftIndexFile, insteadOf404,
-                _resLocks, mimeTyper, noContentLengthHeaders));
+                _resLocks, mimeTyper, noContentLengthHeaders, _compression));
+        if (_copyParallelism > 1 || _deleteParallelism > 1) {
+            _parallelExecutor = new ForkJoinPool(_parallelPoolSize);
+        }
         DoDelete doDelete = (DoDelete) register("DELETE", new DoDelete(store,
-                _resLocks, READ_ONLY));
+                _resLocks, _readOnly, _parallelExecutor, _deleteParallelism));
         DoCopy doCopy = (DoCopy) register("COPY", new DoCopy(store, _resLocks,
-                doDelete, READ_ONLY));
-        register("LOCK", new DoLock(store, _resLocks, READ_ONLY));
-        register("UNLOCK", new DoUnlock(store, _resLocks, READ_ONLY));
-        register("MOVE", new DoMove(_resLocks, doDelete, doCopy, READ_ONLY));
-        register("MKCOL", new DoMkcol(store, _resLocks, READ_ONLY));
+                doDelete, _readOnly, _parallelExecutor, _copyParallelism));
+        register("LOCK", new DoLock(store, _resLocks, _readOnly));
+        register("UNLOCK", new DoUnlock(store, _resLocks, _readOnly));
+        register("MOVE", new DoMove(store, _resLocks, doDelete, doCopy, _readOnly));
+        register("MKCOL", new DoMkcol(store, _resLocks, _readOnly));
         register("OPTIONS", new DoOptions(store, _resLocks));
-        register("PUT", new DoPut(store, _resLocks, READ_ONLY,
+        register("PUT", new DoPut(store, _resLocks, _readOnly,
                 lazyFolderCreationOnPut));
         register("PROPFIND", new DoPropfind(store, _resLocks, mimeTyper));
-        register("PROPPATCH", new DoProppatch(store, _resLocks, READ_ONLY));
-        register("*NO*IMPL*", new DoNotImplemented(READ_ONLY));
+        register("PROPPATCH", new DoProppatch(store, _resLocks, _readOnly));
+        register("*NO*IMPL*", new DoNotImplemented(_readOnly));
+    }
+
+    /**
+     * Serves the store as a tree that does not change: every method other than GET, HEAD, OPTIONS and PROPFIND is
+     * refused before the store is called, reads take no locks, and metadata and listings are cached until
+     * {@link #reload()}. Must be called before {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param readOnly whether to serve the store read-only
+     */
+    public void setReadOnly(boolean readOnly) {
+        _readOnly = readOnly;
+    }
+
+    /**
+     * Remembers the metadata looked up while a request is handled, so a path the request looks up several times is
+     * only looked up once in the store. The methods are then given the transactions of a {@link MemoizingStore}
+     * around the store, so methods registered by a subclass must use the store passed to them rather than
+     * {@link #_store}. By default every lookup goes to the store. Must be called before
+     * {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param memoize whether to remember metadata within a request
+     */
+    public void setMemoize(boolean memoize) {
+        _memoize = memoize;
+    }
+
+    /**
+     * Compresses GET responses of compressible content for clients that accept gzip or deflate. By default content
+     * is sent as the store returns it. Must be called before {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param compression which content to compress, or null to compress nothing
+     */
+    public void setCompression(ResponseCompression compression) {
+        _compression = compression;
+    }
+
+    /**
+     * Sends the content of GET responses without holding a request thread while the client reads it, when the
+     * container supports asynchronous requests for this servlet. Compressed responses and ranges are still sent on the
+     * request thread. Requires a store whose content streams stay readable after the transaction has been committed.
+     * Must be called before {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param asyncGet whether to send GET content asynchronously
+     */
+    public void setAsyncGet(boolean asyncGet) {
+        _asyncGet = asyncGet;
+    }
+
+    /**
+     * Limits how long the content of a GET response is sent asynchronously; a download still running then is ended,
+     * so a client that stops reading without closing its connection does not keep the content open. Defaults to
+     * {@link DoGet#DEFAULT_ASYNC_TIMEOUT}. Must be called before
+     * {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param asyncTimeout the longest time to send content asynchronously, in milliseconds
+     */
+    public void setAsyncTimeout(long asyncTimeout) {
+        _asyncTimeout = asyncTimeout;
+    }
+
+    /**
+     * Receives the bodies of PUT requests without holding a request thread while the client sends them, when the
+     * container supports asynchronous requests for this servlet. Each body is spooled to a file in the given
+     * directory, and the request is handled once the whole body has arrived.
+     *
+     * @param spoolDirectory the directory for the bodies being received, or null to read them on the request thread
+     */
+    public void setAsyncPut(Path spoolDirectory) {
+        setAsyncPut(spoolDirectory, -1);
+    }
+
+    /**
+     * Like {@link #setAsyncPut(Path)}, refusing bodies longer than the given maximum with 413 instead of spooling them.
+     * The authentication, the locks, the conditional headers and the quota are checked before a body is received,
+     * and a body is refused with 507 as soon as it is longer than the store or the spool directory can take.
+     *
+     * @param spoolDirectory the directory for the bodies being received, or null to read them on the request thread
+     * @param maxLength      the most bytes a body may have, or -1 for no maximum
+     */
+    public void setAsyncPut(Path spoolDirectory, long maxLength) {
+        setAsyncPut(spoolDirectory, maxLength, AsyncUploadSpooler.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Like {@link #setAsyncPut(Path, long)}, refusing bodies that have not arrived completely within the given time
+     * with 408, so a client that sends slowly or stops sending without closing its connection does not keep its spool
+     * file.
+     *
+     * @param spoolDirectory the directory for the bodies being received, or null to read them on the request thread
+     * @param maxLength      the most bytes a body may have, or -1 for no maximum
+     * @param timeout        the longest time a body may take to arrive, in milliseconds
+     */
+    public void setAsyncPut(Path spoolDirectory, long maxLength, long timeout) {
+        _uploadSpooler = spoolDirectory == null ? null : new AsyncUploadSpooler(spoolDirectory, maxLength, timeout);
+    }
+
+    /**
+     * Limits the bandwidth of GET and PUT content. Shaped content is sent and received on the request thread, as
+     * shaping waits between chunks, so {@link #setAsyncGet(boolean)} and {@link #setAsyncPut(Path)} do not apply
+     * while shaping. By default the bandwidth is not limited and nothing is shaped or counted. Must be called before
+     * {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param bandwidthShaper the limits, or null for no limits
+     */
+    public void setBandwidthShaper(BandwidthShaper bandwidthShaper) {
+        _bandwidthShaper = bandwidthShaper;
+    }
+
+    /**
+     * @return the bandwidth limits with their counters, or null if the bandwidth is not limited
+     */
+    public BandwidthShaper getBandwidthShaper() {
+        return _bandwidthShaper;
+    }
+
+    /**
+     * Discards the metadata and listings cached in read-only mode, so changes made to the store become visible.
+     */
+    public void reload() {
+        if (_store instanceof ReadOnlyStore) {
+            ((ReadOnlyStore) _store).reload();
+        }
+    }
+
+    /**
+     * Sets the maximum number of resources a single COPY request copies at the same time. The default of
+     * <code>1</code> copies on the request thread. A higher value requires a store whose transactions may be used from
+     * several threads at once. Must be called before {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param copyParallelism the parallelism per COPY request
+     */
+    public void setCopyParallelism(int copyParallelism) {
+        _copyParallelism = copyParallelism;
+    }
+
+    /**
+     * Sets the maximum number of members a single DELETE request removes at the same time when the store cannot remove
+     * a folder tree in one operation. The default of <code>1</code> removes them on the request thread. A higher value
+     * requires a store whose transactions may be used from several threads at once. Must be called before
+     * {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param deleteParallelism the parallelism per DELETE request
+     */
+    public void setDeleteParallelism(int deleteParallelism) {
+        _deleteParallelism = deleteParallelism;
+    }
+
+    /**
+     * Sets the number of threads shared by all requests that copy or delete in parallel, which caps the parallel work
+     * of the whole servlet. Defaults to the number of available processors. Must be called before
+     * {@link #init(IWebdavStore, String, String, int, boolean)}.
+     *
+     * @param parallelPoolSize the number of threads
+     */
+    public void setParallelPoolSize(int parallelPoolSize) {
+        _parallelPoolSize = parallelPoolSize;
     }
 
     @Override
     public void destroy() {
+        if (_parallelExecutor != null)
+            _parallelExecutor.shutdown();
         if (_store != null)
             _store.destroy();
         super.destroy();
@@ -101,17 +291,89 @@ public class WebDavServletBean extends HttpServlet {
     @Override
     protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String methodName = req.getMethod();
-        ITransaction transaction = null;
-        boolean needRollback = false;
 
         if (LOG.isLoggable(Level.FINE))
             debugRequest(methodName, req);
 
+        if (_readOnly && !READ_METHODS.contains(methodName)) {
+            resp.sendError(WebdavStatus.SC_FORBIDDEN);
+            return;
+        }
+
+        if (_bandwidthShaper != null && ("GET".equals(methodName) || "PUT".equals(methodName))) {
+            BandwidthShaper.Transfer transfer = _bandwidthShaper.start(getUserPrincipal(req));
+            try {
+                if ("GET".equals(methodName)) {
+                    handle(methodName, req, transfer.shape(resp));
+                } else {
+                    handle(methodName, transfer.shape(req), resp);
+                }
+            } finally {
+                transfer.end();
+            }
+            return;
+        }
+
+        if (_uploadSpooler != null && "PUT".equals(methodName) && req.isAsyncSupported()
+                && req.getContentLengthLong() != 0) {
+            receiveUpload(methodName, req, resp);
+            return;
+        }
+
+        handle(methodName, req, resp);
+    }
+
+    /**
+     * Receives the body of a PUT asynchronously once the PUT has passed what can be checked without its body, so a
+     * PUT that is not authenticated, is locked, fails its conditional headers or does not fit the quota is answered
+     * without spooling its body first.
+     */
+    private void receiveUpload(String methodName, HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        IWebdavStore store = getRequestStore();
+        long available = -1;
+        ITransaction transaction = null;
+        try {
+            transaction = store.begin(getUserPrincipal(req));
+            store.checkAuthentication(transaction);
+            IMethodExecutor methodExecutor = _methodMap.get(methodName);
+            if (methodExecutor instanceof DoPut) {
+                DoPut doPut = (DoPut) methodExecutor;
+                int status = doPut.checkBeforeBody(transaction, req);
+                if (status != 0) {
+                    resp.sendError(status);
+                    return;
+                }
+                available = doPut.getAvailableBytes(transaction, req);
+            }
+        } catch (UnauthenticatedException exception) {
+            resp.sendError(WebdavStatus.SC_FORBIDDEN);
+            return;
+        } catch (PathTraversalException exception) {
+            resp.sendError(WebdavStatus.SC_BAD_REQUEST);
+            return;
+        } catch (WebdavException exception) {
+            LOG.log(Level.SEVERE, "Error occurred during checking of WebDAV upload.", exception);
+            throw new ServletException(exception);
+        } finally {
+            if (transaction != null)
+                store.rollback(transaction);
+        }
+        _uploadSpooler.receive(req, resp, available,
+                (spooledReq, spooledResp) -> handle(methodName, spooledReq, spooledResp));
+    }
+
+    private void handle(String methodName, HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        IWebdavStore store = getRequestStore();
+        ITransaction transaction = null;
+        boolean needRollback = false;
+
         try {
             Principal userPrincipal = getUserPrincipal(req);
-            transaction = _store.begin(userPrincipal);
+            transaction = store.begin(userPrincipal);
             needRollback = true;
-            _store.checkAuthentication(transaction);
+            store.checkAuthentication(transaction);
             resp.setStatus(WebdavStatus.SC_OK);
 
             try {
@@ -122,7 +384,7 @@ public class WebDavServletBean extends HttpServlet {
                             .get("*NO*IMPL*");
                 }
                 methodExecutor.execute(transaction, req, resp);
-                _store.commit(transaction);
+                store.commit(transaction);
 
                 // Clear input stream if available otherwise later access
                 // include current input. This occurs if the client
@@ -140,7 +402,7 @@ public class WebDavServletBean extends HttpServlet {
                 LOG.log(Level.SEVERE, "Error occurred during handling of WebDAV method. Rolling back transaction.", ioException);
                 if (!resp.isCommitted())
                     resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
-                _store.rollback(transaction);
+                store.rollback(transaction);
                 throw new ServletException(ioException);
             }
         } catch (UnauthenticatedException exception) {
@@ -154,10 +416,17 @@ public class WebDavServletBean extends HttpServlet {
             throw new ServletException(exception);
         } finally {
             if (needRollback)
-                _store.rollback(transaction);
+                store.rollback(transaction);
         }
     }
 
+    /**
+     * @return the store requests are handled with: the store, or the {@link MemoizingStore} around it
+     */
+    private IWebdavStore getRequestStore() {
+        return _memoizingStore == null ? _store : _memoizingStore;
+    }
+
     /**
      * Method that permit to customize the way
      * user information are extracted from the request, default use JAAS
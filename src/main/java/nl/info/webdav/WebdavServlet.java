@@ -6,13 +6,20 @@
 package nl.info.webdav;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 
 import nl.info.webdav.exceptions.WebdavException;
+import nl.info.webdav.methods.ResponseCompression;
 
 /**
  * Servlet which provides support for WebDAV level 2.
@@ -34,9 +41,17 @@ public class WebdavServlet extends WebDavServletBean {
             clazzName = LocalFileSystemStore.class.getName();
         }
 
-        File root = getFileRoot();
+        File root = getInitParameter(ROOT_PATH_PARAMETER) == null ? null : getFileRoot();
 
-        IWebdavStore webdavStore = constructStore(clazzName, root);
+        String stagingPath = getInitParameter("staging-path");
+        IWebdavStore webdavStore = stagingPath != null && clazzName.equals(WriteBehindStore.class.getName())
+                ? constructWriteBehindStore(getFileRoot(), new File(stagingPath))
+                : constructStore(clazzName, root);
+
+        String quota = getInitParameter("quota-bytes");
+        if (quota != null) {
+            webdavStore = new QuotaStore(webdavStore, Long.parseLong(quota));
+        }
 
         boolean lazyFolderCreationOnPut = getInitParameter("lazyFolderCreationOnPut") != null && getInitParameter("lazyFolderCreationOnPut")
                 .equals("1");
@@ -46,6 +61,44 @@ public class WebdavServlet extends WebDavServletBean {
 
         int noContentLengthHeader = getIntInitParameter("no-content-length-headers");
 
+        int copyParallelism = getIntInitParameter("copy-parallelism");
+        if (copyParallelism > 1) {
+            setCopyParallelism(copyParallelism);
+        }
+        int deleteParallelism = getIntInitParameter("delete-parallelism");
+        if (deleteParallelism > 1) {
+            setDeleteParallelism(deleteParallelism);
+        }
+        setReadOnly("1".equals(getInitParameter("read-only")));
+        setMemoize("1".equals(getInitParameter("memoize")));
+        setAsyncGet("1".equals(getInitParameter("async-get")));
+        long asyncTimeout = getLongInitParameter("async-timeout");
+        if (asyncTimeout > 0) {
+            setAsyncTimeout(asyncTimeout * 1000);
+        }
+        if ("1".equals(getInitParameter("async-put"))) {
+            long asyncPutTimeout = getLongInitParameter("async-put-timeout");
+            setAsyncPut(getSpoolDirectory(), getLongInitParameter("async-put-max-length"),
+                    asyncPutTimeout > 0 ? asyncPutTimeout * 1000 : AsyncUploadSpooler.DEFAULT_TIMEOUT);
+        }
+        long bandwidthLimit = getLongInitParameter("bandwidth-limit");
+        long bandwidthLimitPerUser = getLongInitParameter("bandwidth-limit-per-user");
+        if (bandwidthLimit > 0 || bandwidthLimitPerUser > 0) {
+            setBandwidthShaper(new BandwidthShaper(bandwidthLimit, bandwidthLimitPerUser,
+                    getBandwidthWeights(getInitParameter("bandwidth-weights"))));
+        }
+        if ("1".equals(getInitParameter("compress"))) {
+            String mimeTypes = getInitParameter("compress-mime-types");
+            int minLength = getIntInitParameter("compress-min-length");
+            setCompression(new ResponseCompression(
+                    mimeTypes == null ? ResponseCompression.DEFAULT_MIME_TYPES : Arrays.asList(mimeTypes.split(",")),
+                    minLength < 0 ? ResponseCompression.DEFAULT_MIN_LENGTH : minLength));
+        }
+        int parallelPoolSize = getIntInitParameter("parallel-pool-size");
+        if (parallelPoolSize > 0) {
+            setParallelPoolSize(parallelPoolSize);
+        }
+
         super.init(webdavStore, dftIndexFile, insteadOf404,
                 noContentLengthHeader, lazyFolderCreationOnPut);
     }
@@ -55,17 +108,48 @@ public class WebdavServlet extends WebDavServletBean {
                 .parseInt(getInitParameter(key));
     }
 
+    private long getLongInitParameter(String key) {
+        return getInitParameter(key) == null ? -1 : Long.parseLong(getInitParameter(key));
+    }
+
+    private static Map<String, Integer> getBandwidthWeights(String weights) {
+        Map<String, Integer> result = new HashMap<>();
+        if (weights != null) {
+            for (String weight : weights.split(",")) {
+                int colon = weight.lastIndexOf(':');
+                if (colon > 0) {
+                    result.put(weight.substring(0, colon).trim(),
+                            Integer.parseInt(weight.substring(colon + 1).trim()));
+                }
+            }
+        }
+        return result;
+    }
+
     protected IWebdavStore constructStore(String clazzName, File root) {
         IWebdavStore webdavStore;
         try {
             Class<?> clazz = WebdavServlet.class.getClassLoader().loadClass(
                     clazzName);
 
-            Constructor<?> ctor = clazz
-                    .getConstructor(File.class);
+            Constructor<?> ctor;
+            try {
+                ctor = clazz.getConstructor(File.class);
+            } catch (NoSuchMethodException e) {
+                // stores that do not keep their content in a directory, like MemoryStore
+                ctor = null;
+            }
 
-            webdavStore = (IWebdavStore) ctor
-                    .newInstance(new Object[]{root});
+            if (ctor == null) {
+                webdavStore = (IWebdavStore) clazz.getConstructor().newInstance();
+            } else if (root == null) {
+                throw new WebdavException("missing parameter: " + ROOT_PATH_PARAMETER);
+            } else {
+                webdavStore = (IWebdavStore) ctor
+                        .newInstance(new Object[]{root});
+            }
+        } catch (WebdavException e) {
+            throw e;
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "Failed to construct store", e);
             throw new RuntimeException("Failed to construct store", e);
@@ -73,6 +157,20 @@ public class WebdavServlet extends WebDavServletBean {
         return webdavStore;
     }
 
+    private static IWebdavStore constructWriteBehindStore(File root, File staging) {
+        try {
+            return new WriteBehindStore(root, staging);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Failed to construct store", e);
+            throw new RuntimeException("Failed to construct store", e);
+        }
+    }
+
+    private Path getSpoolDirectory() {
+        Object tempDir = getServletContext().getAttribute(ServletContext.TEMPDIR);
+        return tempDir instanceof File ? ((File) tempDir).toPath() : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
     private File getFileRoot() {
         String rootPath = getInitParameter(ROOT_PATH_PARAMETER);
         if (rootPath == null) {
@@ -52,6 +52,12 @@ public class WebdavStatus {
      */
     public static final int SC_NO_CONTENT = HttpServletResponse.SC_NO_CONTENT;
 
+    /**
+     * Status code (206) indicating that the server is sending only the ranges
+     * of the content the request asked for.
+     */
+    public static final int SC_PARTIAL_CONTENT = HttpServletResponse.SC_PARTIAL_CONTENT;
+
     /**
      * Status code (301) indicating that the resource has permanently moved to a
      * new location, and that future references should use a new URI with their
@@ -134,6 +140,12 @@ public class WebdavStatus {
      */
     public static final int SC_METHOD_NOT_ALLOWED = 405;
 
+    /**
+     * Status code (408) indicating the client did not send the whole request
+     * within the time the server was prepared to wait.
+     */
+    public static final int SC_REQUEST_TIMEOUT = 408;
+
     /**
      * Status code (409) indicating that the request could not be completed due
      * to a conflict with the current state of the resource.
@@ -154,6 +166,12 @@ public class WebdavStatus {
      */
     public static final int SC_REQUEST_TOO_LONG = 413;
 
+    /**
+     * Status code (416) indicating that none of the ranges the request asked
+     * for overlap the content.
+     */
+    public static final int SC_REQUESTED_RANGE_NOT_SATISFIABLE = HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+
     /**
      * Status code (415) indicating the server is refusing to service the
      * request because the entity of the request is in a format not supported by
@@ -205,12 +223,20 @@ public class WebdavStatus {
      */
     public static final int SC_LOCKED = 423;
 
+    /**
+     * Status code (507) indicating the method could not be performed because
+     * the server is unable to store the representation, for example because a
+     * quota would be exceeded (RFC 4918).
+     */
+    public static final int SC_INSUFFICIENT_STORAGE = 507;
+
     static {
         // HTTP 1.0 Status Code
         addStatusCodeMap(SC_OK, "OK");
         addStatusCodeMap(SC_CREATED, "Created");
         addStatusCodeMap(SC_ACCEPTED, "Accepted");
         addStatusCodeMap(SC_NO_CONTENT, "No Content");
+        addStatusCodeMap(SC_PARTIAL_CONTENT, "Partial Content");
         addStatusCodeMap(SC_MOVED_PERMANENTLY, "Moved Permanently");
         addStatusCodeMap(SC_MOVED_TEMPORARILY, "Moved Temporarily");
         addStatusCodeMap(SC_NOT_MODIFIED, "Not Modified");
@@ -224,9 +250,11 @@ public class WebdavStatus {
         addStatusCodeMap(SC_SERVICE_UNAVAILABLE, "Service Unavailable");
         addStatusCodeMap(SC_CONTINUE, "Continue");
         addStatusCodeMap(SC_METHOD_NOT_ALLOWED, "Method Not Allowed");
+        addStatusCodeMap(SC_REQUEST_TIMEOUT, "Request Timeout");
         addStatusCodeMap(SC_CONFLICT, "Conflict");
         addStatusCodeMap(SC_PRECONDITION_FAILED, "Precondition Failed");
         addStatusCodeMap(SC_REQUEST_TOO_LONG, "Request Too Long");
+        addStatusCodeMap(SC_REQUESTED_RANGE_NOT_SATISFIABLE, "Range Not Satisfiable");
         addStatusCodeMap(SC_UNSUPPORTED_MEDIA_TYPE, "Unsupported Media Type");
         // WebDav Status Codes
         addStatusCodeMap(SC_MULTI_STATUS, "Multi-Status");
@@ -235,6 +263,7 @@ public class WebdavStatus {
                 "Insufficient Space On Resource");
         addStatusCodeMap(SC_METHOD_FAILURE, "Method Failure");
         addStatusCodeMap(SC_LOCKED, "Locked");
+        addStatusCodeMap(SC_INSUFFICIENT_STORAGE, "Insufficient Storage");
     }
 
     /**
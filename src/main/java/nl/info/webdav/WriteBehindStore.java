@@ -0,0 +1,670 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+
+package nl.info.webdav;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+/**
+ * Store that acknowledges uploads as soon as their content is spooled to a local staging directory and writes the
+ * content to another store in the background.
+ * <p>
+ * The content is written by a fixed number of worker threads. Writes to the same resource are applied in the order
+ * they were made; a write that has been superseded before it was started is skipped. Until a write has been applied,
+ * the content, length, modification date and content type of the resource are taken from the staging directory, so
+ * GET and PROPFIND see the latest upload. When the staged content reaches the spool capacity, new uploads wait
+ * before their content is read until enough has been written. DELETE, MOVE and COPY wait for the pending writes of
+ * the resources they affect, and {@link #destroy()} waits for all of them.
+ * <p>
+ * The background writes use their own transaction on the other store. A write that fails is retried with an
+ * exponential backoff while the content stays staged, so it is still served; once it has failed
+ * <code>maxAttempts</code> times it is given up, the content is left in the staging directory and
+ * {@link #flush()}, {@link #destroy()} and the DELETE, MOVE and COPY of the resource fail until the resource is
+ * written again. DELETE of such a resource discards its staged content.
+ * <p>
+ * Every staged file is flushed to disk together with a small manifest next to it that records the resource it
+ * belongs to. When the store is constructed on a staging directory that still holds content, for example after the
+ * server stopped abruptly, the latest content of every resource is written to the other store again, and files that
+ * were being spooled when it stopped are removed.
+ * <p>
+ * The content is staged outside the transaction of the request: it is still written to the other store when that
+ * transaction is rolled back.
+ */
+public class WriteBehindStore implements IWebdavStore {
+    private static final Logger LOG = Logger.getLogger(WriteBehindStore.class.getName());
+    private static final long DEFAULT_SPOOL_CAPACITY = 256L * 1024 * 1024;
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final String SPOOL_SUFFIX = ".tmp";
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    private final IWebdavStore _store;
+    private final File _staging;
+    private final long _spoolCapacity;
+    private final ExecutorService _workers;
+    private final int _maxAttempts;
+    private final long _backoffMillis;
+    private final Map<String, Staged> _staged = new HashMap<>();
+    private final Map<String, CompletableFuture<Void>> _queues = new HashMap<>();
+    private long _spooledBytes;
+    private long _sequence;
+
+    /**
+     * Writes behind to a {@link LocalFileSystemStore} on <code>root</code>, staging in the directory
+     * <code>root.staging</code> next to it.
+     *
+     * @param root
+     *             the root directory of the store that is written to
+     * @throws IOException
+     *                     if the root cannot be resolved or the staging directory cannot be created
+     */
+    public WriteBehindStore(File root) throws IOException {
+        this(root, defaultStaging(root));
+    }
+
+    /**
+     * Writes behind to a {@link LocalFileSystemStore} on <code>root</code>.
+     *
+     * @param root
+     *                the root directory of the store that is written to
+     * @param staging
+     *                the directory the content is spooled to; it should not be below <code>root</code>
+     * @throws IOException
+     *                     if the root cannot be resolved or the staging directory cannot be created
+     */
+    public WriteBehindStore(File root, File staging) throws IOException {
+        this(new LocalFileSystemStore(root), Files.createDirectories(staging.toPath()).toFile(),
+                DEFAULT_SPOOL_CAPACITY, DEFAULT_WORKERS);
+    }
+
+    /**
+     * @param store
+     *                      the store that is written to
+     * @param staging
+     *                      the directory the content is spooled to; it should not be below the root of
+     *                      <code>store</code>
+     * @param spoolCapacity
+     *                      the number of bytes that may be staged before new uploads wait
+     * @param workers
+     *                      the number of resources that are written to <code>store</code> at the same time
+     */
+    public WriteBehindStore(IWebdavStore store, File staging, long spoolCapacity, int workers) {
+        this(store, staging, spoolCapacity, workers, DEFAULT_MAX_ATTEMPTS, DEFAULT_BACKOFF_MILLIS);
+    }
+
+    /**
+     * @param store
+     *                      the store that is written to
+     * @param staging
+     *                      the directory the content is spooled to; it should not be below the root of
+     *                      <code>store</code>, and content staged in it before is written to <code>store</code>
+     * @param spoolCapacity
+     *                      the number of bytes that may be staged before new uploads wait
+     * @param workers
+     *                      the number of resources that are written to <code>store</code> at the same time
+     * @param maxAttempts
+     *                      the number of times a write is tried before it is given up
+     * @param backoffMillis
+     *                      the time before the first retry of a failed write; it doubles for every next retry, up
+     *                      to a minute
+     */
+    public WriteBehindStore(
+            IWebdavStore store,
+            File staging,
+            long spoolCapacity,
+            int workers,
+            int maxAttempts,
+            long backoffMillis
+    ) {
+        _store = store;
+        _staging = staging;
+        _spoolCapacity = spoolCapacity;
+        _maxAttempts = Math.max(1, maxAttempts);
+        _backoffMillis = backoffMillis;
+        _workers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "WriteBehindStore-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replay();
+    }
+
+    private static File defaultStaging(File root) throws IOException {
+        File parent = root.getAbsoluteFile().getParentFile();
+        if (parent == null) {
+            throw new IOException("no directory next to " + root + " to stage content in");
+        }
+        return new File(parent, root.getName() + ".staging");
+    }
+
+    /**
+     * Writes all staged content before destroying the other store.
+     *
+     * @throws WebdavException
+     *                         if staged content could not be written; the other store is destroyed nonetheless
+     */
+    public void destroy() {
+        LOG.fine("WriteBehindStore.destroy()");
+        try {
+            flush();
+        } finally {
+            _workers.shutdown();
+            try {
+                if (!_workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOG.severe("WriteBehindStore.destroy() timed out writing staged content");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            _store.destroy();
+        }
+    }
+
+    public ITransaction begin(Principal principal) throws WebdavException {
+        return _store.begin(principal);
+    }
+
+    public void checkAuthentication(ITransaction transaction) throws SecurityException {
+        _store.checkAuthentication(transaction);
+    }
+
+    public void commit(ITransaction transaction) throws WebdavException {
+        _store.commit(transaction);
+    }
+
+    /**
+     * Rolls back the other store; content staged in the transaction is still written.
+     */
+    public void rollback(ITransaction transaction) throws WebdavException {
+        _store.rollback(transaction);
+    }
+
+    public void createFolder(ITransaction transaction, String folderUri) throws WebdavException {
+        _store.createFolder(transaction, folderUri);
+    }
+
+    public void createResource(ITransaction transaction, String resourceUri) throws WebdavException {
+        _store.createResource(transaction, resourceUri);
+    }
+
+    /**
+     * Spools the content to the staging directory and queues the write to the other store. Waits first while the
+     * spool is full.
+     */
+    public long setResourceContent(
+            ITransaction transaction,
+            String resourceUri,
+            InputStream content,
+            String contentType,
+            String characterEncoding
+    ) throws WebdavException {
+        LOG.fine("WriteBehindStore.setResourceContent(" + resourceUri + ")");
+        awaitRoom();
+        Staged staged = spool(resourceUri, content, contentType, characterEncoding);
+        queue(resourceUri, staged);
+        return staged.length;
+    }
+
+    public String[] getChildrenNames(ITransaction transaction, String folderUri) throws WebdavException {
+        return _store.getChildrenNames(transaction, folderUri);
+    }
+
+    public void removeObject(ITransaction transaction, String uri) throws WebdavException {
+        discardFailed(uri);
+        settle(uri);
+        _store.removeObject(transaction, uri);
+    }
+
+    public void move(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+        settle(sourceUri);
+        settle(destinationUri);
+        _store.move(transaction, sourceUri, destinationUri);
+    }
+
+    public Map<String, WebdavException> copy(
+            ITransaction transaction,
+            String sourceUri,
+            String destinationUri,
+            int depth
+    ) throws WebdavException {
+        settle(sourceUri);
+        settle(destinationUri);
+        return _store.copy(transaction, sourceUri, destinationUri, depth);
+    }
+
+    public Map<String, WebdavException> deleteTree(ITransaction transaction, String uri) throws WebdavException {
+        discardFailed(uri);
+        settle(uri);
+        return _store.deleteTree(transaction, uri);
+    }
+
+    public boolean supportsDeleteTree() {
+        return _store.supportsDeleteTree();
+    }
+
+    /**
+     * Serves staged content from the staging directory.
+     */
+    public InputStream getResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        synchronized (this) {
+            Staged staged = _staged.get(resourceUri);
+            if (staged != null) {
+                try {
+                    return new FileInputStream(staged.file);
+                } catch (FileNotFoundException e) {
+                    throw new WebdavException(e);
+                }
+            }
+        }
+        return _store.getResourceContent(transaction, resourceUri);
+    }
+
+    /**
+     * Returns the encoded content from the other store; staged content has no content coding.
+     */
+    public InputStream getEncodedResourceContent(ITransaction transaction, String resourceUri) throws WebdavException {
+        synchronized (this) {
+            if (_staged.containsKey(resourceUri)) {
+                return null;
+            }
+        }
+        return _store.getEncodedResourceContent(transaction, resourceUri);
+    }
+
+    public long getResourceLength(ITransaction transaction, String resourceUri) throws WebdavException {
+        synchronized (this) {
+            Staged staged = _staged.get(resourceUri);
+            if (staged != null) {
+                return staged.length;
+            }
+        }
+        return _store.getResourceLength(transaction, resourceUri);
+    }
+
+    /**
+     * Returns the metadata from the other store, with the length, modification date and content type of staged
+     * content.
+     */
+    public StoredObject getStoredObject(ITransaction transaction, String uri) {
+        StoredObject so = _store.getStoredObject(transaction, uri);
+        if (so != null && !so.isFolder()) {
+            synchronized (this) {
+                Staged staged = _staged.get(uri);
+                if (staged != null) {
+                    so.setResourceLength(staged.length);
+                    so.setLastModified(new Date(staged.lastModified));
+                    so.setMimeType(staged.contentType);
+                    so.setContentEncoding(null);
+                    so.setContentDigest(null);
+                }
+            }
+        }
+        return so;
+    }
+
+    public long getQuotaUsedBytes(ITransaction transaction, String folderUri) {
+        return _store.getQuotaUsedBytes(transaction, folderUri);
+    }
+
+    /**
+     * Returns the bytes available in the other store, less the content that is staged but not written yet.
+     */
+    public long getQuotaAvailableBytes(ITransaction transaction, String folderUri) {
+        long available = _store.getQuotaAvailableBytes(transaction, folderUri);
+        if (available < 0) {
+            return available;
+        }
+        synchronized (this) {
+            return Math.max(0, available - _spooledBytes);
+        }
+    }
+
+    /**
+     * Waits until all content staged so far has been written to the other store.
+     *
+     * @throws WebdavException
+     *                         if staged content could not be written
+     */
+    public void flush() {
+        List<CompletableFuture<Void>> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(_queues.values());
+        }
+        await(pending);
+    }
+
+    private synchronized void awaitRoom() {
+        while (_spooledBytes > 0 && _spooledBytes >= _spoolCapacity) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebdavException(e);
+            }
+        }
+    }
+
+    /**
+     * Spools the content to a new file and records it in a manifest next to it, both flushed to disk.
+     */
+    private Staged spool(String uri, InputStream content, String contentType, String characterEncoding) {
+        Path file = null;
+        try {
+            file = Files.createTempFile(_staging.toPath(), "spool", SPOOL_SUFFIX);
+            long length = Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            long sequence;
+            synchronized (this) {
+                sequence = _sequence++;
+            }
+            Staged staged = new Staged(uri, file.toFile(), manifestOf(file.toFile()), sequence, length, contentType,
+                    characterEncoding, System.currentTimeMillis());
+            writeManifest(staged);
+            return staged;
+        } catch (IOException e) {
+            if (file != null) {
+                file.toFile().delete();
+            }
+            throw new WebdavException(e);
+        }
+    }
+
+    private static void writeManifest(Staged staged) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty("uri", staged.uri);
+        manifest.setProperty("sequence", Long.toString(staged.sequence));
+        manifest.setProperty("lastModified", Long.toString(staged.lastModified));
+        if (staged.contentType != null) {
+            manifest.setProperty("contentType", staged.contentType);
+        }
+        if (staged.characterEncoding != null) {
+            manifest.setProperty("characterEncoding", staged.characterEncoding);
+        }
+        Path temporary = new File(staged.manifest.getPath() + SPOOL_SUFFIX).toPath();
+        try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+            manifest.store(out, null);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, staged.manifest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Queues the content that a previous run staged but did not write, keeping only the latest content of every
+     * resource, and removes the files that were still being spooled.
+     */
+    private void replay() {
+        File[] files = _staging.listFiles();
+        if (files == null) {
+            throw new WebdavException("cannot list staging directory " + _staging);
+        }
+        Map<String, Staged> latest = new HashMap<>();
+        for (File file : files) {
+            if (!file.getName().endsWith(MANIFEST_SUFFIX)) {
+                continue;
+            }
+            Staged staged = readManifest(file);
+            if (staged == null) {
+                continue;
+            }
+            _sequence = Math.max(_sequence, staged.sequence + 1);
+            Staged other = latest.get(staged.uri);
+            if (other != null && other.sequence > staged.sequence) {
+                delete(staged);
+            } else {
+                if (other != null) {
+                    delete(other);
+                }
+                latest.put(staged.uri, staged);
+            }
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(SPOOL_SUFFIX) && !manifestOf(file).exists() && !file.delete()) {
+                LOG.warning("WriteBehindStore cannot delete " + file);
+            }
+        }
+        List<Staged> pending = new ArrayList<>(latest.values());
+        pending.sort(Comparator.comparingLong(staged -> staged.sequence));
+        for (Staged staged : pending) {
+            LOG.info("WriteBehindStore writing " + staged.uri + " staged before the last stop");
+            queue(staged.uri, staged);
+        }
+    }
+
+    /**
+     * Reads a manifest; a manifest whose content is gone is removed and <code>null</code> is returned.
+     */
+    private Staged readManifest(File manifest) {
+        String name = manifest.getName();
+        File file = new File(_staging, name.substring(0, name.length() - MANIFEST_SUFFIX.length()) + SPOOL_SUFFIX);
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(manifest)) {
+            properties.load(in);
+            if (file.isFile() && properties.getProperty("uri") != null) {
+                return new Staged(properties.getProperty("uri"), file, manifest,
+                        Long.parseLong(properties.getProperty("sequence", "0")), file.length(),
+                        properties.getProperty("contentType"), properties.getProperty("characterEncoding"),
+                        Long.parseLong(properties.getProperty("lastModified", Long.toString(file.lastModified()))));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.log(Level.WARNING, "WriteBehindStore cannot read " + manifest, e);
+        }
+        if (!manifest.delete()) {
+            LOG.warning("WriteBehindStore cannot delete " + manifest);
+        }
+        return null;
+    }
+
+    private static File manifestOf(File file) {
+        String name = file.getName();
+        return new File(file.getParentFile(), name.substring(0, name.length() - SPOOL_SUFFIX.length())
+                + MANIFEST_SUFFIX);
+    }
+
+    /**
+     * Queues the write of staged content behind the earlier writes to the same resource.
+     */
+    private synchronized void queue(String resourceUri, Staged staged) {
+        _spooledBytes += staged.length;
+        Staged previous = _staged.put(resourceUri, staged);
+        CompletableFuture<Void> queue = _queues.get(resourceUri);
+        if (previous != null && queue != null && queue.isCompletedExceptionally()) {
+            discard(previous);
+        }
+        // a write that was given up is superseded by this one
+        CompletableFuture<Void> next = _queues.getOrDefault(resourceUri, CompletableFuture.completedFuture(null))
+                .exceptionally(e -> null)
+                .thenComposeAsync(result -> write(resourceUri, staged, 1), _workers);
+        _queues.put(resourceUri, next);
+        next.whenComplete((result, e) -> {
+            if (e == null) {
+                synchronized (WriteBehindStore.this) {
+                    _queues.remove(resourceUri, next);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the staged content to the other store, unless a later write to the same resource has been staged, and
+     * schedules a retry if that fails.
+     */
+    private CompletableFuture<Void> write(String uri, Staged staged, int attempt) {
+        synchronized (this) {
+            if (_staged.get(uri) != staged) {
+                discard(staged);
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+        LOG.fine("WriteBehindStore.write(" + uri + ")");
+        ITransaction transaction = null;
+        try (InputStream in = new FileInputStream(staged.file)) {
+            transaction = _store.begin(null);
+            _store.setResourceContent(transaction, uri, in, staged.contentType, staged.characterEncoding);
+            _store.commit(transaction);
+        } catch (IOException | RuntimeException e) {
+            rollbackQuietly(transaction);
+            synchronized (this) {
+                if (_staged.get(uri) != staged) {
+                    discard(staged);
+                    return CompletableFuture.completedFuture(null);
+                }
+            }
+            if (attempt >= _maxAttempts) {
+                LOG.log(Level.SEVERE, "WriteBehindStore.write(" + uri + ") failed " + attempt
+                        + " times, the content is kept in " + staged.file, e);
+                return CompletableFuture.failedFuture(new WebdavException("cannot write " + uri, e));
+            }
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, _backoffMillis << Math.min(attempt - 1, 20));
+            LOG.log(Level.WARNING, "WriteBehindStore.write(" + uri + ") failed, retrying in " + backoff + " ms", e);
+            return CompletableFuture.runAsync(() -> {
+            }, CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS, _workers))
+                    .thenCompose(result -> write(uri, staged, attempt + 1));
+        }
+        synchronized (this) {
+            _staged.remove(uri, staged);
+            discard(staged);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void rollbackQuietly(ITransaction transaction) {
+        try {
+            _store.rollback(transaction);
+        } catch (RuntimeException e) {
+            LOG.log(Level.FINE, "WriteBehindStore rollback failed", e);
+        }
+    }
+
+    private synchronized void discard(Staged staged) {
+        delete(staged);
+        release(staged);
+    }
+
+    /**
+     * Deletes the manifest before the content, so no manifest is left without its content.
+     */
+    private static void delete(Staged staged) {
+        if (!staged.manifest.delete()) {
+            LOG.warning("WriteBehindStore cannot delete " + staged.manifest);
+        }
+        if (!staged.file.delete()) {
+            LOG.warning("WriteBehindStore cannot delete " + staged.file);
+        }
+    }
+
+    private synchronized void release(Staged staged) {
+        _spooledBytes -= staged.length;
+        notifyAll();
+    }
+
+    /**
+     * Waits for the pending writes to the resources at or below <code>uri</code>.
+     */
+    private void settle(String uri) {
+        String prefix = uri.endsWith("/") ? uri : uri + "/";
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, CompletableFuture<Void>> queue : _queues.entrySet()) {
+                if (queue.getKey().equals(uri) || queue.getKey().startsWith(prefix)) {
+                    pending.add(queue.getValue());
+                }
+            }
+        }
+        await(pending);
+    }
+
+    /**
+     * Discards the staged content of the resources at or below <code>uri</code> whose write was given up.
+     */
+    private synchronized void discardFailed(String uri) {
+        String prefix = uri.endsWith("/") ? uri : uri + "/";
+        Iterator<Map.Entry<String, CompletableFuture<Void>>> queues = _queues.entrySet().iterator();
+        while (queues.hasNext()) {
+            Map.Entry<String, CompletableFuture<Void>> queue = queues.next();
+            String path = queue.getKey();
+            if ((path.equals(uri) || path.startsWith(prefix)) && queue.getValue().isCompletedExceptionally()) {
+                queues.remove();
+                Staged staged = _staged.remove(path);
+                if (staged != null) {
+                    discard(staged);
+                }
+            }
+        }
+    }
+
+    private static void await(List<CompletableFuture<Void>> pending) {
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof WebdavException ? (WebdavException) e.getCause() : new WebdavException(e);
+        }
+    }
+
+    private static final class Staged {
+        private final String uri;
+        private final File file;
+        private final File manifest;
+        private final long sequence;
+        private final long length;
+        private final String contentType;
+        private final String characterEncoding;
+        private final long lastModified;
+
+        private Staged(
+                String uri,
+                File file,
+                File manifest,
+                long sequence,
+                long length,
+                String contentType,
+                String characterEncoding,
+                long lastModified
+        ) {
+            this.uri = uri;
+            this.file = file;
+            this.manifest = manifest;
+            this.sequence = sequence;
+            this.length = length;
+            this.contentType = contentType;
+            this.characterEncoding = characterEncoding;
+            this.lastModified = lastModified;
+        }
+    }
+}
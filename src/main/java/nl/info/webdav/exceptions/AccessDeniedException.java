@@ -6,6 +6,10 @@ package nl.info.webdav.exceptions;
 
 public class AccessDeniedException extends WebdavException {
 
+    public AccessDeniedException(String message) {
+        super(message);
+    }
+
     public AccessDeniedException(Throwable cause) {
         super(cause);
     }
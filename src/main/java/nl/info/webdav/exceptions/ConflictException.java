@@ -0,0 +1,19 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.exceptions;
+
+/**
+ * Thrown when an object cannot be created because the folder it belongs in does not exist.
+ */
+public class ConflictException extends WebdavException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+
+    public ConflictException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.exceptions;
+
+public class InsufficientStorageException extends WebdavException {
+
+    public InsufficientStorageException(String message) {
+        super(message);
+    }
+
+    public InsufficientStorageException(Throwable cause) {
+        super(cause);
+    }
+}
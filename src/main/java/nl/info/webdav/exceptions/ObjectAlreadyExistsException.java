@@ -6,6 +6,10 @@ package nl.info.webdav.exceptions;
 
 public class ObjectAlreadyExistsException extends WebdavException {
 
+    public ObjectAlreadyExistsException(String message) {
+        super(message);
+    }
+
     public ObjectAlreadyExistsException(Throwable cause) {
         super(cause);
     }
@@ -6,6 +6,10 @@ package nl.info.webdav.exceptions;
 
 public class ObjectNotFoundException extends WebdavException {
 
+    public ObjectNotFoundException(String message) {
+        super(message);
+    }
+
     public ObjectNotFoundException(Throwable cause) {
         super(cause);
     }
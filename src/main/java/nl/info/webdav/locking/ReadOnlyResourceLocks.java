@@ -0,0 +1,38 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.locking;
+
+import nl.info.webdav.ITransaction;
+import nl.info.webdav.exceptions.LockFailedException;
+
+/**
+ * Locking for a tree that never changes: temporary locks for reading are granted without being recorded, and
+ * no other locks are granted.
+ */
+public class ReadOnlyResourceLocks extends ResourceLocks {
+
+    @Override
+    public boolean lock(
+            ITransaction transaction,
+            String path,
+            String owner,
+            boolean exclusive,
+            int depth,
+            int timeout,
+            boolean temporary
+    ) throws LockFailedException {
+        return temporary && !exclusive;
+    }
+
+    @Override
+    public void unlockTemporaryLockedObjects(ITransaction transaction, String path, String owner) {
+        // do nothing
+    }
+
+    @Override
+    public void checkTimeouts(ITransaction transaction, boolean temporary) {
+        // do nothing
+    }
+}
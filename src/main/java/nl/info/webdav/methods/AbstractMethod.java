@@ -8,6 +8,13 @@ import java.io.IOException;
 import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -28,7 +35,13 @@ import nl.info.webdav.IMethodExecutor;
 import nl.info.webdav.ITransaction;
 import nl.info.webdav.StoredObject;
 import nl.info.webdav.WebdavStatus;
+import nl.info.webdav.exceptions.AccessDeniedException;
+import nl.info.webdav.exceptions.ConflictException;
+import nl.info.webdav.exceptions.InsufficientStorageException;
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
 import nl.info.webdav.exceptions.PathTraversalException;
+import nl.info.webdav.exceptions.WebdavException;
 import nl.info.webdav.fromcatalina.URLEncoder;
 import nl.info.webdav.fromcatalina.XMLWriter;
 import nl.info.webdav.locking.IResourceLocks;
@@ -98,6 +111,25 @@ public abstract class AbstractMethod implements IMethodExecutor {
      */
     protected static final int TEMP_TIMEOUT = 10;
 
+    /**
+     * Content codings that GET may send a resource in, and that its entity tags carry
+     */
+    private static final String[] CODINGS = {"gzip", "deflate"};
+
+    /**
+     * The formats of HTTP dates: the preferred one, and the obsolete RFC 850 and asctime formats that recipients
+     * must still accept (RFC 9110, section 5.6.7). A two-digit year is read as the one at most 50 years from now.
+     */
+    private static final DateTimeFormatter[] HTTP_DATE_FORMATS = {
+            DateTimeFormatter.RFC_1123_DATE_TIME,
+            new DateTimeFormatterBuilder()
+                    .appendPattern("EEEE, dd-MMM-")
+                    .appendValueReduced(ChronoField.YEAR, 2, 2, LocalDate.now().minusYears(49))
+                    .appendPattern(" HH:mm:ss zzz")
+                    .toFormatter(Locale.ENGLISH),
+            DateTimeFormatter.ofPattern("EEE MMM ppd HH:mm:ss uuuu", Locale.ENGLISH).withZone(ZoneOffset.UTC)
+    };
+
     public static String lastModifiedDateFormat(final Date date) {
         DateFormat df = thLastModifiedDateFormat.get();
         if (df == null) {
@@ -233,6 +265,26 @@ public abstract class AbstractMethod implements IMethodExecutor {
         return depth;
     }
 
+    /**
+     * maps an exception of the underlying store to the status reported for the
+     * affected path in a multistatus response
+     * 
+     * @param e the exception thrown by the store
+     * @return the WebDAV status code
+     */
+    protected static int getErrorStatus(WebdavException e) {
+        if (e instanceof AccessDeniedException) {
+            return WebdavStatus.SC_FORBIDDEN;
+        } else if (e instanceof ObjectNotFoundException) {
+            return WebdavStatus.SC_NOT_FOUND;
+        } else if (e instanceof ObjectAlreadyExistsException || e instanceof ConflictException) {
+            return WebdavStatus.SC_CONFLICT;
+        } else if (e instanceof InsufficientStorageException) {
+            return WebdavStatus.SC_INSUFFICIENT_STORAGE;
+        }
+        return WebdavStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
     /**
      * URL rewriter.
      * 
@@ -244,23 +296,196 @@ public abstract class AbstractMethod implements IMethodExecutor {
     }
 
     /**
-     * Get the ETag for with a stored object.
+     * Get the ETag for with a stored object. This is a strong ETag of the content
+     * digest if the store knows it, and a weak ETag of length and modification
+     * time otherwise.
      * 
      * @param storedObject the stored object
      * @return the ETag as a string
      */
     protected String getETag(StoredObject storedObject) {
+        if (storedObject != null && storedObject.isResource() && storedObject.getContentDigest() != null) {
+            return "\"" + storedObject.getContentDigest() + "\"";
+        }
         String resourceLength = "";
         String lastModified = "";
 
         if (storedObject != null && storedObject.isResource()) {
             resourceLength = Long.valueOf(storedObject.getResourceLength()).toString();
-            lastModified = Long.valueOf(storedObject.getLastModified().getTime()).toString();
+            if (storedObject.getLastModified() != null) {
+                lastModified = Long.valueOf(storedObject.getLastModified().getTime()).toString();
+            }
         }
 
         return "W/\"" + resourceLength + "-" + lastModified + "\"";
     }
 
+    /**
+     * Get the ETag of the content in a content coding, which differs from the ETag of the content itself.
+     *
+     * @param storedObject the stored object
+     * @param coding       the content coding of the response, or null for the content as is
+     * @return the ETag as a string
+     */
+    protected String getETag(StoredObject storedObject, String coding) {
+        String eTag = getETag(storedObject);
+        if (coding == null) {
+            return eTag;
+        }
+        return eTag.substring(0, eTag.length() - 1) + "-" + coding + "\"";
+    }
+
+    /**
+     * Evaluates the conditional request headers of RFC 9110 against the metadata of the resource, in the order of
+     * section 13.2.2: <code>If-Match</code>, else <code>If-Unmodified-Since</code>, then <code>If-None-Match</code>,
+     * else <code>If-Modified-Since</code> for GET and HEAD. <code>If-Match</code> compares entity tags strongly,
+     * <code>If-None-Match</code> weakly, and dates are compared to the second. The date headers are ignored for a
+     * resource whose modification date is unknown. Methods other than GET and HEAD act on the resource rather than on
+     * one of its representations, so for them the entity tags of its representations in a content coding match as
+     * well.
+     *
+     * @param req          servlet request
+     * @param storedObject the resource, or null if it does not exist
+     * @param safe         true for GET and HEAD, which answer 304 where other methods answer 412
+     * @return the status to answer instead of performing the method, or 0 if the method may be performed
+     */
+    protected int checkPreconditions(HttpServletRequest req, StoredObject storedObject, boolean safe) {
+        boolean exists = storedObject != null && !storedObject.isNullResource();
+        return checkPreconditions(req, storedObject, exists ? getETag(storedObject) : null, safe);
+    }
+
+    /**
+     * Evaluates the conditional request headers like {@link #checkPreconditions(HttpServletRequest, StoredObject,
+     * boolean)}, comparing the entity tags with the ETag of the representation that would be sent.
+     *
+     * @param req          servlet request
+     * @param storedObject the resource, or null if it does not exist
+     * @param eTag         the ETag of the representation
+     * @param safe         true for GET and HEAD, which answer 304 where other methods answer 412
+     * @return the status to answer instead of performing the method, or 0 if the method may be performed
+     */
+    protected int checkPreconditions(HttpServletRequest req, StoredObject storedObject, String eTag, boolean safe) {
+        boolean exists = storedObject != null && !storedObject.isNullResource();
+
+        String ifMatch = req.getHeader("If-Match");
+        if (ifMatch != null) {
+            if (!exists || !matchesETag(ifMatch, eTag, true, !safe)) {
+                return WebdavStatus.SC_PRECONDITION_FAILED;
+            }
+        } else {
+            long date = parseHttpDate(req.getHeader("If-Unmodified-Since"));
+            long modified = exists ? getLastModifiedSeconds(storedObject) : -1;
+            if (date != -1 && modified != -1 && modified > date) {
+                return WebdavStatus.SC_PRECONDITION_FAILED;
+            }
+        }
+
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (exists && matchesETag(ifNoneMatch, eTag, false, !safe)) {
+                return safe ? WebdavStatus.SC_NOT_MODIFIED : WebdavStatus.SC_PRECONDITION_FAILED;
+            }
+        } else if (safe) {
+            long date = parseHttpDate(req.getHeader("If-Modified-Since"));
+            long modified = exists ? getLastModifiedSeconds(storedObject) : -1;
+            if (date != -1 && modified != -1 && modified <= date) {
+                return WebdavStatus.SC_NOT_MODIFIED;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Determines whether a list of entity tags, or <code>*</code>, contains the given entity tag.
+     *
+     * @param header the value of an <code>If-Match</code> or <code>If-None-Match</code> header
+     * @param eTag   the entity tag of the resource
+     * @param strong true to ignore weak entity tags on either side
+     * @return true if one of the entity tags matches
+     */
+    protected static boolean matchesETag(String header, String eTag, boolean strong) {
+        return matchesETag(header, eTag, strong, false);
+    }
+
+    /**
+     * Determines whether a list of entity tags, or <code>*</code>, contains the given entity tag.
+     *
+     * @param header    the value of an <code>If-Match</code> or <code>If-None-Match</code> header
+     * @param eTag      the entity tag of the resource
+     * @param strong    true to ignore weak entity tags on either side
+     * @param anyCoding true to also match the entity tags of the resource in a content coding
+     * @return true if one of the entity tags matches
+     */
+    protected static boolean matchesETag(String header, String eTag, boolean strong, boolean anyCoding) {
+        if (header.trim().equals("*")) {
+            return true;
+        }
+        boolean weak = eTag.startsWith("W/");
+        if (strong && weak) {
+            return false;
+        }
+        String opaqueTag = weak ? eTag.substring(2) : eTag;
+        int start = header.indexOf('"');
+        while (start >= 0) {
+            int end = header.indexOf('"', start + 1);
+            if (end < 0) {
+                break;
+            }
+            boolean weakCandidate = start >= 2 && header.startsWith("W/", start - 2);
+            String candidate = header.substring(start, end + 1);
+            if (anyCoding) {
+                candidate = withoutCoding(candidate);
+            }
+            if (!(strong && weakCandidate) && candidate.equals(opaqueTag)) {
+                return true;
+            }
+            start = header.indexOf('"', end + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Removes the content coding that {@link #getETag(StoredObject, String)} adds to an opaque tag.
+     */
+    private static String withoutCoding(String opaqueTag) {
+        for (String coding : CODINGS) {
+            String suffix = "-" + coding + "\"";
+            if (opaqueTag.endsWith(suffix)) {
+                return opaqueTag.substring(0, opaqueTag.length() - suffix.length()) + "\"";
+            }
+        }
+        return opaqueTag;
+    }
+
+    /**
+     * Parses an HTTP date as sent in conditional headers, in any of the formats of {@link #HTTP_DATE_FORMATS}.
+     *
+     * @param value the value of the header, or null
+     * @return the date in milliseconds, or -1 if the value is missing or not a valid date
+     */
+    protected static long parseHttpDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        String date = value.trim();
+        for (DateTimeFormatter format : HTTP_DATE_FORMATS) {
+            try {
+                return ZonedDateTime.parse(date, format).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                // try the next format
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the modification date truncated to the second, or -1 if it is unknown
+     */
+    protected static long getLastModifiedSeconds(StoredObject storedObject) {
+        Date lastModified = storedObject.getLastModified();
+        return lastModified == null ? -1 : lastModified.getTime() / 1000 * 1000;
+    }
+
     protected String[] getLockIdFromIfHeader(HttpServletRequest req) {
         String[] ids = new String[2];
         String id = req.getHeader("If");
@@ -0,0 +1,130 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.methods;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+/**
+ * Sends content to the client without holding a request thread while the client is slow.
+ * <p>
+ * A chunk of the content is only read from the store when the container reports that the response can take more, so
+ * a download waiting for its client holds no thread, only its buffer and the open content. The content is closed and
+ * the request completed when everything has been sent, or when sending fails or times out.
+ */
+public class AsyncContentSender implements WriteListener, AsyncListener {
+    private static final Logger LOG = Logger.getLogger(AsyncContentSender.class.getName());
+
+    private final AsyncContext _asyncContext;
+    private final InputStream _in;
+    private final ServletOutputStream _out;
+    private final byte[] _buffer;
+    private boolean _done;
+
+    /**
+     * @param asyncContext
+     *                     the started asynchronous request
+     * @param in
+     *                     the content to send, which is closed when sending ends
+     * @param out
+     *                     the stream of the response
+     * @param bufferSize
+     *                     the size of the chunks read from the content
+     */
+    public AsyncContentSender(AsyncContext asyncContext, InputStream in, ServletOutputStream out, int bufferSize) {
+        _asyncContext = asyncContext;
+        _in = in;
+        _out = out;
+        _buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Sends the content from now on, whenever the response can take more.
+     */
+    public void start() {
+        _asyncContext.addListener(this);
+        _out.setWriteListener(this);
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        while (_out.isReady()) {
+            int read = read();
+            if (read == -1) {
+                finish();
+                return;
+            }
+            _out.write(_buffer, 0, read);
+        }
+    }
+
+    /**
+     * Reads the next chunk under the same lock as {@link #close()}, so the content is never read while, or after, a
+     * timeout or error on another thread closes it.
+     *
+     * @return the length of the chunk, or -1 when everything has been sent or sending has ended
+     */
+    private synchronized int read() throws IOException {
+        if (_done) {
+            return -1;
+        }
+        return _in.read(_buffer, 0, _buffer.length);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // client disconnected before the server finished sending response
+        LOG.log(Level.FINE, "Failed to send content asynchronously", throwable);
+        finish();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        LOG.fine("AsyncContentSender.onTimeout()");
+        finish();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        onError(event.getThrowable());
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+        // the listener is only added after the request has been started asynchronously
+    }
+
+    private void finish() {
+        if (close()) {
+            _asyncContext.complete();
+        }
+    }
+
+    private synchronized boolean close() {
+        if (_done) {
+            return false;
+        }
+        _done = true;
+        try {
+            _in.close();
+        } catch (IOException ioException) {
+            LOG.log(Level.WARNING, "Failed to close InputStream", ioException);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.methods;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the tasks of a single request on an executor that is shared between requests. At most
+ * <code>parallelism</code> tasks of the group are in progress at any time; {@link #submit(Runnable)} blocks the
+ * submitting thread until one of them has finished. The size of the shared executor caps the work of all requests
+ * together.
+ */
+final class BoundedTaskGroup {
+    private final Executor _executor;
+    private final int _parallelism;
+    private final Semaphore _permits;
+    private final AtomicReference<RuntimeException> _failure = new AtomicReference<>();
+
+    BoundedTaskGroup(Executor executor, int parallelism) {
+        _executor = executor;
+        _parallelism = parallelism;
+        _permits = new Semaphore(parallelism);
+    }
+
+    /**
+     * Submits a task, waiting for a free slot first. If the executor rejects the task, for instance because it is
+     * shutting down, the task is run on the calling thread.
+     *
+     * @param task the task
+     */
+    void submit(Runnable task) {
+        _permits.acquireUninterruptibly();
+        Runnable bounded = () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                _failure.compareAndSet(null, e);
+            } finally {
+                _permits.release();
+            }
+        };
+        try {
+            _executor.execute(bounded);
+        } catch (RejectedExecutionException e) {
+            bounded.run();
+        }
+    }
+
+    /**
+     * Waits until all submitted tasks have finished.
+     *
+     * @throws RuntimeException the first unchecked exception thrown by one of the tasks
+     */
+    void await() {
+        _permits.acquireUninterruptibly(_parallelism);
+        _permits.release(_parallelism);
+        RuntimeException failure = _failure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
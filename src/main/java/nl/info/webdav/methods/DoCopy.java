@@ -8,6 +8,9 @@ import static java.text.MessageFormat.format;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,6 +21,7 @@ import nl.info.webdav.IWebdavStore;
 import nl.info.webdav.StoredObject;
 import nl.info.webdav.WebdavStatus;
 import nl.info.webdav.exceptions.AccessDeniedException;
+import nl.info.webdav.exceptions.ConflictException;
 import nl.info.webdav.exceptions.LockFailedException;
 import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
 import nl.info.webdav.exceptions.ObjectNotFoundException;
@@ -33,17 +37,51 @@ public class DoCopy extends AbstractMethod {
     private final ResourceLocks _resourceLocks;
     private final DoDelete _doDelete;
     private final boolean _readOnly;
+    private final Executor _executor;
+    private final int _parallelism;
 
     public DoCopy(
             IWebdavStore store,
             ResourceLocks resourceLocks,
             DoDelete doDelete,
             boolean readOnly
+    ) {
+        this(store, resourceLocks, doDelete, readOnly, null, 1);
+    }
+
+    /**
+     * Creates a COPY method that copies the resources of a folder in parallel.
+     * 
+     * @param store
+     *                      the store
+     * @param resourceLocks
+     *                      the resource locks
+     * @param doDelete
+     *                      the DELETE method, used to remove an existing destination
+     * @param readOnly
+     *                      whether the servlet is read-only
+     * @param executor
+     *                      the executor, shared between requests, that copies the
+     *                      resources
+     * @param parallelism
+     *                      the maximum number of resources copied at the same time
+     *                      for a single request; <code>1</code> or less copies the
+     *                      folder on the request thread
+     */
+    public DoCopy(
+            IWebdavStore store,
+            ResourceLocks resourceLocks,
+            DoDelete doDelete,
+            boolean readOnly,
+            Executor executor,
+            int parallelism
     ) {
         _store = store;
         _resourceLocks = resourceLocks;
         _doDelete = doDelete;
         _readOnly = readOnly;
+        _executor = executor;
+        _parallelism = parallelism;
     }
 
     @Override
@@ -70,7 +108,7 @@ public class DoCopy extends AbstractMethod {
                     copyResource(transaction, req, resp);
                 } catch (AccessDeniedException e) {
                     resp.sendError(WebdavStatus.SC_FORBIDDEN);
-                } catch (ObjectAlreadyExistsException e) {
+                } catch (ObjectAlreadyExistsException | ConflictException e) {
                     resp.sendError(WebdavStatus.SC_CONFLICT, req
                             .getRequestURI());
                 } catch (ObjectNotFoundException e) {
@@ -121,7 +159,7 @@ public class DoCopy extends AbstractMethod {
 
         String path = getRelativePath(req);
 
-        if (path.equals(destinationPath)) {
+        if (path.equals(destinationPath) || destinationPath.startsWith(getCleanPath(path) + "/")) {
             resp.sendError(WebdavStatus.SC_FORBIDDEN);
             return false;
         }
@@ -171,6 +209,12 @@ public class DoCopy extends AbstractMethod {
                     return false;
                 }
 
+                int precondition = checkPreconditions(req, copySo, false);
+                if (precondition != 0) {
+                    resp.sendError(precondition);
+                    return false;
+                }
+
                 errorList = new Hashtable<>();
 
                 destinationSo = _store.getStoredObject(transaction,
@@ -196,7 +240,7 @@ public class DoCopy extends AbstractMethod {
                     }
 
                 }
-                copy(transaction, path, destinationPath, errorList, req, resp);
+                copy(transaction, copySo, path, destinationPath, errorList, req);
 
                 if (!errorList.isEmpty()) {
                     sendReport(resp, errorList);
@@ -216,57 +260,58 @@ public class DoCopy extends AbstractMethod {
     /**
      * copies the specified resource(s) to the specified destination.
      * preconditions must be handled by the caller. Standard status codes must
-     * be handled by the caller. a multi status report in case of errors is
-     * created here.
+     * be handled by the caller. Failures on members of a copied folder are
+     * added to the error list.
      * 
      * @param transaction
      *                        indicates that the method is within the scope of a WebDAV
      *                        transaction
+     * @param sourceSo
+     *                        the object to copy
      * @param sourcePath
      *                        path from where to read
      * @param destinationPath
      *                        path where to write
+     * @param errorList
+     *                        all errors that ocurred
      * @param req
      *                        HttpServletRequest
-     * @param resp
-     *                        HttpServletResponse
      * @throws WebdavException
      *                         if an error in the underlying store occurs
      */
     private void copy(
             ITransaction transaction,
+            StoredObject sourceSo,
             String sourcePath,
             String destinationPath,
             Hashtable<String, Integer> errorList,
-            HttpServletRequest req,
-            HttpServletResponse resp
-    ) throws WebdavException, IOException {
-        StoredObject sourceSo = _store.getStoredObject(transaction, sourcePath);
-        if (sourceSo.isResource()) {
-            _store.createResource(transaction, destinationPath);
-            long resourceLength = _store.setResourceContent(transaction,
-                    destinationPath, _store.getResourceContent(transaction,
-                            sourcePath), null, null);
-
-            if (resourceLength != -1) {
-                StoredObject destinationSo = _store.getStoredObject(
-                        transaction, destinationPath);
-                destinationSo.setResourceLength(resourceLength);
+            HttpServletRequest req
+    ) throws WebdavException {
+        int depth = INFINITY;
+        if (sourceSo.isFolder() && "0".equals(req.getHeader("Depth"))) {
+            depth = 0;
+        }
+        Map<String, WebdavException> failures;
+        if (sourceSo.isFolder() && depth != 0 && _executor != null && _parallelism > 1) {
+            failures = new ConcurrentHashMap<>();
+            BoundedTaskGroup tasks = new BoundedTaskGroup(_executor, _parallelism);
+            try {
+                copyFolder(transaction, sourcePath, destinationPath, failures, tasks);
+            } finally {
+                tasks.await();
             }
         } else {
-
-            if (sourceSo.isFolder()) {
-                copyFolder(transaction, sourcePath, destinationPath, errorList,
-                        req);
-            } else {
-                resp.sendError(WebdavStatus.SC_NOT_FOUND);
-            }
+            failures = _store.copy(transaction, sourcePath, destinationPath, depth);
+        }
+        for (Map.Entry<String, WebdavException> failure : failures.entrySet()) {
+            errorList.put(failure.getKey(), getErrorStatus(failure.getValue()));
         }
     }
 
     /**
-     * helper method of copy() recursively copies the FOLDER at source path to
-     * destination path
+     * helper method of copy() that walks the folder at source path on the
+     * request thread and hands the resources to the task group. A folder is
+     * always created before any of its members is copied.
      * 
      * @param transaction
      *                        indicates that the method is within the scope of a WebDAV
@@ -275,69 +320,44 @@ public class DoCopy extends AbstractMethod {
      *                        where to read
      * @param destinationPath
      *                        where to write
-     * @param errorList
-     *                        all errors that ocurred
-     * @param req
-     *                        HttpServletRequest
+     * @param failures
+     *                        the members that could not be copied
+     * @param tasks
+     *                        the task group copying the resources
      * @throws WebdavException
-     *                         if an error in the underlying store occurs
+     *                         if the folder itself cannot be created or listed
      */
     private void copyFolder(
             ITransaction transaction,
             String sourcePath,
             String destinationPath,
-            Hashtable<String, Integer> errorList,
-            HttpServletRequest req
-    )
-      throws WebdavException {
-
+            Map<String, WebdavException> failures,
+            BoundedTaskGroup tasks
+    ) throws WebdavException {
         _store.createFolder(transaction, destinationPath);
-        boolean infiniteDepth = true;
-        String depth = req.getHeader("Depth");
-        if (depth != null) {
-            if (depth.equals("0")) {
-                infiniteDepth = false;
-            }
-        }
-        if (infiniteDepth) {
-            String[] children = _store
-                    .getChildrenNames(transaction, sourcePath);
-            children = children == null ? new String[]{} : children;
-
-            StoredObject childSo;
-            for (int i = children.length - 1; i >= 0; i--) {
-                children[i] = "/" + children[i];
-                try {
-                    childSo = _store.getStoredObject(transaction,
-                            (sourcePath + children[i]));
-                    if (childSo.isResource()) {
-                        _store.createResource(transaction, destinationPath + children[i]);
-                        long resourceLength = _store.setResourceContent(
-                                transaction, destinationPath + children[i],
-                                _store.getResourceContent(transaction,
-                                        sourcePath + children[i]), null, null);
-
-                        if (resourceLength != -1) {
-                            StoredObject destinationSo = _store
-                                    .getStoredObject(transaction,
-                                            destinationPath + children[i]);
-                            destinationSo.setResourceLength(resourceLength);
+        String[] children = _store.getChildrenNames(transaction, sourcePath);
+        children = children == null ? new String[]{} : children;
+        for (String child : children) {
+            String sourceChildPath = sourcePath + "/" + child;
+            String destinationChildPath = destinationPath + "/" + child;
+            try {
+                StoredObject childSo = _store.getStoredObject(transaction, sourceChildPath);
+                if (childSo == null) {
+                    throw new ObjectNotFoundException("cannot copy non-existing object: " + sourceChildPath);
+                }
+                if (childSo.isFolder()) {
+                    copyFolder(transaction, sourceChildPath, destinationChildPath, failures, tasks);
+                } else {
+                    tasks.submit(() -> {
+                        try {
+                            failures.putAll(_store.copy(transaction, sourceChildPath, destinationChildPath, 0));
+                        } catch (WebdavException e) {
+                            failures.put(destinationChildPath, e);
                         }
-
-                    } else {
-                        copyFolder(transaction, sourcePath + children[i],
-                                destinationPath + children[i], errorList, req
-                        );
-                    }
-                } catch (AccessDeniedException e) {
-                    errorList.put(destinationPath + children[i], WebdavStatus.SC_FORBIDDEN);
-                } catch (ObjectNotFoundException e) {
-                    errorList.put(destinationPath + children[i], WebdavStatus.SC_NOT_FOUND);
-                } catch (ObjectAlreadyExistsException e) {
-                    errorList.put(destinationPath + children[i], WebdavStatus.SC_CONFLICT);
-                } catch (WebdavException e) {
-                    errorList.put(destinationPath + children[i], WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+                    });
                 }
+            } catch (WebdavException e) {
+                failures.put(destinationChildPath, e);
             }
         }
     }
@@ -350,7 +370,7 @@ public class DoCopy extends AbstractMethod {
      * @return destinationPath
      * @throws IOException if an error occurs while sending response
      */
-    private String parseDestinationHeader(
+    String parseDestinationHeader(
             HttpServletRequest req,
             HttpServletResponse resp
     ) throws IOException {
@@ -6,6 +6,10 @@ package nl.info.webdav.methods;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -28,15 +32,47 @@ public class DoDelete extends AbstractMethod {
     private final IWebdavStore _store;
     private final ResourceLocks _resourceLocks;
     private final boolean _readOnly;
+    private final Executor _executor;
+    private final int _parallelism;
 
     public DoDelete(
             IWebdavStore store,
             ResourceLocks resourceLocks,
             boolean readOnly
+    ) {
+        this(store, resourceLocks, readOnly, null, 1);
+    }
+
+    /**
+     * Creates a DELETE method that removes the members of a folder in
+     * parallel when the store cannot remove a tree in one operation.
+     * 
+     * @param store
+     *                      the store
+     * @param resourceLocks
+     *                      the resource locks
+     * @param readOnly
+     *                      whether the servlet is read-only
+     * @param executor
+     *                      the executor, shared between requests, that removes the
+     *                      members
+     * @param parallelism
+     *                      the maximum number of members removed at the same time
+     *                      for a single request; <code>1</code> or less removes the
+     *                      folder on the request thread
+     */
+    public DoDelete(
+            IWebdavStore store,
+            ResourceLocks resourceLocks,
+            boolean readOnly,
+            Executor executor,
+            int parallelism
     ) {
         _store = store;
         _resourceLocks = resourceLocks;
         _readOnly = readOnly;
+        _executor = executor;
+        _parallelism = parallelism;
     }
 
     public void execute(
@@ -66,8 +102,16 @@ public class DoDelete extends AbstractMethod {
             if (_resourceLocks.lock(transaction, path, tempLockOwner, false, 0,
                     TEMP_TIMEOUT, TEMPORARY)) {
                 try {
+                    StoredObject so = _store.getStoredObject(transaction, path);
+                    if (so != null && !so.isNullResource()) {
+                        int precondition = checkPreconditions(req, so, false);
+                        if (precondition != 0) {
+                            resp.sendError(precondition);
+                            return;
+                        }
+                    }
                     errorList = new Hashtable<>();
-                    deleteResource(transaction, path, errorList, resp);
+                    deleteResource(transaction, path, so, errorList, resp);
                     if (!errorList.isEmpty()) {
                         sendReport(resp, errorList);
                     }
@@ -113,19 +157,28 @@ public class DoDelete extends AbstractMethod {
             Hashtable<String, Integer> errorList,
             HttpServletResponse resp
     ) throws IOException, WebdavException {
+        deleteResource(transaction, path, _readOnly ? null : _store.getStoredObject(transaction, path), errorList,
+                resp);
+    }
+
+    private void deleteResource(
+            ITransaction transaction,
+            String path,
+            StoredObject so,
+            Hashtable<String, Integer> errorList,
+            HttpServletResponse resp
+    ) throws IOException, WebdavException {
 
         resp.setStatus(WebdavStatus.SC_NO_CONTENT);
 
         if (!_readOnly) {
-            StoredObject so = _store.getStoredObject(transaction, path);
             if (so != null) {
 
                 if (so.isResource()) {
                     _store.removeObject(transaction, path);
                 } else {
                     if (so.isFolder()) {
-                        deleteFolder(transaction, path, errorList);
-                        _store.removeObject(transaction, path);
+                        deleteTree(transaction, path, errorList);
                     } else {
                         resp.sendError(WebdavStatus.SC_NOT_FOUND);
                     }
@@ -138,6 +191,41 @@ public class DoDelete extends AbstractMethod {
         }
     }
 
+    /**
+     * helper method of deleteResource() deletes the folder and all of its
+     * contents in one store operation, or member by member if the store does
+     * not support that
+     * 
+     * @param transaction
+     *                    indicates that the method is within the scope of a WebDAV
+     *                    transaction
+     * @param path
+     *                    the folder to be deleted
+     * @param errorList
+     *                    all errors that ocurred
+     * @throws WebdavException
+     *                         if an error in the underlying store occurs
+     */
+    private void deleteTree(
+            ITransaction transaction,
+            String path,
+            Hashtable<String, Integer> errorList
+    ) throws WebdavException {
+        if (!_store.supportsDeleteTree()) {
+            if (_executor != null && _parallelism > 1) {
+                deleteFolderInParallel(transaction, path, errorList);
+            } else {
+                deleteFolder(transaction, path, errorList);
+                _store.removeObject(transaction, path);
+            }
+            return;
+        }
+        Map<String, WebdavException> failures = _store.deleteTree(transaction, path);
+        for (Map.Entry<String, WebdavException> failure : failures.entrySet()) {
+            errorList.put(failure.getKey(), getErrorStatus(failure.getValue()));
+        }
+    }
+
     /**
      * 
      * helper method of deleteResource() deletes the folder and all of its
@@ -180,4 +268,132 @@ public class DoDelete extends AbstractMethod {
             }
         }
     }
+
+    /**
+     * helper method of deleteResource() that removes the folder and all of its
+     * contents with up to the configured number of store calls at the same
+     * time. The tree is walked on the request thread; every folder is removed
+     * as soon as all of its members have been removed. A folder with a member
+     * that could not be removed is kept, and only the failing member is
+     * reported.
+     * 
+     * @param transaction
+     *                    indicates that the method is within the scope of a WebDAV
+     *                    transaction
+     * @param path
+     *                    the folder to be deleted
+     * @param errorList
+     *                    all errors that ocurred
+     * @throws WebdavException
+     *                         if an error in the underlying store occurs
+     */
+    private void deleteFolderInParallel(
+            ITransaction transaction,
+            String path,
+            Hashtable<String, Integer> errorList
+    ) throws WebdavException {
+        Map<String, WebdavException> failures = new ConcurrentHashMap<>();
+        BoundedTaskGroup tasks = new BoundedTaskGroup(_executor, _parallelism);
+        PendingFolder root = new PendingFolder(transaction, path, null, failures);
+        try {
+            deleteMembers(transaction, root, tasks);
+        } finally {
+            root.memberDone(true);
+            tasks.await();
+        }
+        for (Map.Entry<String, WebdavException> failure : failures.entrySet()) {
+            errorList.put(failure.getKey(), getErrorStatus(failure.getValue()));
+        }
+        if (!root._failed) {
+            _store.removeObject(transaction, path);
+        }
+    }
+
+    private void deleteMembers(
+            ITransaction transaction,
+            PendingFolder folder,
+            BoundedTaskGroup tasks
+    ) throws WebdavException {
+        String[] children = _store.getChildrenNames(transaction, folder._path);
+        children = children == null ? new String[]{} : children;
+        for (String child : children) {
+            String childPath = folder._path + "/" + child;
+            try {
+                StoredObject so = _store.getStoredObject(transaction, childPath);
+                if (so == null) {
+                    throw new ObjectNotFoundException("cannot delete non-existing object: " + childPath);
+                }
+                folder._pending.incrementAndGet();
+                if (so.isFolder()) {
+                    PendingFolder childFolder = new PendingFolder(transaction, childPath, folder, folder._failures);
+                    try {
+                        deleteMembers(transaction, childFolder, tasks);
+                    } catch (WebdavException e) {
+                        folder._failures.put(childPath, e);
+                        childFolder._failed = true;
+                    } finally {
+                        childFolder.memberDone(true);
+                    }
+                } else {
+                    tasks.submit(() -> {
+                        try {
+                            _store.removeObject(transaction, childPath);
+                            folder.memberDone(true);
+                        } catch (WebdavException e) {
+                            folder._failures.put(childPath, e);
+                            folder.memberDone(false);
+                        }
+                    });
+                }
+            } catch (WebdavException e) {
+                folder._failures.put(childPath, e);
+                folder._failed = true;
+            }
+        }
+    }
+
+    /**
+     * A folder whose members are being removed. It starts with one pending
+     * member for the walk over its children, so it cannot complete before all
+     * of them have been handed out.
+     */
+    private final class PendingFolder {
+        private final ITransaction _transaction;
+        private final String _path;
+        private final PendingFolder _parent;
+        private final Map<String, WebdavException> _failures;
+        private final AtomicInteger _pending = new AtomicInteger(1);
+        private volatile boolean _failed;
+
+        private PendingFolder(
+                ITransaction transaction,
+                String path,
+                PendingFolder parent,
+                Map<String, WebdavException> failures
+        ) {
+            _transaction = transaction;
+            _path = path;
+            _parent = parent;
+            _failures = failures;
+        }
+
+        private void memberDone(boolean removed) {
+            if (!removed) {
+                _failed = true;
+            }
+            if (_pending.decrementAndGet() == 0 && _parent != null) {
+                if (_failed) {
+                    _parent.memberDone(false);
+                    return;
+                }
+                try {
+                    _store.removeObject(_transaction, _path);
+                    _parent.memberDone(true);
+                } catch (WebdavException e) {
+                    _failures.put(_path, e);
+                    _parent.memberDone(false);
+                }
+            }
+        }
+    }
 }
@@ -4,17 +4,33 @@
  */
 package nl.info.webdav.methods;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
@@ -28,6 +44,30 @@ import nl.info.webdav.locking.ResourceLocks;
 public class DoGet extends DoHead {
     private static final Logger LOG = Logger.getLogger(DoGet.class.getName());
 
+    private static final String SORT_NAME = "name";
+    private static final String SORT_SIZE = "size";
+    private static final String SORT_MODIFIED = "modified";
+    private static final int MAX_CACHED_LISTINGS = 64;
+    private static final int MAX_CACHED_LISTING = 256 * 1024;
+
+    /**
+     * How long content is sent asynchronously before the request is given up, in milliseconds, unless configured.
+     */
+    public static final long DEFAULT_ASYNC_TIMEOUT = 60 * 60 * 1000L;
+
+    private final boolean _async;
+    private final long _asyncTimeout;
+    private final Map<String, byte[]> _listings = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                    return size() > MAX_CACHED_LISTINGS;
+                }
+            });
+    // DateFormat is not thread safe, so every thread keeps its own per locale
+    private final ThreadLocal<Map<Locale, DateFormat>> _dateFormats = ThreadLocal.withInitial(HashMap::new);
+    private volatile String _css;
+
     public DoGet(
             IWebdavStore store,
             String dftIndexFile,
@@ -35,12 +75,124 @@ public class DoGet extends DoHead {
             ResourceLocks resourceLocks,
             IMimeTyper mimeTyper,
             int contentLengthHeader
+    ) {
+        this(store, dftIndexFile, insteadOf404, resourceLocks, mimeTyper, contentLengthHeader, null, false);
+    }
+
+    public DoGet(
+            IWebdavStore store,
+            String dftIndexFile,
+            String insteadOf404,
+            ResourceLocks resourceLocks,
+            IMimeTyper mimeTyper,
+            int contentLengthHeader,
+            ResponseCompression compression
+    ) {
+        this(store, dftIndexFile, insteadOf404, resourceLocks, mimeTyper, contentLengthHeader, compression, false);
+    }
+
+    /**
+     * @param async
+     *              whether to send content without holding the request thread when the container supports it
+     */
+    public DoGet(
+            IWebdavStore store,
+            String dftIndexFile,
+            String insteadOf404,
+            ResourceLocks resourceLocks,
+            IMimeTyper mimeTyper,
+            int contentLengthHeader,
+            ResponseCompression compression,
+            boolean async
+    ) {
+        this(store, dftIndexFile, insteadOf404, resourceLocks, mimeTyper, contentLengthHeader, compression, async,
+                DEFAULT_ASYNC_TIMEOUT);
+    }
+
+    /**
+     * @param async
+     *                     whether to send content without holding the request thread when the container supports it
+     * @param asyncTimeout
+     *                     how long content may be sent asynchronously before the request is given up, in milliseconds;
+     *                     must be positive, so a client that stops reading does not keep its content open forever
+     */
+    public DoGet(
+            IWebdavStore store,
+            String dftIndexFile,
+            String insteadOf404,
+            ResourceLocks resourceLocks,
+            IMimeTyper mimeTyper,
+            int contentLengthHeader,
+            ResponseCompression compression,
+            boolean async,
+            long asyncTimeout
     ) {
         super(store, dftIndexFile, insteadOf404, resourceLocks, mimeTyper,
-                contentLengthHeader);
+                contentLengthHeader, compression);
+        if (asyncTimeout <= 0) {
+            throw new IllegalArgumentException("asyncTimeout must be positive: " + asyncTimeout);
+        }
+        _async = async;
+        _asyncTimeout = asyncTimeout;
     }
 
     protected void doBody(ITransaction transaction, HttpServletResponse resp, String path) {
+        sendContent(transaction, resp, path, false, null);
+    }
+
+    /**
+     * Sends the content as it is stored, in the content coding the store reports for it.
+     */
+    @Override
+    protected void doEncodedBody(ITransaction transaction, HttpServletResponse resp, String path) {
+        sendContent(transaction, resp, path, true, null);
+    }
+
+    /**
+     * Sends the content compressed while it is read, so it is never held in memory or compressed ahead.
+     */
+    @Override
+    protected void doCompressedBody(ITransaction transaction, HttpServletResponse resp, String path, String coding) {
+        sendContent(transaction, resp, path, false, coding);
+    }
+
+    /**
+     * Sends the content from a listener that reads the next chunk only when the client can take it, so a slow client
+     * holds no request thread. The content is opened before the request is released, while the transaction is open.
+     */
+    @Override
+    protected boolean doAsyncBody(
+            ITransaction transaction,
+            HttpServletRequest req,
+            HttpServletResponse resp,
+            String path,
+            boolean encoded
+    ) throws IOException {
+        if (!_async || !req.isAsyncSupported()) {
+            return false;
+        }
+        StoredObject so = _store.getStoredObject(transaction, path);
+        if (so.isNullResource()) {
+            return false;
+        }
+        ServletOutputStream out = resp.getOutputStream();
+        InputStream in = encoded
+                ? _store.getEncodedResourceContent(transaction, path)
+                : _store.getResourceContent(transaction, path);
+        AsyncContext asyncContext = req.startAsync();
+        // a client that stops reading without closing its connection would otherwise keep the content open forever
+        asyncContext.setTimeout(_asyncTimeout);
+        new AsyncContentSender(asyncContext, in, out, BUF_SIZE).start();
+        return true;
+    }
+
+    private void sendContent(
+            ITransaction transaction,
+            HttpServletResponse resp,
+            String path,
+            boolean encoded,
+            String compression
+    ) {
         try {
             StoredObject so = _store.getStoredObject(transaction, path);
             if (so.isNullResource()) {
@@ -51,8 +203,13 @@ public class DoGet extends DoHead {
                 return;
             }
             OutputStream out = resp.getOutputStream();
-            InputStream in = _store.getResourceContent(transaction, path);
+            InputStream in = encoded
+                    ? _store.getEncodedResourceContent(transaction, path)
+                    : _store.getResourceContent(transaction, path);
             try {
+                if (compression != null) {
+                    out = _compression.compress(out, compression);
+                }
                 int read;
                 byte[] copyBuffer = new byte[BUF_SIZE];
 
@@ -68,8 +225,11 @@ public class DoGet extends DoHead {
                     LOG.log(Level.WARNING, "Failed to close InputStream", ioException);
                 }
                 try {
-                    out.flush();
-                    out.close();
+                    try {
+                        out.flush();
+                    } finally {
+                        out.close();
+                    }
                 } catch (IOException ioException) {
                     LOG.log(Level.WARNING, "Failed to close OutputStream", ioException);
                 }
@@ -79,6 +239,88 @@ public class DoGet extends DoHead {
         }
     }
 
+    /**
+     * Sends the ranges by skipping to their start in the content, which the streams of the stores do without
+     * reading the skipped bytes. The content is only opened again for a range that starts before the previous one
+     * ended.
+     */
+    @Override
+    protected void doRangeBody(ITransaction transaction, HttpServletResponse resp, String path, ByteRanges ranges) {
+        InputStream in = null;
+        try {
+            OutputStream out = resp.getOutputStream();
+            try {
+                long position = 0;
+                byte[] copyBuffer = new byte[BUF_SIZE];
+                for (int i = 0; i < ranges.size(); i++) {
+                    if (ranges.isMultipart()) {
+                        out.write(ranges.getPartHeader(i).getBytes(StandardCharsets.ISO_8859_1));
+                    }
+                    if (in == null || ranges.getStart(i) < position) {
+                        if (in != null) {
+                            in.close();
+                        }
+                        in = _store.getResourceContent(transaction, path);
+                        position = 0;
+                    }
+                    skipFully(in, ranges.getStart(i) - position);
+                    long remaining = ranges.getEnd(i) - ranges.getStart(i) + 1;
+                    while (remaining > 0) {
+                        int read = in.read(copyBuffer, 0, (int) Math.min(copyBuffer.length, remaining));
+                        if (read == -1) {
+                            throw new EOFException("content ended before " + ranges.getContentRange(i));
+                        }
+                        out.write(copyBuffer, 0, read);
+                        remaining -= read;
+                    }
+                    position = ranges.getEnd(i) + 1;
+                }
+                if (ranges.isMultipart()) {
+                    out.write(ranges.getTrailer().getBytes(StandardCharsets.ISO_8859_1));
+                }
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ioException) {
+                        LOG.log(Level.WARNING, "Failed to close InputStream", ioException);
+                    }
+                }
+                try {
+                    try {
+                        out.flush();
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException ioException) {
+                    LOG.log(Level.WARNING, "Failed to close OutputStream", ioException);
+                }
+            }
+        } catch (Exception exception) {
+            LOG.log(Level.WARNING, "Failed to copy ranges", exception);
+        }
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("content ended while skipping");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    /**
+     * Streams the rows of the listing to the response as they are rendered. The <code>offset</code> and
+     * <code>limit</code> parameters select a page of the children, and <code>sort</code> orders them by
+     * <code>name</code>, <code>size</code> or <code>modified</code>, descending with a leading <code>-</code>. Sorted
+     * by name, only the children on the page are looked up. Pages are kept in memory per user while the modification
+     * time and the number of children of the folder stay the same.
+     */
     @Override
     protected void folderBody(
             ITransaction transaction,
@@ -103,89 +345,242 @@ public class DoGet extends DoHead {
             }
 
             if (so.isFolder()) {
-                // TODO some folder response (for browsers, DAV tools
-                // use propfind) in html?
-                DateFormat shortDF = getDateTimeFormat(req.getLocale());
+                Locale locale = req.getLocale();
+                int offset = Math.max(0, getIntParameter(req, "offset", 0));
+                int limit = getIntParameter(req, "limit", -1);
+                String sort = req.getParameter("sort");
+                boolean descending = sort != null && sort.startsWith("-");
+                String sortKey = sort == null ? SORT_NAME : descending ? sort.substring(1) : sort;
+                if (!SORT_SIZE.equals(sortKey) && !SORT_MODIFIED.equals(sortKey)) {
+                    sortKey = SORT_NAME;
+                }
                 resp.setContentType("text/html");
                 resp.setCharacterEncoding("UTF8");
                 OutputStream out = resp.getOutputStream();
                 String[] children = _store.getChildrenNames(transaction, path);
                 // Make sure it's not null
                 children = children == null ? new String[]{} : children;
-                // Sort by name
-                Arrays.sort(children);
-                StringBuilder childrenTemp = new StringBuilder();
-                childrenTemp.append("<html><head><title>Content of folder");
-                childrenTemp.append(escapeHtml(path));
-                childrenTemp.append("</title><style type=\"text/css\">");
-                childrenTemp.append(getCSS());
-                childrenTemp.append("</style></head>");
-                childrenTemp.append("<body>");
-                childrenTemp.append(getHeader(path));
-                childrenTemp.append("<table>");
-                childrenTemp.append("<tr><th>Name</th><th>Size</th><th>Created</th><th>Modified</th></tr>");
-                childrenTemp.append("<tr>");
-                childrenTemp.append("<td colspan=\"4\"><a href=\"../\">Parent</a></td></tr>");
-                boolean isEven = false;
-                for (String child : children) {
-                    isEven = !isEven;
-                    childrenTemp.append("<tr class=\"");
-                    childrenTemp.append(isEven ? "even" : "odd");
-                    childrenTemp.append("\">");
-                    childrenTemp.append("<td>");
-                    childrenTemp.append("<a href=\"");
-                    childrenTemp.append(escapeHtml(child));
-                    StoredObject obj = _store.getStoredObject(transaction, path + "/" + child);
-                    if (obj == null) {
-                        LOG.severe(String.format("Should not return null for '%s/%s'", path, child));
-                    }
-                    if (obj != null && obj.isFolder()) {
-                        childrenTemp.append("/");
-                    }
-                    childrenTemp.append("\">");
-                    childrenTemp.append(escapeHtml(child));
-                    childrenTemp.append("</a></td>");
-                    if (obj != null && obj.isFolder()) {
-                        childrenTemp.append("<td>Folder</td>");
-                    } else {
-                        childrenTemp.append("<td>");
-                        if (obj != null) {
-                            childrenTemp.append(obj.getResourceLength());
-                        } else {
-                            childrenTemp.append("Unknown");
-                        }
-                        childrenTemp.append(" Bytes</td>");
+
+                // stores may list different children to different users, so no user is served another's page
+                Principal principal = req.getUserPrincipal();
+                String cacheKey = (principal == null ? "" : principal.getName()) + '\n' + path + '\n'
+                                  + (so.getLastModified() == null ? "" : so.getLastModified().getTime())
+                                  + '\n' + children.length + '\n' + offset + '\n' + limit + '\n' + sortKey + '\n'
+                                  + descending + '\n' + locale;
+                byte[] cached = _listings.get(cacheKey);
+                if (cached != null) {
+                    out.write(cached);
+                    return;
+                }
+
+                String[] names;
+                StoredObject[] objects;
+                int total = children.length;
+                if (SORT_NAME.equals(sortKey)) {
+                    names = sortedPage(children, offset, limit, descending);
+                    objects = new StoredObject[names.length];
+                    for (int i = 0; i < names.length; i++) {
+                        objects[i] = getChild(transaction, path, names[i]);
                     }
-                    if (obj != null && obj.getCreationDate() != null) {
-                        childrenTemp.append("<td>");
-                        childrenTemp.append(shortDF.format(obj.getCreationDate()));
-                        childrenTemp.append("</td>");
-                    } else {
-                        childrenTemp.append("<td></td>");
+                } else {
+                    // sorting by metadata needs the metadata of all children
+                    String[] unsorted = children;
+                    boolean bySize = SORT_SIZE.equals(sortKey);
+                    StoredObject[] all = new StoredObject[children.length];
+                    Integer[] order = new Integer[children.length];
+                    for (int i = 0; i < children.length; i++) {
+                        all[i] = getChild(transaction, path, children[i]);
+                        order[i] = i;
                     }
-                    if (obj != null && obj.getLastModified() != null) {
-                        childrenTemp.append("<td>");
-                        childrenTemp.append(shortDF.format(obj.getLastModified()));
-                        childrenTemp.append("</td>");
-                    } else {
-                        childrenTemp.append("<td></td>");
+                    Comparator<Integer> comparator = Comparator.<Integer>comparingLong(i -> sortValue(all[i], bySize))
+                            .thenComparing(i -> unsorted[i]);
+                    Arrays.sort(order, descending ? comparator.reversed() : comparator);
+                    int from = Math.min(offset, order.length);
+                    int to = limit < 0 ? order.length : (int) Math.min(order.length, (long) from + limit);
+                    names = new String[to - from];
+                    objects = new StoredObject[to - from];
+                    for (int i = from; i < to; i++) {
+                        names[i - from] = children[order[i]];
+                        objects[i - from] = all[order[i]];
                     }
-                    childrenTemp.append("</tr>");
                 }
-                childrenTemp.append("</table>");
-                childrenTemp.append("</body></html>");
-                out.write(childrenTemp.toString().getBytes(StandardCharsets.UTF_8));
+
+                CapturingOutputStream capture = new CapturingOutputStream(out, MAX_CACHED_LISTING);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(capture, StandardCharsets.UTF_8), BUF_SIZE);
+                DateFormat shortDF = _dateFormats.get().computeIfAbsent(locale, this::getDateTimeFormat);
+                writer.write("<html><head><title>Content of folder");
+                writer.write(escapeHtml(path));
+                writer.write("</title><style type=\"text/css\">");
+                writer.write(getCSS());
+                writer.write("</style></head>");
+                writer.write("<body>");
+                writer.write(getHeader(path));
+                writer.write("<table>");
+                writer.write("<tr><th>Name</th><th>Size</th><th>Created</th><th>Modified</th></tr>");
+                writer.write("<tr>");
+                writer.write("<td colspan=\"4\"><a href=\"../\">Parent</a></td></tr>");
+                boolean isEven = false;
+                for (int i = 0; i < names.length; i++) {
+                    isEven = !isEven;
+                    writeRow(writer, names[i], objects[i], shortDF, isEven);
+                }
+                writer.write("</table>");
+                if (limit >= 0) {
+                    writePageLinks(writer, offset, limit, total, sort);
+                }
+                writer.write("</body></html>");
+                writer.flush();
+                byte[] page = capture.getCaptured();
+                if (page != null) {
+                    _listings.put(cacheKey, page);
+                }
+            }
+        }
+    }
+
+    private StoredObject getChild(ITransaction transaction, String path, String child) {
+        StoredObject obj = _store.getStoredObject(transaction, path + "/" + child);
+        if (obj == null) {
+            LOG.severe(String.format("Should not return null for '%s/%s'", path, child));
+        }
+        return obj;
+    }
+
+    private static long sortValue(StoredObject obj, boolean size) {
+        if (obj == null) {
+            return -1;
+        } else if (size) {
+            return obj.isFolder() ? -1 : obj.getResourceLength();
+        } else {
+            return obj.getLastModified() == null ? -1 : obj.getLastModified().getTime();
+        }
+    }
+
+    /**
+     * Returns the names on the page in order. For a page, only the names up to its end are kept while going through
+     * the children, instead of sorting all of them.
+     */
+    private static String[] sortedPage(String[] children, int offset, int limit, boolean descending) {
+        Comparator<String> order = descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        String[] sorted;
+        if (limit < 0 || (long) offset + limit >= children.length) {
+            sorted = children.clone();
+            Arrays.sort(sorted, order);
+        } else {
+            int end = offset + limit;
+            // the largest of the first names kept is on top, so it is the one to make room
+            PriorityQueue<String> first = new PriorityQueue<>(end + 1, order.reversed());
+            for (String child : children) {
+                first.add(child);
+                if (first.size() > end) {
+                    first.poll();
+                }
             }
+            sorted = first.toArray(new String[0]);
+            Arrays.sort(sorted, order);
+        }
+        int from = Math.min(offset, sorted.length);
+        int to = limit < 0 ? sorted.length : Math.min(sorted.length, from + limit);
+        return Arrays.copyOfRange(sorted, from, to);
+    }
+
+    private static void writeRow(Writer writer, String child, StoredObject obj, DateFormat shortDF, boolean isEven)
+            throws IOException {
+        writer.write("<tr class=\"");
+        writer.write(isEven ? "even" : "odd");
+        writer.write("\">");
+        writer.write("<td>");
+        writer.write("<a href=\"");
+        writer.write(escapeHtml(child));
+        if (obj != null && obj.isFolder()) {
+            writer.write("/");
+        }
+        writer.write("\">");
+        writer.write(escapeHtml(child));
+        writer.write("</a></td>");
+        if (obj != null && obj.isFolder()) {
+            writer.write("<td>Folder</td>");
+        } else {
+            writer.write("<td>");
+            if (obj != null) {
+                writer.write(Long.toString(obj.getResourceLength()));
+            } else {
+                writer.write("Unknown");
+            }
+            writer.write(" Bytes</td>");
+        }
+        if (obj != null && obj.getCreationDate() != null) {
+            writer.write("<td>");
+            writer.write(shortDF.format(obj.getCreationDate()));
+            writer.write("</td>");
+        } else {
+            writer.write("<td></td>");
+        }
+        if (obj != null && obj.getLastModified() != null) {
+            writer.write("<td>");
+            writer.write(shortDF.format(obj.getLastModified()));
+            writer.write("</td>");
+        } else {
+            writer.write("<td></td>");
+        }
+        writer.write("</tr>");
+    }
+
+    private static void writePageLinks(Writer writer, int offset, int limit, int total, String sort)
+            throws IOException {
+        writer.write("<p>");
+        if (offset > 0) {
+            writePageLink(writer, "Previous", Math.max(0, offset - limit), limit, sort);
+        }
+        if ((long) offset + limit < total) {
+            writePageLink(writer, "Next", offset + limit, limit, sort);
+        }
+        writer.write("</p>");
+    }
+
+    private static void writePageLink(Writer writer, String label, int offset, int limit, String sort)
+            throws IOException {
+        writer.write("<a href=\"?offset=");
+        writer.write(Integer.toString(offset));
+        writer.write("&amp;limit=");
+        writer.write(Integer.toString(limit));
+        if (sort != null) {
+            writer.write("&amp;sort=");
+            writer.write(escapeHtml(URLEncoder.encode(sort, StandardCharsets.UTF_8)));
+        }
+        writer.write("\">");
+        writer.write(label);
+        writer.write("</a> ");
+    }
+
+    private static int getIntParameter(HttpServletRequest req, String name, int defaultValue) {
+        String value = req.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
         }
     }
 
     /**
      * Return the CSS styles used to display the HTML representation
-     * of the webdav content.
+     * of the webdav content. A <code>webdav.css</code> on the class path is only read once.
      * 
      * @return the CSS styles
      */
     protected String getCSS() {
+        String css = _css;
+        if (css == null) {
+            css = loadCSS();
+            _css = css;
+        }
+        return css;
+    }
+
+    private String loadCSS() {
         // The default styles to use
         String retVal = """
                 body {
@@ -267,4 +662,43 @@ public class DoGet extends DoHead {
     protected DateFormat getDateTimeFormat(Locale browserLocale) {
         return SimpleDateFormat.getDateTimeInstance(SimpleDateFormat.SHORT, SimpleDateFormat.MEDIUM, browserLocale);
     }
+
+    /**
+     * Passes everything through to the response and keeps a copy, as long as it stays small enough to cache.
+     */
+    private static final class CapturingOutputStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        private void capture(byte[] b, int off, int len) {
+            if (captured != null) {
+                if (captured.size() + len > limit) {
+                    captured = null;
+                } else {
+                    captured.write(b, off, len);
+                }
+            }
+        }
+
+        private byte[] getCaptured() {
+            return captured == null ? null : captured.toByteArray();
+        }
+    }
 }
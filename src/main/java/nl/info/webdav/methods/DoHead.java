@@ -5,6 +5,11 @@
 package nl.info.webdav.methods;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
 import java.util.logging.Logger;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -30,6 +35,7 @@ public class DoHead extends AbstractMethod {
     protected ResourceLocks _resourceLocks;
     protected IMimeTyper _mimeTyper;
     protected int _contentLength;
+    protected ResponseCompression _compression;
 
     public DoHead(
             IWebdavStore store,
@@ -38,6 +44,23 @@ public class DoHead extends AbstractMethod {
             ResourceLocks resourceLocks,
             IMimeTyper mimeTyper,
             int contentLengthHeader
+    ) {
+        this(store, dftIndexFile, insteadOf404, resourceLocks, mimeTyper, contentLengthHeader, null);
+    }
+
+    /**
+     * @param compression
+     *                    how to compress responses the client accepts compressed, or null to send content as it is
+     *                    stored
+     */
+    public DoHead(
+            IWebdavStore store,
+            String dftIndexFile,
+            String insteadOf404,
+            ResourceLocks resourceLocks,
+            IMimeTyper mimeTyper,
+            int contentLengthHeader,
+            ResponseCompression compression
     ) {
         _store = store;
         _dftIndexFile = dftIndexFile;
@@ -45,6 +68,7 @@ public class DoHead extends AbstractMethod {
         _resourceLocks = resourceLocks;
         _mimeTyper = mimeTyper;
         _contentLength = contentLengthHeader;
+        _compression = compression;
     }
 
     @Override
@@ -91,20 +115,51 @@ public class DoHead extends AbstractMethod {
                 return;
             }
 
+            // choose the content coding first, as the entity tag depends on it: content the store keeps
+            // compressed is sent as is, other content of a compressible type is compressed while it is sent
+            String contentEncoding = null;
+            boolean compress = false;
+            boolean varies = false;
+            String mimeType = null;
+            boolean mimeTypeKnown = false;
+            if (so.isResource()) {
+                if (so.getContentEncoding() != null) {
+                    varies = true;
+                    if (acceptsEncoding(req, so.getContentEncoding()) && hasEncodedContent(transaction, path)) {
+                        contentEncoding = so.getContentEncoding();
+                    }
+                } else if (_compression != null && so.getResourceLength() >= _compression.getMinLength()) {
+                    mimeType = getMimeType(transaction, path);
+                    mimeTypeKnown = true;
+                    if (_compression.isCompressible(mimeType)) {
+                        varies = true;
+                        contentEncoding = negotiateCompression(req);
+                        compress = contentEncoding != null;
+                    }
+                }
+            }
+            String eTag = getETag(so, contentEncoding);
+
+            // answer unchanged resources from their metadata, before locking or opening the content
+            int precondition = checkPreconditions(req, so, eTag, true);
+            if (precondition == WebdavStatus.SC_NOT_MODIFIED) {
+                resp.addHeader("ETag", eTag);
+                if (varies) {
+                    resp.addHeader("Vary", "Accept-Encoding");
+                }
+                resp.setStatus(WebdavStatus.SC_NOT_MODIFIED);
+                return;
+            } else if (precondition != 0) {
+                resp.sendError(precondition);
+                return;
+            }
+
             String tempLockOwner = "doGet" + System.currentTimeMillis() + req.toString();
 
             if (_resourceLocks.lock(transaction, path, tempLockOwner, false, 0,
                     TEMP_TIMEOUT, TEMPORARY)) {
                 try {
 
-                    String eTagMatch = req.getHeader("If-None-Match");
-                    if (eTagMatch != null) {
-                        if (eTagMatch.equals(getETag(so))) {
-                            resp.setStatus(WebdavStatus.SC_NOT_MODIFIED);
-                            return;
-                        }
-                    }
-
                     if (so.isResource()) {
                         // path points to a file but ends with / or \
                         if (path.endsWith("/") || (path.endsWith("\\"))) {
@@ -113,40 +168,79 @@ public class DoHead extends AbstractMethod {
                         } else {
 
                             // setting headers
-                            long lastModified = so.getLastModified().getTime();
-                            resp.setDateHeader("last-modified", lastModified);
+                            if (so.getLastModified() != null) {
+                                resp.setDateHeader("last-modified", so.getLastModified().getTime());
+                            }
 
-                            String eTag = getETag(so);
                             resp.addHeader("ETag", eTag);
 
-                            long resourceLength = so.getResourceLength();
+                            if (varies) {
+                                resp.addHeader("Vary", "Accept-Encoding");
+                            }
+                            if (contentEncoding != null) {
+                                resp.setHeader("Content-Encoding", contentEncoding);
+                            }
+
+                            // the length of compressed content is only known once it has been sent
+                            long resourceLength = compress ? -1 : contentEncoding != null ? so.getEncodedLength()
+                                    : so.getResourceLength();
+
+                            // ranges are only served from the content as is
+                            List<long[]> ranges = null;
+                            if (contentEncoding == null) {
+                                resp.setHeader("Accept-Ranges", "bytes");
+                                String range = req.getHeader("Range");
+                                if (range != null && ifRangeMatches(req, so, eTag)) {
+                                    ranges = parseRanges(range, resourceLength);
+                                    if (ranges != null && ranges.isEmpty()) {
+                                        resp.setHeader("Content-Range", "bytes */" + resourceLength);
+                                        resp.sendError(WebdavStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                                        return;
+                                    }
+                                }
+                            }
+
+                            if (!mimeTypeKnown) {
+                                mimeType = getMimeType(transaction, path);
+                            }
+
+                            if (ranges != null) {
+                                ByteRanges byteRanges = new ByteRanges(ranges, resourceLength, mimeType);
+                                resp.setStatus(WebdavStatus.SC_PARTIAL_CONTENT);
+                                if (byteRanges.isMultipart()) {
+                                    resp.setContentType("multipart/byteranges; boundary=" + byteRanges.getBoundary());
+                                } else {
+                                    resp.setHeader("Content-Range", byteRanges.getContentRange(0));
+                                    if (mimeType != null) {
+                                        resp.setContentType(mimeType);
+                                    }
+                                }
+                                if (_contentLength == 1) {
+                                    setContentLength(resp, byteRanges.getContentLength());
+                                }
+                                doRangeBody(transaction, resp, path, byteRanges);
+                                return;
+                            }
 
                             if (_contentLength == 1) {
                                 if (resourceLength > 0) {
-                                    if (resourceLength <= Integer.MAX_VALUE) {
-                                        resp
-                                                .setContentLength((int) resourceLength);
-                                    } else {
-                                        resp.setHeader("content-length", "" + resourceLength);
-                                        // is "content-length" the right header?
-                                        // is long a valid format?
-                                    }
+                                    setContentLength(resp, resourceLength);
                                 }
                             }
 
-                            String mimeType = _mimeTyper.getMimeType(transaction, path);
                             if (mimeType != null) {
                                 resp.setContentType(mimeType);
-                            } else {
-                                int lastSlash = path.replace('\\', '/')
-                                        .lastIndexOf('/');
-                                int lastDot = path.indexOf(".", lastSlash);
-                                if (lastDot == -1) {
-                                    resp.setContentType("text/html");
-                                }
                             }
 
-                            doBody(transaction, resp, path);
+                            if (compress) {
+                                doCompressedBody(transaction, resp, path, contentEncoding);
+                            } else if (!doAsyncBody(transaction, req, resp, path, contentEncoding != null)) {
+                                if (contentEncoding != null) {
+                                    doEncodedBody(transaction, resp, path);
+                                } else {
+                                    doBody(transaction, resp, path);
+                                }
+                            }
                         }
                     } else {
                         folderBody(transaction, path, resp, req);
@@ -191,4 +285,283 @@ public class DoHead extends AbstractMethod {
     ) throws IOException {
         // no body for HEAD
     }
+
+    /**
+     * Sends the requested ranges of the content.
+     */
+    protected void doRangeBody(
+            ITransaction transaction,
+            HttpServletResponse resp,
+            String path,
+            ByteRanges ranges
+    ) throws IOException {
+        // no body for HEAD
+    }
+
+    protected void doEncodedBody(
+            ITransaction transaction,
+            HttpServletResponse resp,
+            String path
+    ) throws IOException {
+        // no body for HEAD
+    }
+
+    /**
+     * Starts sending the content, or its stored encoding, without holding the request thread.
+     *
+     * @return true if the content is sent asynchronously, false to send it on the request thread
+     */
+    protected boolean doAsyncBody(
+            ITransaction transaction,
+            HttpServletRequest req,
+            HttpServletResponse resp,
+            String path,
+            boolean encoded
+    ) throws IOException {
+        // no body for HEAD
+        return false;
+    }
+
+    /**
+     * Sends the content compressed in the given content coding.
+     */
+    protected void doCompressedBody(
+            ITransaction transaction,
+            HttpServletResponse resp,
+            String path,
+            String coding
+    ) throws IOException {
+        // no body for HEAD
+    }
+
+    /**
+     * Checks that the store gives the content in the coding it reports, so content of a store that does not keep it
+     * is sent without one.
+     */
+    private boolean hasEncodedContent(ITransaction transaction, String path) throws IOException {
+        InputStream in = _store.getEncodedResourceContent(transaction, path);
+        if (in == null) {
+            return false;
+        }
+        in.close();
+        return true;
+    }
+
+    private String getMimeType(ITransaction transaction, String path) {
+        String mimeType = _mimeTyper.getMimeType(transaction, path);
+        if (mimeType == null) {
+            int lastSlash = path.replace('\\', '/')
+                    .lastIndexOf('/');
+            int lastDot = path.indexOf(".", lastSlash);
+            if (lastDot == -1) {
+                mimeType = "text/html";
+            }
+        }
+        return mimeType;
+    }
+
+    /**
+     * @return the content coding to compress the response in, gzip before deflate, or null if the client accepts
+     *         neither
+     */
+    private static String negotiateCompression(HttpServletRequest req) {
+        String header = req.getHeader("Accept-Encoding");
+        if (acceptsEncoding(header, "gzip")) {
+            return "gzip";
+        } else if (acceptsEncoding(header, "deflate")) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    private static void setContentLength(HttpServletResponse resp, long length) {
+        if (length <= Integer.MAX_VALUE) {
+            resp.setContentLength((int) length);
+        } else {
+            resp.setHeader("content-length", "" + length);
+        }
+    }
+
+    /**
+     * Determines whether the ranges may be served, following the <code>If-Range</code> header: an entity tag
+     * must match the strong entity tag of the resource, a date its last modification exactly. A date never matches a
+     * resource without a known modification date, so the whole content is sent.
+     */
+    private boolean ifRangeMatches(HttpServletRequest req, StoredObject so, String eTag) {
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return !eTag.startsWith("W/") && ifRange.equals(eTag);
+        }
+        long date = parseHttpDate(ifRange);
+        return date != -1 && date == getLastModifiedSeconds(so);
+    }
+
+    /**
+     * Parses a <code>Range</code> header into inclusive byte offsets.
+     *
+     * @param header the value of the <code>Range</code> header
+     * @param length the length of the content
+     * @return the satisfiable ranges in the order requested, an empty list if none is satisfiable, or null if
+     *         the header is invalid, uses another unit or asks for too many ranges and must be ignored
+     */
+    protected static List<long[]> parseRanges(String header, long length) {
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        String[] specs = value.substring(6).split(",");
+        if (specs.length > ByteRanges.MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>();
+        try {
+            for (String spec : specs) {
+                spec = spec.trim();
+                int dash = spec.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                }
+                if (start < length) {
+                    ranges.add(new long[]{start, Math.min(end, length - 1)});
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
+
+    /**
+     * Determines whether the client accepts the given content coding, following the
+     * <code>Accept-Encoding</code> header including its quality values.
+     *
+     * @param req    the request
+     * @param coding the content coding, for example <code>gzip</code>
+     * @return true if the response may use the content coding
+     */
+    protected static boolean acceptsEncoding(HttpServletRequest req, String coding) {
+        return acceptsEncoding(req.getHeader("Accept-Encoding"), coding);
+    }
+
+    private static boolean acceptsEncoding(String header, String coding) {
+        if (header == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String element : header.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals(coding) || ("gzip".equals(coding) && name.equals("x-gzip"))) {
+                return quality > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = quality > 0;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * The ranges of the content a response sends, with the framing of a <code>multipart/byteranges</code> body
+     * when there is more than one.
+     */
+    protected static final class ByteRanges {
+        private static final int MAX_RANGES = 32;
+
+        private final List<long[]> ranges;
+        private final long length;
+        private final String contentType;
+        private final String boundary;
+
+        private ByteRanges(List<long[]> ranges, long length, String contentType) {
+            this.ranges = ranges;
+            this.length = length;
+            this.contentType = contentType;
+            this.boundary = ranges.size() > 1 ? UUID.randomUUID().toString().replace("-", "") : null;
+        }
+
+        public int size() {
+            return ranges.size();
+        }
+
+        public long getStart(int i) {
+            return ranges.get(i)[0];
+        }
+
+        public long getEnd(int i) {
+            return ranges.get(i)[1];
+        }
+
+        public boolean isMultipart() {
+            return boundary != null;
+        }
+
+        public String getBoundary() {
+            return boundary;
+        }
+
+        public String getContentRange(int i) {
+            return "bytes " + getStart(i) + "-" + getEnd(i) + "/" + length;
+        }
+
+        /**
+         * @return the delimiter and headers that precede part <code>i</code> of a multipart body
+         */
+        public String getPartHeader(int i) {
+            return (i == 0 ? "" : "\r\n") + "--" + boundary + "\r\n"
+                    + (contentType == null ? "" : "Content-Type: " + contentType + "\r\n")
+                    + "Content-Range: " + getContentRange(i) + "\r\n\r\n";
+        }
+
+        /**
+         * @return the delimiter that closes a multipart body
+         */
+        public String getTrailer() {
+            return "\r\n--" + boundary + "--\r\n";
+        }
+
+        public long getContentLength() {
+            long contentLength = 0;
+            for (int i = 0; i < ranges.size(); i++) {
+                contentLength += getEnd(i) - getStart(i) + 1;
+                if (isMultipart()) {
+                    contentLength += getPartHeader(i).length();
+                }
+            }
+            return isMultipart() ? contentLength + getTrailer().length() : contentLength;
+        }
+    }
 }
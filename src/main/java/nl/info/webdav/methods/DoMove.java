@@ -12,27 +12,34 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import nl.info.webdav.ITransaction;
+import nl.info.webdav.IWebdavStore;
+import nl.info.webdav.StoredObject;
 import nl.info.webdav.WebdavStatus;
 import nl.info.webdav.exceptions.AccessDeniedException;
+import nl.info.webdav.exceptions.ConflictException;
 import nl.info.webdav.exceptions.LockFailedException;
 import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
 import nl.info.webdav.exceptions.WebdavException;
 import nl.info.webdav.locking.ResourceLocks;
 
 public class DoMove extends AbstractMethod {
     private static final Logger LOG = Logger.getLogger(DoMove.class.getName());
 
+    private final IWebdavStore _store;
     private final ResourceLocks _resourceLocks;
     private final DoDelete _doDelete;
     private final DoCopy _doCopy;
     private final boolean _readOnly;
 
     public DoMove(
+            IWebdavStore store,
             ResourceLocks resourceLocks,
             DoDelete doDelete,
             DoCopy doCopy,
             boolean readOnly
     ) {
+        _store = store;
         _resourceLocks = resourceLocks;
         _doDelete = doDelete;
         _doCopy = doCopy;
@@ -57,15 +64,8 @@ public class DoMove extends AbstractMethod {
                 return;
             }
 
-            String destinationPath = req.getHeader("Destination");
+            String destinationPath = _doCopy.parseDestinationHeader(req, resp);
             if (destinationPath == null) {
-                resp.sendError(WebdavStatus.SC_BAD_REQUEST);
-                return;
-            }
-
-            if (!checkLocks(transaction, req, _resourceLocks,
-                    destinationPath)) {
-                resp.setStatus(WebdavStatus.SC_LOCKED);
                 return;
             }
 
@@ -74,19 +74,15 @@ public class DoMove extends AbstractMethod {
             if (_resourceLocks.lock(transaction, sourcePath, tempLockOwner,
                     false, 0, TEMP_TIMEOUT, TEMPORARY)) {
                 try {
-
-                    if (_doCopy.copyResource(transaction, req, resp)) {
-
-                        errorList = new Hashtable<>();
-                        _doDelete.deleteResource(transaction, sourcePath, errorList, resp);
-                        if (!errorList.isEmpty()) {
-                            sendReport(resp, errorList);
-                        }
-                    }
-
+                    moveResource(transaction, req, resp, sourcePath, destinationPath);
                 } catch (AccessDeniedException e) {
                     resp.sendError(WebdavStatus.SC_FORBIDDEN);
                 } catch (ObjectAlreadyExistsException e) {
+                    resp.sendError(WebdavStatus.SC_PRECONDITION_FAILED);
+                } catch (ConflictException e) {
+                    resp.sendError(WebdavStatus.SC_CONFLICT, req
+                            .getRequestURI());
+                } catch (ObjectNotFoundException e) {
                     resp.sendError(WebdavStatus.SC_NOT_FOUND, req
                             .getRequestURI());
                 } catch (WebdavException e) {
@@ -96,8 +92,7 @@ public class DoMove extends AbstractMethod {
                             sourcePath, tempLockOwner);
                 }
             } else {
-                errorList.put(req.getHeader("Destination"),
-                        WebdavStatus.SC_LOCKED);
+                errorList.put(destinationPath, WebdavStatus.SC_LOCKED);
                 sendReport(resp, errorList);
             }
         } else {
@@ -105,4 +100,116 @@ public class DoMove extends AbstractMethod {
 
         }
     }
+
+    /**
+     * Moves a resource or folder by a single call to {@link IWebdavStore#move}, so stores that can rename objects
+     * do not have to copy the content. An existing destination is deleted first if the Overwrite header allows it.
+     * 
+     * @param transaction
+     *                        indicates that the method is within the scope of a WebDAV
+     *                        transaction
+     * @param req
+     *                        Servlet request
+     * @param resp
+     *                        Servlet response
+     * @param sourcePath
+     *                        path of the resource to be moved
+     * @param destinationPath
+     *                        normalized path of the destination
+     * @return true if the move is successful
+     * @throws WebdavException
+     *                         if an error in the underlying store occurs
+     * @throws IOException
+     *                         when an error occurs while sending the response
+     */
+    public boolean moveResource(
+            ITransaction transaction,
+            HttpServletRequest req,
+            HttpServletResponse resp,
+            String sourcePath,
+            String destinationPath
+    ) throws WebdavException, IOException {
+
+        if (sourcePath.equals(destinationPath)
+                || destinationPath.startsWith(getCleanPath(sourcePath) + "/")) {
+            // moving onto itself or into its own subtree
+            resp.sendError(WebdavStatus.SC_FORBIDDEN);
+            return false;
+        }
+
+        String parentDestinationPath = getParentPath(getCleanPath(destinationPath));
+
+        if (!checkLocks(transaction, req, _resourceLocks,
+                parentDestinationPath)) {
+            resp.setStatus(WebdavStatus.SC_LOCKED);
+            return false; // parentDestination is locked
+        }
+
+        if (!checkLocks(transaction, req, _resourceLocks, destinationPath)) {
+            resp.setStatus(WebdavStatus.SC_LOCKED);
+            return false; // destination is locked
+        }
+
+        boolean overwrite = true;
+        String overwriteHeader = req.getHeader("Overwrite");
+
+        if (overwriteHeader != null) {
+            overwrite = overwriteHeader.equalsIgnoreCase("T");
+        }
+
+        String lockOwner = "moveResource" + System.currentTimeMillis() + req;
+
+        if (_resourceLocks.lock(transaction, destinationPath, lockOwner, false,
+                0, TEMP_TIMEOUT, TEMPORARY)) {
+            try {
+                StoredObject sourceSo = _store.getStoredObject(transaction, sourcePath);
+                if (sourceSo == null) {
+                    resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    return false;
+                }
+
+                if (sourceSo.isNullResource()) {
+                    String methodsAllowed = DeterminableMethod
+                            .determineMethodsAllowed(sourceSo);
+                    resp.addHeader("Allow", methodsAllowed);
+                    resp.sendError(WebdavStatus.SC_METHOD_NOT_ALLOWED);
+                    return false;
+                }
+
+                int precondition = checkPreconditions(req, sourceSo, false);
+                if (precondition != 0) {
+                    resp.sendError(precondition);
+                    return false;
+                }
+
+                StoredObject destinationSo = _store.getStoredObject(transaction,
+                        destinationPath);
+
+                if (destinationSo != null) {
+                    if (!overwrite) {
+                        resp.sendError(WebdavStatus.SC_PRECONDITION_FAILED);
+                        return false;
+                    }
+                    Hashtable<String, Integer> errorList = new Hashtable<>();
+                    _doDelete.deleteResource(transaction, destinationPath, errorList, resp);
+                    if (!errorList.isEmpty()) {
+                        // the destination could not be cleared completely
+                        sendReport(resp, errorList);
+                        return false;
+                    }
+                } else {
+                    resp.setStatus(WebdavStatus.SC_CREATED);
+                }
+
+                _store.move(transaction, sourcePath, destinationPath);
+            } finally {
+                _resourceLocks.unlockTemporaryLockedObjects(transaction,
+                        destinationPath, lockOwner);
+            }
+        } else {
+            resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+            return false;
+        }
+        return true;
+    }
 }
@@ -54,6 +54,12 @@ public class DoPropfind extends AbstractMethod {
      */
     private static final int FIND_PROPERTY_NAMES = 2;
 
+    /**
+     * Checksum property as understood by ownCloud and Nextcloud clients
+     */
+    private static final String CHECKSUMS = "http://owncloud.org/ns:checksums";
+    private static final String CHECKSUM = "http://owncloud.org/ns:checksum";
+
     private final IWebdavStore _store;
     private final ResourceLocks _resourceLocks;
     private final IMimeTyper _mimeTyper;
@@ -293,6 +299,9 @@ public class DoPropfind extends AbstractMethod {
                                 mimeType);
                     }
                     generatedXML.writeProperty("DAV::getetag", getETag(so));
+                    if (so.getContentDigest() != null) {
+                        writeChecksums(generatedXML, so);
+                    }
                     generatedXML.writeElement("DAV::resourcetype",
                             XMLWriter.NO_CONTENT);
                 } else {
@@ -325,6 +334,9 @@ public class DoPropfind extends AbstractMethod {
                     generatedXML.writeElement("DAV::getcontenttype", XMLWriter.NO_CONTENT);
                     generatedXML.writeElement("DAV::getetag", XMLWriter.NO_CONTENT);
                     generatedXML.writeElement("DAV::getlastmodified", XMLWriter.NO_CONTENT);
+                    if (so.getContentDigest() != null) {
+                        generatedXML.writeElement(CHECKSUMS, XMLWriter.NO_CONTENT);
+                    }
                 }
                 generatedXML.writeElement("DAV::resourcetype", XMLWriter.NO_CONTENT);
                 generatedXML.writeElement("DAV::supportedlock", XMLWriter.NO_CONTENT);
@@ -434,6 +446,17 @@ public class DoPropfind extends AbstractMethod {
                                 );
                             }
                         }
+                        case "DAV::quota-used-bytes" -> writeQuota(generatedXML, property, isFolder,
+                                isFolder ? _store.getQuotaUsedBytes(transaction, path) : -1, propertiesNotFound);
+                        case "DAV::quota-available-bytes" -> writeQuota(generatedXML, property, isFolder,
+                                isFolder ? _store.getQuotaAvailableBytes(transaction, path) : -1, propertiesNotFound);
+                        case CHECKSUMS -> {
+                            if (isFolder || so.getContentDigest() == null) {
+                                propertiesNotFound.addElement(property);
+                            } else {
+                                writeChecksums(generatedXML, so);
+                            }
+                        }
                         case "DAV::source" -> generatedXML.writeProperty("DAV::source", "");
                         case "DAV::supportedlock" -> writeSupportedLockElements(transaction, generatedXML, path);
                         case "DAV::lockdiscovery" -> writeLockDiscoveryElements(transaction, generatedXML, path);
@@ -476,6 +499,26 @@ public class DoPropfind extends AbstractMethod {
         generatedXML.writeElement("DAV::response", XMLWriter.CLOSING);
     }
 
+    private void writeQuota(
+            XMLWriter generatedXML,
+            String property,
+            boolean isFolder,
+            long value,
+            Vector<String> propertiesNotFound
+    ) {
+        if (!isFolder || value < 0) {
+            propertiesNotFound.addElement(property);
+        } else {
+            generatedXML.writeProperty(property, String.valueOf(value));
+        }
+    }
+
+    private void writeChecksums(XMLWriter generatedXML, StoredObject so) {
+        generatedXML.writeElement(CHECKSUMS, XMLWriter.OPENING);
+        generatedXML.writeProperty(CHECKSUM, "SHA256:" + so.getContentDigest());
+        generatedXML.writeElement(CHECKSUMS, XMLWriter.CLOSING);
+    }
+
     private void writeSupportedLockElements(
             ITransaction transaction,
             XMLWriter generatedXML,
@@ -16,6 +16,7 @@ import nl.info.webdav.IWebdavStore;
 import nl.info.webdav.StoredObject;
 import nl.info.webdav.WebdavStatus;
 import nl.info.webdav.exceptions.AccessDeniedException;
+import nl.info.webdav.exceptions.InsufficientStorageException;
 import nl.info.webdav.exceptions.LockFailedException;
 import nl.info.webdav.exceptions.WebdavException;
 import nl.info.webdav.locking.IResourceLocks;
@@ -84,6 +85,17 @@ public class DoPut extends AbstractMethod {
 
                     so = _store.getStoredObject(transaction, path);
 
+                    int precondition = checkPreconditions(req, so, false);
+                    if (precondition != 0) {
+                        resp.sendError(precondition);
+                        return;
+                    }
+
+                    if (exceedsQuota(transaction, req, parentPath, so)) {
+                        resp.sendError(WebdavStatus.SC_INSUFFICIENT_STORAGE);
+                        return;
+                    }
+
                     if (so == null) {
                         _store.createResource(transaction, path);
                         // resp.setStatus(WebdavStatus.SC_CREATED);
@@ -143,6 +155,8 @@ public class DoPut extends AbstractMethod {
 
                 } catch (AccessDeniedException e) {
                     resp.sendError(WebdavStatus.SC_FORBIDDEN);
+                } catch (InsufficientStorageException e) {
+                    resp.sendError(WebdavStatus.SC_INSUFFICIENT_STORAGE);
                 } catch (WebdavException e) {
                     resp.sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
                 } finally {
@@ -157,6 +171,69 @@ public class DoPut extends AbstractMethod {
         }
     }
 
+    /**
+     * Checks a PUT as far as it can be checked before its body is received: the locks, the conditional headers and
+     * the announced length of the body against the quota. {@link #execute} checks them again once the body is there.
+     *
+     * @return 0 if the body can be received, or the status to refuse the PUT with
+     */
+    public int checkBeforeBody(ITransaction transaction, HttpServletRequest req) {
+        if (_readOnly) {
+            return WebdavStatus.SC_FORBIDDEN;
+        }
+        String path = getRelativePath(req);
+        String parentPath = getParentPath(path);
+        if (!checkLocks(transaction, req, _resourceLocks, parentPath)
+                || !checkLocks(transaction, req, _resourceLocks, path)) {
+            return WebdavStatus.SC_LOCKED;
+        }
+        StoredObject so = _store.getStoredObject(transaction, path);
+        int precondition = checkPreconditions(req, so, false);
+        if (precondition != 0) {
+            return precondition;
+        }
+        if (exceedsQuota(transaction, req, parentPath, so)) {
+            return WebdavStatus.SC_INSUFFICIENT_STORAGE;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns how long the body of a PUT may become under the quota of the store, so a body that does not announce its
+     * length can be refused once it has grown too long.
+     *
+     * @return the most bytes the body may have, or -1 if the store has no quota
+     */
+    public long getAvailableBytes(ITransaction transaction, HttpServletRequest req) {
+        String path = getRelativePath(req);
+        return getAvailableBytes(transaction, getParentPath(path), _store.getStoredObject(transaction, path));
+    }
+
+    /**
+     * Checks the announced length of the body against the quota of the store, so an upload that does not fit is
+     * rejected before its body is read.
+     */
+    private boolean exceedsQuota(ITransaction transaction, HttpServletRequest req, String parentPath, StoredObject so) {
+        long contentLength = req.getContentLengthLong();
+        if (contentLength <= 0) {
+            return false;
+        }
+        long available = getAvailableBytes(transaction, parentPath, so);
+        return available >= 0 && contentLength > available;
+    }
+
+    /**
+     * Replacing an existing resource frees its current length.
+     */
+    private long getAvailableBytes(ITransaction transaction, String parentPath, StoredObject so) {
+        long available = _store.getQuotaAvailableBytes(transaction, parentPath == null ? "/" : parentPath);
+        if (available < 0) {
+            return -1;
+        }
+        long replaced = so == null || so.isFolder() ? 0 : so.getResourceLength();
+        return available + replaced;
+    }
+
     private void doUserAgentWorkaround(HttpServletResponse resp) {
         if (_userAgent != null && _userAgent.contains("WebDAVFS") && !_userAgent.contains("Transmit")) {
             LOG.fine("DoPut.execute() : do workaround for user agent '" + _userAgent + "'");
@@ -0,0 +1,180 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.methods;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Settings and compressors for compressing GET responses while they are sent.
+ * <p>
+ * Content is compressed when its type is one of the compressible types and it has at least the minimum length.
+ * The compressors reuse {@link Deflater}s from a pool, so a response does not allocate the native state of a new one.
+ */
+public class ResponseCompression {
+
+    /**
+     * The content types compressed by default. A type ending in <code>/*</code> stands for all its subtypes.
+     */
+    public static final Set<String> DEFAULT_MIME_TYPES = Set.of("text/*", "application/json",
+            "application/javascript", "application/xml", "application/xhtml+xml", "image/svg+xml");
+
+    /**
+     * The minimum length of content compressed by default; smaller content hardly gets smaller.
+     */
+    public static final long DEFAULT_MIN_LENGTH = 1024;
+
+    private static final byte[] GZIP_HEADER = new byte[]{0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0,
+                                                         (byte) 0xff};
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Set<String> _mimeTypes = new HashSet<>();
+    private final long _minLength;
+    private final BlockingQueue<Deflater> _gzipDeflaters;
+    private final BlockingQueue<Deflater> _deflateDeflaters;
+
+    public ResponseCompression() {
+        this(DEFAULT_MIME_TYPES, DEFAULT_MIN_LENGTH);
+    }
+
+    /**
+     * @param mimeTypes
+     *                  the content types to compress
+     * @param minLength
+     *                  the minimum length of the content to compress
+     */
+    public ResponseCompression(Collection<String> mimeTypes, long minLength) {
+        for (String mimeType : mimeTypes) {
+            _mimeTypes.add(mimeType.trim().toLowerCase(Locale.ROOT));
+        }
+        _minLength = minLength;
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        _gzipDeflaters = new ArrayBlockingQueue<>(poolSize);
+        _deflateDeflaters = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    public long getMinLength() {
+        return _minLength;
+    }
+
+    /**
+     * @param mimeType
+     *                 the content type, possibly with parameters, or null
+     * @return true if content of the type is compressed
+     */
+    public boolean isCompressible(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        int semicolon = mimeType.indexOf(';');
+        String type = (semicolon < 0 ? mimeType : mimeType.substring(0, semicolon)).trim()
+                .toLowerCase(Locale.ROOT);
+        int slash = type.indexOf('/');
+        return _mimeTypes.contains(type) || (slash > 0 && _mimeTypes.contains(type.substring(0, slash) + "/*"));
+    }
+
+    /**
+     * Wraps a stream so everything written to it is compressed. Closing the returned stream finishes the
+     * compressed data, closes <code>out</code> and returns the deflater to the pool.
+     *
+     * @param out
+     *               the stream of the response
+     * @param coding
+     *               <code>gzip</code> or <code>deflate</code>
+     * @return the stream to write the content to
+     * @throws IOException
+     *                     if the gzip header cannot be written
+     */
+    public OutputStream compress(OutputStream out, String coding) throws IOException {
+        boolean gzip = "gzip".equals(coding);
+        BlockingQueue<Deflater> pool = gzip ? _gzipDeflaters : _deflateDeflaters;
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+        }
+        try {
+            return new CompressingOutputStream(out, deflater, pool, gzip);
+        } catch (IOException ioException) {
+            release(deflater, pool);
+            throw ioException;
+        }
+    }
+
+    private static void release(Deflater deflater, BlockingQueue<Deflater> pool) {
+        deflater.reset();
+        if (!pool.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static final class CompressingOutputStream extends DeflaterOutputStream {
+        private final BlockingQueue<Deflater> pool;
+        private final CRC32 crc;
+        private boolean closed;
+
+        private CompressingOutputStream(
+                OutputStream out,
+                Deflater deflater,
+                BlockingQueue<Deflater> pool,
+                boolean gzip
+        ) throws IOException {
+            super(out, deflater, BUFFER_SIZE);
+            this.pool = pool;
+            this.crc = gzip ? new CRC32() : null;
+            if (gzip) {
+                out.write(GZIP_HEADER);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!def.finished()) {
+                super.finish();
+                if (crc != null) {
+                    writeTrailer();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+            } finally {
+                release(def, pool);
+                out.close();
+            }
+        }
+
+        private void writeTrailer() throws IOException {
+            long checksum = crc.getValue();
+            long length = def.getBytesRead();
+            out.write(new byte[]{(byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16),
+                                 (byte) (checksum >> 24), (byte) length, (byte) (length >> 8),
+                                 (byte) (length >> 16), (byte) (length >> 24)});
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.jmock.Expectations;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.testutil.MockTest;
+
+public class AsyncUploadSpoolerTest extends MockTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testBodyIsSpooledAndHandledOnceComplete() throws Exception {
+        HttpServletRequest req = _mockery.mock(HttpServletRequest.class, "uploadReq");
+        HttpServletResponse resp = _mockery.mock(HttpServletResponse.class, "uploadResp");
+        AsyncContext asyncContext = _mockery.mock(AsyncContext.class, "uploadContext");
+        ChunkedInputStream in = new ChunkedInputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(req).getContentLengthLong();
+                will(returnValue(-1L));
+                oneOf(req).startAsync(req, resp);
+                will(returnValue(asyncContext));
+                oneOf(asyncContext).setTimeout(AsyncUploadSpooler.DEFAULT_TIMEOUT);
+                oneOf(req).getInputStream();
+                will(returnValue(in));
+                oneOf(asyncContext).addListener(with(any(AsyncListener.class)));
+            }
+        });
+
+        byte[][] handled = new byte[1][];
+        new AsyncUploadSpooler(tempDir.toPath()).receive(req, resp, (spooledReq, spooledResp) -> {
+            handled[0] = spooledReq.getInputStream().readAllBytes();
+            assertTrue(spooledReq.getInputStream().isFinished());
+        });
+        assertEquals(1, tempDir.list().length);
+
+        in.arrive("<hel");
+        in.arrive("lo/>");
+        in.listener.onDataAvailable();
+        in.arrive("!");
+        in.listener.onDataAvailable();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(asyncContext).complete();
+            }
+        });
+
+        in.listener.onAllDataRead();
+        assertArrayEquals("<hello/>!".getBytes(), handled[0]);
+        assertEquals(0, tempDir.list().length);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testFailedUploadIsAnsweredAndRemoved() throws Exception {
+        HttpServletRequest req = _mockery.mock(HttpServletRequest.class, "failingReq");
+        HttpServletResponse resp = _mockery.mock(HttpServletResponse.class, "failingResp");
+        AsyncContext asyncContext = _mockery.mock(AsyncContext.class, "failingContext");
+        ChunkedInputStream in = new ChunkedInputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(req).getContentLengthLong();
+                will(returnValue(-1L));
+                oneOf(req).startAsync(req, resp);
+                will(returnValue(asyncContext));
+                oneOf(asyncContext).setTimeout(AsyncUploadSpooler.DEFAULT_TIMEOUT);
+                oneOf(req).getInputStream();
+                will(returnValue(in));
+                oneOf(asyncContext).addListener(with(any(AsyncListener.class)));
+            }
+        });
+
+        new AsyncUploadSpooler(tempDir.toPath()).receive(req, resp, (spooledReq, spooledResp) -> {
+            throw new AssertionError("a failed upload must not be handled");
+        });
+
+        in.arrive("<hel");
+        in.listener.onDataAvailable();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(resp).isCommitted();
+                will(returnValue(false));
+                oneOf(resp).sendError(WebdavStatus.SC_INTERNAL_SERVER_ERROR);
+                oneOf(asyncContext).complete();
+            }
+        });
+
+        in.listener.onError(new IOException("connection reset"));
+        assertEquals(0, tempDir.list().length);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testAnnouncedTooLongBodyIsRefusedBeforeReceiving() throws Exception {
+        HttpServletRequest req = _mockery.mock(HttpServletRequest.class, "tooLongReq");
+        HttpServletResponse resp = _mockery.mock(HttpServletResponse.class, "tooLongResp");
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(req).getContentLengthLong();
+                will(returnValue(11L));
+                oneOf(resp).sendError(WebdavStatus.SC_REQUEST_TOO_LONG);
+            }
+        });
+
+        new AsyncUploadSpooler(tempDir.toPath(), 10).receive(req, resp, -1, (spooledReq, spooledResp) -> {
+            throw new AssertionError("a refused upload must not be handled");
+        });
+        assertEquals(0, tempDir.list().length);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testBodyGrowingBeyondQuotaIsRefusedWhileReceiving() throws Exception {
+        HttpServletRequest req = _mockery.mock(HttpServletRequest.class, "overQuotaReq");
+        HttpServletResponse resp = _mockery.mock(HttpServletResponse.class, "overQuotaResp");
+        AsyncContext asyncContext = _mockery.mock(AsyncContext.class, "overQuotaContext");
+        ChunkedInputStream in = new ChunkedInputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(req).getContentLengthLong();
+                will(returnValue(-1L));
+                oneOf(req).startAsync(req, resp);
+                will(returnValue(asyncContext));
+                oneOf(asyncContext).setTimeout(AsyncUploadSpooler.DEFAULT_TIMEOUT);
+                oneOf(req).getInputStream();
+                will(returnValue(in));
+                oneOf(asyncContext).addListener(with(any(AsyncListener.class)));
+            }
+        });
+
+        new AsyncUploadSpooler(tempDir.toPath()).receive(req, resp, 6, (spooledReq, spooledResp) -> {
+            throw new AssertionError("a refused upload must not be handled");
+        });
+
+        in.arrive("<hel");
+        in.listener.onDataAvailable();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(resp).isCommitted();
+                will(returnValue(false));
+                oneOf(resp).sendError(WebdavStatus.SC_INSUFFICIENT_STORAGE);
+                oneOf(asyncContext).complete();
+            }
+        });
+
+        in.arrive("lo/>");
+        in.listener.onDataAvailable();
+        assertEquals(0, tempDir.list().length);
+
+        in.listener.onAllDataRead();
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testBodyGrowingBeyondSpoolSpaceIsRefusedWhileReceiving() throws Exception {
+        HttpServletRequest req = _mockery.mock(HttpServletRequest.class, "spoolFullReq");
+        HttpServletResponse resp = _mockery.mock(HttpServletResponse.class, "spoolFullResp");
+        AsyncContext asyncContext = _mockery.mock(AsyncContext.class, "spoolFullContext");
+        ChunkedInputStream in = new ChunkedInputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(req).getContentLengthLong();
+                will(returnValue(-1L));
+                oneOf(req).startAsync(req, resp);
+                will(returnValue(asyncContext));
+                oneOf(asyncContext).setTimeout(AsyncUploadSpooler.DEFAULT_TIMEOUT);
+                oneOf(req).getInputStream();
+                will(returnValue(in));
+                oneOf(asyncContext).addListener(with(any(AsyncListener.class)));
+            }
+        });
+
+        AsyncUploadSpooler spooler = new AsyncUploadSpooler(tempDir.toPath()) {
+            @Override
+            long usableSpace() {
+                // the spool directory fills up while the body arrives
+                long spooled = 0;
+                for (File file : tempDir.listFiles()) {
+                    spooled += file.length();
+                }
+                return Math.max(0, 6 - spooled);
+            }
+        };
+        spooler.receive(req, resp, (spooledReq, spooledResp) -> {
+            throw new AssertionError("a refused upload must not be handled");
+        });
+
+        in.arrive("<hel");
+        in.listener.onDataAvailable();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(resp).isCommitted();
+                will(returnValue(false));
+                oneOf(resp).sendError(WebdavStatus.SC_INSUFFICIENT_STORAGE);
+                oneOf(asyncContext).complete();
+            }
+        });
+
+        in.arrive("lo/>");
+        in.listener.onDataAvailable();
+        assertEquals(0, tempDir.list().length);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testBodyNotArrivingInTimeIsRefused() throws Exception {
+        HttpServletRequest req = _mockery.mock(HttpServletRequest.class, "slowReq");
+        HttpServletResponse resp = _mockery.mock(HttpServletResponse.class, "slowResp");
+        AsyncContext asyncContext = _mockery.mock(AsyncContext.class, "slowContext");
+        ChunkedInputStream in = new ChunkedInputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(req).getContentLengthLong();
+                will(returnValue(-1L));
+                oneOf(req).startAsync(req, resp);
+                will(returnValue(asyncContext));
+                oneOf(asyncContext).setTimeout(1000L);
+                oneOf(req).getInputStream();
+                will(returnValue(in));
+                oneOf(asyncContext).addListener(with(any(AsyncListener.class)));
+            }
+        });
+
+        new AsyncUploadSpooler(tempDir.toPath(), -1, 1000).receive(req, resp, (spooledReq, spooledResp) -> {
+            throw new AssertionError("a timed out upload must not be handled");
+        });
+
+        in.arrive("<hel");
+        in.listener.onDataAvailable();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(resp).isCommitted();
+                will(returnValue(false));
+                oneOf(resp).sendError(WebdavStatus.SC_REQUEST_TIMEOUT);
+                oneOf(asyncContext).complete();
+            }
+        });
+
+        // the container reports the timeout to the listener that was added for the upload
+        ((AsyncListener) in.listener).onTimeout(null);
+        assertEquals(0, tempDir.list().length);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    private static class ChunkedInputStream extends ServletInputStream {
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+        ReadListener listener;
+
+        void arrive(String chunk) {
+            chunks.add(chunk.getBytes());
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            byte[] chunk = chunks.remove();
+            System.arraycopy(chunk, 0, b, off, chunk.length);
+            return chunk.length;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+
+        @Override
+        public boolean isReady() {
+            return !chunks.isEmpty();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            listener = readListener;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.security.Principal;
+import java.util.Map;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.jmock.Expectations;
+import org.junit.jupiter.api.Test;
+
+import nl.info.webdav.methods.TestingOutputStream;
+import nl.info.webdav.testutil.MockTest;
+
+public class BandwidthShaperTest extends MockTest {
+
+    private static final int KIB = 1024;
+
+    @Test
+    public void testGlobalLimitDelaysContentBeyondOneSecondOfBandwidth() throws Exception {
+        BandwidthShaper shaper = new BandwidthShaper(64 * KIB, 0, Map.of());
+        TestingOutputStream tos = new TestingOutputStream();
+
+        BandwidthShaper.Transfer transfer = shaper.start(principal("alice"));
+        assertEquals(1, shaper.getActiveTransfers());
+        write(transfer, "slowResp", tos, 96 * KIB);
+        transfer.end();
+        transfer.end();
+
+        assertEquals(96 * KIB, tos.toByteArray().length);
+        assertEquals(96 * KIB, shaper.getBytesTransferred());
+        assertEquals(96 * KIB, shaper.getBytesTransferred("alice"));
+        assertEquals(0, shaper.getActiveTransfers());
+        assertTrue(shaper.getWaitMillis() >= 400, "waited " + shaper.getWaitMillis() + " ms");
+    }
+
+    @Test
+    public void testEveryUserHasTheirOwnLimit() throws Exception {
+        BandwidthShaper shaper = new BandwidthShaper(0, 64 * KIB, Map.of("bob", 2));
+
+        BandwidthShaper.Transfer alice = shaper.start(principal("alice"));
+        BandwidthShaper.Transfer bob = shaper.start(principal("bob"));
+        BandwidthShaper.Transfer anonymous = shaper.start(null);
+        assertEquals(3, shaper.getActiveTransfers());
+        write(alice, "aliceResp", new TestingOutputStream(), 64 * KIB);
+        write(bob, "bobResp", new TestingOutputStream(), 64 * KIB);
+        write(anonymous, "anonymousResp", new TestingOutputStream(), 32 * KIB);
+
+        assertEquals(0, shaper.getWaitMillis());
+        assertEquals(64 * KIB, shaper.getBytesTransferred("bob"));
+        assertEquals(32 * KIB, shaper.getBytesTransferred(""));
+        assertEquals(160 * KIB, shaper.getBytesTransferred());
+    }
+
+    @Test
+    public void testIdleUserBucketsAreForgottenOnceFull() throws Exception {
+        BandwidthShaper shaper = new BandwidthShaper(0, 64 * KIB, Map.of());
+
+        BandwidthShaper.Transfer alice = shaper.start(principal("alice"));
+        BandwidthShaper.Transfer bob = shaper.start(principal("bob"));
+        assertEquals(2, shaper.getPrincipalBuckets());
+        alice.end();
+        assertEquals(1, shaper.getPrincipalBuckets());
+
+        // bob ends in debt, so his bucket is kept until it has filled up again
+        write(bob, "indebtedResp", new TestingOutputStream(), 80 * KIB);
+        bob.end();
+        assertEquals(1, shaper.getPrincipalBuckets());
+
+        Thread.sleep(1100);
+        BandwidthShaper.Transfer carol = shaper.start(principal("carol"));
+        assertEquals(1, shaper.getPrincipalBuckets());
+        carol.end();
+        assertEquals(0, shaper.getPrincipalBuckets());
+        assertEquals(80 * KIB, shaper.getBytesTransferred("bob"));
+    }
+
+    private static void write(
+            BandwidthShaper.Transfer transfer,
+            String name,
+            TestingOutputStream tos,
+            int length
+    ) throws Exception {
+        HttpServletResponse resp = _mockery.mock(HttpServletResponse.class, name);
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(resp).getOutputStream();
+                will(returnValue(tos));
+            }
+        });
+        OutputStream out = transfer.shape(resp).getOutputStream();
+        out.write(new byte[length]);
+        out.flush();
+        _mockery.assertIsSatisfied();
+    }
+
+    private static Principal principal(String name) {
+        return () -> name;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+
+class ChunkedStoreTest {
+
+    static final int CHUNK_SIZE = 16;
+
+    @TempDir
+    File tempDir;
+
+    ChunkedStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new ChunkedStore(tempDir, CHUNK_SIZE, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    void setResourceContent_spanningChunks_readsBack() throws Exception {
+        byte[] content = content(5 * CHUNK_SIZE + 3);
+        assertEquals(content.length, put("/big.bin", content));
+        assertEquals(content.length, store.getStoredObject(null, "/big.bin").getResourceLength());
+        assertArrayEquals(content, read("/big.bin"));
+        assertEquals(6, chunkFiles());
+    }
+
+    @Test
+    void setResourceContent_changedRegion_writesOnlyChangedChunks() throws Exception {
+        byte[] content = content(4 * CHUNK_SIZE);
+        put("/big.bin", content);
+        long written = store.getChunksWritten();
+        content[2 * CHUNK_SIZE + 1] ^= 1;
+        put("/big.bin", content);
+        assertEquals(written + 1, store.getChunksWritten());
+        assertArrayEquals(content, read("/big.bin"));
+        assertEquals(4, chunkFiles());
+    }
+
+    @Test
+    void setResourceContent_whileReading_keepsChunksOfOpenVersion() throws Exception {
+        byte[] content = content(4 * CHUNK_SIZE);
+        put("/big.bin", content);
+        byte[] changed = content.clone();
+        changed[1] ^= 1;
+        changed[3 * CHUNK_SIZE + 1] ^= 1;
+        try (InputStream in = store.getResourceContent(null, "/big.bin")) {
+            assertEquals(CHUNK_SIZE, in.readNBytes(CHUNK_SIZE).length);
+            put("/big.bin", changed);
+            assertArrayEquals(Arrays.copyOfRange(content, CHUNK_SIZE, content.length), in.readAllBytes());
+            assertEquals(8, chunkFiles());
+        }
+        assertEquals(4, chunkFiles());
+        assertArrayEquals(changed, read("/big.bin"));
+    }
+
+    @Test
+    void getResourceContent_skip_readsFromOffset() throws Exception {
+        byte[] content = content(6 * CHUNK_SIZE);
+        put("/big.bin", content);
+        try (InputStream in = store.getResourceContent(null, "/big.bin")) {
+            assertEquals(3 * CHUNK_SIZE + 5, in.skip(3 * CHUNK_SIZE + 5));
+            assertArrayEquals(Arrays.copyOfRange(content, 3 * CHUNK_SIZE + 5, content.length), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void copy_linksChunksAndKeepsSource() throws Exception {
+        byte[] content = content(3 * CHUNK_SIZE);
+        store.createFolder(null, "/src");
+        put("/src/a.bin", content);
+        long written = store.getChunksWritten();
+        assertTrue(store.copy(null, "/src", "/dst", 3).isEmpty());
+        assertEquals(written, store.getChunksWritten());
+        store.removeObject(null, "/src/a.bin");
+        assertArrayEquals(content, read("/dst/a.bin"));
+    }
+
+    @Test
+    void move_renamesManifest() throws Exception {
+        byte[] content = content(2 * CHUNK_SIZE);
+        put("/a.bin", content);
+        store.move(null, "/a.bin", "/b.bin");
+        assertNull(store.getStoredObject(null, "/a.bin"));
+        assertArrayEquals(content, read("/b.bin"));
+    }
+
+    @Test
+    void removeObject_removesChunks() throws Exception {
+        put("/a.bin", content(2 * CHUNK_SIZE));
+        store.removeObject(null, "/a.bin");
+        assertEquals(0, chunkFiles());
+    }
+
+    @Test
+    void deleteTree_removesMembersAndTheirChunks() throws Exception {
+        store.createFolder(null, "/dir");
+        store.createFolder(null, "/dir/sub");
+        put("/dir/a.bin", content(2 * CHUNK_SIZE));
+        put("/dir/sub/b.bin", content(CHUNK_SIZE));
+        assertTrue(store.deleteTree(null, "/dir").isEmpty());
+        assertNull(store.getStoredObject(null, "/dir"));
+        assertEquals(0, chunkFiles());
+    }
+
+    @Test
+    void createResource_existing_throwsObjectAlreadyExistsException() {
+        store.createResource(null, "/a.bin");
+        assertThrows(ObjectAlreadyExistsException.class, () -> store.createResource(null, "/a.bin"));
+    }
+
+    @Test
+    void setResourceContent_withoutRoomInChunkBuffer_streamsChunks() throws Exception {
+        ChunkedStore small = new ChunkedStore(tempDir, CHUNK_SIZE, 3, 0);
+        try {
+            byte[] content = content(5 * CHUNK_SIZE + 3);
+            small.createResource(null, "/big.bin");
+            assertEquals(content.length,
+                    small.setResourceContent(null, "/big.bin", new ByteArrayInputStream(content), null, null));
+            long written = small.getChunksWritten();
+            content[3 * CHUNK_SIZE] ^= 1;
+            small.setResourceContent(null, "/big.bin", new ByteArrayInputStream(content), null, null);
+            assertEquals(written + 1, small.getChunksWritten());
+            try (InputStream in = small.getResourceContent(null, "/big.bin")) {
+                assertEquals(CHUNK_SIZE + 2, in.skip(CHUNK_SIZE + 2));
+                assertArrayEquals(Arrays.copyOfRange(content, CHUNK_SIZE + 2, content.length), in.readAllBytes());
+            }
+        } finally {
+            small.destroy();
+        }
+    }
+
+    @Test
+    void constructor_removesVersionsOfInterruptedUploads() throws Exception {
+        put("/a.bin", content(2 * CHUNK_SIZE));
+        Path orphan = Files.createDirectories(tempDir.toPath().resolve("chunks").resolve("interrupted"));
+        Files.write(orphan.resolve("0123"), content(CHUNK_SIZE));
+        store.destroy();
+
+        store = new ChunkedStore(tempDir, CHUNK_SIZE, 3);
+        assertFalse(Files.exists(orphan));
+        assertArrayEquals(content(2 * CHUNK_SIZE), read("/a.bin"));
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    private long chunkFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir.toPath().resolve("chunks"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private long put(String uri, byte[] content) {
+        if (store.getStoredObject(null, uri) == null) {
+            store.createResource(null, uri);
+        }
+        return store.setResourceContent(null, uri, new ByteArrayInputStream(content), null, null);
+    }
+
+    private byte[] read(String uri) throws IOException {
+        try (InputStream in = store.getResourceContent(null, uri)) {
+            return in.readAllBytes();
+        }
+    }
+}
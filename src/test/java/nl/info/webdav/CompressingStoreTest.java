@@ -0,0 +1,124 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+class CompressingStoreTest {
+
+    static final String TEXT = "<row>compressible content</row>\n".repeat(100);
+
+    @TempDir
+    File tempDir;
+
+    CompressingStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new CompressingStore(new LocalFileSystemStore(tempDir), 64, Set.of("xml"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    void setResourceContent_compressibleType_storesCompressedAndReportsLogicalLength() throws Exception {
+        assertEquals(TEXT.length(), put("/data.xml", TEXT));
+        assertTrue(Files.size(tempDir.toPath().resolve("data.xml")) < TEXT.length() / 4);
+        StoredObject so = store.getStoredObject(null, "/data.xml");
+        assertEquals(TEXT.length(), so.getResourceLength());
+        assertEquals(TEXT.length(), store.getResourceLength(null, "/data.xml"));
+        assertEquals("gzip", so.getContentEncoding());
+        // the digest of the other store is that of the compressed form
+        assertNull(so.getContentDigest());
+        assertEquals(TEXT, read("/data.xml"));
+    }
+
+    @Test
+    void getEncodedResourceContent_returnsValidGzip() throws Exception {
+        put("/data.xml", TEXT);
+        StoredObject so = store.getStoredObject(null, "/data.xml");
+        byte[] encoded;
+        try (InputStream in = store.getEncodedResourceContent(null, "/data.xml")) {
+            encoded = in.readAllBytes();
+        }
+        assertEquals(so.getEncodedLength(), encoded.length);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            assertEquals(TEXT, new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void setResourceContent_otherTypeOrSmall_storesAsIs() throws Exception {
+        put("/image.png", TEXT);
+        put("/small.xml", "<a/>");
+        assertEquals(TEXT, Files.readString(tempDir.toPath().resolve("image.png")));
+        assertEquals("<a/>", Files.readString(tempDir.toPath().resolve("small.xml")));
+        assertNull(store.getStoredObject(null, "/small.xml").getContentEncoding());
+        assertThrows(WebdavException.class, () -> store.getEncodedResourceContent(null, "/small.xml"));
+    }
+
+    @Test
+    void setResourceContent_contentLookingLikeMarker_readsBackUnchanged() throws Exception {
+        byte[] content = {0, 'w', 'd', 'z', 1, 2, 3};
+        store.createResource(null, "/raw.bin");
+        store.setResourceContent(null, "/raw.bin", new ByteArrayInputStream(content), null, null);
+        assertEquals(content.length, store.getResourceLength(null, "/raw.bin"));
+        try (InputStream in = store.getResourceContent(null, "/raw.bin")) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void copy_keepsContentCompressed() throws Exception {
+        put("/data.xml", TEXT);
+        store.copy(null, "/data.xml", "/copy.xml", 3);
+        assertEquals("gzip", store.getStoredObject(null, "/copy.xml").getContentEncoding());
+        assertEquals(TEXT, read("/copy.xml"));
+    }
+
+    @Test
+    void setResourceContent_overwrite_reportsNewLength() throws Exception {
+        put("/data.xml", TEXT);
+        store.getStoredObject(null, "/data.xml");
+        put("/data.xml", "<a/>");
+        assertEquals(4, store.getResourceLength(null, "/data.xml"));
+        assertEquals("<a/>", read("/data.xml"));
+    }
+
+    private long put(String uri, String content) throws WebdavException {
+        if (store.getStoredObject(null, uri) == null) {
+            store.createResource(null, uri);
+        }
+        return store.setResourceContent(null, uri, new ByteArrayInputStream(content.getBytes()), null, null);
+    }
+
+    private String read(String uri) throws IOException {
+        try (InputStream in = store.getResourceContent(null, uri)) {
+            return new String(in.readAllBytes());
+        }
+    }
+}
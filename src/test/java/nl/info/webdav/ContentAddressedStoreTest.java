@@ -0,0 +1,179 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
+import nl.info.webdav.exceptions.WebdavException;
+
+class ContentAddressedStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    ContentAddressedStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new ContentAddressedStore(tempDir, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    void setResourceContent_storesContentAndMetadata() throws Exception {
+        put("/a.txt", "hello");
+        StoredObject so = store.getStoredObject(null, "/a.txt");
+        assertNotNull(so);
+        assertTrue(so.isResource());
+        assertEquals(5, so.getResourceLength());
+        assertEquals("text/plain", so.getMimeType());
+        assertEquals("hello", read("/a.txt"));
+    }
+
+    @Test
+    void getStoredObject_reportsDigestOfContent() throws Exception {
+        put("/a.txt", "hello");
+        assertEquals("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824",
+                store.getStoredObject(null, "/a.txt").getContentDigest());
+        store.createFolder(null, "/dir");
+        assertNull(store.getStoredObject(null, "/dir").getContentDigest());
+    }
+
+    @Test
+    void setResourceContent_identicalContent_storesOneBlob() throws Exception {
+        put("/a.txt", "same");
+        put("/b.txt", "same");
+        assertEquals(1, countBlobs());
+    }
+
+    @Test
+    void copy_folder_sharesBlobs() throws Exception {
+        store.createFolder(null, "/src");
+        put("/src/a.txt", "content");
+        assertTrue(store.copy(null, "/src", "/dst", 3).isEmpty());
+        assertEquals("content", read("/dst/a.txt"));
+        assertEquals(1, countBlobs());
+    }
+
+    @Test
+    void copy_existingDestination_throwsObjectAlreadyExistsException() throws Exception {
+        put("/a.txt", "a");
+        put("/b.txt", "b");
+        assertThrows(ObjectAlreadyExistsException.class, () -> store.copy(null, "/a.txt", "/b.txt", 3));
+    }
+
+    @Test
+    void move_folder_keepsContent() throws Exception {
+        store.createFolder(null, "/src");
+        put("/src/a.txt", "moved");
+        store.move(null, "/src", "/dst");
+        assertNull(store.getStoredObject(null, "/src"));
+        assertNull(store.getStoredObject(null, "/src/a.txt"));
+        assertEquals("moved", read("/dst/a.txt"));
+        assertArrayEquals(new String[]{"a.txt"}, store.getChildrenNames(null, "/dst"));
+    }
+
+    @Test
+    void removeObject_nonEmptyFolder_throwsWebdavException() throws Exception {
+        store.createFolder(null, "/dir");
+        put("/dir/a.txt", "a");
+        assertThrows(WebdavException.class, () -> store.removeObject(null, "/dir"));
+    }
+
+    @Test
+    void collectGarbage_removesOnlyUnreferencedBlobs() throws Exception {
+        put("/a.txt", "shared");
+        put("/b.txt", "shared");
+        put("/c.txt", "single");
+        store.removeObject(null, "/a.txt");
+        store.removeObject(null, "/c.txt");
+        store.collectGarbage();
+        assertEquals(1, countBlobs());
+        assertEquals("shared", read("/b.txt"));
+    }
+
+    @Test
+    void deleteTree_folder_releasesBlobs() throws Exception {
+        store.createFolder(null, "/dir");
+        store.createFolder(null, "/dir/sub");
+        put("/dir/sub/a.txt", "a");
+        assertTrue(store.deleteTree(null, "/dir").isEmpty());
+        assertNull(store.getStoredObject(null, "/dir/sub/a.txt"));
+        store.collectGarbage();
+        assertEquals(0, countBlobs());
+    }
+
+    @Test
+    void reopen_restoresNamespaceFromJournal() throws Exception {
+        store.createFolder(null, "/dir");
+        put("/dir/a.txt", "kept");
+        put("/b.txt", "removed");
+        store.removeObject(null, "/b.txt");
+        store.commit(null);
+        store.destroy();
+
+        store = new ContentAddressedStore(tempDir, 0);
+        assertEquals("kept", read("/dir/a.txt"));
+        assertNull(store.getStoredObject(null, "/b.txt"));
+        store.collectGarbage();
+        assertEquals(1, countBlobs());
+    }
+
+    @Test
+    void createResource_missingParent_throwsObjectNotFoundException() {
+        assertThrows(ObjectNotFoundException.class, () -> store.createResource(null, "/missing/a.txt"));
+    }
+
+    @Test
+    void createFolder_traversal_throwsWebdavException() {
+        assertThrows(WebdavException.class, () -> store.createFolder(null, "/../escaped"));
+    }
+
+    @Test
+    void getStoredObject_traversal_returnsNull() {
+        assertNull(store.getStoredObject(null, "/../escaped.txt"));
+    }
+
+    private void put(String uri, String content) throws WebdavException {
+        store.createResource(null, uri);
+        store.setResourceContent(null, uri, new ByteArrayInputStream(content.getBytes()), "text/plain", null);
+    }
+
+    private String read(String uri) throws IOException {
+        try (InputStream in = store.getResourceContent(null, uri)) {
+            return new String(in.readAllBytes());
+        }
+    }
+
+    private long countBlobs() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir.toPath().resolve("blobs"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
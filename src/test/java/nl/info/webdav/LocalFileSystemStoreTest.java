@@ -6,9 +6,11 @@ package nl.info.webdav;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -23,6 +25,9 @@ import org.junit.jupiter.api.condition.DisabledOnOs;
 import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.io.TempDir;
 
+import nl.info.webdav.exceptions.ConflictException;
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
 import nl.info.webdav.exceptions.WebdavException;
 
 class LocalFileSystemStoreTest {
@@ -95,6 +100,120 @@ class LocalFileSystemStoreTest {
         assertNotNull(so);
     }
 
+    @Test
+    void move_file_renamesWithinRoot() throws Exception {
+        store.createResource(null, "/src.txt");
+        store.setResourceContent(null, "/src.txt", new ByteArrayInputStream("moved".getBytes()), null, null);
+        store.move(null, "/src.txt", "/dst.txt");
+        assertNull(store.getStoredObject(null, "/src.txt"));
+        assertEquals("moved", Files.readString(tempDir.toPath().resolve("dst.txt")));
+    }
+
+    @Test
+    void move_folder_movesChildren() throws Exception {
+        store.createFolder(null, "/src");
+        store.createFolder(null, "/src/sub");
+        store.createResource(null, "/src/sub/a.txt");
+        store.move(null, "/src", "/dst");
+        assertNull(store.getStoredObject(null, "/src"));
+        assertNotNull(store.getStoredObject(null, "/dst/sub/a.txt"));
+    }
+
+    @Test
+    void move_existingDestination_throwsObjectAlreadyExistsException() throws WebdavException {
+        store.createResource(null, "/a.txt");
+        store.createResource(null, "/b.txt");
+        assertThrows(ObjectAlreadyExistsException.class, () -> store.move(null, "/a.txt", "/b.txt"));
+    }
+
+    @Test
+    void move_missingSource_throwsObjectNotFoundException() {
+        assertThrows(ObjectNotFoundException.class, () -> store.move(null, "/missing.txt", "/b.txt"));
+    }
+
+    @Test
+    void move_missingDestinationParent_throwsConflictException() throws WebdavException {
+        store.createResource(null, "/a.txt");
+        assertThrows(ConflictException.class, () -> store.move(null, "/a.txt", "/missing/a.txt"));
+        assertNotNull(store.getStoredObject(null, "/a.txt"));
+    }
+
+    @Test
+    void copy_file_keepsSource() throws Exception {
+        store.createResource(null, "/src.txt");
+        store.setResourceContent(null, "/src.txt", new ByteArrayInputStream("copied".getBytes()), null, null);
+        assertTrue(store.copy(null, "/src.txt", "/dst.txt", 3).isEmpty());
+        assertNotNull(store.getStoredObject(null, "/src.txt"));
+        assertEquals("copied", Files.readString(tempDir.toPath().resolve("dst.txt")));
+    }
+
+    @Test
+    void copy_folder_copiesChildren() throws Exception {
+        store.createFolder(null, "/src");
+        store.createFolder(null, "/src/sub");
+        store.createResource(null, "/src/sub/a.txt");
+        assertTrue(store.copy(null, "/src", "/dst", 3).isEmpty());
+        assertNotNull(store.getStoredObject(null, "/src/sub/a.txt"));
+        assertNotNull(store.getStoredObject(null, "/dst/sub/a.txt"));
+    }
+
+    @Test
+    void copy_folderWithDepthZero_copiesFolderOnly() throws Exception {
+        store.createFolder(null, "/src");
+        store.createResource(null, "/src/a.txt");
+        assertTrue(store.copy(null, "/src", "/dst", 0).isEmpty());
+        assertTrue(store.getStoredObject(null, "/dst").isFolder());
+        assertEquals(0, store.getChildrenNames(null, "/dst").length);
+    }
+
+    @Test
+    void copy_existingDestination_throwsObjectAlreadyExistsException() throws WebdavException {
+        store.createResource(null, "/a.txt");
+        store.createResource(null, "/b.txt");
+        assertThrows(ObjectAlreadyExistsException.class, () -> store.copy(null, "/a.txt", "/b.txt", 3));
+    }
+
+    @Test
+    void copy_missingSource_throwsObjectNotFoundException() {
+        assertThrows(ObjectNotFoundException.class, () -> store.copy(null, "/missing.txt", "/b.txt", 3));
+    }
+
+    @Test
+    void copy_missingDestinationParent_throwsConflictException() throws WebdavException {
+        store.createResource(null, "/a.txt");
+        assertThrows(ConflictException.class, () -> store.copy(null, "/a.txt", "/missing/a.txt", 3));
+    }
+
+    @Test
+    void copy_folderIntoItself_throwsWebdavException() throws WebdavException {
+        store.createFolder(null, "/src");
+        assertThrows(WebdavException.class, () -> store.copy(null, "/src", "/src/sub", 3));
+    }
+
+    @Test
+    void replace_existingResource_replacesContent() throws Exception {
+        Files.writeString(tempDir.toPath().resolve("old.txt"), "old");
+        Files.writeString(tempDir.toPath().resolve("new.txt"), "new");
+        store.replace(null, "/new.txt", "/old.txt");
+        assertNull(store.getStoredObject(null, "/new.txt"));
+        assertEquals("new", Files.readString(tempDir.toPath().resolve("old.txt")));
+    }
+
+    @Test
+    void deleteTree_folder_removesAllMembers() throws Exception {
+        store.createFolder(null, "/tree");
+        store.createFolder(null, "/tree/sub");
+        store.createResource(null, "/tree/a.txt");
+        store.createResource(null, "/tree/sub/b.txt");
+        assertTrue(store.deleteTree(null, "/tree").isEmpty());
+        assertNull(store.getStoredObject(null, "/tree"));
+    }
+
+    @Test
+    void deleteTree_missingFolder_throwsObjectNotFoundException() {
+        assertThrows(ObjectNotFoundException.class, () -> store.deleteTree(null, "/missing"));
+    }
+
     // --- Root URI itself ---
 
     @Test
@@ -136,6 +255,23 @@ class LocalFileSystemStoreTest {
         assertThrows(WebdavException.class, () -> store.removeObject(null, "/../escaped.txt"));
     }
 
+    @Test
+    void move_traversal_throwsWebdavException() throws WebdavException {
+        store.createResource(null, "/a.txt");
+        assertThrows(WebdavException.class, () -> store.move(null, "/a.txt", "/../escaped.txt"));
+    }
+
+    @Test
+    void copy_traversal_throwsWebdavException() throws WebdavException {
+        store.createResource(null, "/a.txt");
+        assertThrows(WebdavException.class, () -> store.copy(null, "/a.txt", "/../escaped.txt", 3));
+    }
+
+    @Test
+    void deleteTree_traversal_throwsWebdavException() {
+        assertThrows(WebdavException.class, () -> store.deleteTree(null, "/../escaped"));
+    }
+
     @Test
     void getResourceContent_traversal_throwsWebdavException() {
         assertThrows(WebdavException.class, () -> store.getResourceContent(null, "/../escaped.txt"));
@@ -152,6 +288,90 @@ class LocalFileSystemStoreTest {
         assertNull(so);
     }
 
+    // --- Content digests ---
+
+    static final String HELLO_SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    @Test
+    void setResourceContent_storesDigest() throws WebdavException {
+        store.createResource(null, "/file.txt");
+        store.setResourceContent(null, "/file.txt", new ByteArrayInputStream("hello".getBytes()), null, null);
+        assertEquals(HELLO_SHA256, store.getStoredObject(null, "/file.txt").getContentDigest());
+    }
+
+    @Test
+    void getStoredObject_modifiedOutsideStore_hasNoDigest() throws Exception {
+        store.createResource(null, "/file.txt");
+        store.setResourceContent(null, "/file.txt", new ByteArrayInputStream("hello".getBytes()), null, null);
+        Files.writeString(tempDir.toPath().resolve("file.txt"), "changed elsewhere");
+        assertNull(store.getStoredObject(null, "/file.txt").getContentDigest());
+    }
+
+    @Test
+    void copy_file_keepsDigest() throws Exception {
+        store.createResource(null, "/file.txt");
+        store.setResourceContent(null, "/file.txt", new ByteArrayInputStream("hello".getBytes()), null, null);
+        store.copy(null, "/file.txt", "/copy.txt", 0);
+        assertEquals(HELLO_SHA256, store.getStoredObject(null, "/copy.txt").getContentDigest());
+    }
+
+    @Test
+    void move_fileWithDigestSidecar_movesSidecar() throws Exception {
+        Path file = tempDir.toPath().resolve("file.txt");
+        writeWithSidecar(file, "hello", HELLO_SHA256);
+        store.move(null, "/file.txt", "/moved.txt");
+        assertEquals(HELLO_SHA256, store.getStoredObject(null, "/moved.txt").getContentDigest());
+        assertFalse(Files.exists(sidecar("file.txt")));
+    }
+
+    @Test
+    void move_folderWithDigestSidecars_movesSidecars() throws Exception {
+        store.createFolder(null, "/tree");
+        writeWithSidecar(tempDir.toPath().resolve("tree/file.txt"), "hello", HELLO_SHA256);
+        store.move(null, "/tree", "/moved");
+        assertEquals(HELLO_SHA256, store.getStoredObject(null, "/moved/file.txt").getContentDigest());
+        assertFalse(Files.exists(sidecar("tree")));
+    }
+
+    @Test
+    void deleteTree_folderWithDigestSidecars_removesSidecars() throws Exception {
+        store.createFolder(null, "/tree");
+        writeWithSidecar(tempDir.toPath().resolve("tree/file.txt"), "hello", HELLO_SHA256);
+        assertTrue(store.deleteTree(null, "/tree").isEmpty());
+        assertFalse(Files.exists(sidecar("tree")));
+    }
+
+    @Test
+    void replace_resourcesWithDigestSidecars_keepsDigestOfSource() throws Exception {
+        writeWithSidecar(tempDir.toPath().resolve("old.txt"), "old", "0ld");
+        writeWithSidecar(tempDir.toPath().resolve("new.txt"), "hello", HELLO_SHA256);
+        store.replace(null, "/new.txt", "/old.txt");
+        assertEquals(HELLO_SHA256, store.getStoredObject(null, "/old.txt").getContentDigest());
+        assertFalse(Files.exists(sidecar("new.txt")));
+    }
+
+    @Test
+    void getStoredObject_digestDirectory_returnsNull() throws Exception {
+        Files.createDirectory(tempDir.toPath().resolve(".webdav-digests"));
+        assertNull(store.getStoredObject(null, "/.webdav-digests"));
+        assertEquals(0, store.getChildrenNames(null, "/").length);
+    }
+
+    /**
+     * Writes the file outside the store with its digest in a sidecar file, as on a file system without extended
+     * attributes.
+     */
+    private void writeWithSidecar(Path file, String content, String digest) throws IOException {
+        Files.writeString(file, content);
+        Path sidecar = sidecar(tempDir.toPath().relativize(file).toString());
+        Files.createDirectories(sidecar.getParent());
+        Files.writeString(sidecar, digest + ":" + Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis());
+    }
+
+    private Path sidecar(String path) {
+        return tempDir.toPath().resolve(".webdav-digests").resolve(path);
+    }
+
     // --- Symlink pointing outside root ---
 
     @Test
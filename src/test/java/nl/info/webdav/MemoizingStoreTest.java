@@ -0,0 +1,121 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.jmock.Expectations;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import nl.info.webdav.testutil.MockTest;
+
+public class MemoizingStoreTest extends MockTest {
+
+    static IWebdavStore mockStore;
+    static ITransaction mockTransaction;
+    static ITransaction otherTransaction;
+
+    @BeforeAll
+    public static void setUp() {
+        mockStore = _mockery.mock(IWebdavStore.class);
+        mockTransaction = _mockery.mock(ITransaction.class, "transaction");
+        otherTransaction = _mockery.mock(ITransaction.class, "otherTransaction");
+    }
+
+    @Test
+    public void testRepeatedLookupsInATransactionAreRemembered() {
+        StoredObject so = initFileStoredObject(resourceContent);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockStore).begin(null);
+                will(returnValue(mockTransaction));
+                oneOf(mockStore).getStoredObject(mockTransaction, "/file");
+                will(returnValue(so));
+                oneOf(mockStore).getStoredObject(mockTransaction, "/missing");
+                will(returnValue(null));
+                oneOf(mockStore).commit(mockTransaction);
+            }
+        });
+
+        MemoizingStore store = new MemoizingStore(mockStore);
+        ITransaction transaction = store.begin(null);
+        assertSame(so, store.getStoredObject(transaction, "/file"));
+        assertSame(so, store.getStoredObject(transaction, "/file"));
+        assertNull(store.getStoredObject(transaction, "/missing"));
+        assertNull(store.getStoredObject(transaction, "/missing"));
+        store.commit(transaction);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testChangesAndOtherTransactionsLookUpAgain() {
+        StoredObject before = initFileStoredObject(resourceContent);
+        StoredObject after = initFileStoredObject(resourceContent);
+        StoredObject other = initFileStoredObject(resourceContent);
+        InputStream content = new ByteArrayInputStream(resourceContent);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockStore).begin(null);
+                will(returnValue(mockTransaction));
+                oneOf(mockStore).begin(null);
+                will(returnValue(otherTransaction));
+                oneOf(mockStore).getStoredObject(mockTransaction, "/changed");
+                will(returnValue(before));
+                oneOf(mockStore).setResourceContent(mockTransaction, "/changed", content, null, null);
+                will(returnValue(resourceLength));
+                oneOf(mockStore).getStoredObject(mockTransaction, "/changed");
+                will(returnValue(after));
+                oneOf(mockStore).getStoredObject(otherTransaction, "/changed");
+                will(returnValue(other));
+            }
+        });
+
+        MemoizingStore store = new MemoizingStore(mockStore);
+        ITransaction transaction = store.begin(null);
+        ITransaction concurrent = store.begin(null);
+        assertSame(before, store.getStoredObject(transaction, "/changed"));
+        store.setResourceContent(transaction, "/changed", content, null, null);
+        assertSame(after, store.getStoredObject(transaction, "/changed"));
+        assertSame(after, store.getStoredObject(transaction, "/changed"));
+        assertSame(other, store.getStoredObject(concurrent, "/changed"));
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testLookupOverlappingAChangeIsNotRemembered() {
+        StoredObject stale = initFileStoredObject(resourceContent);
+        StoredObject fresh = initFileStoredObject(resourceContent);
+        StoredObject[] results = {stale, fresh};
+        int[] lookups = {0};
+        MemoizingStore[] store = new MemoizingStore[1];
+        ITransaction[] transaction = new ITransaction[1];
+        store[0] = new MemoizingStore(new MemoryStore() {
+            @Override
+            public StoredObject getStoredObject(ITransaction memoTransaction, String uri) {
+                if (lookups[0] == 0) {
+                    // another thread of the transaction changes the store while the first lookup runs
+                    store[0].createFolder(transaction[0], "/folder");
+                }
+                return results[lookups[0]++];
+            }
+        });
+        transaction[0] = store[0].begin(null);
+
+        assertSame(stale, store[0].getStoredObject(transaction[0], "/file"));
+        assertSame(fresh, store[0].getStoredObject(transaction[0], "/file"));
+        assertSame(fresh, store[0].getStoredObject(transaction[0], "/file"));
+        assertEquals(2, lookups[0]);
+    }
+}
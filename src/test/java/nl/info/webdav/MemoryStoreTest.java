@@ -0,0 +1,157 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import nl.info.webdav.exceptions.ObjectAlreadyExistsException;
+import nl.info.webdav.exceptions.ObjectNotFoundException;
+import nl.info.webdav.exceptions.WebdavException;
+
+class MemoryStoreTest {
+
+    static final int CHUNK_SIZE = 65536;
+
+    MemoryStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new MemoryStore(4L * CHUNK_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    void setResourceContent_spanningChunks_readsBack() throws Exception {
+        byte[] content = new byte[CHUNK_SIZE + 10];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        store.createResource(null, "/big.bin");
+        assertEquals(content.length, store.setResourceContent(null, "/big.bin", new ByteArrayInputStream(content),
+                "application/octet-stream", null));
+        try (InputStream in = store.getResourceContent(null, "/big.bin")) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        StoredObject so = store.getStoredObject(null, "/big.bin");
+        assertEquals(content.length, so.getResourceLength());
+        assertEquals("application/octet-stream", so.getMimeType());
+    }
+
+    @Test
+    void setResourceContent_overCapacity_throwsAndKeepsCapacity() throws Exception {
+        store.createResource(null, "/big.bin");
+        long available = store.getAvailableCapacity();
+        assertThrows(WebdavException.class, () -> store.setResourceContent(null, "/big.bin",
+                new ByteArrayInputStream(new byte[5 * CHUNK_SIZE]), null, null));
+        assertEquals(available, store.getAvailableCapacity());
+    }
+
+    @Test
+    void removeObject_returnsChunksToPool() throws Exception {
+        put(null, "/a.txt", "content");
+        assertEquals(3L * CHUNK_SIZE, store.getAvailableCapacity());
+        store.removeObject(null, "/a.txt");
+        assertEquals(4L * CHUNK_SIZE, store.getAvailableCapacity());
+    }
+
+    @Test
+    void copy_sharesContent() throws Exception {
+        store.createFolder(null, "/src");
+        put(null, "/src/a.txt", "shared");
+        assertTrue(store.copy(null, "/src", "/dst", 3).isEmpty());
+        assertEquals("shared", read(null, "/dst/a.txt"));
+        assertEquals(3L * CHUNK_SIZE, store.getAvailableCapacity());
+    }
+
+    @Test
+    void move_folder_movesChildren() throws Exception {
+        store.createFolder(null, "/src");
+        store.createFolder(null, "/src/sub");
+        put(null, "/src/sub/a.txt", "moved");
+        store.move(null, "/src", "/dst");
+        assertNull(store.getStoredObject(null, "/src"));
+        assertEquals("moved", read(null, "/dst/sub/a.txt"));
+        assertArrayEquals(new String[]{"dst"}, store.getChildrenNames(null, "/"));
+    }
+
+    @Test
+    void transaction_changesInvisibleUntilCommit() throws Exception {
+        ITransaction writer = store.begin(null);
+        ITransaction reader = store.begin(null);
+        store.createFolder(writer, "/dir");
+        put(writer, "/dir/a.txt", "pending");
+
+        assertNotNull(store.getStoredObject(writer, "/dir/a.txt"));
+        assertArrayEquals(new String[]{"a.txt"}, store.getChildrenNames(writer, "/dir"));
+        assertNull(store.getStoredObject(reader, "/dir"));
+        assertEquals(0, store.getChildrenNames(reader, "/").length);
+
+        store.commit(writer);
+        assertEquals("pending", read(reader, "/dir/a.txt"));
+    }
+
+    @Test
+    void transaction_rollbackDiscardsChanges() throws Exception {
+        ITransaction transaction = store.begin(null);
+        put(transaction, "/a.txt", "discarded");
+        store.rollback(transaction);
+        assertNull(store.getStoredObject(null, "/a.txt"));
+        assertEquals(4L * CHUNK_SIZE, store.getAvailableCapacity());
+    }
+
+    @Test
+    void getResourceContent_openStreamKeepsContentAfterRemoval() throws Exception {
+        put(null, "/a.txt", "still readable");
+        try (InputStream in = store.getResourceContent(null, "/a.txt")) {
+            store.removeObject(null, "/a.txt");
+            put(null, "/b.txt", "other content");
+            assertEquals("still readable", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void createFolder_existing_throwsObjectAlreadyExistsException() {
+        store.createFolder(null, "/dir");
+        assertThrows(ObjectAlreadyExistsException.class, () -> store.createFolder(null, "/dir"));
+    }
+
+    @Test
+    void createResource_missingParent_throwsObjectNotFoundException() {
+        assertThrows(ObjectNotFoundException.class, () -> store.createResource(null, "/missing/a.txt"));
+    }
+
+    @Test
+    void getStoredObject_traversal_returnsNull() {
+        assertNull(store.getStoredObject(null, "/../escaped.txt"));
+    }
+
+    private void put(ITransaction transaction, String uri, String content) throws WebdavException {
+        store.createResource(transaction, uri);
+        store.setResourceContent(transaction, uri, new ByteArrayInputStream(content.getBytes()), null, null);
+    }
+
+    private String read(ITransaction transaction, String uri) throws IOException {
+        try (InputStream in = store.getResourceContent(transaction, uri)) {
+            return new String(in.readAllBytes());
+        }
+    }
+}
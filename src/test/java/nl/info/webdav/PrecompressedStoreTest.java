@@ -0,0 +1,87 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PrecompressedStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    Path root;
+    PrecompressedStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = tempDir.toPath();
+        Files.writeString(root.resolve("app.js"), "plain");
+        Files.writeString(root.resolve("app.js.gz"), "zipped!");
+        Files.writeString(root.resolve("archive.gz"), "orphan");
+        Files.setLastModifiedTime(root.resolve("app.js"), FileTime.fromMillis(1_000_000_000_000L));
+        Files.setLastModifiedTime(root.resolve("app.js.gz"), FileTime.fromMillis(1_000_000_001_000L));
+        store = new PrecompressedStore(tempDir);
+    }
+
+    @Test
+    void getStoredObject_currentSibling_reportsGzip() throws IOException {
+        StoredObject so = store.getStoredObject(null, "/app.js");
+        assertEquals("gzip", so.getContentEncoding());
+        assertEquals(7, so.getEncodedLength());
+        assertEquals(5, so.getResourceLength());
+        try (InputStream in = store.getEncodedResourceContent(null, "/app.js")) {
+            assertEquals("zipped!", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void getStoredObject_olderSibling_isIgnored() throws IOException {
+        Files.setLastModifiedTime(root.resolve("app.js.gz"), FileTime.fromMillis(999_999_999_000L));
+        assertNull(store.getStoredObject(null, "/app.js").getContentEncoding());
+    }
+
+    @Test
+    void getChildrenNames_hidesSiblingsOnly() {
+        String[] children = store.getChildrenNames(null, "/");
+        Arrays.sort(children);
+        assertArrayEquals(new String[]{"app.js", "archive.gz"}, children);
+    }
+
+    @Test
+    void setResourceContent_andRemoveObject_removeSibling() {
+        store.setResourceContent(null, "/app.js", new ByteArrayInputStream("new".getBytes()), null, null);
+        assertFalse(Files.exists(root.resolve("app.js.gz")));
+        assertNull(store.getStoredObject(null, "/app.js").getContentEncoding());
+
+        store.setResourceContent(null, "/app.js.gz", new ByteArrayInputStream("zipped".getBytes()), null, null);
+        store.removeObject(null, "/app.js");
+        assertFalse(Files.exists(root.resolve("app.js.gz")));
+    }
+
+    @Test
+    void move_takesSiblingAlong() {
+        store.move(null, "/app.js", "/main.js");
+        assertTrue(Files.exists(root.resolve("main.js.gz")));
+        assertFalse(Files.exists(root.resolve("app.js.gz")));
+        assertEquals("gzip", store.getStoredObject(null, "/main.js").getContentEncoding());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.exceptions.InsufficientStorageException;
+
+class QuotaStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    QuotaStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(tempDir.toPath().resolve("a/b"));
+        Files.writeString(tempDir.toPath().resolve("a/one.txt"), "x".repeat(10));
+        Files.writeString(tempDir.toPath().resolve("a/b/two.txt"), "y".repeat(20));
+        Files.writeString(tempDir.toPath().resolve("three.txt"), "z".repeat(5));
+        store = new QuotaStore(new LocalFileSystemStore(tempDir), 100);
+    }
+
+    @Test
+    void constructor_computesFolderSizes() {
+        assertEquals(35, store.getQuotaUsedBytes(null, "/"));
+        assertEquals(30, store.getQuotaUsedBytes(null, "/a"));
+        assertEquals(20, store.getQuotaUsedBytes(null, "/a/b/"));
+        assertEquals(65, store.getQuotaAvailableBytes(null, "/a"));
+    }
+
+    @Test
+    void setResourceContent_updatesFoldersAbove() {
+        put("/a/b/two.txt", 5);
+        put("/a/b/four.txt", 7);
+        assertEquals(12, store.getQuotaUsedBytes(null, "/a/b"));
+        assertEquals(22, store.getQuotaUsedBytes(null, "/a"));
+        assertEquals(27, store.getQuotaUsedBytes(null, "/"));
+    }
+
+    @Test
+    void setResourceContent_overQuota_throws() {
+        assertThrows(InsufficientStorageException.class, () -> put("/a/big.txt", 66));
+        assertEquals(35, store.getQuotaUsedBytes(null, "/"));
+        assertEquals(0, new File(tempDir, "a/big.txt").length());
+        assertArrayEquals(new String[]{"b", "big.txt", "one.txt"}, sorted(tempDir.toPath().resolve("a").toFile()));
+    }
+
+    @Test
+    void setResourceContent_overQuota_keepsOldContent() throws Exception {
+        assertThrows(InsufficientStorageException.class, () -> put("/a/one.txt", 76));
+        assertEquals("x".repeat(10), Files.readString(tempDir.toPath().resolve("a/one.txt")));
+        assertEquals(35, store.getQuotaUsedBytes(null, "/"));
+        assertEquals(65, store.getQuotaAvailableBytes(null, "/"));
+        put("/a/one.txt", 75);
+        assertEquals(100, store.getQuotaUsedBytes(null, "/"));
+    }
+
+    @Test
+    void getChildrenNames_leavesOutTemporaryResources() throws Exception {
+        Files.writeString(tempDir.toPath().resolve("a/.one.txt." + UUID.randomUUID() + ".tmp"), "partial");
+        String[] children = store.getChildrenNames(null, "/a");
+        Arrays.sort(children);
+        assertArrayEquals(new String[]{"b", "one.txt"}, children);
+    }
+
+    @Test
+    void removeAndMove_updateSizes() {
+        store.move(null, "/a/b", "/c");
+        assertEquals(10, store.getQuotaUsedBytes(null, "/a"));
+        assertEquals(20, store.getQuotaUsedBytes(null, "/c"));
+        assertEquals(-1, store.getQuotaUsedBytes(null, "/a/b"));
+        store.removeObject(null, "/c/two.txt");
+        assertEquals(0, store.getQuotaUsedBytes(null, "/c"));
+        assertEquals(15, store.getQuotaUsedBytes(null, "/"));
+    }
+
+    @Test
+    void deleteTree_removesSubtree() {
+        store.deleteTree(null, "/a");
+        assertEquals(-1, store.getQuotaUsedBytes(null, "/a/b"));
+        assertEquals(5, store.getQuotaUsedBytes(null, "/"));
+    }
+
+    @Test
+    void copy_countsDestinationAndRefusesWhatDoesNotFit() {
+        store.copy(null, "/a", "/copy", -1);
+        assertEquals(30, store.getQuotaUsedBytes(null, "/copy"));
+        assertEquals(65, store.getQuotaUsedBytes(null, "/"));
+        store.copy(null, "/a", "/second", -1);
+        assertEquals(95, store.getQuotaUsedBytes(null, "/"));
+        assertThrows(InsufficientStorageException.class, () -> store.copy(null, "/a", "/third", -1));
+    }
+
+    private static String[] sorted(File folder) {
+        String[] names = folder.list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    private void put(String uri, int length) {
+        if (store.getStoredObject(null, uri) == null) {
+            store.createResource(null, uri);
+        }
+        store.setResourceContent(null, uri, new ByteArrayInputStream(new byte[length]), null, null);
+    }
+}
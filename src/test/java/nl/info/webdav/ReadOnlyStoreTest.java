@@ -0,0 +1,148 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.exceptions.AccessDeniedException;
+
+class ReadOnlyStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    ReadOnlyStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(tempDir.toPath().resolve("folder"));
+        Files.writeString(tempDir.toPath().resolve("folder/a.txt"), "archived");
+        store = new ReadOnlyStore(new LocalFileSystemStore(tempDir));
+    }
+
+    @Test
+    void getStoredObject_keepsMetadataUntilReload() throws Exception {
+        assertEquals(8, store.getStoredObject(null, "/folder/a.txt").getResourceLength());
+        assertNull(store.getStoredObject(null, "/folder/b.txt"));
+        assertArrayEquals(new String[]{"a.txt"}, store.getChildrenNames(null, "/folder"));
+
+        Files.writeString(tempDir.toPath().resolve("folder/a.txt"), "changed on disk");
+        Files.writeString(tempDir.toPath().resolve("folder/b.txt"), "new");
+        assertEquals(8, store.getStoredObject(null, "/folder/a.txt").getResourceLength());
+        assertNull(store.getStoredObject(null, "/folder/b.txt"));
+        assertEquals(1, store.getChildrenNames(null, "/folder").length);
+
+        store.reload();
+        assertEquals(15, store.getStoredObject(null, "/folder/a.txt").getResourceLength());
+        assertNotNull(store.getStoredObject(null, "/folder/b.txt"));
+        assertEquals(2, store.getChildrenNames(null, "/folder").length);
+    }
+
+    @Test
+    void getStoredObject_returnsCopies() {
+        store.getStoredObject(null, "/folder/a.txt").setResourceLength(0);
+        assertEquals(8, store.getStoredObject(null, "/folder/a.txt").getResourceLength());
+    }
+
+    @Test
+    void transactions_areThoseOfTheOtherStore() {
+        Principal principal = () -> "reader";
+        List<Object> calls = new ArrayList<>();
+        ITransaction transaction = new ITransaction() {
+        };
+        ReadOnlyStore recorded = new ReadOnlyStore(new MemoryStore(1024) {
+            @Override
+            public ITransaction begin(Principal beginning) {
+                calls.add(beginning);
+                return transaction;
+            }
+
+            @Override
+            public void checkAuthentication(ITransaction checked) {
+                calls.add(checked);
+            }
+
+            @Override
+            public void commit(ITransaction committed) {
+                calls.add(committed);
+            }
+        });
+        ITransaction begun = recorded.begin(principal);
+        recorded.checkAuthentication(begun);
+        recorded.commit(begun);
+        assertEquals(List.of(principal, transaction, transaction), calls);
+    }
+
+    @Test
+    void getStoredObject_keepsMetadataPerPrincipal() throws Exception {
+        ReadOnlyStore restricted = new ReadOnlyStore(new LocalFileSystemStore(tempDir) {
+            @Override
+            public ITransaction begin(Principal principal) {
+                return new NamedTransaction(principal.getName());
+            }
+
+            @Override
+            public StoredObject getStoredObject(ITransaction transaction, String uri) {
+                return "guest".equals(((NamedTransaction) transaction).name) ? null
+                        : super.getStoredObject(transaction, uri);
+            }
+        });
+        assertNotNull(restricted.getStoredObject(restricted.begin(() -> "reader"), "/folder/a.txt"));
+        assertNull(restricted.getStoredObject(restricted.begin(() -> "guest"), "/folder/a.txt"));
+        assertNotNull(restricted.getStoredObject(restricted.begin(() -> "reader"), "/folder/a.txt"));
+    }
+
+    @Test
+    void getStoredObject_forgetsLeastRecentlyUsedPaths() throws Exception {
+        List<String> lookups = new ArrayList<>();
+        ReadOnlyStore small = new ReadOnlyStore(new LocalFileSystemStore(tempDir) {
+            @Override
+            public StoredObject getStoredObject(ITransaction transaction, String uri) {
+                lookups.add(uri);
+                return super.getStoredObject(transaction, uri);
+            }
+        }, 2);
+        small.getStoredObject(null, "/folder");
+        small.getStoredObject(null, "/folder/a.txt");
+        small.getStoredObject(null, "/folder");
+        small.getStoredObject(null, "/folder/b.txt");
+        small.getStoredObject(null, "/folder");
+        small.getStoredObject(null, "/folder/a.txt");
+        assertEquals(List.of("/folder", "/folder/a.txt", "/folder/b.txt", "/folder/a.txt"), lookups);
+    }
+
+    @Test
+    void changes_areRefused() {
+        assertThrows(AccessDeniedException.class, () -> store.createResource(null, "/folder/b.txt"));
+        assertThrows(AccessDeniedException.class, () -> store.setResourceContent(null, "/folder/a.txt",
+                new ByteArrayInputStream(new byte[0]), null, null));
+        assertThrows(AccessDeniedException.class, () -> store.removeObject(null, "/folder/a.txt"));
+        assertThrows(AccessDeniedException.class, () -> store.move(null, "/folder", "/other"));
+    }
+
+    private static final class NamedTransaction implements ITransaction {
+        private final String name;
+
+        private NamedTransaction(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+class ShardedFileSystemStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    ShardedFileSystemStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (String volume : new String[]{"vol0", "vol1", "vol2"}) {
+            Files.createDirectories(tempDir.toPath().resolve("volumes").resolve(volume));
+        }
+        store = new ShardedFileSystemStore(tempDir);
+        store.begin(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    void volumeIndexOf_isDeterministicPerTopLevelName() throws IOException {
+        ShardedFileSystemStore other = new ShardedFileSystemStore(tempDir);
+        try {
+            for (int i = 0; i < 20; i++) {
+                String name = "/folder" + i;
+                assertEquals(store.volumeIndexOf(name), other.volumeIndexOf(name));
+                assertEquals(store.volumeIndexOf(name), store.volumeIndexOf(name + "/child/file.txt"));
+            }
+        } finally {
+            other.destroy();
+        }
+    }
+
+    @Test
+    void volumeIndexOf_spreadsTopLevelNamesOverVolumes() {
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            used.add(store.volumeIndexOf("/folder" + i));
+        }
+        assertEquals(3, used.size());
+    }
+
+    @Test
+    void volumeIndexOf_root_isFirstVolume() {
+        assertEquals(0, store.volumeIndexOf("/"));
+    }
+
+    @Test
+    void getChildrenNames_root_mergesAllVolumes() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            store.createFolder(null, "/folder" + i);
+        }
+        String[] children = store.getChildrenNames(null, "/");
+        assertEquals(10, children.length);
+        assertTrue(Arrays.asList(children).contains("folder7"));
+    }
+
+    @Test
+    void setResourceContent_writesToPlacedVolume() throws Exception {
+        put("/doc.txt", "placed");
+        File volume = tempDir.toPath().resolve("volumes/vol" + store.volumeIndexOf("/doc.txt")).toFile();
+        assertEquals("placed", Files.readString(volume.toPath().resolve("doc.txt")));
+    }
+
+    @Test
+    void move_acrossVolumes_copiesAndRemovesSource() throws Exception {
+        String destination = nameOnOtherVolume("/src");
+        store.createFolder(null, "/src");
+        put("/src/a.txt", "moved");
+        store.move(null, "/src", destination);
+        assertNull(store.getStoredObject(null, "/src"));
+        assertEquals("moved", read(destination + "/a.txt"));
+    }
+
+    @Test
+    void copy_acrossVolumes_keepsSource() throws Exception {
+        String destination = nameOnOtherVolume("/a.txt");
+        put("/a.txt", "copied");
+        assertTrue(store.copy(null, "/a.txt", destination, 3).isEmpty());
+        assertNotNull(store.getStoredObject(null, "/a.txt"));
+        assertEquals("copied", read(destination));
+    }
+
+    @Test
+    void move_withinVolume_renames() throws Exception {
+        store.createFolder(null, "/dir");
+        put("/dir/a.txt", "renamed");
+        store.move(null, "/dir/a.txt", "/dir/b.txt");
+        assertNull(store.getStoredObject(null, "/dir/a.txt"));
+        assertEquals("renamed", read("/dir/b.txt"));
+    }
+
+    @Test
+    void reopen_keepsPlacementOfContent() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            store.createFolder(null, "/folder" + i);
+            put("/folder" + i + "/a.txt", "kept" + i);
+        }
+        store.destroy();
+        store = new ShardedFileSystemStore(tempDir);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("kept" + i, read("/folder" + i + "/a.txt"));
+        }
+        assertEquals(10, store.getChildrenNames(null, "/").length);
+    }
+
+    @Test
+    void reopen_withAddedVolume_findsContentOnPreviousVolume() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            store.createFolder(null, "/folder" + i);
+            put("/folder" + i + "/a.txt", "kept" + i);
+        }
+        store.destroy();
+        Files.createDirectories(tempDir.toPath().resolve("volumes").resolve("vol3"));
+        store = new ShardedFileSystemStore(tempDir);
+        assertTrue(IntStream.range(0, 20).anyMatch(i -> store.volumeIndexOf("/folder" + i) == 3));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(store.getStoredObject(null, "/folder" + i).isFolder());
+            assertEquals("kept" + i, read("/folder" + i + "/a.txt"));
+        }
+        assertEquals(20, store.getChildrenNames(null, "/").length);
+    }
+
+    @Test
+    void move_acrossVolumesFailing_removesPartialCopy() throws Exception {
+        String destination = nameOnOtherVolume("/src");
+        store.createFolder(null, "/src");
+        put("/src/a.txt", "kept");
+        Path volume = tempDir.toPath().resolve("volumes").resolve("vol" + store.volumeIndexOf("/src"));
+        Files.createSymbolicLink(volume.resolve("src").resolve("dangling"), volume.resolve("missing"));
+        assertThrows(WebdavException.class, () -> store.move(null, "/src", destination));
+        assertNull(store.getStoredObject(null, destination));
+        assertEquals("kept", read("/src/a.txt"));
+    }
+
+    @Test
+    void reopen_emptyRoot_doesNotTurnFoldersIntoVolumes(@TempDir File emptyRoot) throws Exception {
+        ShardedFileSystemStore single = new ShardedFileSystemStore(emptyRoot);
+        try {
+            single.createFolder(null, "/docs");
+            single.createResource(null, "/docs/a.txt");
+        } finally {
+            single.destroy();
+        }
+        single = new ShardedFileSystemStore(emptyRoot);
+        try {
+            assertTrue(single.getStoredObject(null, "/docs").isFolder());
+            assertNotNull(single.getStoredObject(null, "/docs/a.txt"));
+            assertArrayEquals(new String[]{"docs"}, single.getChildrenNames(null, "/"));
+        } finally {
+            single.destroy();
+        }
+    }
+
+    private String nameOnOtherVolume(String uri) {
+        for (int i = 0;; i++) {
+            String candidate = "/other" + i;
+            if (store.volumeIndexOf(candidate) != store.volumeIndexOf(uri)) {
+                return candidate;
+            }
+        }
+    }
+
+    private void put(String uri, String content) throws WebdavException {
+        store.createResource(null, uri);
+        store.setResourceContent(null, uri, new ByteArrayInputStream(content.getBytes()), null, null);
+    }
+
+    private String read(String uri) throws IOException {
+        try (InputStream in = store.getResourceContent(null, uri)) {
+            return new String(in.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+class TieredStoreTest {
+
+    static final long CHUNK_SIZE = 65536;
+
+    @TempDir
+    File tempDir;
+
+    LocalFileSystemStore capacityTier;
+    TieredStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        capacityTier = new LocalFileSystemStore(tempDir);
+        store = new TieredStore(new MemoryStore(8 * CHUNK_SIZE), capacityTier, 100, 2, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    void setResourceContent_writesBackToCapacityTier() throws Exception {
+        store.createFolder(null, "/dir");
+        put("/dir/a.txt", "written");
+        assertTrue(store.isOnFastTier("/dir/a.txt"));
+        assertEquals("written", read("/dir/a.txt"));
+        store.flush();
+        assertEquals("written", Files.readString(tempDir.toPath().resolve("dir/a.txt")));
+    }
+
+    @Test
+    void getStoredObject_beforeWriteBack_reportsFastTierLength() throws Exception {
+        store.createResource(null, "/a.txt");
+        store.setResourceContent(null, "/a.txt", new ByteArrayInputStream("pending".getBytes()), "text/plain", null);
+        assertEquals(7, store.getStoredObject(null, "/a.txt").getResourceLength());
+        assertArrayEquals(new String[]{"a.txt"}, store.getChildrenNames(null, "/"));
+    }
+
+    @Test
+    void getResourceContent_repeatedReads_promotes() throws Exception {
+        Files.writeString(tempDir.toPath().resolve("cold.txt"), "cold");
+        assertEquals("cold", read("/cold.txt"));
+        assertFalse(store.isOnFastTier("/cold.txt"));
+        assertEquals("cold", read("/cold.txt"));
+        assertTrue(store.isOnFastTier("/cold.txt"));
+    }
+
+    @Test
+    void demote_overBudget_removesLeastRecentlyUsed() throws Exception {
+        put("/a.txt", "x".repeat(60));
+        store.flush();
+        put("/b.txt", "y".repeat(60));
+        store.flush();
+        assertFalse(store.isOnFastTier("/a.txt"));
+        assertTrue(store.isOnFastTier("/b.txt"));
+        assertEquals("x".repeat(60), read("/a.txt"));
+    }
+
+    @Test
+    void move_folder_writesBackAndMovesOnCapacityTier() throws Exception {
+        store.createFolder(null, "/src");
+        put("/src/a.txt", "moved");
+        store.move(null, "/src", "/dst");
+        assertNull(store.getStoredObject(null, "/src"));
+        assertFalse(store.isOnFastTier("/src/a.txt"));
+        assertEquals("moved", Files.readString(tempDir.toPath().resolve("dst/a.txt")));
+    }
+
+    @Test
+    void removeObject_dropsPendingWriteBack() throws Exception {
+        put("/a.txt", "removed");
+        store.removeObject(null, "/a.txt");
+        store.flush();
+        assertNull(store.getStoredObject(null, "/a.txt"));
+        assertFalse(Files.exists(tempDir.toPath().resolve("a.txt")));
+    }
+
+    @Test
+    void setResourceContent_largerThanBudget_writesToCapacityTier() throws Exception {
+        put("/a.txt", "small");
+        store.setResourceContent(null, "/a.txt", new ByteArrayInputStream("z".repeat(150).getBytes()), null, null);
+        assertFalse(store.isOnFastTier("/a.txt"));
+        assertEquals("z".repeat(150), Files.readString(tempDir.toPath().resolve("a.txt")));
+        store.flush();
+        assertEquals("z".repeat(150), read("/a.txt"));
+        assertEquals(150, store.getStoredObject(null, "/a.txt").getResourceLength());
+    }
+
+    @Test
+    void setResourceContent_overBudgetWhileWritingBack_writesToCapacityTier() throws Exception {
+        put("/a.txt", "x".repeat(60));
+        put("/b.txt", "y".repeat(60));
+        assertTrue(store.isOnFastTier("/a.txt"));
+        assertFalse(store.isOnFastTier("/b.txt"));
+        assertEquals("y".repeat(60), Files.readString(tempDir.toPath().resolve("b.txt")));
+        store.flush();
+        assertEquals("x".repeat(60), read("/a.txt"));
+    }
+
+    @Test
+    void getEncodedResourceContent_forwardsToCapacityTier() throws Exception {
+        TieredStore compressing = new TieredStore(new MemoryStore(8 * CHUNK_SIZE),
+                new CompressingStore(new LocalFileSystemStore(tempDir), 10, Set.of("txt")), 100, 2, 60000);
+        try {
+            compressing.createResource(null, "/c.txt");
+            compressing.setResourceContent(null, "/c.txt", new ByteArrayInputStream("c".repeat(80).getBytes()), null,
+                    null);
+            compressing.flush();
+            assertEquals("gzip", compressing.getStoredObject(null, "/c.txt").getContentEncoding());
+            try (InputStream in = new GZIPInputStream(compressing.getEncodedResourceContent(null, "/c.txt"))) {
+                assertEquals("c".repeat(80), new String(in.readAllBytes()));
+            }
+        } finally {
+            compressing.destroy();
+        }
+    }
+
+    @Test
+    void writeBack_failing_isRetriedAndKeepsContent() throws Exception {
+        AtomicInteger failures = new AtomicInteger(1000);
+        TieredStore failing = new TieredStore(new MemoryStore(8 * CHUNK_SIZE), new LocalFileSystemStore(tempDir) {
+            @Override
+            public long setResourceContent(
+                    ITransaction transaction,
+                    String uri,
+                    InputStream is,
+                    String contentType,
+                    String characterEncoding
+            ) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new WebdavException("capacity tier unavailable");
+                }
+                return super.setResourceContent(transaction, uri, is, contentType, characterEncoding);
+            }
+        }, 100, 2, 60000, 10);
+        try {
+            failing.createFolder(null, "/dir");
+            failing.createResource(null, "/dir/a.txt");
+            failing.setResourceContent(null, "/dir/a.txt", new ByteArrayInputStream("kept".getBytes()), null, null);
+            assertThrows(WebdavException.class, failing::flush);
+            assertThrows(WebdavException.class, () -> failing.move(null, "/dir", "/moved"));
+            assertThrows(WebdavException.class, () -> failing.deleteTree(null, "/dir"));
+            assertTrue(failing.isOnFastTier("/dir/a.txt"));
+            try (InputStream in = failing.getResourceContent(null, "/dir/a.txt")) {
+                assertEquals("kept", new String(in.readAllBytes()));
+            }
+
+            failures.set(0);
+            // the write-back is retried on its own
+            for (int i = 0; i < 500 && Files.size(tempDir.toPath().resolve("dir/a.txt")) == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals("kept", Files.readString(tempDir.toPath().resolve("dir/a.txt")));
+            failing.flush();
+            failing.move(null, "/dir", "/moved");
+            assertEquals("kept", Files.readString(tempDir.toPath().resolve("moved/a.txt")));
+        } finally {
+            failing.destroy();
+        }
+    }
+
+    private void put(String uri, String content) throws WebdavException {
+        store.createResource(null, uri);
+        store.setResourceContent(null, uri, new ByteArrayInputStream(content.getBytes()), null, null);
+    }
+
+    private String read(String uri) throws IOException {
+        try (InputStream in = store.getResourceContent(null, uri)) {
+            return new String(in.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransactionalFileSystemStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    Path root;
+    TransactionalFileSystemStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = tempDir.toPath();
+        Files.createDirectories(root.resolve("folder/sub"));
+        Files.writeString(root.resolve("folder/a.txt"), "original");
+        Files.writeString(root.resolve("folder/sub/b.txt"), "nested");
+        store = new TransactionalFileSystemStore(tempDir);
+    }
+
+    @Test
+    void rollback_restoresOverwrittenAndDeletedObjects() throws Exception {
+        ITransaction transaction = store.begin(null);
+        put(transaction, "/folder/a.txt", "changed");
+        store.createResource(transaction, "/new.txt");
+        store.deleteTree(transaction, "/folder/sub");
+        assertEquals("changed", Files.readString(root.resolve("folder/a.txt")));
+        assertFalse(Files.exists(root.resolve("folder/sub")));
+
+        store.rollback(transaction);
+
+        assertEquals("original", Files.readString(root.resolve("folder/a.txt")));
+        assertEquals("nested", Files.readString(root.resolve("folder/sub/b.txt")));
+        assertFalse(Files.exists(root.resolve("new.txt")));
+        assertArrayEquals(new String[0], root.resolve(TransactionalFileSystemStore.JOURNAL_DIRECTORY).toFile().list());
+    }
+
+    @Test
+    void rollback_undoesMoveAndCopy() throws Exception {
+        ITransaction transaction = store.begin(null);
+        store.move(transaction, "/folder/sub", "/moved");
+        store.copy(transaction, "/folder", "/copy", -1);
+        store.removeObject(transaction, "/copy/a.txt");
+
+        store.rollback(transaction);
+
+        assertEquals("nested", Files.readString(root.resolve("folder/sub/b.txt")));
+        assertFalse(Files.exists(root.resolve("moved")));
+        assertFalse(Files.exists(root.resolve("copy")));
+    }
+
+    @Test
+    void commit_keepsChangesAndDropsJournal() throws Exception {
+        ITransaction transaction = store.begin(null);
+        put(transaction, "/folder/a.txt", "changed");
+        store.removeObject(transaction, "/folder/sub/b.txt");
+        store.commit(transaction);
+        store.rollback(transaction);
+
+        assertEquals("changed", Files.readString(root.resolve("folder/a.txt")));
+        assertFalse(Files.exists(root.resolve("folder/sub/b.txt")));
+        assertArrayEquals(new String[0], root.resolve(TransactionalFileSystemStore.JOURNAL_DIRECTORY).toFile().list());
+    }
+
+    @Test
+    void constructor_rollsBackUnfinishedTransactions() throws Exception {
+        ITransaction transaction = store.begin(null);
+        put(transaction, "/folder/a.txt", "changed");
+        store.createFolder(transaction, "/created");
+
+        new TransactionalFileSystemStore(tempDir);
+
+        assertEquals("original", Files.readString(root.resolve("folder/a.txt")));
+        assertFalse(Files.exists(root.resolve("created")));
+    }
+
+    @Test
+    void constructor_keepsSavedObjectsTheJournalDoesNotRefer() throws Exception {
+        ITransaction transaction = store.begin(null);
+        put(transaction, "/folder/a.txt", "changed");
+        Path journals = root.resolve(TransactionalFileSystemStore.JOURNAL_DIRECTORY);
+        Path directory;
+        try (Stream<Path> directories = Files.list(journals)) {
+            directory = directories.findFirst().orElseThrow();
+        }
+        Files.writeString(directory.resolve("journal"), "");
+
+        new TransactionalFileSystemStore(tempDir);
+
+        assertEquals("original", Files.readString(directory.resolve("0")));
+        assertFalse(Files.exists(directory.resolve("journal")));
+    }
+
+    @Test
+    void getChildrenNames_hidesJournal() {
+        ITransaction transaction = store.begin(null);
+        store.createFolder(transaction, "/created");
+        assertTrue(Files.isDirectory(root.resolve(TransactionalFileSystemStore.JOURNAL_DIRECTORY)));
+        for (String name : store.getChildrenNames(transaction, "/")) {
+            assertFalse(name.equals(TransactionalFileSystemStore.JOURNAL_DIRECTORY));
+        }
+        store.commit(transaction);
+    }
+
+    @Test
+    void getStoredObject_journal_returnsNull() throws Exception {
+        Files.createDirectories(root.resolve(TransactionalFileSystemStore.JOURNAL_DIRECTORY));
+        assertNull(store.getStoredObject(null, "/" + TransactionalFileSystemStore.JOURNAL_DIRECTORY));
+        // the plain store leaves the name to content
+        assertNotNull(new LocalFileSystemStore(tempDir)
+                .getStoredObject(null, "/" + TransactionalFileSystemStore.JOURNAL_DIRECTORY));
+    }
+
+    private void put(ITransaction transaction, String uri, String content) {
+        store.setResourceContent(transaction, uri, new ByteArrayInputStream(content.getBytes()), null, null);
+    }
+}
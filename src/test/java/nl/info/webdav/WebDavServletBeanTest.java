@@ -59,6 +59,25 @@ public class WebDavServletBeanTest extends MockTest {
         }
     }
 
+    @Test
+    public void testServiceReadOnlyRefusesWriteMethodsBeforeBegin() throws Exception {
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getMethod();
+                will(returnValue("PUT"));
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_FORBIDDEN);
+
+                never(mockStore).begin(null);
+            }
+        });
+
+        TestBean bean = new TestBean(mockStore, "PUT", mockExecutor);
+        bean.setReadOnly(true);
+        bean.callService(mockReq, mockRes);
+        _mockery.assertIsSatisfied();
+    }
+
     @Test
     public void testServicePathTraversalExceptionSends400() throws Exception {
         _mockery.checking(new Expectations() {
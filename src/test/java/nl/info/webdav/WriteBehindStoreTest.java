@@ -0,0 +1,175 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.info.webdav.exceptions.WebdavException;
+
+class WriteBehindStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    File root;
+    CountDownLatch backendOpen;
+    AtomicInteger failures;
+    WriteBehindStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = new File(tempDir, "root");
+        File staging = new File(tempDir, "staging");
+        assertTrue(root.mkdir());
+        assertTrue(staging.mkdir());
+        backendOpen = new CountDownLatch(1);
+        failures = new AtomicInteger();
+        LocalFileSystemStore backend = new LocalFileSystemStore(root) {
+            @Override
+            public long setResourceContent(
+                    ITransaction transaction,
+                    String uri,
+                    InputStream is,
+                    String contentType,
+                    String characterEncoding
+            ) throws WebdavException {
+                try {
+                    backendOpen.await();
+                } catch (InterruptedException e) {
+                    throw new WebdavException(e);
+                }
+                if (failures.getAndDecrement() > 0) {
+                    throw new WebdavException("backend unavailable");
+                }
+                return super.setResourceContent(transaction, uri, is, contentType, characterEncoding);
+            }
+        };
+        store = new WriteBehindStore(backend, staging, 10, 2, 3, 10);
+    }
+
+    @Test
+    void setResourceContent_beforeWrite_readsFromStaging() throws Exception {
+        put("/a.txt", "staged");
+        assertEquals("staged", read("/a.txt"));
+        assertEquals(6, store.getStoredObject(null, "/a.txt").getResourceLength());
+        assertEquals(0, new File(root, "a.txt").length());
+        backendOpen.countDown();
+        store.flush();
+        assertEquals("staged", Files.readString(root.toPath().resolve("a.txt")));
+    }
+
+    @Test
+    void setResourceContent_samePath_appliesLastWrite() throws Exception {
+        put("/a.txt", "one");
+        put("/a.txt", "two");
+        assertEquals("two", read("/a.txt"));
+        backendOpen.countDown();
+        store.flush();
+        assertEquals("two", Files.readString(root.toPath().resolve("a.txt")));
+        assertEquals("two", read("/a.txt"));
+    }
+
+    @Test
+    void setResourceContent_spoolFull_waits() throws Exception {
+        put("/a.txt", "0123456789");
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> put("/b.txt", "more"));
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+        backendOpen.countDown();
+        second.get(10, TimeUnit.SECONDS);
+        store.flush();
+        assertEquals("more", Files.readString(root.toPath().resolve("b.txt")));
+    }
+
+    @Test
+    void removeObject_waitsForPendingWrite() throws Exception {
+        put("/a.txt", "gone");
+        CompletableFuture<Void> remove = CompletableFuture.runAsync(() -> store.removeObject(null, "/a.txt"));
+        Thread.sleep(100);
+        assertFalse(remove.isDone());
+        backendOpen.countDown();
+        remove.get(10, TimeUnit.SECONDS);
+        assertFalse(new File(root, "a.txt").exists());
+    }
+
+    @Test
+    void destroy_drainsStagedContent() throws Exception {
+        put("/a.txt", "drained");
+        backendOpen.countDown();
+        store.destroy();
+        assertEquals("drained", Files.readString(root.toPath().resolve("a.txt")));
+        assertEquals(0, new File(tempDir, "staging").list().length);
+    }
+
+    @Test
+    void write_failing_isRetried() throws Exception {
+        failures.set(2);
+        put("/a.txt", "retried");
+        backendOpen.countDown();
+        store.flush();
+        assertEquals("retried", Files.readString(root.toPath().resolve("a.txt")));
+        assertEquals(0, new File(tempDir, "staging").list().length);
+    }
+
+    @Test
+    void write_givenUp_failsFlushAndKeepsContentStaged() throws Exception {
+        failures.set(3);
+        put("/a.txt", "kept");
+        backendOpen.countDown();
+        assertThrows(WebdavException.class, store::flush);
+        assertEquals("kept", read("/a.txt"));
+        // the content and its manifest
+        assertEquals(2, new File(tempDir, "staging").list().length);
+        store.removeObject(null, "/a.txt");
+        store.flush();
+        assertEquals(0, new File(tempDir, "staging").list().length);
+    }
+
+    @Test
+    void constructor_writesContentStagedBeforeStop() throws Exception {
+        put("/a.txt", "one");
+        put("/a.txt", "two");
+        put("/b.txt", "other");
+        File staging = new File(tempDir, "staging");
+        assertTrue(new File(staging, "spool-interrupted.tmp").createNewFile());
+
+        // the first store never writes, as if the server stopped abruptly
+        WriteBehindStore restarted = new WriteBehindStore(new LocalFileSystemStore(root), staging, 10, 2, 3, 10);
+        restarted.flush();
+        assertEquals("two", Files.readString(root.toPath().resolve("a.txt")));
+        assertEquals("other", Files.readString(root.toPath().resolve("b.txt")));
+        assertEquals(0, staging.list().length);
+    }
+
+    private void put(String uri, String content) {
+        if (store.getStoredObject(null, uri) == null) {
+            store.createResource(null, uri);
+        }
+        store.setResourceContent(null, uri, new ByteArrayInputStream(content.getBytes()), "text/plain", null);
+    }
+
+    private String read(String uri) throws IOException {
+        try (InputStream in = store.getResourceContent(null, uri)) {
+            return new String(in.readAllBytes());
+        }
+    }
+}
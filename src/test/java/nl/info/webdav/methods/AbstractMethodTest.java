@@ -140,11 +140,31 @@ public class AbstractMethodTest extends MockTest {
         assertEquals("W/\"100-1000\"", method.getETag(so));
     }
 
+    @Test
+    public void testGetETagForResourceWithDigest() {
+        StoredObject so = new StoredObject();
+        so.setFolder(false);
+        so.setResourceLength(100L);
+        so.setLastModified(new Date(1000L));
+        so.setContentDigest("abc123");
+        assertEquals("\"abc123\"", method.getETag(so));
+    }
+
     @Test
     public void testGetETagForNull() {
         assertEquals("W/\"-\"", method.getETag(null));
     }
 
+    @Test
+    public void testParseHttpDateAcceptsAllFormats() {
+        long expected = 784111777000L;
+        assertEquals(expected, AbstractMethod.parseHttpDate("Sun, 06 Nov 1994 08:49:37 GMT"));
+        assertEquals(expected, AbstractMethod.parseHttpDate("Sunday, 06-Nov-94 08:49:37 GMT"));
+        assertEquals(expected, AbstractMethod.parseHttpDate("Sun Nov  6 08:49:37 1994"));
+        assertEquals(-1, AbstractMethod.parseHttpDate("yesterday"));
+        assertEquals(-1, AbstractMethod.parseHttpDate(null));
+    }
+
     @Test
     public void testGetLockIdFromIfHeaderSingleToken() {
         _mockery.checking(new Expectations() {
@@ -0,0 +1,141 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.methods;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import org.jmock.Expectations;
+import org.junit.jupiter.api.Test;
+
+import nl.info.webdav.testutil.MockTest;
+
+public class AsyncContentSenderTest extends MockTest {
+
+    @Test
+    public void testContentIsOnlyReadWhileTheClientCanTakeIt() throws Exception {
+        AsyncContext asyncContext = _mockery.mock(AsyncContext.class, "sendingContext");
+        ThrottledOutputStream out = new ThrottledOutputStream();
+        ClosingInputStream in = new ClosingInputStream("0123456789".getBytes());
+        AsyncContentSender sender = new AsyncContentSender(asyncContext, in, out, 4);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(asyncContext).addListener(sender);
+            }
+        });
+
+        sender.start();
+        assertSame(sender, out.listener);
+
+        out.ready = 2;
+        sender.onWritePossible();
+        assertEquals("01234567", out.toString());
+        assertEquals(2, in.available());
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(asyncContext).complete();
+            }
+        });
+
+        out.ready = 5;
+        sender.onWritePossible();
+        assertEquals("0123456789", out.toString());
+        assertTrue(in.closed);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testErrorClosesContentAndCompletesOnce() throws Exception {
+        AsyncContext asyncContext = _mockery.mock(AsyncContext.class, "failingContext");
+        ClosingInputStream in = new ClosingInputStream("0123456789".getBytes());
+        AsyncContentSender sender = new AsyncContentSender(asyncContext, in, new ThrottledOutputStream(), 4);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(asyncContext).complete();
+            }
+        });
+
+        sender.onError(new IOException("connection reset"));
+        sender.onComplete(null);
+        assertTrue(in.closed);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testContentIsNotReadAfterTimeout() throws Exception {
+        AsyncContext asyncContext = _mockery.mock(AsyncContext.class, "timedOutContext");
+        ClosingInputStream in = new ClosingInputStream("0123456789".getBytes());
+        ThrottledOutputStream out = new ThrottledOutputStream();
+        AsyncContentSender sender = new AsyncContentSender(asyncContext, in, out, 4);
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(asyncContext).complete();
+            }
+        });
+
+        sender.onTimeout(null);
+        out.ready = 3;
+        sender.onWritePossible();
+        assertTrue(in.closed);
+        assertEquals(10, in.available());
+        assertEquals("", out.toString());
+
+        _mockery.assertIsSatisfied();
+    }
+
+    private static class ThrottledOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        int ready;
+        WriteListener listener;
+
+        @Override
+        public void write(int b) {
+            baos.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready-- > 0;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            listener = writeListener;
+        }
+
+        @Override
+        public String toString() {
+            return baos.toString();
+        }
+    }
+
+    private static class ClosingInputStream extends ByteArrayInputStream {
+        boolean closed;
+
+        ClosingInputStream(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
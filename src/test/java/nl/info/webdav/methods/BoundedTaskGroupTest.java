@@ -0,0 +1,67 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.methods;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedTaskGroupTest {
+
+    @Test
+    void submit_neverRunsMoreTasksThanParallelism() {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            AtomicInteger finished = new AtomicInteger();
+            BoundedTaskGroup tasks = new BoundedTaskGroup(executor, 2);
+            for (int i = 0; i < 20; i++) {
+                tasks.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    finished.incrementAndGet();
+                });
+            }
+            tasks.await();
+            assertEquals(20, finished.get());
+            assertTrue(maxRunning.get() <= 2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void await_rethrowsFailureOfTask() {
+        BoundedTaskGroup tasks = new BoundedTaskGroup(Runnable::run, 2);
+        tasks.submit(() -> {
+            throw new IllegalStateException("failed");
+        });
+        assertThrows(IllegalStateException.class, tasks::await);
+    }
+
+    @Test
+    void submit_rejectedTaskRunsOnCallingThread() {
+        AtomicInteger finished = new AtomicInteger();
+        BoundedTaskGroup tasks = new BoundedTaskGroup(task -> {
+            throw new RejectedExecutionException();
+        }, 2);
+        tasks.submit(finished::incrementAndGet);
+        tasks.await();
+        assertEquals(1, finished.get());
+    }
+}
@@ -5,6 +5,8 @@
 package nl.info.webdav.methods;
 
 import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Map;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -17,6 +19,7 @@ import nl.info.webdav.ITransaction;
 import nl.info.webdav.IWebdavStore;
 import nl.info.webdav.StoredObject;
 import nl.info.webdav.WebdavStatus;
+import nl.info.webdav.exceptions.AccessDeniedException;
 import nl.info.webdav.locking.LockedObject;
 import nl.info.webdav.locking.ResourceLocks;
 import nl.info.webdav.testutil.DelegatingServletInputStream;
@@ -235,24 +238,12 @@ public class DoCopyTest extends MockTest {
 
                 oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
 
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceFileSo));
-
-                oneOf(mockStore).createResource(mockTransaction, destFilePath);
-
-                oneOf(mockStore).getResourceContent(mockTransaction,
-                        sourceFilePath);
-                will(returnValue(dsis));
+                oneOf(mockStore).copy(mockTransaction, sourceFilePath,
+                        destFilePath, AbstractMethod.INFINITY);
+                will(returnValue(Collections.emptyMap()));
 
-                oneOf(mockStore).setResourceContent(mockTransaction,
-                        destFilePath, dsis, null, null);
-                will(returnValue(resourceLength));
-
-                destFileSo = initFileStoredObject(resourceContent);
-
-                oneOf(mockStore).getStoredObject(mockTransaction, destFilePath);
-                will(returnValue(destFileSo));
 
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -388,43 +379,244 @@ public class DoCopyTest extends MockTest {
 
                 oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
 
+                oneOf(mockReq).getHeader("Depth");
+                will(returnValue("-1"));
+
+                oneOf(mockStore).copy(mockTransaction, sourceCollectionPath,
+                        destCollectionPath, AbstractMethod.INFINITY);
+                will(returnValue(Collections.emptyMap()));
+
+
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
+
+        ResourceLocks resLocks = new ResourceLocks();
+
+        DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
+
+        DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
+        doCopy.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDoCopyFolderInParallel() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockReq).getHeader("Destination");
+                will(returnValue(destCollectionPath));
+
+                oneOf(mockReq).getServerName();
+                will(returnValue("serverName"));
+
+                oneOf(mockReq).getContextPath();
+                will(returnValue(""));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(destCollectionPath));
+
+                oneOf(mockReq).getServletPath();
+                will(returnValue("/servletPath"));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockReq).getHeader("Overwrite");
+                will(returnValue("F"));
+
+                StoredObject sourceCollectionSo = initFolderStoredObject();
+
                 oneOf(mockStore).getStoredObject(mockTransaction,
                         sourceCollectionPath);
                 will(returnValue(sourceCollectionSo));
 
-                oneOf(mockStore)
-                        .createFolder(mockTransaction, destCollectionPath);
+                StoredObject destCollectionSo = null;
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        destCollectionPath);
+                will(returnValue(destCollectionSo));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
 
                 oneOf(mockReq).getHeader("Depth");
                 will(returnValue("-1"));
 
-                sourceChildren = new String[]{"sourceFile"};
+                oneOf(mockStore).createFolder(mockTransaction, destCollectionPath);
 
                 oneOf(mockStore).getChildrenNames(mockTransaction,
                         sourceCollectionPath);
-                will(returnValue(sourceChildren));
+                will(returnValue(new String[]{"sourceFile"}));
 
                 StoredObject sourceFileSo = initFileStoredObject(resourceContent);
 
                 oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
                 will(returnValue(sourceFileSo));
 
-                oneOf(mockStore).createResource(mockTransaction,
-                        destCollectionPath + "/sourceFile");
+                oneOf(mockStore).copy(mockTransaction, sourceFilePath,
+                        destCollectionPath + "/sourceFile", 0);
+                will(returnValue(Collections.emptyMap()));
 
-                oneOf(mockStore).getResourceContent(mockTransaction,
-                        sourceFilePath);
-                will(returnValue(dsis));
 
-                oneOf(mockStore).setResourceContent(mockTransaction,
-                        destCollectionPath + "/sourceFile", dsis, null, null);
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
 
-                StoredObject destFileSo = initFileStoredObject(resourceContent);
+        ResourceLocks resLocks = new ResourceLocks();
+
+        DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
+
+        DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly,
+                Runnable::run, 2);
+        doCopy.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDoCopyFolderWithDepthZero() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockReq).getHeader("Destination");
+                will(returnValue(destCollectionPath));
+
+                oneOf(mockReq).getServerName();
+                will(returnValue("serverName"));
+
+                oneOf(mockReq).getContextPath();
+                will(returnValue(""));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(destCollectionPath));
+
+                oneOf(mockReq).getServletPath();
+                will(returnValue("/servletPath"));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockReq).getHeader("Overwrite");
+                will(returnValue("F"));
+
+                StoredObject sourceCollectionSo = initFolderStoredObject();
 
                 oneOf(mockStore).getStoredObject(mockTransaction,
-                        destCollectionPath + "/sourceFile");
-                will(returnValue(destFileSo));
+                        sourceCollectionPath);
+                will(returnValue(sourceCollectionSo));
+
+                StoredObject destCollectionSo = null;
 
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        destCollectionPath);
+                will(returnValue(destCollectionSo));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
+
+                oneOf(mockReq).getHeader("Depth");
+                will(returnValue("0"));
+
+                oneOf(mockStore).copy(mockTransaction, sourceCollectionPath,
+                        destCollectionPath, 0);
+                will(returnValue(Collections.emptyMap()));
+
+
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
+
+        ResourceLocks resLocks = new ResourceLocks();
+
+        DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
+
+        DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
+        doCopy.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDoCopyFolderReportsFailedMembers() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockReq).getHeader("Destination");
+                will(returnValue(destCollectionPath));
+
+                oneOf(mockReq).getServerName();
+                will(returnValue("serverName"));
+
+                oneOf(mockReq).getContextPath();
+                will(returnValue(""));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(destCollectionPath));
+
+                oneOf(mockReq).getServletPath();
+                will(returnValue("/servletPath"));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockReq).getHeader("Overwrite");
+                will(returnValue("F"));
+
+                StoredObject sourceCollectionSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(sourceCollectionSo));
+
+                StoredObject destCollectionSo = null;
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        destCollectionPath);
+                will(returnValue(destCollectionSo));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
+
+                oneOf(mockReq).getHeader("Depth");
+                will(returnValue("-1"));
+
+                oneOf(mockStore).copy(mockTransaction, sourceCollectionPath,
+                        destCollectionPath, AbstractMethod.INFINITY);
+                will(returnValue(Map.of(destCollectionPath + "/sourceFile",
+                        new AccessDeniedException("denied"))));
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_FORBIDDEN,
+                        WebdavStatus.getStatusText(WebdavStatus.SC_FORBIDDEN));
+
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -546,21 +738,12 @@ public class DoCopyTest extends MockTest {
 
                 oneOf(mockStore).removeObject(mockTransaction, destFilePath);
 
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceSo));
-
-                oneOf(mockStore).createResource(mockTransaction, destFilePath);
+                oneOf(mockStore).copy(mockTransaction, sourceFilePath,
+                        destFilePath, AbstractMethod.INFINITY);
+                will(returnValue(Collections.emptyMap()));
 
-                oneOf(mockStore).getResourceContent(mockTransaction,
-                        sourceFilePath);
-                will(returnValue(dsis));
-
-                oneOf(mockStore).setResourceContent(mockTransaction,
-                        destFilePath, dsis, null, null);
-
-                oneOf(mockStore).getStoredObject(mockTransaction, destFilePath);
-                will(returnValue(existingDestSo));
 
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -622,6 +805,8 @@ public class DoCopyTest extends MockTest {
 
                 oneOf(mockRes).sendError(WebdavStatus.SC_PRECONDITION_FAILED);
 
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -684,20 +869,11 @@ public class DoCopyTest extends MockTest {
 
                 oneOf(mockStore).removeObject(mockTransaction, destFilePath);
 
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceSo));
+                oneOf(mockStore).copy(mockTransaction, sourceFilePath,
+                        destFilePath, AbstractMethod.INFINITY);
+                will(returnValue(Collections.emptyMap()));
 
-                oneOf(mockStore).createResource(mockTransaction, destFilePath);
-
-                oneOf(mockStore).getResourceContent(mockTransaction,
-                        sourceFilePath);
-                will(returnValue(dsis));
-
-                oneOf(mockStore).setResourceContent(mockTransaction,
-                        destFilePath, dsis, null, null);
-
-                oneOf(mockStore).getStoredObject(mockTransaction, destFilePath);
-                will(returnValue(destFileSo));
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -756,6 +932,8 @@ public class DoCopyTest extends MockTest {
                 will(returnValue(existingDestSo));
 
                 oneOf(mockRes).sendError(WebdavStatus.SC_PRECONDITION_FAILED);
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -7,6 +7,8 @@ package nl.info.webdav.methods;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Map;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -19,6 +21,7 @@ import nl.info.webdav.ITransaction;
 import nl.info.webdav.IWebdavStore;
 import nl.info.webdav.StoredObject;
 import nl.info.webdav.WebdavStatus;
+import nl.info.webdav.exceptions.AccessDeniedException;
 import nl.info.webdav.exceptions.PathTraversalException;
 import nl.info.webdav.locking.LockedObject;
 import nl.info.webdav.locking.ResourceLocks;
@@ -76,6 +79,8 @@ public class DoDeleteTest extends MockTest {
                 will(returnValue(fileSo));
 
                 oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -136,6 +141,9 @@ public class DoDeleteTest extends MockTest {
                         sourceCollectionPath);
                 will(returnValue(folderSo));
 
+                oneOf(mockStore).supportsDeleteTree();
+                will(returnValue(false));
+
                 oneOf(mockStore).getChildrenNames(mockTransaction,
                         sourceCollectionPath);
                 will(returnValue(new String[]{"subFolder", "sourceFile"}));
@@ -171,6 +179,216 @@ public class DoDeleteTest extends MockTest {
 
                 oneOf(mockStore).removeObject(mockTransaction,
                         sourceCollectionPath);
+
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
+
+        DoDelete doDelete = new DoDelete(mockStore, new ResourceLocks(),
+                !readOnly);
+
+        doDelete.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDeleteFolderInParallel() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
+
+                StoredObject folderSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(folderSo));
+
+                oneOf(mockStore).supportsDeleteTree();
+                will(returnValue(false));
+
+                oneOf(mockStore).getChildrenNames(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(new String[]{"subFolder", "sourceFile"}));
+
+                StoredObject fileSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
+                will(returnValue(fileSo));
+
+                oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
+
+                StoredObject subFolderSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        sourceCollectionPath + "/subFolder");
+                will(returnValue(subFolderSo));
+
+                oneOf(mockStore).getChildrenNames(mockTransaction,
+                        sourceCollectionPath + "/subFolder");
+                will(returnValue(new String[]{"fileInSubFolder"}));
+
+                StoredObject fileInSubFolderSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        sourceCollectionPath + "/subFolder/fileInSubFolder");
+                will(returnValue(fileInSubFolderSo));
+
+                oneOf(mockStore).removeObject(mockTransaction,
+                        sourceCollectionPath + "/subFolder/fileInSubFolder");
+
+                oneOf(mockStore).removeObject(mockTransaction,
+                        sourceCollectionPath + "/subFolder");
+
+                oneOf(mockStore).removeObject(mockTransaction,
+                        sourceCollectionPath);
+
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
+
+        DoDelete doDelete = new DoDelete(mockStore, new ResourceLocks(),
+                !readOnly, Runnable::run, 2);
+
+        doDelete.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDeleteFolderInParallelKeepsFolderWithFailedMember() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
+
+                StoredObject folderSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(folderSo));
+
+                oneOf(mockStore).supportsDeleteTree();
+                will(returnValue(false));
+
+                oneOf(mockStore).getChildrenNames(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(new String[]{"sourceFile"}));
+
+                StoredObject fileSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
+                will(returnValue(fileSo));
+
+                oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
+                will(throwException(new AccessDeniedException("denied")));
+
+                never(mockStore).removeObject(mockTransaction,
+                        sourceCollectionPath);
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_FORBIDDEN,
+                        WebdavStatus.getStatusText(WebdavStatus.SC_FORBIDDEN));
+
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
+
+        DoDelete doDelete = new DoDelete(mockStore, new ResourceLocks(),
+                !readOnly, Runnable::run, 2);
+
+        doDelete.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDeleteFolderWithStoreTreeDelete() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
+
+                StoredObject folderSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(folderSo));
+
+                oneOf(mockStore).supportsDeleteTree();
+                will(returnValue(true));
+
+                oneOf(mockStore).deleteTree(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(Collections.emptyMap()));
+
+                never(mockStore).getChildrenNames(mockTransaction,
+                        sourceCollectionPath);
+
+                never(mockStore).removeObject(mockTransaction,
+                        sourceCollectionPath);
+
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
+
+        DoDelete doDelete = new DoDelete(mockStore, new ResourceLocks(),
+                !readOnly);
+
+        doDelete.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testDeleteFolderReportsFailedMembers() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
+
+                StoredObject folderSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(folderSo));
+
+                oneOf(mockStore).supportsDeleteTree();
+                will(returnValue(true));
+
+                oneOf(mockStore).deleteTree(mockTransaction,
+                        sourceCollectionPath);
+                will(returnValue(Map.of(sourceFilePath,
+                        new AccessDeniedException("denied"))));
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_FORBIDDEN,
+                        WebdavStatus.getStatusText(WebdavStatus.SC_FORBIDDEN));
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -232,6 +450,8 @@ public class DoDeleteTest extends MockTest {
                 will(returnValue(fileSo));
 
                 oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -319,6 +539,8 @@ public class DoDeleteTest extends MockTest {
 
                 oneOf(mockStore).removeObject(mockTransaction, path);
 
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -377,4 +599,35 @@ public class DoDeleteTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testDeleteFileIfMatchFailsIsRejected() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(sourceFilePath));
+
+                StoredObject fileSo = initFileStoredObject(resourceContent);
+                fileSo.setContentDigest("current");
+
+                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
+                will(returnValue(fileSo));
+
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue("\"previous\""));
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_PRECONDITION_FAILED);
+            }
+        });
+
+        DoDelete doDelete = new DoDelete(mockStore, new ResourceLocks(),
+                !readOnly);
+
+        doDelete.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
 }
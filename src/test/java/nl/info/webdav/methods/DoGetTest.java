@@ -10,7 +10,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.Principal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Locale;
+import java.util.zip.GZIPInputStream;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -104,8 +110,7 @@ public class DoGetTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
                 will(returnValue(indexSo));
 
-                oneOf(mockReq).getHeader("If-None-Match");
-                will(returnValue(null));
+                withoutConditionalHeaders(this, mockReq, true);
 
                 oneOf(mockRes).setDateHeader("last-modified",
                         indexSo.getLastModified().getTime());
@@ -113,6 +118,11 @@ public class DoGetTest extends MockTest {
                 oneOf(mockRes).addHeader(with(any(String.class)),
                         with(any(String.class)));
 
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue(null));
+
                 oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
                 will(returnValue("text/foo"));
 
@@ -142,6 +152,72 @@ public class DoGetTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testAccessOfaCompressedPageAcceptingGzipSendsStoredContent() throws Exception {
+
+        byte[] storedContent = new byte[]{0x1f, (byte) 0x8b, 8, 0};
+        TestingOutputStream encodedOut = new TestingOutputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                StoredObject indexSo = initFileStoredObject(resourceContent);
+                indexSo.setContentEncoding("gzip");
+                indexSo.setEncodedLength(storedContent.length);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(indexSo));
+
+                withoutConditionalHeaders(this, mockReq, true);
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        indexSo.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(equal("ETag")), with(any(String.class)));
+                oneOf(mockRes).addHeader("Vary", "Accept-Encoding");
+
+                oneOf(mockReq).getHeader("Accept-Encoding");
+                will(returnValue("deflate, gzip;q=0.8"));
+
+                oneOf(mockRes).setHeader("Content-Encoding", "gzip");
+                oneOf(mockRes).setContentLength(storedContent.length);
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
+                will(returnValue("text/foo"));
+
+                oneOf(mockRes).setContentType("text/foo");
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(indexSo));
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(encodedOut));
+
+                oneOf(mockStore).getEncodedResourceContent(mockTransaction,
+                        "/index.html");
+                will(returnValue(new ByteArrayInputStream(storedContent)));
+
+                oneOf(mockStore).getEncodedResourceContent(mockTransaction,
+                        "/index.html");
+                will(returnValue(new ByteArrayInputStream(storedContent)));
+            }
+        });
+
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 1);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals(new String(storedContent), encodedOut.toString());
+
+        _mockery.assertIsSatisfied();
+    }
+
     @Test
     public void testAccessOfaDirectoryResultsInRudimentaryChildList()
                                                                       throws Exception {
@@ -161,14 +237,19 @@ public class DoGetTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, "/foo/");
                 will(returnValue(fooSo));
 
-                oneOf(mockReq).getHeader("If-None-Match");
-                will(returnValue(null));
+                withoutConditionalHeaders(this, mockReq, true);
 
                 oneOf(mockStore).getStoredObject(mockTransaction, "/foo/");
                 will(returnValue(fooSo));
 
                 oneOf(mockReq).getLocale();
                 will(returnValue(Locale.GERMAN));
+                oneOf(mockReq).getParameter("offset");
+                will(returnValue(null));
+                oneOf(mockReq).getParameter("limit");
+                will(returnValue(null));
+                oneOf(mockReq).getParameter("sort");
+                will(returnValue(null));
 
                 oneOf(mockRes).setContentType("text/html");
                 oneOf(mockRes).setCharacterEncoding("UTF8");
@@ -181,6 +262,9 @@ public class DoGetTest extends MockTest {
                 oneOf(mockStore).getChildrenNames(mockTransaction, "/foo/");
                 will(returnValue(new String[]{"AAA", "BBB"}));
 
+                oneOf(mockReq).getUserPrincipal();
+                will(returnValue(null));
+
                 oneOf(mockStore).getStoredObject(mockTransaction, "/foo//AAA");
                 will(returnValue(aaa));
 
@@ -253,8 +337,7 @@ public class DoGetTest extends MockTest {
                         "/<script>alert(1)</script>/");
                 will(returnValue(folderSo));
 
-                oneOf(mockReq).getHeader("If-None-Match");
-                will(returnValue(null));
+                withoutConditionalHeaders(this, mockReq, true);
 
                 oneOf(mockStore).getStoredObject(mockTransaction,
                         "/<script>alert(1)</script>/");
@@ -262,6 +345,12 @@ public class DoGetTest extends MockTest {
 
                 oneOf(mockReq).getLocale();
                 will(returnValue(Locale.ENGLISH));
+                oneOf(mockReq).getParameter("offset");
+                will(returnValue(null));
+                oneOf(mockReq).getParameter("limit");
+                will(returnValue(null));
+                oneOf(mockReq).getParameter("sort");
+                will(returnValue(null));
 
                 oneOf(mockRes).setContentType("text/html");
                 oneOf(mockRes).setCharacterEncoding("UTF8");
@@ -272,6 +361,9 @@ public class DoGetTest extends MockTest {
                 oneOf(mockStore).getChildrenNames(mockTransaction,
                         "/<script>alert(1)</script>/");
                 will(returnValue(new String[]{}));
+
+                oneOf(mockReq).getUserPrincipal();
+                will(returnValue(null));
             }
         });
 
@@ -306,14 +398,19 @@ public class DoGetTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, "/safe/");
                 will(returnValue(folderSo));
 
-                oneOf(mockReq).getHeader("If-None-Match");
-                will(returnValue(null));
+                withoutConditionalHeaders(this, mockReq, true);
 
                 oneOf(mockStore).getStoredObject(mockTransaction, "/safe/");
                 will(returnValue(folderSo));
 
                 oneOf(mockReq).getLocale();
                 will(returnValue(Locale.ENGLISH));
+                oneOf(mockReq).getParameter("offset");
+                will(returnValue(null));
+                oneOf(mockReq).getParameter("limit");
+                will(returnValue(null));
+                oneOf(mockReq).getParameter("sort");
+                will(returnValue(null));
 
                 oneOf(mockRes).setContentType("text/html");
                 oneOf(mockRes).setCharacterEncoding("UTF8");
@@ -324,6 +421,9 @@ public class DoGetTest extends MockTest {
                 oneOf(mockStore).getChildrenNames(mockTransaction, "/safe/");
                 will(returnValue(new String[]{"<script>evil</script>"}));
 
+                oneOf(mockReq).getUserPrincipal();
+                will(returnValue(null));
+
                 oneOf(mockStore).getStoredObject(mockTransaction,
                         "/safe//<script>evil</script>");
                 will(returnValue(evilChild));
@@ -343,6 +443,107 @@ public class DoGetTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testFolderListingIsPagedAndCached() throws Exception {
+
+        StoredObject folderSo = initFolderStoredObject();
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        TestingOutputStream firstTos = new TestingOutputStream();
+        _mockery.checking(new Expectations() {
+            {
+                expectPagedListing(this, folderSo, firstTos);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/big//b");
+                will(returnValue(initFileStoredObject(resourceContent)));
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/big//c");
+                will(returnValue(initFileStoredObject(resourceContent)));
+            }
+        });
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        String output = firstTos.toString();
+        assertTrue(output.indexOf("href=\"b\"") < output.indexOf("href=\"c\""));
+        assertFalse(output.contains("href=\"a\""));
+        assertFalse(output.contains("href=\"d\""));
+        assertTrue(output.contains("?offset=0&amp;limit=2\">Previous"));
+        assertTrue(output.contains("?offset=3&amp;limit=2\">Next"));
+        _mockery.assertIsSatisfied();
+
+        // unchanged folder: the page is served without looking up its children again
+        TestingOutputStream secondTos = new TestingOutputStream();
+        _mockery.checking(new Expectations() {
+            {
+                expectPagedListing(this, folderSo, secondTos);
+            }
+        });
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals(output, secondTos.toString());
+        _mockery.assertIsSatisfied();
+
+        // another user may be listed other children, so the page is not served from another user's cache
+        TestingOutputStream otherUserTos = new TestingOutputStream();
+        _mockery.checking(new Expectations() {
+            {
+                expectPagedListing(this, folderSo, otherUserTos, () -> "alice");
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/big//b");
+                will(returnValue(initFileStoredObject(resourceContent)));
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/big//c");
+                will(returnValue(initFileStoredObject(resourceContent)));
+            }
+        });
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        String otherUserOutput = otherUserTos.toString();
+        assertTrue(otherUserOutput.indexOf("href=\"b\"") < otherUserOutput.indexOf("href=\"c\""));
+        assertFalse(otherUserOutput.contains("href=\"a\""));
+        _mockery.assertIsSatisfied();
+    }
+
+    private static void expectPagedListing(Expectations expectations, StoredObject folderSo, TestingOutputStream out)
+            throws Exception {
+        expectPagedListing(expectations, folderSo, out, null);
+    }
+
+    private static void expectPagedListing(
+            Expectations expectations,
+            StoredObject folderSo,
+            TestingOutputStream out,
+            Principal principal
+    ) throws Exception {
+        expectations.oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+        expectations.will(Expectations.returnValue(null));
+        expectations.oneOf(mockReq).getPathInfo();
+        expectations.will(Expectations.returnValue("/big/"));
+        expectations.exactly(2).of(mockStore).getStoredObject(mockTransaction, "/big/");
+        expectations.will(Expectations.returnValue(folderSo));
+        withoutConditionalHeaders(expectations, mockReq, true);
+        expectations.oneOf(mockReq).getLocale();
+        expectations.will(Expectations.returnValue(Locale.ENGLISH));
+        expectations.oneOf(mockReq).getParameter("offset");
+        expectations.will(Expectations.returnValue("1"));
+        expectations.oneOf(mockReq).getParameter("limit");
+        expectations.will(Expectations.returnValue("2"));
+        expectations.oneOf(mockReq).getParameter("sort");
+        expectations.will(Expectations.returnValue(null));
+        expectations.oneOf(mockRes).setContentType("text/html");
+        expectations.oneOf(mockRes).setCharacterEncoding("UTF8");
+        expectations.oneOf(mockRes).getOutputStream();
+        expectations.will(Expectations.returnValue(out));
+        expectations.oneOf(mockStore).getChildrenNames(mockTransaction, "/big/");
+        expectations.will(Expectations.returnValue(new String[]{"c", "a", "d", "b"}));
+        expectations.oneOf(mockReq).getUserPrincipal();
+        expectations.will(Expectations.returnValue(principal));
+    }
+
     @Test
     public void testAccessOfaMissingPageResultsInPossibleAlternatveTo404()
                                                                            throws Exception {
@@ -365,8 +566,7 @@ public class DoGetTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, "/alternative");
                 will(returnValue(alternativeSo));
 
-                oneOf(mockReq).getHeader("If-None-Match");
-                will(returnValue(null));
+                withoutConditionalHeaders(this, mockReq, true);
 
                 oneOf(mockRes).setDateHeader("last-modified",
                         alternativeSo.getLastModified().getTime());
@@ -374,6 +574,11 @@ public class DoGetTest extends MockTest {
                 oneOf(mockRes).addHeader(with(any(String.class)),
                         with(any(String.class)));
 
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue(null));
+
                 oneOf(mockMimeTyper).getMimeType(mockTransaction, "/alternative");
                 will(returnValue("text/foo"));
 
@@ -422,4 +627,393 @@ public class DoGetTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testRangeOfaPageResultsInPartialContent() throws Exception {
+
+        TestingOutputStream rangeOut = new TestingOutputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                StoredObject indexSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(indexSo));
+
+                withoutConditionalHeaders(this, mockReq, true);
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        indexSo.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue("bytes=1-5"));
+
+                oneOf(mockReq).getHeader("If-Range");
+                will(returnValue(null));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
+                will(returnValue("text/foo"));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_PARTIAL_CONTENT);
+
+                oneOf(mockRes).setHeader("Content-Range", "bytes 1-5/8");
+
+                oneOf(mockRes).setContentType("text/foo");
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(rangeOut));
+
+                oneOf(mockStore).getResourceContent(mockTransaction,
+                        "/index.html");
+                will(returnValue(new ByteArrayInputStream(resourceContent)));
+            }
+        });
+
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals("hello", rangeOut.toString());
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testRangeIfDateOfaPageWithoutModificationDateResultsInPage() throws Exception {
+
+        TestingOutputStream pageOut = new TestingOutputStream();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                StoredObject indexSo = initFileStoredObject(resourceContent);
+                indexSo.setLastModified(null);
+
+                exactly(2).of(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(indexSo));
+
+                withoutConditionalHeaders(this, mockReq, true);
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue("bytes=1-5"));
+
+                oneOf(mockReq).getHeader("If-Range");
+                will(returnValue("Sun, 06 Nov 1994 08:49:37 GMT"));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
+                will(returnValue("text/foo"));
+
+                oneOf(mockRes).setContentType("text/foo");
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(pageOut));
+
+                oneOf(mockStore).getResourceContent(mockTransaction,
+                        "/index.html");
+                will(returnValue(new ByteArrayInputStream(resourceContent)));
+            }
+        });
+
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        assertEquals("<hello/>", pageOut.toString());
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testUnsatisfiableRangeResultsIn416() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                StoredObject indexSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(indexSo));
+
+                withoutConditionalHeaders(this, mockReq, true);
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        indexSo.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader(with(any(String.class)),
+                        with(any(String.class)));
+
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue("bytes=8-"));
+
+                oneOf(mockReq).getHeader("If-Range");
+                will(returnValue(null));
+
+                oneOf(mockRes).setHeader("Content-Range", "bytes */8");
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+        });
+
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testParseRanges() {
+        assertEquals(null, DoHead.parseRanges("items=0-1", 8));
+        assertEquals(null, DoHead.parseRanges("bytes=5-2", 8));
+        assertTrue(DoHead.parseRanges("bytes=8-", 8).isEmpty());
+        assertEquals(2, DoHead.parseRanges("bytes=0-0, -3", 8).size());
+        assertEquals(5L, DoHead.parseRanges("bytes=-3", 8).get(0)[0]);
+        assertEquals(7L, DoHead.parseRanges("bytes=2-100", 8).get(0)[1]);
+    }
+
+    @Test
+    public void testAccessOfaPageNotModifiedSinceResultsIn304() throws Exception {
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.html"));
+
+                StoredObject indexSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
+                will(returnValue(indexSo));
+
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        indexSo.getLastModified().toInstant().atZone(ZoneOffset.UTC))));
+
+                oneOf(mockRes).addHeader(with(equal("ETag")), with(any(String.class)));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_NOT_MODIFIED);
+            }
+        });
+
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testUnknownModificationDateIgnoresDateConditions() throws Exception {
+        StoredObject so = initFileStoredObject(resourceContent);
+        so.setLastModified(null);
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.now().atZone(ZoneOffset.UTC));
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(date));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Modified-Since");
+                will(returnValue(date));
+            }
+        });
+
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0);
+
+        assertEquals("W/\"8-\"", doGet.getETag(so));
+        assertEquals(0, doGet.checkPreconditions(mockReq, so, true));
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testMatchesETag() {
+        assertTrue(AbstractMethod.matchesETag("*", "W/\"8-1\"", true));
+        assertTrue(AbstractMethod.matchesETag("\"a\", \"b,c\"", "\"b,c\"", true));
+        assertTrue(AbstractMethod.matchesETag("W/\"8-1\"", "W/\"8-1\"", false));
+        assertTrue(AbstractMethod.matchesETag("\"8-1\"", "W/\"8-1\"", false));
+        assertFalse(AbstractMethod.matchesETag("W/\"8-1\"", "W/\"8-1\"", true));
+        assertFalse(AbstractMethod.matchesETag("W/\"abc\"", "\"abc\"", true));
+        assertFalse(AbstractMethod.matchesETag("\"ab\"", "\"abc\"", false));
+        assertTrue(AbstractMethod.matchesETag("\"abc-gzip\"", "\"abc\"", true, true));
+        assertTrue(AbstractMethod.matchesETag("W/\"8-1-deflate\"", "W/\"8-1\"", false, true));
+        assertFalse(AbstractMethod.matchesETag("\"abc-gzip\"", "\"abc\"", true, false));
+        assertFalse(AbstractMethod.matchesETag("\"abc-br\"", "\"abc\"", true, true));
+    }
+
+    @Test
+    public void testAccessOfaTextPageAcceptingGzipIsCompressed() throws Exception {
+
+        TestingOutputStream compressedOut = new TestingOutputStream();
+        StoredObject indexSo = initFileStoredObject(resourceContent);
+        String eTag = "W/\"8-" + indexSo.getLastModified().getTime() + "-gzip\"";
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.txt"));
+
+                exactly(2).of(mockStore).getStoredObject(mockTransaction, "/index.txt");
+                will(returnValue(indexSo));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.txt");
+                will(returnValue("text/plain"));
+
+                oneOf(mockReq).getHeader("Accept-Encoding");
+                will(returnValue("deflate, gzip;q=1.0"));
+
+                withoutConditionalHeaders(this, mockReq, true);
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        indexSo.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader("ETag", eTag);
+
+                oneOf(mockRes).addHeader("Vary", "Accept-Encoding");
+
+                oneOf(mockRes).setHeader("Content-Encoding", "gzip");
+
+                oneOf(mockRes).setContentType("text/plain");
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(compressedOut));
+
+                oneOf(mockStore).getResourceContent(mockTransaction, "/index.txt");
+                will(returnValue(new ByteArrayInputStream(resourceContent)));
+            }
+        });
+
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0, new ResponseCompression(ResponseCompression.DEFAULT_MIME_TYPES, 0));
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressedOut.toByteArray()))) {
+            assertEquals("<hello/>", new String(in.readAllBytes()));
+        }
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testCompressedContentIsClosedWhenFlushingFails() throws Exception {
+
+        boolean[] closed = new boolean[1];
+        TestingOutputStream failingOut = new TestingOutputStream() {
+            @Override
+            public void flush() throws IOException {
+                throw new IOException("client disconnected");
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        StoredObject indexSo = initFileStoredObject(resourceContent);
+        String eTag = "W/\"8-" + indexSo.getLastModified().getTime() + "-gzip\"";
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue("/index.txt"));
+
+                exactly(2).of(mockStore).getStoredObject(mockTransaction, "/index.txt");
+                will(returnValue(indexSo));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.txt");
+                will(returnValue("text/plain"));
+
+                oneOf(mockReq).getHeader("Accept-Encoding");
+                will(returnValue("gzip"));
+
+                withoutConditionalHeaders(this, mockReq, true);
+
+                oneOf(mockRes).setDateHeader("last-modified",
+                        indexSo.getLastModified().getTime());
+
+                oneOf(mockRes).addHeader("ETag", eTag);
+
+                oneOf(mockRes).addHeader("Vary", "Accept-Encoding");
+
+                oneOf(mockRes).setHeader("Content-Encoding", "gzip");
+
+                oneOf(mockRes).setContentType("text/plain");
+
+                oneOf(mockRes).getOutputStream();
+                will(returnValue(failingOut));
+
+                oneOf(mockStore).getResourceContent(mockTransaction, "/index.txt");
+                will(returnValue(new ByteArrayInputStream(resourceContent)));
+            }
+        });
+
+        DoGet doGet = new DoGet(mockStore, null, null, new ResourceLocks(),
+                mockMimeTyper, 0, new ResponseCompression(ResponseCompression.DEFAULT_MIME_TYPES, 0));
+
+        doGet.execute(mockTransaction, mockReq, mockRes);
+
+        // the compressed data was still finished and the response closed
+        assertTrue(closed[0]);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(failingOut.toByteArray()))) {
+            assertEquals("<hello/>", new String(in.readAllBytes()));
+        }
+
+        _mockery.assertIsSatisfied();
+    }
 }
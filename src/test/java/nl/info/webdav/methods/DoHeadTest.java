@@ -83,8 +83,7 @@ public class DoHeadTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, "/index.html");
                 will(returnValue(indexSo));
 
-                oneOf(mockReq).getHeader("If-None-Match");
-                will(returnValue(null));
+                withoutConditionalHeaders(this, mockReq, true);
 
                 oneOf(mockRes).setDateHeader("last-modified",
                         indexSo.getLastModified().getTime());
@@ -92,6 +91,11 @@ public class DoHeadTest extends MockTest {
                 oneOf(mockRes).addHeader(with(any(String.class)),
                         with(any(String.class)));
 
+                oneOf(mockRes).setHeader("Accept-Ranges", "bytes");
+
+                oneOf(mockReq).getHeader("Range");
+                will(returnValue(null));
+
                 oneOf(mockMimeTyper).getMimeType(mockTransaction, "/index.html");
                 will(returnValue("text/foo"));
 
@@ -7,13 +7,13 @@ package nl.info.webdav.methods;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.ByteArrayInputStream;
+import java.util.Collections;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.jmock.Expectations;
 import org.junit.jupiter.api.BeforeAll;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import nl.info.webdav.ITransaction;
@@ -42,6 +42,7 @@ public class DoMoveTest extends MockTest {
     static final String sourceFilePath = sourceCollectionPath + "/sourceFile";
     static final String destFilePath = destCollectionPath + "/destFile";
     static final String overwritePath = destCollectionPath + "/sourceFolder";
+    static final String nestedPath = sourceCollectionPath + "/nestedFolder";
 
     @BeforeAll
     public static void setUp() throws Exception {
@@ -63,7 +64,7 @@ public class DoMoveTest extends MockTest {
         DoDelete doDelete = new DoDelete(mockStore, resLocks, readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, readOnly);
 
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -80,7 +81,7 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getPathInfo();
                 will(returnValue(sourceFilePath));
 
-                exactly(2).of(mockReq).getHeader("Destination");
+                oneOf(mockReq).getHeader("Destination");
                 will(returnValue(destFilePath));
 
                 oneOf(mockReq).getServerName();
@@ -95,12 +96,6 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getServletPath();
                 will(returnValue("/servletPath"));
 
-                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
-                will(returnValue(null));
-
-                oneOf(mockReq).getPathInfo();
-                will(returnValue(sourceFilePath));
-
                 oneOf(mockReq).getHeader("Overwrite");
                 will(returnValue("F"));
 
@@ -116,38 +111,16 @@ public class DoMoveTest extends MockTest {
 
                 oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
 
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceFileSo));
-
-                oneOf(mockStore).createResource(mockTransaction, destFilePath);
-
-                oneOf(mockStore).getResourceContent(mockTransaction,
-                        sourceFilePath);
-                will(returnValue(dsis));
-
-                oneOf(mockStore).setResourceContent(mockTransaction,
-                        destFilePath, dsis, null, null);
-                will(returnValue(8L));
-
-                destFileSo = initFileStoredObject(resourceContent);
+                oneOf(mockStore).move(mockTransaction, sourceFilePath, destFilePath);
 
-                oneOf(mockStore).getStoredObject(mockTransaction, destFilePath);
-                will(returnValue(destFileSo));
-
-                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
-
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceFileSo));
-
-                oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -164,7 +137,7 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getPathInfo();
                 will(returnValue(sourceFilePath));
 
-                exactly(2).of(mockReq).getHeader("Destination");
+                oneOf(mockReq).getHeader("Destination");
                 will(returnValue(destFilePath));
 
                 oneOf(mockReq).getServerName();
@@ -179,12 +152,6 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getServletPath();
                 will(returnValue("servlet_path"));
 
-                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
-                will(returnValue(null));
-
-                oneOf(mockReq).getPathInfo();
-                will(returnValue(sourceFilePath));
-
                 oneOf(mockReq).getHeader("Overwrite");
                 will(returnValue("F"));
 
@@ -200,14 +167,16 @@ public class DoMoveTest extends MockTest {
 
                 oneOf(mockRes).sendError(WebdavStatus.SC_PRECONDITION_FAILED);
 
+                never(mockStore).move(mockTransaction, sourceFilePath, destFilePath);
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -224,7 +193,7 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getPathInfo();
                 will(returnValue(sourceFilePath));
 
-                exactly(2).of(mockReq).getHeader("Destination");
+                oneOf(mockReq).getHeader("Destination");
                 will(returnValue(destFilePath));
 
                 oneOf(mockReq).getServerName();
@@ -239,12 +208,6 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getServletPath();
                 will(returnValue("servlet_path"));
 
-                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
-                will(returnValue(null));
-
-                oneOf(mockReq).getPathInfo();
-                will(returnValue(sourceFilePath));
-
                 oneOf(mockReq).getHeader("Overwrite");
                 will(returnValue("T"));
 
@@ -265,35 +228,16 @@ public class DoMoveTest extends MockTest {
 
                 oneOf(mockStore).removeObject(mockTransaction, destFilePath);
 
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceFileSo));
-
-                oneOf(mockStore).createResource(mockTransaction, destFilePath);
-
-                oneOf(mockStore).getResourceContent(mockTransaction,
-                        sourceFilePath);
-                will(returnValue(dsis));
-
-                oneOf(mockStore).setResourceContent(mockTransaction,
-                        destFilePath, dsis, null, null);
-                will(returnValue(8L));
-
-                oneOf(mockStore).getStoredObject(mockTransaction, destFilePath);
-                will(returnValue(destFileSo));
-
-                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
-
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceFileSo));
+                oneOf(mockStore).move(mockTransaction, sourceFilePath, destFilePath);
 
-                oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -310,7 +254,7 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getPathInfo();
                 will(returnValue(sourceFilePath));
 
-                exactly(2).of(mockReq).getHeader("Destination");
+                oneOf(mockReq).getHeader("Destination");
                 will(returnValue(destFilePath));
 
                 oneOf(mockReq).getServerName();
@@ -325,12 +269,6 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getServletPath();
                 will(returnValue("servlet_path"));
 
-                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
-                will(returnValue(null));
-
-                oneOf(mockReq).getPathInfo();
-                will(returnValue(sourceFilePath));
-
                 oneOf(mockReq).getHeader("Overwrite");
                 will(returnValue("F"));
 
@@ -346,8 +284,7 @@ public class DoMoveTest extends MockTest {
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -364,7 +301,7 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getPathInfo();
                 will(returnValue(destFilePath));
 
-                exactly(2).of(mockReq).getHeader("Destination");
+                oneOf(mockReq).getHeader("Destination");
                 will(returnValue(destFilePath));
 
                 oneOf(mockReq).getServerName();
@@ -379,21 +316,56 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getServletPath();
                 will(returnValue("servlet_path"));
 
+                oneOf(mockRes).sendError(WebdavStatus.SC_FORBIDDEN);
+            }
+        });
+
+        ResourceLocks resLocks = new ResourceLocks();
+        DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
+        DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
+
+        doMove.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testMovingOfaCollectionIntoItselfIsForbidden() throws Exception {
+        _mockery.checking(new Expectations() {
+            {
                 oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
                 will(returnValue(null));
 
                 oneOf(mockReq).getPathInfo();
-                will(returnValue(destFilePath));
+                will(returnValue(sourceCollectionPath));
+
+                oneOf(mockReq).getHeader("Destination");
+                will(returnValue(nestedPath));
+
+                oneOf(mockReq).getServerName();
+                will(returnValue("server_name"));
+
+                oneOf(mockReq).getContextPath();
+                will(returnValue(""));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(nestedPath));
+
+                oneOf(mockReq).getServletPath();
+                will(returnValue("servlet_path"));
 
                 oneOf(mockRes).sendError(WebdavStatus.SC_FORBIDDEN);
+
+                never(mockStore).move(with(any(ITransaction.class)), with(any(String.class)),
+                        with(any(String.class)));
             }
         });
 
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -410,7 +382,7 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getPathInfo();
                 will(returnValue(sourceCollectionPath));
 
-                exactly(2).of(mockReq).getHeader("Destination");
+                oneOf(mockReq).getHeader("Destination");
                 will(returnValue(destCollectionPath));
 
                 oneOf(mockReq).getServerName();
@@ -425,12 +397,6 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getServletPath();
                 will(returnValue("servlet_path"));
 
-                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
-                will(returnValue(null));
-
-                oneOf(mockReq).getPathInfo();
-                will(returnValue(sourceCollectionPath));
-
                 oneOf(mockReq).getHeader("Overwrite");
                 will(returnValue("F"));
 
@@ -448,72 +414,17 @@ public class DoMoveTest extends MockTest {
 
                 oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
 
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        sourceCollectionPath);
-                will(returnValue(sourceCollectionSo));
-
-                oneOf(mockStore)
-                        .createFolder(mockTransaction, destCollectionPath);
-
-                oneOf(mockReq).getHeader("Depth");
-                will(returnValue(null));
-
-                String[] sourceChildren = new String[]{"sourceFile"};
-
-                oneOf(mockStore).getChildrenNames(mockTransaction,
-                        sourceCollectionPath);
-                will(returnValue(sourceChildren));
-
-                StoredObject sourceFileSo = initFileStoredObject(resourceContent);
-
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        sourceCollectionPath + "/sourceFile");
-                will(returnValue(sourceFileSo));
-
-                oneOf(mockStore).createResource(mockTransaction,
-                        destCollectionPath + "/sourceFile");
-
-                oneOf(mockStore).getResourceContent(mockTransaction,
-                        sourceCollectionPath + "/sourceFile");
-                will(returnValue(dsis));
-
-                oneOf(mockStore).setResourceContent(mockTransaction,
-                        destCollectionPath + "/sourceFile", dsis, null, null);
-                will(returnValue(8L));
-
-                StoredObject movedSo = initFileStoredObject(resourceContent);
-
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        destCollectionPath + "/sourceFile");
-                will(returnValue(movedSo));
-
-                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
-
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        sourceCollectionPath);
-                will(returnValue(sourceCollectionSo));
-
-                sourceChildren = new String[]{"sourceFile"};
-
-                oneOf(mockStore).getChildrenNames(mockTransaction,
-                        sourceCollectionPath);
-                will(returnValue(sourceChildren));
-
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceFileSo));
-
-                oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
+                oneOf(mockStore).move(mockTransaction, sourceCollectionPath,
+                        destCollectionPath);
 
-                oneOf(mockStore).removeObject(mockTransaction,
-                        sourceCollectionPath);
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -530,7 +441,7 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getPathInfo();
                 will(returnValue(sourceCollectionPath));
 
-                exactly(2).of(mockReq).getHeader("Destination");
+                oneOf(mockReq).getHeader("Destination");
                 will(returnValue(destCollectionPath));
 
                 oneOf(mockReq).getServerName();
@@ -545,12 +456,6 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getServletPath();
                 will(returnValue("servlet_path"));
 
-                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
-                will(returnValue(null));
-
-                oneOf(mockReq).getPathInfo();
-                will(returnValue(sourceCollectionPath));
-
                 oneOf(mockReq).getHeader("Overwrite");
                 will(returnValue("F"));
 
@@ -565,14 +470,15 @@ public class DoMoveTest extends MockTest {
                 will(returnValue(destCollectionSo));
 
                 oneOf(mockRes).sendError(WebdavStatus.SC_PRECONDITION_FAILED);
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -580,7 +486,6 @@ public class DoMoveTest extends MockTest {
     }
 
     @Test
-    @Disabled("Fails currently")
     public void testMovingOfaCollectionIfDestinationIsPresentAndOverwriteTrue() throws Exception {
         _mockery.checking(new Expectations() {
             {
@@ -590,7 +495,7 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getPathInfo();
                 will(returnValue(sourceCollectionPath));
 
-                exactly(2).of(mockReq).getHeader("Destination");
+                oneOf(mockReq).getHeader("Destination");
                 will(returnValue(overwritePath));
 
                 oneOf(mockReq).getServerName();
@@ -605,12 +510,6 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockReq).getServletPath();
                 will(returnValue("servlet_path"));
 
-                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
-                will(returnValue(null));
-
-                oneOf(mockReq).getPathInfo();
-                will(returnValue(sourceCollectionPath));
-
                 oneOf(mockReq).getHeader("Overwrite");
                 will(returnValue("T"));
 
@@ -630,78 +529,23 @@ public class DoMoveTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, overwritePath);
                 will(returnValue(destCollectionSo));
 
-                oneOf(mockStore).getChildrenNames(mockTransaction, overwritePath);
-                will(returnValue(destChildren));
-
-                StoredObject destFileSo = initFileStoredObject(resourceContent);
+                oneOf(mockStore).supportsDeleteTree();
+                will(returnValue(true));
 
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        overwritePath + "/destFile");
-                will(returnValue(destFileSo));
+                oneOf(mockStore).deleteTree(mockTransaction, overwritePath);
+                will(returnValue(Collections.emptyMap()));
 
-                oneOf(mockStore).removeObject(mockTransaction,
-                        overwritePath + "/destFile");
+                oneOf(mockStore).move(mockTransaction, sourceCollectionPath,
+                        overwritePath);
 
-                oneOf(mockStore).removeObject(mockTransaction, overwritePath);
-
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        sourceCollectionPath);
-                will(returnValue(sourceCollectionSo));
-
-                oneOf(mockStore).createFolder(mockTransaction, overwritePath);
-
-                oneOf(mockReq).getHeader("Depth");
-                will(returnValue(null));
-
-                oneOf(mockStore).getChildrenNames(mockTransaction,
-                        sourceCollectionPath);
-                will(returnValue(sourceChildren));
-
-                StoredObject sourceFileSo = initFileStoredObject(resourceContent);
-
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceFileSo));
-
-                oneOf(mockStore).createResource(mockTransaction,
-                        overwritePath + "/sourceFile");
-
-                oneOf(mockStore).getResourceContent(mockTransaction,
-                        sourceFilePath);
-                will(returnValue(dsis));
-
-                oneOf(mockStore).setResourceContent(mockTransaction,
-                        overwritePath + "/sourceFile", dsis, null, null);
-
-                StoredObject movedSo = initFileStoredObject(resourceContent);
-
-                oneOf(mockStore).getStoredObject(mockTransaction,
-                        overwritePath + "/sourceFile");
-                will(returnValue(movedSo));
-
-                oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
-
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceCollectionPath);
-                will(returnValue(sourceCollectionSo));
-
-                sourceChildren = new String[]{"sourceFile"};
-
-                oneOf(mockStore).getChildrenNames(mockTransaction, sourceCollectionPath);
-                will(returnValue(sourceChildren));
-
-                oneOf(mockStore).getStoredObject(mockTransaction, sourceFilePath);
-                will(returnValue(sourceFileSo));
-
-                oneOf(mockStore).removeObject(mockTransaction, sourceFilePath);
-
-                oneOf(mockStore).removeObject(mockTransaction,
-                        sourceCollectionPath);
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
 
         doMove.execute(mockTransaction, mockReq, mockRes);
 
@@ -722,7 +566,7 @@ public class DoMoveTest extends MockTest {
         ResourceLocks resLocks = new ResourceLocks();
         DoDelete doDelete = new DoDelete(mockStore, resLocks, !readOnly);
         DoCopy doCopy = new DoCopy(mockStore, resLocks, doDelete, !readOnly);
-        DoMove doMove = new DoMove(resLocks, doDelete, doCopy, !readOnly);
+        DoMove doMove = new DoMove(mockStore, resLocks, doDelete, doCopy, !readOnly);
         assertThrows(PathTraversalException.class, () -> doMove.execute(mockTransaction, mockReq, mockRes));
         _mockery.assertIsSatisfied();
     }
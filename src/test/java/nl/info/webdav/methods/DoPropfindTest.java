@@ -5,8 +5,12 @@
 package nl.info.webdav.methods;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -22,6 +26,7 @@ import nl.info.webdav.StoredObject;
 import nl.info.webdav.WebdavStatus;
 import nl.info.webdav.exceptions.PathTraversalException;
 import nl.info.webdav.locking.ResourceLocks;
+import nl.info.webdav.testutil.DelegatingServletInputStream;
 import nl.info.webdav.testutil.MockTest;
 
 public class DoPropfindTest extends MockTest {
@@ -246,4 +251,174 @@ public class DoPropfindTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void doPropFindOnFileWithDigestReportsChecksum() throws Exception {
+        final String path = "/digested";
+        StringWriter output = new StringWriter();
+
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                oneOf(mockReq).getHeader("Depth");
+                will(returnValue("0"));
+
+                StoredObject fileSo = initFileStoredObject(resourceContent);
+                fileSo.setContentDigest("0123abcd");
+
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                oneOf(mockReq).getContentLength();
+                will(returnValue(0));
+
+                oneOf(mockRes).setStatus(WebdavStatus.SC_MULTI_STATUS);
+
+                oneOf(mockRes).setContentType("text/xml; charset=UTF-8");
+
+                oneOf(mockRes).getWriter();
+                will(returnValue(new PrintWriter(output)));
+
+                oneOf(mockMimeTyper).getMimeType(mockTransaction, path);
+                will(returnValue("text/plain"));
+
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockReq).getContextPath();
+                will(returnValue(""));
+
+                oneOf(mockReq).getServletPath();
+                will(returnValue("/"));
+            }
+        });
+
+        DoPropfind doPropfind = new DoPropfind(mockStore, new ResourceLocks(),
+                mockMimeTyper);
+
+        doPropfind.execute(mockTransaction, mockReq, mockRes);
+
+        assertTrue(output.toString().contains(">SHA256:0123abcd</checksum>"), output.toString());
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void doPropFindOfQuotaOnFolderReportsKnownValues() throws Exception {
+        final String path = "/quota";
+        StringWriter output = new StringWriter();
+
+        _mockery.checking(new Expectations() {
+            {
+                expectQuotaPropfind(this, path, initFolderStoredObject(), output);
+
+                oneOf(mockStore).getQuotaUsedBytes(mockTransaction, path);
+                will(returnValue(35L));
+
+                oneOf(mockStore).getQuotaAvailableBytes(mockTransaction, path);
+                will(returnValue(-1L));
+            }
+        });
+
+        DoPropfind doPropfind = new DoPropfind(mockStore, new ResourceLocks(),
+                mockMimeTyper);
+
+        doPropfind.execute(mockTransaction, mockReq, mockRes);
+
+        String xml = output.toString();
+        assertTrue(xml.contains(">35</D:quota-used-bytes>"), xml);
+        assertTrue(xml.indexOf("<D:quota-available-bytes/>") > xml.indexOf("200 OK"), xml);
+        assertTrue(xml.contains("404 Not Found"), xml);
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void doPropFindOfQuotaOnFileReportsNotFound() throws Exception {
+        final String path = "/quota.txt";
+        StringWriter output = new StringWriter();
+
+        _mockery.checking(new Expectations() {
+            {
+                expectQuotaPropfind(this, path, initFileStoredObject(resourceContent), output);
+
+                never(mockStore).getQuotaUsedBytes(mockTransaction, path);
+                never(mockStore).getQuotaAvailableBytes(mockTransaction, path);
+            }
+        });
+
+        DoPropfind doPropfind = new DoPropfind(mockStore, new ResourceLocks(),
+                mockMimeTyper);
+
+        doPropfind.execute(mockTransaction, mockReq, mockRes);
+
+        String xml = output.toString();
+        assertTrue(xml.contains("<D:quota-used-bytes/>"), xml);
+        assertTrue(xml.contains("<D:quota-available-bytes/>"), xml);
+        assertTrue(xml.contains("404"), xml);
+        _mockery.assertIsSatisfied();
+    }
+
+    private static void expectQuotaPropfind(
+            Expectations expectations,
+            String path,
+            StoredObject so,
+            StringWriter output
+    ) throws Exception {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"utf-8\" ?><D:propfind xmlns:D=\"DAV:\"><D:prop>"
+                + "<D:quota-used-bytes/><D:quota-available-bytes/></D:prop></D:propfind>")
+                .getBytes(StandardCharsets.UTF_8);
+
+        expectations.oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+        expectations.will(Expectations.returnValue(null));
+
+        expectations.oneOf(mockReq).getPathInfo();
+        expectations.will(Expectations.returnValue(path));
+
+        expectations.oneOf(mockReq).getHeader("Depth");
+        expectations.will(Expectations.returnValue("0"));
+
+        expectations.oneOf(mockStore).getStoredObject(mockTransaction, path);
+        expectations.will(Expectations.returnValue(so));
+
+        expectations.oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+        expectations.will(Expectations.returnValue(null));
+
+        expectations.oneOf(mockReq).getPathInfo();
+        expectations.will(Expectations.returnValue(path));
+
+        expectations.oneOf(mockReq).getContentLength();
+        expectations.will(Expectations.returnValue(body.length));
+
+        expectations.oneOf(mockReq).getInputStream();
+        expectations.will(Expectations.returnValue(
+                new DelegatingServletInputStream(new ByteArrayInputStream(body))));
+
+        expectations.oneOf(mockRes).setStatus(WebdavStatus.SC_MULTI_STATUS);
+
+        expectations.oneOf(mockRes).setContentType("text/xml; charset=UTF-8");
+
+        expectations.oneOf(mockRes).getWriter();
+        expectations.will(Expectations.returnValue(new PrintWriter(output)));
+
+        expectations.oneOf(mockMimeTyper).getMimeType(mockTransaction, path);
+        expectations.will(Expectations.returnValue("text/plain"));
+
+        expectations.oneOf(mockStore).getStoredObject(mockTransaction, path);
+        expectations.will(Expectations.returnValue(so));
+
+        expectations.oneOf(mockReq).getContextPath();
+        expectations.will(Expectations.returnValue(""));
+
+        expectations.oneOf(mockReq).getServletPath();
+        expectations.will(Expectations.returnValue("/"));
+    }
 }
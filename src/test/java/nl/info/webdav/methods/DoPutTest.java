@@ -4,6 +4,7 @@
  */
 package nl.info.webdav.methods;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.PrintWriter;
@@ -85,6 +86,9 @@ public class DoPutTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, path);
                 will(returnValue(fileSo));
 
+                oneOf(mockReq).getContentLengthLong();
+                will(returnValue(-1L));
+
                 oneOf(mockStore).createResource(mockTransaction, path);
 
                 oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
@@ -103,6 +107,8 @@ public class DoPutTest extends MockTest {
 
                 // User-Agent: Goliath --> don't add ContentLength
                 // oneOf(mockRes).setContentLength(8);
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -164,6 +170,9 @@ public class DoPutTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, path);
                 will(returnValue(fileSo));
 
+                oneOf(mockReq).getContentLengthLong();
+                will(returnValue(-1L));
+
                 oneOf(mockStore).createResource(mockTransaction, path);
 
                 oneOf(mockRes).setStatus(WebdavStatus.SC_CREATED);
@@ -180,6 +189,8 @@ public class DoPutTest extends MockTest {
                 oneOf(mockStore).getStoredObject(mockTransaction, path);
                 will(returnValue(fileSo));
 
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -382,6 +393,9 @@ public class DoPutTest extends MockTest {
                 oneOf(mockResourceLocks).unlock(mockTransaction, loId, owner);
                 will(returnValue(true));
 
+                oneOf(mockReq).getContentLengthLong();
+                will(returnValue(-1L));
+
                 oneOf(mockRes).setStatus(WebdavStatus.SC_NO_CONTENT);
 
                 oneOf(mockReq).getInputStream();
@@ -399,6 +413,8 @@ public class DoPutTest extends MockTest {
                 oneOf(mockResourceLocks).unlockTemporaryLockedObjects(
                         with(any(ITransaction.class)), with(any(String.class)),
                         with(any(String.class)));
+
+                withoutConditionalHeaders(this, mockReq, false);
             }
         });
 
@@ -412,6 +428,48 @@ public class DoPutTest extends MockTest {
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testDoPutOverQuotaIsRejectedBeforeReadingTheBody() throws Exception {
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                oneOf(mockReq).getHeader("User-Agent");
+                will(returnValue("Goliath agent"));
+
+                StoredObject parentSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction, parentPath);
+                will(returnValue(parentSo));
+
+                StoredObject fileSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockReq).getContentLengthLong();
+                will(returnValue(1024L));
+
+                oneOf(mockStore).getQuotaAvailableBytes(mockTransaction, parentPath);
+                will(returnValue(1000L));
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_INSUFFICIENT_STORAGE);
+
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
+
+        DoPut doPut = new DoPut(mockStore, new ResourceLocks(), !readOnly,
+                lazyFolderCreationOnPut);
+        doPut.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
     @Test
     public void testPathTraversalIsRejected() {
         _mockery.checking(new Expectations() {
@@ -427,4 +485,80 @@ public class DoPutTest extends MockTest {
         assertThrows(PathTraversalException.class, () -> doPut.execute(mockTransaction, mockReq, mockRes));
         _mockery.assertIsSatisfied();
     }
+
+    @Test
+    public void testDoPutIfNoneMatchAnyOnExistingResourceIsRejected() throws Exception {
+        _mockery.checking(new Expectations() {
+            {
+                oneOf(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                oneOf(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                oneOf(mockReq).getHeader("User-Agent");
+                will(returnValue("Goliath agent"));
+
+                StoredObject parentSo = initFolderStoredObject();
+
+                oneOf(mockStore).getStoredObject(mockTransaction, parentPath);
+                will(returnValue(parentSo));
+
+                StoredObject fileSo = initFileStoredObject(resourceContent);
+
+                oneOf(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockReq).getHeader("If-Match");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-Unmodified-Since");
+                will(returnValue(null));
+
+                oneOf(mockReq).getHeader("If-None-Match");
+                will(returnValue("*"));
+
+                oneOf(mockRes).sendError(WebdavStatus.SC_PRECONDITION_FAILED);
+            }
+        });
+
+        DoPut doPut = new DoPut(mockStore, new ResourceLocks(), !readOnly,
+                lazyFolderCreationOnPut);
+        doPut.execute(mockTransaction, mockReq, mockRes);
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testCheckBeforeBodyRejectsOverQuota() throws Exception {
+        _mockery.checking(new Expectations() {
+            {
+                exactly(2).of(mockReq).getAttribute("javax.servlet.include.request_uri");
+                will(returnValue(null));
+
+                exactly(2).of(mockReq).getPathInfo();
+                will(returnValue(path));
+
+                StoredObject fileSo = initFileStoredObject(resourceContent);
+
+                exactly(2).of(mockStore).getStoredObject(mockTransaction, path);
+                will(returnValue(fileSo));
+
+                oneOf(mockReq).getContentLengthLong();
+                will(returnValue(1024L));
+
+                exactly(2).of(mockStore).getQuotaAvailableBytes(mockTransaction, parentPath);
+                will(returnValue(1000L));
+
+                withoutConditionalHeaders(this, mockReq, false);
+            }
+        });
+
+        DoPut doPut = new DoPut(mockStore, new ResourceLocks(), !readOnly,
+                lazyFolderCreationOnPut);
+        assertEquals(WebdavStatus.SC_INSUFFICIENT_STORAGE, doPut.checkBeforeBody(mockTransaction, mockReq));
+        assertEquals(1000L + resourceLength, doPut.getAvailableBytes(mockTransaction, mockReq));
+
+        _mockery.assertIsSatisfied();
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * SPDX-FileCopyrightText: 2026 INFO.nl
+ * SPDX-License-Identifier: EUPL-1.2+
+ */
+package nl.info.webdav.methods;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class ResponseCompressionTest {
+
+    private static final byte[] CONTENT = "<row>compressible</row>\n".repeat(500).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void compress_gzip_readsBackWithPooledDeflaters() throws IOException {
+        ResponseCompression compression = new ResponseCompression();
+        for (int i = 0; i < 3; i++) {
+            byte[] compressed = compress(compression, "gzip");
+            assertTrue(compressed.length < CONTENT.length / 5);
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                assertArrayEquals(CONTENT, in.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void compress_deflate_readsBackAsZlib() throws IOException {
+        byte[] compressed = compress(new ResponseCompression(), "deflate");
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(CONTENT, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void isCompressible_matchesTypesAndWildcards() {
+        ResponseCompression compression = new ResponseCompression(List.of("text/*", "application/json"), 0);
+        assertTrue(compression.isCompressible("text/plain"));
+        assertTrue(compression.isCompressible("Application/JSON; charset=UTF-8"));
+        assertFalse(compression.isCompressible("image/png"));
+        assertFalse(compression.isCompressible(null));
+    }
+
+    private static byte[] compress(ResponseCompression compression, String coding) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compression.compress(bytes, coding)) {
+            out.write(CONTENT, 0, 100);
+            out.write(CONTENT, 100, CONTENT.length - 100);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -21,6 +21,10 @@ public class TestingOutputStream extends ServletOutputStream {
         return baos.toString();
     }
 
+    public byte[] toByteArray() {
+        return baos.toByteArray();
+    }
+
     @Override
     public boolean isReady() {
         return false;
@@ -7,6 +7,9 @@ package nl.info.webdav.testutil;
 import java.io.ByteArrayInputStream;
 import java.util.Date;
 
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.lib.concurrent.Synchroniser;
 import org.junit.jupiter.api.AfterAll;
@@ -84,6 +87,25 @@ public abstract class MockTest {
         _mockery = null;
     }
 
+    /**
+     * Expects the conditional headers that are read before a method acts on an existing resource, all of them
+     * absent.
+     *
+     * @param safe true for GET and HEAD, which also read <code>If-Modified-Since</code>
+     */
+    public static void withoutConditionalHeaders(Expectations expectations, HttpServletRequest req, boolean safe) {
+        expectations.oneOf(req).getHeader("If-Match");
+        expectations.will(Expectations.returnValue(null));
+        expectations.oneOf(req).getHeader("If-Unmodified-Since");
+        expectations.will(Expectations.returnValue(null));
+        expectations.oneOf(req).getHeader("If-None-Match");
+        expectations.will(Expectations.returnValue(null));
+        if (safe) {
+            expectations.oneOf(req).getHeader("If-Modified-Since");
+            expectations.will(Expectations.returnValue(null));
+        }
+    }
+
     public static StoredObject initFolderStoredObject() {
         StoredObject so = initStoredObject(true, null);
 